@@ -17,8 +17,10 @@ import org.springframework.scheduling.annotation.EnableAsync;
 @SpringBootApplication // 🏷️ STICKER: Tells Java: "This is a Spring Boot App. Please set up everything automatically."
 @EnableCaching         // 🧠 MEMORY UPGRADE: Turns on the "Short-Term Memory" (RAM).
 // This allows our AI Service to remember answers (like "KFC = Food") instantly.
-@EnableAsync           // ⚡ TURBO MODE: Turns on "Multitasking".
+@EnableAsync(proxyTargetClass = true) // ⚡ TURBO MODE: Turns on "Multitasking".
 // This allows the app to do heavy work in the background without freezing the screen.
+// "proxyTargetClass" lets @Async work on classes that also implement an interface
+// (like our Categorizer experts), not only on plain classes.
 public class AtomicLedgerApplication {
 
 	// 🔑 THE IGNITION KEY
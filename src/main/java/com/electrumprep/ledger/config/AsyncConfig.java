@@ -0,0 +1,91 @@
+package com.electrumprep.ledger.config;
+
+// 📦 IMPORTS
+// We are grabbing Spring's "Thread Pool" tools.
+// A thread pool is a team of background workers that share a to-do list.
+// "SimpleAsyncTaskExecutor" can instead start a brand new VIRTUAL thread for every job.
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+// -----------------------------------------------------------------------------------
+// 🧵 THE WORKER ROSTER (Async Configuration)
+// @EnableAsync (on AtomicLedgerApplication) turns on multitasking.
+// This class decides WHO does the background work and HOW MANY of them there are.
+//
+// 🪶 TWO EXECUTION MODES ("spring.threads.virtual.enabled")
+// - false (platform): a small, fixed team of real OS threads. The team size is the limit.
+// - true  (virtual):  every job gets its own virtual thread (they cost almost nothing, and
+//                     waiting on Gemini or the database does not block an OS thread).
+//                     The limits are then enforced by semaphores instead of team sizes:
+//                     CategoryEnrichmentPipeline (workers), GeminiClient (bulkhead) and
+//                     ConnectionGateConfig (database connections).
+// Spring Boot switches Tomcat's request threads with the same property.
+// -----------------------------------------------------------------------------------
+
+@Configuration // 🏷️ STICKER: Tells Spring Boot: "This class builds tools (Beans) for the others."
+public class AsyncConfig {
+
+    // How long a virtual-thread executor waits for running jobs on shutdown.
+    private static final long SHUTDOWN_WAIT_MS = 10_000;
+
+    private final boolean virtualThreads;
+
+    public AsyncConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    // 🤖 THE AI BACK OFFICE
+    // A small, FIXED team that fills in categories after the payment is already saved.
+    // We keep it small on purpose: Gemini has a rate limit, so 100 workers would only
+    // get us 100 "Too Many Requests" errors faster.
+    // The queue itself is bounded by CategoryEnrichmentPipeline (the "Backpressure" valve).
+    @Bean(name = "enrichmentExecutor")
+    public TaskExecutor enrichmentExecutor(@Value("${ledger.enrichment.workers:4}") int workers) {
+        if (virtualThreads) {
+            // No limit here: the pipeline's "work benches" semaphore allows only "workers" at once.
+            // (A limit here would make the payment path WAIT when handing over a job.)
+            return virtualExecutor("enrich-", -1);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setThreadNamePrefix("enrich-");
+        // 🛑 On shutdown, let the workers finish the job in their hands (but don't wait forever).
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    // 🚌 THE CARPOOL DRIVERS
+    // Each driver takes ONE full "bus" of transactions to Gemini (see BatchingCategorizer).
+    // A few drivers let the next bus leave while the previous one is still waiting for Google.
+    @Bean(name = "geminiBatchExecutor")
+    public TaskExecutor geminiBatchExecutor(@Value("${gemini.batch.concurrency:4}") int drivers) {
+        if (virtualThreads) {
+            // Here waiting is fine: the dispatcher holds the next bus until a driver is free
+            // (so the bus just fills up with more passengers).
+            return virtualExecutor("gemini-batch-", drivers);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(drivers);
+        executor.setMaxPoolSize(drivers);
+        executor.setThreadNamePrefix("gemini-batch-");
+        executor.initialize();
+        return executor;
+    }
+
+    // 🪶 One virtual thread per job. "limit" > 0 = at most that many at once (-1 = no limit).
+    // Spring's limiter uses a ReentrantLock (not "synchronized"), so waiting doesn't pin a carrier.
+    private static SimpleAsyncTaskExecutor virtualExecutor(String namePrefix, int limit) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(namePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(limit);
+        executor.setTaskTerminationTimeout(SHUTDOWN_WAIT_MS);
+        return executor;
+    }
+}
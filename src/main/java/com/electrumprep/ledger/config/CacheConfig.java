@@ -0,0 +1,76 @@
+package com.electrumprep.ledger.config;
+
+// 📦 IMPORTS
+// "Caffeine" is a high-performance cache library (the engine behind our "Short-Term Memory").
+// It uses a smart eviction policy (W-TinyLFU) that keeps the POPULAR merchants
+// and throws out the one-hit wonders first when memory is full.
+import com.electrumprep.ledger.service.MerchantNormalizer;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+// -----------------------------------------------------------------------------------
+// 🧠 THE MEMORY RULES (Cache Configuration)
+// Spring's default cache is a plain Map that NEVER forgets anything.
+// With millions of payments it would keep growing until the server runs out of RAM.
+// Here we give the "categories" cache three rules:
+// 1. A size limit (in approximate BYTES, not just number of entries).
+// 2. An expiry date (TTL), so categories are re-checked once in a while.
+// 3. Statistics (hits, misses, evictions) that operators can see on /actuator/metrics.
+// -----------------------------------------------------------------------------------
+
+@Configuration // 🏷️ STICKER: Tells Spring Boot: "This class builds tools (Beans) for the others."
+public class CacheConfig {
+
+    // 🏷️ The name used in @Cacheable("categories")
+    public static final String CATEGORIES = "categories";
+
+    // A rough price tag for one cached String: object header + the characters inside.
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    @Bean
+    public CacheManager cacheManager(@Value("${ledger.category-cache.max-weight-bytes:16777216}") long maxWeightBytes,
+                                     @Value("${ledger.category-cache.ttl:24h}") Duration ttl) {
+        CaffeineCacheManager manager = new CaffeineCacheManager();
+        // We NEVER want to remember "null" as an answer.
+        manager.setAllowNullValues(false);
+        manager.registerCustomCache(CATEGORIES, Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Object key, Object value) -> weigh(key) + weigh(value))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build());
+        return manager;
+    }
+
+    // 📊 THE SCOREBOARD HOOK
+    // A cache registered with registerCustomCache is not picked up by Spring Boot's cache metrics,
+    // so we hook it up ourselves: cache.gets{cache=categories,result=hit|miss}, evictions, size.
+    @Bean
+    public MeterBinder categoryCacheMetrics(CacheManager cacheManager) {
+        return registry -> CaffeineCacheMetrics.monitor(registry,
+                (com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache(CATEGORIES).getNativeCache(),
+                CATEGORIES);
+    }
+
+    // 🔑 THE KEY MAKER
+    // Turns the categorize(reference, amount) arguments into ONE cache key:
+    // the cleaned merchant name. The amount is ignored on purpose:
+    // "KFC" for R50 and "KFC" for R120 are both "Food & Dining".
+    @Bean
+    public KeyGenerator merchantKeyGenerator() {
+        return (target, method, params) -> MerchantNormalizer.normalize((String) params[0]);
+    }
+
+    private static int weigh(Object value) {
+        return value instanceof String s ? STRING_OVERHEAD_BYTES + 2 * s.length() : STRING_OVERHEAD_BYTES;
+    }
+}
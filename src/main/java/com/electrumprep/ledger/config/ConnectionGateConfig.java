@@ -0,0 +1,146 @@
+package com.electrumprep.ledger.config;
+
+// 📦 IMPORTS
+// "DelegatingDataSource" lets us wrap the real connection pool (HikariCP) and add a rule.
+// "ConnectionProxy" is Spring's way to say "this connection is a wrapper around that one".
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// -----------------------------------------------------------------------------------
+// 🚧 THE DATABASE TURNSTILE (Connection Gate)
+// With 200 platform threads, Tomcat itself limited how many requests could ask for a
+// database connection. With virtual threads there may be THOUSANDS of requests at once,
+// all queueing inside the connection pool and timing out together.
+// The turnstile is a fair semaphore in front of the pool: one ticket per connection.
+// - Waiting for a ticket is cheap for a virtual thread (it just parks).
+// - Tickets are handed out first-come, first-served.
+// - The ticket is given back when the connection is closed (returned to the pool).
+// -----------------------------------------------------------------------------------
+
+@Configuration
+public class ConnectionGateConfig {
+
+    // 🔧 Wrap the DataSource bean as soon as Spring builds it (before anyone else uses it).
+    // "static" so this helper is created early, without pulling other beans in with it.
+    @Bean
+    public static BeanPostProcessor connectionGate(
+            @Value("${ledger.db.max-concurrent-connections:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConnections,
+            @Value("${ledger.db.acquire-timeout:30s}") Duration acquireTimeout,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof GatedDataSource)) {
+                    GatedDataSource gated = new GatedDataSource(dataSource, maxConnections, acquireTimeout);
+                    meterRegistry.ifAvailable(registry -> registry.gauge("ledger.db.connections.waiting",
+                            gated, GatedDataSource::waiting));
+                    return gated;
+                }
+                return bean;
+            }
+        };
+    }
+
+    // ===================================================================================
+    // 🎟️ THE WRAPPED DATASOURCE
+    // ===================================================================================
+    static class GatedDataSource extends DelegatingDataSource {
+
+        private final Semaphore tickets;
+        private final long timeoutMs;
+
+        GatedDataSource(DataSource target, int maxConnections, Duration acquireTimeout) {
+            super(target);
+            this.tickets = new Semaphore(maxConnections, true);
+            this.timeoutMs = acquireTimeout.toMillis();
+        }
+
+        // How many callers are standing at the turnstile right now.
+        int waiting() {
+            return tickets.getQueueLength();
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            try {
+                return gate(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                tickets.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            try {
+                return gate(super.getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                tickets.release();
+                throw e;
+            }
+        }
+
+        private void acquire() throws SQLException {
+            try {
+                if (!tickets.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new SQLTransientConnectionException(
+                            "No database connection available within " + timeoutMs + "ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+            }
+        }
+
+        // 🎁 Wrap the connection so that close() also returns the ticket (exactly once).
+        private Connection gate(Connection target) {
+            AtomicBoolean returned = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                    new Class<?>[]{ConnectionProxy.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "getTargetConnection" -> target;
+                        case "close" -> {
+                            try {
+                                target.close();
+                            } finally {
+                                if (returned.compareAndSet(false, true)) {
+                                    tickets.release();
+                                }
+                            }
+                            yield null;
+                        }
+                        default -> invoke(target, method, args);
+                    });
+        }
+
+        private static Object invoke(Connection target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
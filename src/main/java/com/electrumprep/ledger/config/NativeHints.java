@@ -0,0 +1,41 @@
+package com.electrumprep.ledger.config;
+
+// 📦 IMPORTS
+// "RuntimeHints" is the packing list for a GraalVM native image: a native executable only
+// contains the files and reflection it was TOLD about at build time.
+import com.electrumprep.ledger.model.BatchItemResult;
+import com.electrumprep.ledger.model.Transaction;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+// -----------------------------------------------------------------------------------
+// 🧊 THE PACKING LIST (Native image hints)
+// Spring AOT already finds the controllers, the Switch and the JPA repositories.
+// What it cannot see on its own:
+// 1. 🪧 The default routing rules and the merchant dictionary (loaded as "classpath:" resources),
+//    and the database-specific Flyway scripts (Spring Boot only packs db/migration by itself).
+// 2. 📄 Transaction rows that Jackson reads from a bulk upload and writes to the NDJSON export
+//    without going through a controller method signature.
+// Only used by "mvn -Pnative native:compile"; the normal jar ignores it.
+// -----------------------------------------------------------------------------------
+
+@Configuration
+@ImportRuntimeHints(NativeHints.Registrar.class)
+public class NativeHints {
+
+    public static class Registrar implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            hints.resources()
+                    .registerPattern("routing-rules.csv")
+                    .registerPattern("merchant-dictionary.csv")
+                    .registerPattern("db/vendor/*/*.sql");
+            new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                    Transaction.class, BatchItemResult.class);
+        }
+    }
+}
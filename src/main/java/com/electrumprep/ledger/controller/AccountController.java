@@ -0,0 +1,53 @@
+package com.electrumprep.ledger.controller;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.AccountBalance;
+import com.electrumprep.ledger.service.PostingEngine;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+// -----------------------------------------------------------------------------------
+// 🏦 THE TELLER (Account Controller)
+// Answers "what is the balance of INV-POOL-888?" straight from the Posting Engine's
+// memory (no adding up of old payments), and takes cash deposits.
+// -----------------------------------------------------------------------------------
+
+@RestController
+@RequestMapping("/api/accounts")
+@CrossOrigin(origins = "*")
+public class AccountController {
+
+    private final PostingEngine postingEngine;
+
+    public AccountController(PostingEngine postingEngine) {
+        this.postingEngine = postingEngine;
+    }
+
+    // 🔎 GET /api/accounts/INV-POOL-888 -> {"accountNumber": "INV-POOL-888", "balance": 1500.00, ...}
+    // 404 for an account that has never had a posting.
+    @GetMapping("/{accountNumber}")
+    public AccountBalance balance(@PathVariable String accountNumber) {
+        return postingEngine.balance(accountNumber)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown account " + accountNumber));
+    }
+
+    // 💵 POST /api/accounts/INV-2026/deposits {"amount": 500.00}
+    // Money comes in from the funding account (the "cash drawer"), so debits still equal credits.
+    @PostMapping("/{accountNumber}/deposits")
+    public AccountBalance deposit(@PathVariable String accountNumber, @RequestBody Map<String, BigDecimal> body) {
+        BigDecimal amount = body.get("amount");
+        if (amount == null || amount.signum() <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Deposit amount must be positive");
+        }
+        try {
+            postingEngine.record(postingEngine.post(postingEngine.getFundingAccount(), accountNumber, amount), null);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return balance(accountNumber);
+    }
+}
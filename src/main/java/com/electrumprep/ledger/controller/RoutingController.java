@@ -0,0 +1,41 @@
+package com.electrumprep.ledger.controller;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.service.RoutingTable;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+// -----------------------------------------------------------------------------------
+// 🗺️ THE MAP DESK (Routing Controller)
+// Operators edit the "routing_rules" table, then press "reload" here.
+// The new rules go live at once, without a restart.
+// -----------------------------------------------------------------------------------
+
+@RestController
+@RequestMapping("/api/routing")
+public class RoutingController {
+
+    private final RoutingTable routingTable;
+
+    public RoutingController(RoutingTable routingTable) {
+        this.routingTable = routingTable;
+    }
+
+    // 🔄 POST /api/routing/reload -> {"rules": 3}
+    // Broken rules (e.g. no default road) are refused with 400, and the old rules stay live.
+    // An unreadable table is a 503 ("try again"): the old rules stay live then too.
+    @PostMapping("/reload")
+    public Map<String, Integer> reload() {
+        try {
+            return Map.of("rules", routingTable.reload());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (DataAccessException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Could not read routing_rules: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.electrumprep.ledger.controller;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.SettlementFile;
+import com.electrumprep.ledger.service.SettlementService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+// -----------------------------------------------------------------------------------
+// 🏦 THE CLEARING DESK (Settlement Controller)
+// End-of-day files for the banks, and the bank return files coming back.
+// Everything is streamed: a day with millions of payments never sits in memory.
+// "format" is csv (default) or fixed (fixed-width text); "date" defaults to yesterday.
+// -----------------------------------------------------------------------------------
+
+@RestController
+@RequestMapping("/api/settlement")
+@CrossOrigin(origins = "*")
+public class SettlementController {
+
+    private final SettlementService settlement;
+
+    public SettlementController(SettlementService settlement) {
+        this.settlement = settlement;
+    }
+
+    // 📤 POST /api/settlement/files?date=2026-02-01&format=fixed
+    // Writes one file per target bank into the settlement folder; returns what was written.
+    @PostMapping("/files")
+    public List<SettlementFile> writeFiles(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                           @RequestParam(defaultValue = "csv") String format) throws IOException {
+        return settlement.writeFiles(day(date), format(format));
+    }
+
+    // 🚰 GET /api/settlement/files/ABSA BANK?date=2026-02-01
+    // One bank's file, streamed straight to the client (nothing is kept on disk).
+    @GetMapping("/files/{bank}")
+    public void streamFile(@PathVariable String bank,
+                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                           @RequestParam(defaultValue = "csv") String format,
+                           HttpServletResponse response) throws IOException {
+        SettlementService.Format fileFormat = format(format);
+        LocalDate day = day(date);
+        response.setContentType(fileFormat == SettlementService.Format.CSV ? "text/csv;charset=UTF-8" : "text/plain;charset=US-ASCII");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" +
+                bank.replaceAll("[^A-Za-z0-9]+", "_") + "-" + day + (fileFormat == SettlementService.Format.CSV ? ".csv\"" : ".txt\""));
+        settlement.streamFile(bank, day, fileFormat, response.getOutputStream());
+    }
+
+    // 📥 POST /api/settlement/returns?format=csv[&date=2026-02-01]
+    // The body is the bank's return file; the answer is the reconciliation report (CSV), line by line.
+    @PostMapping("/returns")
+    public void reconcileReturns(@RequestParam(defaultValue = "csv") String format,
+                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                 InputStream body,
+                                 HttpServletResponse response) throws IOException {
+        SettlementService.Format fileFormat = format(format);
+        response.setContentType("text/csv;charset=UTF-8");
+        settlement.reconcileReturns(body, fileFormat, date, response.getOutputStream());
+    }
+
+    private static LocalDate day(LocalDate date) {
+        return date != null ? date : LocalDate.now().minusDays(1);
+    }
+
+    private static SettlementService.Format format(String format) {
+        try {
+            return SettlementService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown format '" + format + "' (csv or fixed)");
+        }
+    }
+}
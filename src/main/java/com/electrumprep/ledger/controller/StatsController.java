@@ -0,0 +1,54 @@
+package com.electrumprep.ledger.controller;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.service.SpendRollups;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+// -----------------------------------------------------------------------------------
+// 📊 THE SCOREBOARD (Stats Controller)
+// Answers "how much went to Groceries per hour today?" straight from the Spend Rollups
+// in memory. No payment rows are read, so the answer costs the same for 10 or 10 million payments.
+// -----------------------------------------------------------------------------------
+
+@RestController
+@RequestMapping("/api/transactions/stats")
+@CrossOrigin(origins = "*")
+public class StatsController {
+
+    private final SpendRollups rollups;
+
+    public StatsController(SpendRollups rollups) {
+        this.rollups = rollups;
+    }
+
+    // 🔎 GET /api/transactions/stats?granularity=hour&dimension=category&from=2026-02-01T00:00&to=2026-02-02T00:00
+    // - granularity: minute, hour or day (default hour)
+    // - dimension:   category, bank or sender (default category)
+    // - from / to:   the range, "to" not included (default: the last 24 hours)
+    // - key:         optional, only this one category / bank / sender
+    @GetMapping
+    public SpendRollups.Report stats(@RequestParam(defaultValue = "hour") String granularity,
+                                     @RequestParam(defaultValue = "category") String dimension,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                     @RequestParam(required = false) String key) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(1);
+        if (!start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must be before 'to'");
+        }
+        try {
+            return rollups.query(SpendRollups.Granularity.valueOf(granularity.toUpperCase(Locale.ROOT)),
+                    SpendRollups.Dimension.valueOf(dimension.toUpperCase(Locale.ROOT)), start, end, key);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unknown granularity '" + granularity + "' or dimension '" + dimension + "'");
+        }
+    }
+}
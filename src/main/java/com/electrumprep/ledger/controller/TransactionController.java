@@ -3,12 +3,23 @@ package com.electrumprep.ledger.controller;
 // 📦 IMPORTS
 // These are like "tools" we grab from the shelf to build our code.
 // We need tools to talk to the database (Repository) and tools to handle web requests (Spring Web).
+import com.electrumprep.ledger.model.BatchItemResult;
 import com.electrumprep.ledger.model.Transaction;
-import com.electrumprep.ledger.repository.TransactionRepository;
+import com.electrumprep.ledger.service.BatchIngestionService;
+import com.electrumprep.ledger.service.IdempotencyGuard;
+import com.electrumprep.ledger.service.PaymentPipeline;
+import com.electrumprep.ledger.service.TransactionHistoryService;
 import com.electrumprep.ledger.service.TransactionSwitch;
-import org.springframework.data.domain.Sort;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 // -----------------------------------------------------------------------------------
@@ -19,21 +30,34 @@ import java.util.List;
 
 @RestController // Tells Spring Boot: "This class is ready to receive web requests."
 @RequestMapping("/api/transactions") // The specific "Desk Address". Any URL starting with this comes here.
-@CrossOrigin(origins = "*") // SECURITY PASS: Allows "strangers" (like your frontend website) to talk to this backend.
+@CrossOrigin(origins = "*", exposedHeaders = {TransactionController.NEXT_CURSOR_HEADER, TransactionController.IDEMPOTENT_REPLAYED_HEADER}) // SECURITY PASS: Allows "strangers" (like your frontend website) to talk to this backend.
 public class TransactionController {
 
+    // 🔖 The response header that carries the bookmark for the next page.
+    // "exposedHeaders" (above) lets browser JavaScript on other sites read it.
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // 🎫 The request header with the client's ticket number, and the reply header for replays.
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     // 🛠️ DEPENDENCIES (The Staff)
     // The Controller (Receptionist) doesn't actually do the heavy lifting.
-    // It delegates work to the "Manager" (Switch) and the "Librarian" (Repository).
+    // It delegates work to the "Manager" (Switch) and the "Archivist" (History).
     private final TransactionSwitch transactionSwitch;
-    private final TransactionRepository repository;
+    private final TransactionHistoryService history;
+    private final BatchIngestionService batchIngestion;
+    private final IdempotencyGuard idempotencyGuard;
 
     // 🏗️ CONSTRUCTOR (The Hiring Manager)
-    // When the app starts, Spring Boot automatically "hires" the Switch and Repository
+    // When the app starts, Spring Boot automatically "hires" the Switch and the Archivist
     // and plugs them into this Controller so they are ready to use.
-    public TransactionController(TransactionSwitch transactionSwitch, TransactionRepository repository) {
+    public TransactionController(TransactionSwitch transactionSwitch, TransactionHistoryService history,
+                                 BatchIngestionService batchIngestion, IdempotencyGuard idempotencyGuard) {
         this.transactionSwitch = transactionSwitch;
-        this.repository = repository;
+        this.history = history;
+        this.batchIngestion = batchIngestion;
+        this.idempotencyGuard = idempotencyGuard;
     }
 
     // ===================================================================================
@@ -41,24 +65,84 @@ public class TransactionController {
     // ===================================================================================
     // Think of this like a customer handing a "New Order" to the waiter.
     // The Frontend sends a JSON payment -> We process it.
+    //
+    // 🎫 RETRIES: If the client sends an "Idempotency-Key" header, pressing "Pay" twice
+    // (or retrying after a timeout) returns the FIRST receipt again, with the header
+    // "Idempotent-Replayed: true". Nothing is routed, categorized or saved a second time.
     @PostMapping
-    public Transaction processTransaction(@RequestBody Transaction transaction) {
-        // "Waiter" (Controller) hands the order to the "Kitchen Manager" (TransactionSwitch).
-        // The Switch determines if it's Investec vs Absa, runs the AI, and saves it.
-        // We just return the final result to the user.
-        return transactionSwitch.processAndRoute(transaction);
+    public ResponseEntity<Transaction> processTransaction(@RequestBody Transaction transaction,
+                                                          @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            // "Waiter" (Controller) hands the order to the "Kitchen Manager" (TransactionSwitch).
+            // The Switch determines if it's Investec vs Absa, runs the AI, and saves it.
+            // We just return the final result to the user.
+            return ResponseEntity.ok(transactionSwitch.processAndRoute(transaction));
+        }
+        if (idempotencyKey.length() > IdempotencyGuard.MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY_HEADER + " must be at most " + IdempotencyGuard.MAX_KEY_LENGTH + " characters");
+        }
+
+        // The ticket number is saved on the receipt (the unique column is the last line of defence).
+        transaction.setIdempotencyKey(idempotencyKey);
+        IdempotencyGuard.Outcome outcome = idempotencyGuard.execute(idempotencyKey,
+                () -> transactionSwitch.processAndRoute(transaction));
+        return ResponseEntity.ok()
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(outcome.replayed()))
+                .body(outcome.transaction());
+    }
+
+    // 🚧 "All lanes are jammed" (pipeline mode): 503, so the client knows to retry a bit later.
+    @ExceptionHandler(PaymentPipeline.PipelineFullException.class)
+    public ResponseEntity<String> pipelineFull(PaymentPipeline.PipelineFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
     }
 
     // ===================================================================================
-    // 📖 2. GET REQUEST: "Reading History"
+    // 🚛 1b. POST REQUEST: "Bulk Upload" (Settlement files)
     // ===================================================================================
-    // Think of this like asking for a "Bank Statement".
-    // The Frontend asks for a list -> We fetch it from the records.
+    // Think of this like a truck delivering a whole box of orders at once.
+    // Accepts a JSON array, or NDJSON (Content-Type: application/x-ndjson, one payment per line).
+    // The body is read as a STREAM, so even 200,000 payments don't fill up the memory.
+    // Returns one result per payment: ACCEPTED (with its id) or REJECTED (with the reason).
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public List<BatchItemResult> processBatch(InputStream body) throws IOException {
+        return batchIngestion.ingest(body);
+    }
+
+    // ===================================================================================
+    // 📖 2. GET REQUEST: "Reading History" (One page at a time)
+    // ===================================================================================
+    // Think of this like asking for a "Bank Statement", one sheet at a time.
+    // The Frontend asks for a list -> We fetch the NEWEST rows (at most "limit", capped on our side).
+    // The body is still a plain JSON list (so the dashboard works unchanged).
+    // If there are older rows, the "X-Next-Cursor" header holds a bookmark:
+    // call again with ?cursor=<that value> to get the next sheet.
     @GetMapping
-    public List<Transaction> getAllTransactions() {
-        // "Waiter" asks the "Librarian" (Repository) for all records.
-        // Sort.by(Sort.Direction.DESC, "timestamp") means:
-        // "Give me the list, but put the NEWEST ones at the top."
-        return repository.findAll(Sort.by(Sort.Direction.DESC, "timestamp"));
+    public ResponseEntity<List<Transaction>> getAllTransactions(@RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer limit) {
+        TransactionHistoryService.Page page;
+        try {
+            page = history.page(cursor, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            ok.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return ok.body(page.items());
+    }
+
+    // ===================================================================================
+    // 🚰 3. GET REQUEST: "Export Everything" (Streaming)
+    // ===================================================================================
+    // For reports and backups: the WHOLE table, one JSON object per line (NDJSON).
+    // Rows are written while they are being read, so the server never holds the full table.
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportTransactions(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        history.export(response.getOutputStream());
     }
-}
\ No newline at end of file
+}
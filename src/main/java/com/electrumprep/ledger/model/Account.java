@@ -0,0 +1,43 @@
+package com.electrumprep.ledger.model;
+
+// 📦 IMPORTS
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// -----------------------------------------------------------------------------------
+// 🏦 THE ACCOUNT CARD (Balance of one account)
+// A real ledger needs to answer "how much is in INV-POOL-888?" WITHOUT adding up every
+// payment ever made. So every account keeps its running balance on one card.
+// The card is written by the PostingEngine in batches (the live balance is in RAM).
+// -----------------------------------------------------------------------------------
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "accounts")
+public class Account {
+
+    // 🔑 The account number itself is the key (e.g. "INV-2026", "INV-POOL-888").
+    @Id
+    private String accountNumber;
+
+    // 💰 The running balance. Goes DOWN on a debit (money out), UP on a credit (money in).
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance;
+
+    // 🪢 How far below zero this account may go (0 = no overdraft).
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal overdraftLimit;
+
+    // 🔢 How many postings this balance includes. Batches can arrive out of order, so the
+    // database only accepts a balance that is NEWER than the one it already has.
+    private long postingVersion;
+
+    private LocalDateTime updatedAt;
+}
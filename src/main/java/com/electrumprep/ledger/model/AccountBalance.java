@@ -0,0 +1,10 @@
+package com.electrumprep.ledger.model;
+
+import java.math.BigDecimal;
+
+// -----------------------------------------------------------------------------------
+// 🧾 THE BALANCE SLIP (What GET /api/accounts/{accountNumber} returns)
+// -----------------------------------------------------------------------------------
+
+public record AccountBalance(String accountNumber, BigDecimal balance, BigDecimal overdraftLimit) {
+}
@@ -0,0 +1,24 @@
+package com.electrumprep.ledger.model;
+
+// -----------------------------------------------------------------------------------
+// 🧾 ONE LINE OF THE BULK RECEIPT (Batch Item Result)
+// When a client uploads thousands of payments, they get one of these back per payment:
+// - index:  the position of the payment in the upload (0, 1, 2...)
+// - id:     the database id (only for ACCEPTED payments)
+// - status: "ACCEPTED" or "REJECTED"
+// - error:  why it was rejected (null when accepted)
+// -----------------------------------------------------------------------------------
+
+public record BatchItemResult(int index, Long id, String status, String error) {
+
+    public static final String ACCEPTED = "ACCEPTED";
+    public static final String REJECTED = "REJECTED";
+
+    public static BatchItemResult accepted(int index, Transaction txn) {
+        return new BatchItemResult(index, txn.getId(), ACCEPTED, null);
+    }
+
+    public static BatchItemResult rejected(int index, String error) {
+        return new BatchItemResult(index, null, REJECTED, error);
+    }
+}
@@ -0,0 +1,10 @@
+package com.electrumprep.ledger.model;
+
+// -----------------------------------------------------------------------------------
+// 📣 THE ANNOUNCEMENT: "This PENDING payment now has its real category."
+// Published by the AI Back Office after it wrote the category onto the saved row.
+// "transaction" still shows the OLD category; "category" is the new one.
+// -----------------------------------------------------------------------------------
+
+public record CategoryAssigned(Transaction transaction, String category) {
+}
@@ -0,0 +1,17 @@
+package com.electrumprep.ledger.model;
+
+// -----------------------------------------------------------------------------------
+// 🗜️ THE POCKET RECEIPT (Compact, in-memory form of a Transaction)
+// The full Transaction is built for the database and the JSON API: BigDecimal, LocalDateTime,
+// and text for status and category. That is several extra objects per payment.
+// In-flight and in-memory code (the tally board, ...) uses this form instead:
+// - amountMinor:  the amount in cents (R 12.50 -> 1250)
+// - currency:     the ISO 4217 number (ZAR -> 710)
+// - epochMicros:  the timestamp as microseconds since 1970-01-01 (wall clock, no time zone)
+// - bankId / categoryId: numbers from the SymbolTables in CompactPayments (not stable across restarts!)
+// Build and read it with CompactPayments; never store it as-is.
+// -----------------------------------------------------------------------------------
+
+public record CompactPayment(long id, long amountMinor, short currency, long epochMicros,
+                             int bankId, int categoryId, String senderAccount) {
+}
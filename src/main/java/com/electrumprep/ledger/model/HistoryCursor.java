@@ -0,0 +1,41 @@
+package com.electrumprep.ledger.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// -----------------------------------------------------------------------------------
+// 🔖 THE BOOKMARK (Keyset Pagination Cursor)
+// "Page 5000" would make the database count (and skip) 250,000 rows first: slow!
+// Instead we remember WHERE we stopped: the (timestamp, id) of the last row we sent.
+// The next page simply asks for "rows older than this bookmark", which an index
+// can answer instantly, no matter how deep into the history we are.
+// On the wire it is an opaque string, so clients never build one by hand.
+// -----------------------------------------------------------------------------------
+
+public record HistoryCursor(LocalDateTime timestamp, long id) {
+
+    public static HistoryCursor after(Transaction txn) {
+        return new HistoryCursor(txn.getTimestamp(), txn.getId());
+    }
+
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Throws IllegalArgumentException if the bookmark was tampered with (or is just garbage).
+    public static HistoryCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int bar = raw.lastIndexOf('|');
+            if (bar < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new HistoryCursor(LocalDateTime.parse(raw.substring(0, bar)), Long.parseLong(raw.substring(bar + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
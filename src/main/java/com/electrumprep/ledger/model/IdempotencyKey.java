@@ -0,0 +1,35 @@
+package com.electrumprep.ledger.model;
+
+// 📦 IMPORTS
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// -----------------------------------------------------------------------------------
+// 🎟️ THE TICKET STUB (Idempotency Key)
+// One stub per "Idempotency-Key" ever booked, pointing at its receipt.
+// The "transactions" table is split by month (and old months are archived), so a UNIQUE
+// constraint there can only be per month. This small table is never split or archived:
+// its primary key stops the same ticket from being booked twice, forever.
+// -----------------------------------------------------------------------------------
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "idempotency_keys")
+public class IdempotencyKey {
+
+    // 🔑 The client's ticket number.
+    @Id
+    @Column(length = 255)
+    private String idempotencyKey;
+
+    // 🧾 Which receipt it booked. The timestamp finds the right month (hot table or archive).
+    private Long transactionId;
+
+    private LocalDateTime timestamp;
+}
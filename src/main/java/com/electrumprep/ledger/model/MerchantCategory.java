@@ -0,0 +1,35 @@
+package com.electrumprep.ledger.model;
+
+// 📦 IMPORTS
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// -----------------------------------------------------------------------------------
+// 🗂️ THE FILING CABINET CARD (Persisted Category Cache Entry)
+// The RAM cache forgets everything when the app restarts.
+// This table is the "Long-Term Memory": one card per cleaned merchant name
+// (e.g. "UBER" -> "Transport"), so a fresh server does not have to ask Google again.
+// -----------------------------------------------------------------------------------
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "merchant_categories")
+public class MerchantCategory {
+
+    // 🔑 The cleaned merchant name is the unique key (see MerchantNormalizer).
+    @Id
+    @Column(length = 255)
+    private String merchantKey;
+
+    // The category Gemini (or a local rule) chose for it.
+    private String category;
+
+    // When we last learned this. Used to ignore cards older than the cache TTL.
+    private LocalDateTime updatedAt;
+}
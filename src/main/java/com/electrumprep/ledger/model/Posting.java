@@ -0,0 +1,48 @@
+package com.electrumprep.ledger.model;
+
+// 📦 IMPORTS
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// -----------------------------------------------------------------------------------
+// ✍️ ONE LINE IN THE BOOKS (Posting)
+// Double-entry bookkeeping: every payment writes TWO lines that cancel out:
+// - a DEBIT on the sender   (amount is negative: money leaves)
+// - a CREDIT on the receiver (amount is positive: money arrives)
+// Add up all postings of a payment and you always get exactly 0. Money is never created
+// or lost, only moved.
+// -----------------------------------------------------------------------------------
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "postings", indexes = {
+        // "Show me the statement of this account" (newest lines by id).
+        @Index(name = "idx_postings_account_id", columnList = "account_number, id")
+})
+public class Posting {
+
+    // Numbers come from a sequence in blocks of 50, so postings are inserted in batches.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "postings_seq")
+    @SequenceGenerator(name = "postings_seq", sequenceName = "postings_seq", allocationSize = 50)
+    private Long id;
+
+    // The payment this line belongs to (empty for deposits, which have no Transaction row).
+    private Long transactionId;
+
+    @Column(nullable = false)
+    private String accountNumber;
+
+    // Negative = debit, positive = credit.
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal amount;
+
+    private LocalDateTime createdAt;
+}
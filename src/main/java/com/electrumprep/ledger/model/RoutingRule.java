@@ -0,0 +1,45 @@
+package com.electrumprep.ledger.model;
+
+// 📦 IMPORTS
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// -----------------------------------------------------------------------------------
+// 🪧 ONE ROAD SIGN (Routing Rule)
+// "Accounts starting with INV go to INVESTEC BANK, into pool account INV-POOL-888."
+// Rules live in the "routing_rules" table (or in routing-rules.csv when the table is empty),
+// so adding a bank is a new row + a reload, NOT a code change and a redeploy.
+// -----------------------------------------------------------------------------------
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "routing_rules")
+public class RoutingRule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // The start of the sender account (e.g. "INV"). An EMPTY prefix is the default road:
+    // it matches every account, so there must always be one.
+    @Column(nullable = false)
+    private String accountPrefix;
+
+    // Where the money goes (e.g. "INVESTEC BANK") and the pool account that receives it.
+    @Column(nullable = false)
+    private String targetBank;
+
+    @Column(nullable = false)
+    private String poolAccount;
+
+    // When several signs match, the HIGHEST priority wins (then the longest prefix).
+    private int priority;
+
+    public RoutingRule(String accountPrefix, String targetBank, String poolAccount, int priority) {
+        this(null, accountPrefix, targetBank, poolAccount, priority);
+    }
+}
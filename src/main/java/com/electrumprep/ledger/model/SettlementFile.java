@@ -0,0 +1,11 @@
+package com.electrumprep.ledger.model;
+
+import java.math.BigDecimal;
+
+// -----------------------------------------------------------------------------------
+// 🧾 ONE CLEARING FILE (the receipt for a settlement run)
+// Which bank it is for, where it was written, how many payments and how much money.
+// "file" is null when the file was streamed straight to the client.
+// -----------------------------------------------------------------------------------
+
+public record SettlementFile(String bank, String file, long rows, BigDecimal total) { }
@@ -0,0 +1,54 @@
+package com.electrumprep.ledger.model;
+
+// 📦 IMPORTS
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// -----------------------------------------------------------------------------------
+// 📊 ONE SAVED TALLY (Spend Rollup checkpoint)
+// "In the HOUR starting 09:00, CATEGORY Groceries had 42 payments worth R 3 150.00."
+// The live totals are kept in memory (SpendRollups); this table is their backup copy,
+// so a restart can pick up where it left off. Rows are overwritten, never added to.
+// -----------------------------------------------------------------------------------
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "spend_rollups", uniqueConstraints = {
+        // One row per bucket and key (the checkpoint MERGE matches on exactly these columns).
+        @UniqueConstraint(name = "uk_spend_rollups_bucket",
+                columnNames = {"granularity", "dimension", "bucket_start", "dim_key"})
+})
+public class SpendRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // MINUTE, HOUR or DAY
+    @Column(length = 16, nullable = false)
+    private String granularity;
+
+    // CATEGORY, BANK or SENDER
+    @Column(length = 16, nullable = false)
+    private String dimension;
+
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    // The category, bank or sender account this tally is for.
+    @Column(nullable = false)
+    private String dimKey;
+
+    @Column(nullable = false)
+    private long txnCount;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal amount;
+}
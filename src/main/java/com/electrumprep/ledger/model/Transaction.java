@@ -5,6 +5,7 @@ package com.electrumprep.ledger.model;
 // "persistence" tools help us talk to the database (PostgreSQL).
 // "math" helps us handle money (BigDecimal) without rounding errors.
 // "time" helps us record exactly WHEN something happened.
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.math.BigDecimal;
@@ -19,15 +20,29 @@ import java.time.LocalDateTime;
 @Entity // 🏷️ STICKER: Tells Java: "This is a Database Table Row."
 @Data   // 🪄 MAGIC: Lombok automatically writes the "Getters" and "Setters" for us.
 // (So we don't have to write public String getReference() { return reference; } ...)
-@Table(name = "transactions") // 🗄️ DRAWER: Tells the database: "Store these in the 'transactions' folder."
+@Table(name = "transactions", // 🗄️ DRAWER: Tells the database: "Store these in the 'transactions' folder."
+        // 📇 THE INDEX CARDS (so the database doesn't read the whole drawer to find something)
+        // - (timestamp, id): "newest first" history pages and the bookmark (cursor) lookups.
+        // - sender_account:  "show me everything this account sent".
+        // - (reference, amount): matching bank return files back to their payments.
+        indexes = {
+                @Index(name = "idx_transactions_timestamp_id", columnList = "timestamp, id"),
+                @Index(name = "idx_transactions_sender_account", columnList = "sender_account"),
+                @Index(name = "idx_transactions_reference_amount", columnList = "reference, amount")
+        })
 public class Transaction {
 
     // 🔑 THE UNIQUE ID
     // Every receipt needs a unique number so we don't mix them up.
     // @Id = This is the Primary Key.
-    // @GeneratedValue = "Database, please invent a new number (1, 2, 3...) for me automatically."
+    // @GeneratedValue = "Please invent a new number (1, 2, 3...) for me automatically."
+    // We use a SEQUENCE (a number dispenser) instead of IDENTITY:
+    // with IDENTITY, Hibernate must INSERT each row alone to learn its number,
+    // which switches off batching completely. With a sequence, Hibernate grabs
+    // 50 numbers in ONE trip ("pooled" optimizer) and can send inserts in batches.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     // 📝 THE DATA FIELDS (The Lines on the Receipt)
@@ -59,4 +74,12 @@ public class Transaction {
     // The AI will fill this in with "Food", "Transport", etc.
     // In the database, this creates a new column called 'category'.
     private String category;
+
+    // 🎫 THE TICKET NUMBER (Idempotency Key)
+    // Copied from the "Idempotency-Key" header. Retries with the same ticket get this
+    // same receipt back instead of a second payment. Empty for payments sent without one.
+    // The "one payment per ticket" rule lives in the idempotency_keys table (see IdempotencyKey).
+    // READ_ONLY: only the header can set it, never a field in the JSON body.
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private String idempotencyKey;
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.electrumprep.ledger.model;
+
+// -----------------------------------------------------------------------------------
+// 📣 THE CORRECTION: "This booked payment was taken back after all."
+// Published by the journal drainer when a journaled payment turns out to reuse the
+// Idempotency-Key of another booking: its row is stored as REVERSED and its money refunded.
+// Anyone who counted it from TransactionsBooked listens for this and counts it out again.
+// "transaction" still shows the status it was announced with; "status" is the new one.
+// -----------------------------------------------------------------------------------
+
+public record TransactionReversed(Transaction transaction, String status) {
+}
@@ -0,0 +1,12 @@
+package com.electrumprep.ledger.model;
+
+import java.util.List;
+
+// -----------------------------------------------------------------------------------
+// 📣 THE ANNOUNCEMENT: "These payments were just booked."
+// Published by the Switch (one payment, or a whole bulk chunk) right after they are saved
+// (or journaled). Anyone who keeps a running summary listens for this.
+// -----------------------------------------------------------------------------------
+
+public record TransactionsBooked(List<Transaction> transactions) {
+}
@@ -0,0 +1,15 @@
+package com.electrumprep.ledger.repository;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.Account;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+// -----------------------------------------------------------------------------------
+// 📚 THE VAULT CLERK (Account Repository)
+// The librarian for the "accounts" table (one balance card per account).
+// -----------------------------------------------------------------------------------
+
+@Repository
+public interface AccountRepository extends JpaRepository<Account, String> {
+}
@@ -0,0 +1,27 @@
+package com.electrumprep.ledger.repository;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+// -----------------------------------------------------------------------------------
+// 📚 THE TICKET DESK (Idempotency Key Repository)
+// The librarian for the "idempotency_keys" table (findById = "was this ticket booked?").
+// -----------------------------------------------------------------------------------
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    // ✍️ "Claim this ticket for this receipt." A plain INSERT, NOT save(): save() would quietly
+    // overwrite a ticket someone else already holds. A taken ticket throws DataIntegrityViolationException.
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, transaction_id, timestamp) VALUES (:key, :id, :timestamp)",
+            nativeQuery = true)
+    int claim(@Param("key") String key, @Param("id") Long transactionId, @Param("timestamp") LocalDateTime timestamp);
+}
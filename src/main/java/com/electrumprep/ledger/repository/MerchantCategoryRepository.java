@@ -0,0 +1,23 @@
+package com.electrumprep.ledger.repository;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.MerchantCategory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// -----------------------------------------------------------------------------------
+// 📚 THE ARCHIVIST (Merchant Category Repository)
+// The librarian for the "merchant_categories" filing cabinet.
+// Spring Boot writes all the SQL (findById, save...) for us.
+// -----------------------------------------------------------------------------------
+
+@Repository
+public interface MerchantCategoryRepository extends JpaRepository<MerchantCategory, String> {
+
+    // 🔥 The most recently learned cards (for warming the RAM cache after a restart).
+    List<MerchantCategory> findByUpdatedAtAfterOrderByUpdatedAtDesc(LocalDateTime since, Pageable page);
+}
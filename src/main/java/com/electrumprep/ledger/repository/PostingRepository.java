@@ -0,0 +1,18 @@
+package com.electrumprep.ledger.repository;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.Posting;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+// -----------------------------------------------------------------------------------
+// 📚 THE BOOKKEEPER (Posting Repository)
+// The librarian for the "postings" table (the debit and credit lines).
+// -----------------------------------------------------------------------------------
+
+@Repository
+public interface PostingRepository extends JpaRepository<Posting, Long> {
+
+    // "Did this payment already move money?" (Used when the journal is replayed after a crash.)
+    boolean existsByTransactionId(Long transactionId);
+}
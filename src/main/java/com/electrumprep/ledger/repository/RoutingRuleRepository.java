@@ -0,0 +1,15 @@
+package com.electrumprep.ledger.repository;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.RoutingRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+// -----------------------------------------------------------------------------------
+// 📚 THE MAP ROOM (Routing Rule Repository)
+// The librarian for the "routing_rules" table. RoutingTable reads it on startup and on reload.
+// -----------------------------------------------------------------------------------
+
+@Repository
+public interface RoutingRuleRepository extends JpaRepository<RoutingRule, Long> {
+}
@@ -4,8 +4,18 @@ package com.electrumprep.ledger.repository;
 // We are grabbing "Spring Data" tools from the shelf.
 // "JpaRepository" is a magical tool that writes SQL code for us.
 import com.electrumprep.ledger.model.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 // -----------------------------------------------------------------------------------
 // 📚 THE REPOSITORY (The Librarian)
@@ -17,10 +27,8 @@ import org.springframework.stereotype.Repository;
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
     // 🪄 MAGIC HAPPENS HERE!
-    // Notice how this interface is EMPTY? That is intentional!
-
     // By extending "JpaRepository<Transaction, Long>", Spring Boot automatically
-    // writes ALL the SQL code for us in the background.
+    // writes ALL the basic SQL code for us in the background.
 
     // It gives us methods like:
     // - .save(transaction)      -> INSERT INTO transactions...
@@ -28,5 +36,76 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     // - .findById(1)            -> SELECT * FROM transactions WHERE id = 1...
     // - .delete(transaction)    -> DELETE FROM transactions...
 
-    // We don't have to write a single line of SQL manually! 🤯
-}
\ No newline at end of file
+    // ===================================================================================
+    // 🎫 IDEMPOTENCY HELPER (Used by IdempotencyGuard)
+    // ===================================================================================
+
+    // 🔎 "The receipt a ticket stub points at" (see IdempotencyKey). The timestamp lets Postgres
+    // look in that one month's partition only.
+    Optional<Transaction> findByIdAndTimestamp(Long id, LocalDateTime timestamp);
+
+    // ===================================================================================
+    // 🩹 CRASH HELPER (Used by LedgerStore / PostingEngine at startup)
+    // ===================================================================================
+
+    // 🔎 "Booked since X, but no posting lines at all": their postings were still in the
+    // out-tray when the server died. Rows taken back as journal duplicates are left out.
+    @Query("SELECT t FROM Transaction t WHERE t.timestamp >= :since " +
+            "AND (t.status IS NULL OR t.status NOT LIKE :duplicate) " +
+            "AND NOT EXISTS (SELECT p.id FROM Posting p WHERE p.transactionId = t.id) ORDER BY t.id")
+    List<Transaction> findUnpostedSince(@Param("since") LocalDateTime since, @Param("duplicate") String duplicatePattern);
+
+    // ===================================================================================
+    // 📜 HISTORY HELPERS (Used by TransactionHistoryService)
+    // ===================================================================================
+
+    // 📄 "The newest rows" (the first page). The Pageable only carries the row limit.
+    @Query("SELECT t FROM Transaction t ORDER BY t.timestamp DESC, t.id DESC")
+    List<Transaction> findNewest(Pageable page);
+
+    // 🔖 "The rows just older than my bookmark" (every page after the first).
+    // The id breaks ties when many payments share the exact same timestamp.
+    // Served by the (timestamp, id) index, so page 1 and page 50,000 cost the same.
+    @Query("SELECT t FROM Transaction t WHERE t.timestamp < :timestamp " +
+            "OR (t.timestamp = :timestamp AND t.id < :id) ORDER BY t.timestamp DESC, t.id DESC")
+    List<Transaction> findOlderThan(@Param("timestamp") LocalDateTime timestamp, @Param("id") Long id, Pageable page);
+
+    // ===================================================================================
+    // 🤖 AI BACK OFFICE HELPERS (Used by CategoryEnrichmentPipeline)
+    // ===================================================================================
+
+    // 🔎 "Which receipts are still waiting for a category?"
+    // We read them in small pages (ordered by id) so a restart with 100,000 waiting
+    // rows does not try to load all of them into memory at once.
+    List<Transaction> findByCategoryAndIdGreaterThanOrderByIdAsc(String category, Long id, Pageable page);
+
+    // 🧹 Same, but only receipts booked before "timestamp" (the periodic sweep leaves fresh ones alone).
+    List<Transaction> findByCategoryAndTimestampBeforeAndIdGreaterThanOrderByIdAsc(String category, LocalDateTime timestamp,
+                                                                                    Long id, Pageable page);
+
+    // ✏️ "Write the AI's answer onto an existing receipt."
+    // We only touch the one column we care about, and only if it is still PENDING,
+    // so a late retry can never overwrite a category that already landed.
+    // Returns how many rows changed (0 or 1).
+    @Transactional
+    @Modifying
+    @Query("UPDATE Transaction t SET t.category = :category WHERE t.id = :id AND t.category = :expected")
+    int updateCategory(@Param("id") Long id, @Param("expected") String expected, @Param("category") String category);
+
+    // ===================================================================================
+    // 🎓 LOCAL CLASSIFIER HELPERS (Used by NaiveBayesCategorizer)
+    // ===================================================================================
+
+    // 🪪 A "slim" row: only the two columns the classifier learns from.
+    // Spring Boot fills this interface in for us, so we never load the full Transaction.
+    interface ReferenceCategory {
+        String getReference();
+        String getCategory();
+    }
+
+    // 📚 "Give me the most recent labelled examples" (newest first, capped by the page size).
+    // Only real categories count: PENDING and "Unknown (...)" are not lessons worth learning.
+    @Query("SELECT t.reference AS reference, t.category AS category FROM Transaction t " +
+            "WHERE t.category IN :categories AND t.reference IS NOT NULL ORDER BY t.id DESC")
+    List<ReferenceCategory> findTrainingSamples(@Param("categories") Collection<String> categories, Pageable page);
+}
@@ -0,0 +1,95 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+// -----------------------------------------------------------------------------------
+// 🕸️ THE WORD SPOTTER (Aho-Corasick Automaton)
+// Imagine you have a list of 5,000 shop names and want to know which one appears
+// inside "CHECKERS HYPER SANDTON". Checking them one by one is slow.
+// This class glues all the names into ONE tree with "shortcut" links, so it can
+// read the text ONCE (letter by letter) and spot every name at the same time.
+// The time it takes depends on the length of the text, NOT on how many names we know.
+// It is built once and then only read, so many threads can use it at the same time.
+// -----------------------------------------------------------------------------------
+
+public final class AhoCorasickMatcher<V> {
+
+    // 🌳 ONE LETTER IN THE TREE
+    private static final class Node<V> {
+        final Map<Character, Node<V>> next = new HashMap<>();
+        Node<V> fail;      // "If the next letter doesn't fit, jump here instead of starting over."
+        Node<V> output;    // "The nearest shorter word that also ends here."
+        V value;           // Set only if a full word ends at this letter.
+        int depth;         // How many letters from the root (= word length).
+    }
+
+    private final Node<V> root = new Node<>();
+
+    // 🏗️ BUILD THE TREE (once, up front)
+    public AhoCorasickMatcher(Map<String, V> words) {
+        // 1. Plant every word, letter by letter.
+        for (Map.Entry<String, V> word : words.entrySet()) {
+            Node<V> node = root;
+            for (char c : word.getKey().toCharArray()) {
+                Node<V> parent = node;
+                node = node.next.computeIfAbsent(c, k -> new Node<>());
+                node.depth = parent.depth + 1;
+            }
+            node.value = word.getValue();
+        }
+
+        // 2. Draw the shortcut ("fail") links, level by level (Breadth-First).
+        Queue<Node<V>> queue = new ArrayDeque<>();
+        for (Node<V> child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node<V> node = queue.poll();
+            for (Map.Entry<Character, Node<V>> edge : node.next.entrySet()) {
+                Node<V> child = edge.getValue();
+                Node<V> fallback = node.fail;
+                while (fallback != null && !fallback.next.containsKey(edge.getKey())) {
+                    fallback = fallback.fail;
+                }
+                child.fail = fallback == null ? root : fallback.next.get(edge.getKey());
+                child.output = child.fail.value != null ? child.fail : child.fail.output;
+                queue.add(child);
+            }
+        }
+    }
+
+    // 🔎 FIND THE BEST WORD IN THE TEXT
+    // Only whole words count ("UBER" matches "UBER EATS", but not "SUBERB").
+    // If several words match, the LONGEST one wins ("UBER EATS" beats "UBER").
+    // Returns null if nothing matched.
+    public V findLongest(String text) {
+        Node<V> node = root;
+        V best = null;
+        int bestLength = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            while (node != root && !node.next.containsKey(c)) {
+                node = node.fail;
+            }
+            node = node.next.getOrDefault(c, root);
+
+            for (Node<V> hit = node.value != null ? node : node.output; hit != null; hit = hit.output) {
+                int start = i - hit.depth + 1;
+                if (hit.depth > bestLength && isBoundary(text, start - 1) && isBoundary(text, i + 1)) {
+                    best = hit.value;
+                    bestLength = hit.depth;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static boolean isBoundary(String text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+}
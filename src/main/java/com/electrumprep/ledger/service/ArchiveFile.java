@@ -0,0 +1,590 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "Deflater"/"Inflater" are the zip compressor built into Java (no extra library).
+// "FileChannel.read(buffer, position)" reads a piece of the file at any offset, so a scan
+// only touches the columns (and row groups) it really needs.
+import com.electrumprep.ledger.model.Transaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// -----------------------------------------------------------------------------------
+// 🧊 THE COLD BOX (Columnar archive file for one closed month)
+// A row-by-row file would make "all Groceries in March" read EVERY field of EVERY row.
+// Here rows are cut into ROW GROUPS (e.g. 8192 rows), and inside a group each COLUMN is
+// stored on its own, zip-compressed:
+// - numbers (id, timestamp, cents) as small "difference to the previous row" varints
+// - text (sender, category, status...) as a dictionary + one small number per row
+// The footer keeps, per group, its first/last timestamp, its smallest/largest sender and
+// its set of categories. A scan uses them to skip whole groups WITHOUT reading them
+// (predicate pushdown), then reads only the timestamp/sender/category columns to pick
+// rows, and decodes the other columns only for groups where something matched.
+//
+// Layout: "LEDGCOL1" | group 0 columns | group 1 columns | ... | footer | footer length | "LEDGCOL1"
+// Rows must be added in (timestamp, id) order.
+// -----------------------------------------------------------------------------------
+
+final class ArchiveFile {
+
+    private static final byte[] MAGIC = "LEDGCOL1".getBytes(StandardCharsets.US_ASCII);
+
+    // 🗂️ THE COLUMNS (their order inside a row group)
+    private static final int ID = 0, TIMESTAMP = 1, AMOUNT = 2, REFERENCE = 3, SENDER = 4,
+            RECEIVER = 5, CURRENCY = 6, STATUS = 7, CATEGORY = 8, IDEMPOTENCY_KEY = 9;
+    private static final int COLUMNS = 10;
+    private static final int FIRST_TEXT = REFERENCE;
+
+    private ArchiveFile() {
+    }
+
+    // 📊 What the footer knows about one row group: where it is, and enough to skip it.
+    // "minSender"/"maxSender" are null when every sender in the group is null.
+    record Group(long offset, int rows, int[] packed, int[] raw, long firstMicros, long lastMicros,
+                 String minSender, String maxSender, Set<String> categories) {
+
+        long columnOffset(int column) {
+            long position = offset;
+            for (int c = 0; c < column; c++) {
+                position += packed[c];
+            }
+            return position;
+        }
+    }
+
+    // 🔎 WHICH ROWS? (every part is optional)
+    // from/to: epoch micros, "to" not included. beforeMicros/beforeId: keyset bookmark, only rows
+    // strictly older than (timestamp, id). sender/category: exact match (null = any).
+    record Filter(long fromMicros, long toMicros, long beforeMicros, long beforeId, String sender, String category) {
+
+        static final Filter ALL = new Filter(Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, null, null);
+
+        // Could ANY row of this group match? (Answered from the footer alone.)
+        boolean mayMatch(Group group) {
+            if (group.lastMicros() < fromMicros || group.firstMicros() >= toMicros || group.firstMicros() > beforeMicros) {
+                return false;
+            }
+            if (sender != null && (group.minSender() == null
+                    || sender.compareTo(group.minSender()) < 0 || sender.compareTo(group.maxSender()) > 0)) {
+                return false;
+            }
+            return category == null || group.categories().contains(category);
+        }
+
+        boolean matchesTime(long micros, long id) {
+            return micros >= fromMicros && micros < toMicros
+                    && (micros < beforeMicros || (micros == beforeMicros && id < beforeId));
+        }
+    }
+
+    // ===================================================================================
+    // ✍️ WRITING (one month, oldest row first)
+    // ===================================================================================
+    static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final int groupRows;
+        private final List<Group> groups = new ArrayList<>();
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+        // The row group being filled (column by column).
+        private final long[] ids;
+        private final long[] micros;
+        private final long[] cents;
+        private final String[][] texts;
+        private int size;
+        private long rows;
+        private long position;
+
+        Writer(Path file, int groupRows) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.groupRows = groupRows;
+            this.ids = new long[groupRows];
+            this.micros = new long[groupRows];
+            this.cents = new long[groupRows];
+            this.texts = new String[COLUMNS][];
+            for (int c = FIRST_TEXT; c < COLUMNS; c++) {
+                texts[c] = new String[groupRows];
+            }
+            write(ByteBuffer.wrap(MAGIC));
+        }
+
+        void add(Transaction txn) throws IOException {
+            ids[size] = txn.getId();
+            micros[size] = CompactPayments.toEpochMicros(txn.getTimestamp());
+            cents[size] = PostingEngine.toCents(txn.getAmount());
+            texts[REFERENCE][size] = txn.getReference();
+            texts[SENDER][size] = txn.getSenderAccount();
+            texts[RECEIVER][size] = txn.getReceiverAccount();
+            texts[CURRENCY][size] = txn.getCurrency();
+            texts[STATUS][size] = txn.getStatus();
+            texts[CATEGORY][size] = txn.getCategory();
+            texts[IDEMPOTENCY_KEY][size] = txn.getIdempotencyKey();
+            rows++;
+            if (++size == groupRows) {
+                flushGroup();
+            }
+        }
+
+        long rows() {
+            return rows;
+        }
+
+        private void flushGroup() throws IOException {
+            if (size == 0) {
+                return;
+            }
+            int[] packed = new int[COLUMNS];
+            int[] raw = new int[COLUMNS];
+            long offset = position;
+            for (int c = 0; c < COLUMNS; c++) {
+                Bytes column = new Bytes();
+                switch (c) {
+                    case ID -> column.deltas(ids, size);
+                    case TIMESTAMP -> column.deltas(micros, size);
+                    case AMOUNT -> column.values(cents, size);
+                    default -> column.dictionary(texts[c], size);
+                }
+                raw[c] = column.size();
+                byte[] compressed = compress(column);
+                packed[c] = compressed.length;
+                write(ByteBuffer.wrap(compressed));
+            }
+
+            String minSender = null;
+            String maxSender = null;
+            Set<String> categories = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                String sender = texts[SENDER][i];
+                if (sender != null) {
+                    minSender = minSender == null || sender.compareTo(minSender) < 0 ? sender : minSender;
+                    maxSender = maxSender == null || sender.compareTo(maxSender) > 0 ? sender : maxSender;
+                }
+                categories.add(texts[CATEGORY][i]);
+            }
+            groups.add(new Group(offset, size, packed, raw, micros[0], micros[size - 1], minSender, maxSender, categories));
+            size = 0;
+        }
+
+        private byte[] compress(Bytes column) {
+            deflater.reset();
+            deflater.setInput(column.array(), 0, column.size());
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, column.size() / 2));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        }
+
+        // 📇 The footer: the row-group index, then its length and the magic word again.
+        @Override
+        public void close() throws IOException {
+            try {
+                flushGroup();
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream footer = new DataOutputStream(bytes);
+                footer.writeInt(groups.size());
+                for (Group group : groups) {
+                    footer.writeLong(group.offset());
+                    footer.writeInt(group.rows());
+                    for (int c = 0; c < COLUMNS; c++) {
+                        footer.writeInt(group.packed()[c]);
+                        footer.writeInt(group.raw()[c]);
+                    }
+                    footer.writeLong(group.firstMicros());
+                    footer.writeLong(group.lastMicros());
+                    writeText(footer, group.minSender());
+                    writeText(footer, group.maxSender());
+                    footer.writeInt(group.categories().size());
+                    for (String category : group.categories()) {
+                        writeText(footer, category);
+                    }
+                }
+                footer.flush();
+                write(ByteBuffer.wrap(bytes.toByteArray()));
+                write(ByteBuffer.allocate(4).putInt(0, bytes.size()));
+                write(ByteBuffer.wrap(MAGIC));
+                channel.force(true);
+            } finally {
+                deflater.end();
+                channel.close();
+            }
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+
+        private static void writeText(DataOutputStream out, String text) throws IOException {
+            out.writeBoolean(text != null);
+            if (text != null) {
+                out.writeUTF(text);
+            }
+        }
+    }
+
+    // ===================================================================================
+    // 📖 READING (with predicate pushdown)
+    // ===================================================================================
+    static final class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final List<Group> groups;
+        private final long rows;
+        private final Inflater inflater = new Inflater();
+        // How many groups were read / skipped from the footer alone (for the metrics).
+        private long groupsRead;
+        private long groupsSkipped;
+
+        private Reader(FileChannel channel, List<Group> groups) {
+            this.channel = channel;
+            this.groups = groups;
+            this.rows = groups.stream().mapToLong(Group::rows).sum();
+        }
+
+        static Reader open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                long length = channel.size();
+                ByteBuffer tail = read(channel, length - 4 - MAGIC.length, 4 + MAGIC.length);
+                byte[] magic = new byte[MAGIC.length];
+                tail.position(4).get(magic);
+                if (length < 2L * MAGIC.length + 4 || !Arrays.equals(magic, MAGIC)) {
+                    throw new IOException(file + " is not a finished archive file");
+                }
+                int footerLength = tail.getInt(0);
+                ByteBuffer footerBytes = read(channel, length - 4 - MAGIC.length - footerLength, footerLength);
+                DataInputStream footer = new DataInputStream(new ByteArrayInputStream(footerBytes.array()));
+                int count = footer.readInt();
+                List<Group> groups = new ArrayList<>(count);
+                for (int g = 0; g < count; g++) {
+                    long offset = footer.readLong();
+                    int rows = footer.readInt();
+                    int[] packed = new int[COLUMNS];
+                    int[] raw = new int[COLUMNS];
+                    for (int c = 0; c < COLUMNS; c++) {
+                        packed[c] = footer.readInt();
+                        raw[c] = footer.readInt();
+                    }
+                    long first = footer.readLong();
+                    long last = footer.readLong();
+                    String minSender = readText(footer);
+                    String maxSender = readText(footer);
+                    int categoryCount = footer.readInt();
+                    Set<String> categories = new HashSet<>(categoryCount * 2);
+                    for (int i = 0; i < categoryCount; i++) {
+                        categories.add(readText(footer));
+                    }
+                    groups.add(new Group(offset, rows, packed, raw, first, last, minSender, maxSender, categories));
+                }
+                return new Reader(channel, groups);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        long rows() {
+            return rows;
+        }
+
+        long groupsRead() {
+            return groupsRead;
+        }
+
+        long groupsSkipped() {
+            return groupsSkipped;
+        }
+
+        // 🚶 Hands every matching row to "visitor", oldest first (or newest first).
+        // The visitor answers "false" to stop. Returns false if it was stopped.
+        boolean scan(Filter filter, boolean newestFirst, Predicate<Transaction> visitor) throws IOException {
+            for (int g = 0; g < groups.size(); g++) {
+                Group group = groups.get(newestFirst ? groups.size() - 1 - g : g);
+                if (!filter.mayMatch(group)) {
+                    groupsSkipped++;
+                    continue;
+                }
+                groupsRead++;
+                if (!scanGroup(group, filter, newestFirst, visitor)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean scanGroup(Group group, Filter filter, boolean newestFirst, Predicate<Transaction> visitor)
+                throws IOException {
+            int rows = group.rows();
+            // 1. Only the columns the filter needs, to pick the rows.
+            long[] ids = column(group, ID).deltas(rows);
+            long[] micros = column(group, TIMESTAMP).deltas(rows);
+            boolean[] selected = new boolean[rows];
+            int matches = 0;
+            for (int i = 0; i < rows; i++) {
+                selected[i] = filter.matchesTime(micros[i], ids[i]);
+                matches += selected[i] ? 1 : 0;
+            }
+            String[] senders = null;
+            if (matches > 0 && filter.sender() != null) {
+                senders = column(group, SENDER).dictionary(rows);
+                matches = keep(selected, senders, filter.sender());
+            }
+            String[] categories = null;
+            if (matches > 0 && filter.category() != null) {
+                categories = column(group, CATEGORY).dictionary(rows);
+                matches = keep(selected, categories, filter.category());
+            }
+            if (matches == 0) {
+                return true;
+            }
+
+            // 2. Something matched: now the rest of the columns.
+            long[] cents = column(group, AMOUNT).values(rows);
+            String[][] texts = new String[COLUMNS][];
+            for (int c = FIRST_TEXT; c < COLUMNS; c++) {
+                texts[c] = c == SENDER && senders != null ? senders
+                        : c == CATEGORY && categories != null ? categories
+                        : column(group, c).dictionary(rows);
+            }
+            for (int n = 0; n < rows; n++) {
+                int i = newestFirst ? rows - 1 - n : n;
+                if (!selected[i]) {
+                    continue;
+                }
+                Transaction txn = new Transaction();
+                txn.setId(ids[i]);
+                txn.setTimestamp(CompactPayments.fromEpochMicros(micros[i]));
+                txn.setAmount(PostingEngine.toMoney(cents[i]));
+                txn.setReference(texts[REFERENCE][i]);
+                txn.setSenderAccount(texts[SENDER][i]);
+                txn.setReceiverAccount(texts[RECEIVER][i]);
+                txn.setCurrency(texts[CURRENCY][i]);
+                txn.setStatus(texts[STATUS][i]);
+                txn.setCategory(texts[CATEGORY][i]);
+                txn.setIdempotencyKey(texts[IDEMPOTENCY_KEY][i]);
+                if (!visitor.test(txn)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int keep(boolean[] selected, String[] values, String wanted) {
+            int matches = 0;
+            for (int i = 0; i < selected.length; i++) {
+                selected[i] = selected[i] && wanted.equals(values[i]);
+                matches += selected[i] ? 1 : 0;
+            }
+            return matches;
+        }
+
+        // 📥 One column of one group: read its bytes, unzip them.
+        private Cursor column(Group group, int column) throws IOException {
+            ByteBuffer packed = read(channel, group.columnOffset(column), group.packed()[column]);
+            byte[] raw = new byte[group.raw()[column]];
+            inflater.reset();
+            inflater.setInput(packed.array());
+            try {
+                int filled = 0;
+                while (filled < raw.length) {
+                    int n = inflater.inflate(raw, filled, raw.length - filled);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Archive column is shorter than its footer says");
+                    }
+                    filled += n;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Archive column is damaged", e);
+            }
+            return new Cursor(raw);
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            channel.close();
+        }
+
+        private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+            if (position < 0 || length < 0) {
+                throw new IOException("Archive file is truncated");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Archive file is truncated");
+                }
+            }
+            return buffer.flip();
+        }
+
+        private static String readText(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+
+    // ===================================================================================
+    // 🔢 ENCODINGS
+    // ===================================================================================
+
+    // A growable byte array with varint writers ("zigzag": small negative numbers stay small too).
+    private static final class Bytes {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        // Each value as the difference to the one before (sorted ids and timestamps -> tiny numbers).
+        void deltas(long[] values, int count) {
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                varint(zigzag(values[i] - previous));
+                previous = values[i];
+            }
+        }
+
+        void values(long[] values, int count) {
+            for (int i = 0; i < count; i++) {
+                varint(zigzag(values[i]));
+            }
+        }
+
+        // The distinct texts once (number 0 = null), then one number per row.
+        void dictionary(String[] values, int count) {
+            Map<String, Integer> numbers = new HashMap<>();
+            List<String> words = new ArrayList<>();
+            int[] codes = new int[count];
+            for (int i = 0; i < count; i++) {
+                if (values[i] != null) {
+                    Integer code = numbers.get(values[i]);
+                    if (code == null) {
+                        words.add(values[i]);
+                        code = words.size();
+                        numbers.put(values[i], code);
+                    }
+                    codes[i] = code;
+                }
+            }
+            varint(words.size());
+            for (String word : words) {
+                byte[] utf8 = word.getBytes(StandardCharsets.UTF_8);
+                varint(utf8.length);
+                ensure(utf8.length);
+                System.arraycopy(utf8, 0, bytes, size, utf8.length);
+                size += utf8.length;
+            }
+            for (int code : codes) {
+                varint(code);
+            }
+        }
+
+        private void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void ensure(int more) {
+            if (size + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + more));
+            }
+        }
+
+        byte[] array() {
+            return bytes;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    // The reading side of Bytes.
+    private static final class Cursor {
+        private final byte[] bytes;
+        private int position;
+
+        Cursor(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long[] deltas(int count) {
+            long[] values = new long[count];
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += unzigzag(varint());
+                values[i] = previous;
+            }
+            return values;
+        }
+
+        long[] values(int count) {
+            long[] values = new long[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = unzigzag(varint());
+            }
+            return values;
+        }
+
+        String[] dictionary(int count) {
+            String[] words = new String[(int) varint() + 1];
+            for (int w = 1; w < words.length; w++) {
+                int length = (int) varint();
+                words[w] = new String(bytes, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+            String[] values = new String[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = words[(int) varint()];
+            }
+            return values;
+        }
+
+        private long varint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "MappingIterator" reads JSON objects ONE AT A TIME from a stream,
+// so a 200,000-row upload never has to sit in memory all at once.
+import com.electrumprep.ledger.model.BatchItemResult;
+import com.electrumprep.ledger.model.Transaction;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// -----------------------------------------------------------------------------------
+// 🚛 THE LOADING DOCK (Bulk Ingestion)
+// End-of-day settlement files are HUGE (200k payments). This class:
+// 1. Reads the upload as a stream (a JSON array OR one JSON object per line, "NDJSON").
+// 2. Cuts it into chunks (e.g. 1,000 payments).
+// 3. Hands each chunk to the Switch, which checks, routes and saves it in one batch.
+// Memory use depends on the chunk size, not on the size of the file.
+// -----------------------------------------------------------------------------------
+
+@Service
+public class BatchIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchIngestionService.class);
+
+    private final TransactionSwitch transactionSwitch;
+    private final ObjectReader reader;
+    private final int chunkSize;
+
+    public BatchIngestionService(TransactionSwitch transactionSwitch,
+                                 ObjectMapper objectMapper,
+                                 @Value("${ledger.batch.chunk-size:1000}") int chunkSize) {
+        this.transactionSwitch = transactionSwitch;
+        this.reader = objectMapper.readerFor(Transaction.class);
+        this.chunkSize = chunkSize;
+    }
+
+    // 📥 Works for both formats:
+    // [ {...}, {...} ]        <- a normal JSON array
+    // {...}\n{...}\n          <- NDJSON (one payment per line)
+    // If the stream is broken half-way, everything before the break is still processed,
+    // and the broken item is reported as REJECTED.
+    // If one chunk cannot be saved, its payments are reported as REJECTED (nothing of it was
+    // booked) and the next chunks still run, so every payment gets an answer and a retry of
+    // the rejected ones cannot book anything twice.
+    public List<BatchItemResult> ingest(InputStream body) throws IOException {
+        List<BatchItemResult> results = new ArrayList<>();
+        List<Transaction> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        BatchItemResult broken = null;
+
+        try (MappingIterator<Transaction> items = reader.readValues(body)) {
+            while (true) {
+                Transaction txn;
+                try {
+                    if (!items.hasNextValue()) {
+                        break;
+                    }
+                    txn = items.nextValue();
+                } catch (JsonProcessingException e) {
+                    broken = BatchItemResult.rejected(index + chunk.size(), "Malformed JSON: " + e.getOriginalMessage());
+                    break;
+                }
+                chunk.add(txn);
+                if (chunk.size() == chunkSize) {
+                    results.addAll(process(chunk, index));
+                    index += chunk.size();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(process(chunk, index));
+        }
+        if (broken != null) {
+            results.add(broken);
+        }
+        return results;
+    }
+
+    private List<BatchItemResult> process(List<Transaction> chunk, int firstIndex) {
+        try {
+            return transactionSwitch.processBatch(chunk, firstIndex);
+        } catch (TransactionSwitch.BatchNotSavedException e) {
+            logger.warn("Chunk at {} ({} payments) was not saved: {}", firstIndex, chunk.size(), e.getCause().toString());
+            return e.results();
+        }
+    }
+}
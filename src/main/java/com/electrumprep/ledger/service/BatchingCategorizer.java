@@ -0,0 +1,223 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "ObjectMapper" turns Google's JSON reply into Java objects.
+// "BlockingQueue" is the bus stop where requests wait for the next carpool.
+// "CompletableFuture" is an IOU: "I don't have your answer yet, but I will."
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// -----------------------------------------------------------------------------------
+// 🚌 THE CARPOOL (Micro-batching Categorizer)
+// Without this class, every payment takes its own "taxi" to Google (one HTTPS call each).
+// With it, payments wait at a bus stop for a VERY short time (e.g. 50ms).
+// When the bus is full (e.g. 20 seats) or the timer runs out, ONE call to Google
+// carries all of them as a numbered list, and everyone gets their own answer back.
+// -----------------------------------------------------------------------------------
+
+@Service // 🏷️ STICKER: Tells Spring Boot: "This is a Worker Class. Keep it ready to do jobs."
+public class BatchingCategorizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingCategorizer.class);
+
+    // 🎫 ONE PASSENGER
+    // The transaction details, plus the IOU we will fill in when the answer arrives.
+    private record Passenger(String reference, String amount, CompletableFuture<String> answer) { }
+
+    private final GeminiClient gemini;
+    private final TaskExecutor batchExecutor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final boolean enabled;
+    private final int maxSize;
+    private final long windowMs;
+    private final long replyTimeoutMs;
+
+    // 🚏 THE BUS STOP
+    private final BlockingQueue<Passenger> stop = new LinkedBlockingQueue<>();
+
+    // 🚦 THE DISPATCHER (One background thread that decides when a bus leaves)
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    public BatchingCategorizer(GeminiClient gemini,
+                               @Qualifier("geminiBatchExecutor") TaskExecutor batchExecutor,
+                               @Value("${gemini.batch.enabled:false}") boolean enabled,
+                               @Value("${gemini.batch.max-size:20}") int maxSize,
+                               @Value("${gemini.batch.window-ms:50}") long windowMs,
+                               @Value("${gemini.batch.reply-timeout-ms:30000}") long replyTimeoutMs) {
+        this.gemini = gemini;
+        this.batchExecutor = batchExecutor;
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.windowMs = windowMs;
+        this.replyTimeoutMs = replyTimeoutMs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 🟢 START THE DISPATCHER (only if batching is switched on)
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "gemini-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    // 🔴 STOP THE DISPATCHER (app is shutting down)
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        // Anyone still waiting gets "no answer", so they fall back to their own call.
+        Passenger left;
+        while ((left = stop.poll()) != null) {
+            left.answer().complete(null);
+        }
+    }
+
+    // ===================================================================================
+    // 🙋 1. WAIT FOR THE BUS (Called by CategorizationService on a cache miss)
+    // ===================================================================================
+    // Returns the category, or null if the shared reply did not cover this transaction.
+    // A null means: "Please take your own taxi" (single call fallback).
+    public String categorize(String reference, String amount) {
+        Passenger passenger = new Passenger(reference, amount, new CompletableFuture<>());
+        if (!running || !stop.offer(passenger)) {
+            return null;
+        }
+        try {
+            return passenger.answer().get(replyTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // ===================================================================================
+    // 🚌 2. THE DISPATCHER LOOP (Fill the bus, then send it)
+    // ===================================================================================
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                // Wait (for as long as it takes) for the FIRST passenger...
+                Passenger first = stop.take();
+                List<Passenger> bus = new ArrayList<>(maxSize);
+                bus.add(first);
+
+                // ...then give others a tiny window to jump on, until the bus is full.
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (bus.size() < maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Passenger next = stop.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    bus.add(next);
+                }
+
+                // The call to Google happens on a separate worker, so the next bus
+                // can start boarding while this one is still on the road.
+                try {
+                    batchExecutor.execute(() -> drive(bus));
+                } catch (RuntimeException e) {
+                    // No driver available: everyone on this bus takes their own taxi.
+                    logger.warn("Gemini batch dispatch failed: {}", e.getMessage());
+                    bus.forEach(p -> p.answer().complete(null));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // ===================================================================================
+    // 🛣️ 3. THE TRIP (One call to Google for the whole bus)
+    // ===================================================================================
+    void drive(List<Passenger> bus) {
+        String[] answers = new String[bus.size()];
+        try {
+            // A bus with one passenger is just a taxi: let the caller do the normal single call.
+            if (bus.size() > 1) {
+                answers = parseReply(gemini.generate(createBatchPrompt(bus), true), bus.size());
+            }
+        } catch (Exception e) {
+            logger.warn("Gemini batch of {} failed, falling back to single calls: {}", bus.size(), e.getMessage());
+        } finally {
+            // Hand every passenger their answer (or null = "take a taxi").
+            for (int i = 0; i < bus.size(); i++) {
+                bus.get(i).answer().complete(answers[i]);
+            }
+        }
+    }
+
+    // 📝 THE GROUP PROMPT
+    // We number each line so we can match every answer to the right passenger.
+    private String createBatchPrompt(List<Passenger> bus) {
+        StringBuilder prompt = new StringBuilder(128 + bus.size() * 48)
+                .append("You are a banking AI. Classify each numbered transaction below. ")
+                .append("For each one, strictly choose ONE category from this exact list: ")
+                .append(CategorizationService.CATEGORIES).append(".\n");
+        for (int i = 0; i < bus.size(); i++) {
+            Passenger p = bus.get(i);
+            prompt.append(i + 1).append(". '").append(p.reference()).append("' (Amount: ").append(p.amount()).append(")\n");
+        }
+        return prompt.append("Reply ONLY with a JSON array of objects like ")
+                .append("[{\"id\": 1, \"category\": \"Transport\"}], one object per numbered transaction.")
+                .toString();
+    }
+
+    // 🔍 READING THE GROUP ANSWER
+    // Google should reply with: [{"id": 1, "category": "Transport"}, {"id": 2, ...}]
+    // Anything missing, out of range, or NOT on the menu stays null (= fallback to a single call).
+    String[] parseReply(String text, int size) throws Exception {
+        String[] answers = new String[size];
+        if (text == null) {
+            return answers;
+        }
+        // Sometimes the AI wraps JSON in ```json ... ``` fences. We cut those off.
+        String json = text.replace("```json", "").replace("```", "").trim();
+        JsonNode root = objectMapper.readTree(json);
+        if (!root.isArray()) {
+            return answers;
+        }
+        for (JsonNode item : root) {
+            int id = item.path("id").asInt(-1);
+            String category = item.path("category").asText("").trim();
+            if (id >= 1 && id <= size && CategorizationService.CATEGORIES.contains(category)) {
+                answers[id - 1] = category;
+            }
+        }
+        return answers;
+    }
+}
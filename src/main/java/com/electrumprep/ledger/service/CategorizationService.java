@@ -2,18 +2,17 @@ package com.electrumprep.ledger.service;
 
 // 📦 IMPORTS
 // We are grabbing tools from the Java library shelf.
-// "JsonNode" helps us handle the complex data format (JSON) that Google sends back.
 // "Logger" helps us write messages to the console instead of just crashing.
 // "Cacheable" is the memory tool that makes our app fast.
-import com.fasterxml.jackson.databind.JsonNode;
+import com.electrumprep.ledger.config.CacheConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.*;
 import org.springframework.cache.annotation.Cacheable;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,18 +31,54 @@ public class CategorizationService {
     // It records important events (like errors) so we can fix them later.
     private static final Logger logger = LoggerFactory.getLogger(CategorizationService.class);
 
-    // 🔑 SECRETS FROM THE SAFE
-    // We never type passwords directly in the code!
-    // @Value grabs the API Key from the safe (Environment Variables) and injects it here.
-    @Value("${gemini.api.key}")
-    private String apiKey;
-
-    @Value("${gemini.api.url}")
-    private String apiUrl;
-
-    // 📞 THE PHONE
-    // RestTemplate is the tool we use to "call" other computers (like Google).
-    private final RestTemplate restTemplate = new RestTemplate();
+    // 🚨 THE "SOMETHING BROKE" ANSWER
+    // Returned when Google could not be reached. The enrichment pipeline looks for this
+    // exact value to know it should try again later.
+    public static final String AI_ERROR = "Unknown (AI Error)";
+
+    // 🔌 THE "WE DIDN'T EVEN CALL" ANSWER
+    // Returned instantly when the Gemini circuit breaker is open or too many calls are in flight.
+    public static final String UNCATEGORIZED = "Uncategorized";
+
+    // 🤷 THE "GOOGLE SAID NOTHING" ANSWER
+    // An empty reply. Like every "Unknown (...)" answer, it is never cached or written back.
+    public static final String NO_DATA = "Unknown (No Data)";
+
+    // 📋 THE MENU
+    // The ONLY categories the AI is allowed to pick from.
+    public static final List<String> CATEGORIES = List.of(
+            "Food & Dining", "Groceries", "Transport", "Entertainment", "Shopping",
+            "Utilities", "Health", "Tech", "Transfer");
+
+    // 📞 THE PHONE LINE (the one door to Google)
+    private final GeminiClient gemini;
+
+    // 📦 THE CARPOOL (Micro-batching, optional)
+    // When switched on, cache misses from many threads share ONE call to Google.
+    private final BatchingCategorizer batcher;
+
+    // 🗄️ THE LONG-TERM MEMORY (Database tier behind the RAM cache)
+    private final PersistentCategoryTier persistentTier;
+
+    // 🧩 THE LOCAL EXPERTS (Dictionary, Apprentice...), in @Order.
+    // Spring Boot finds every "Categorizer" bean and hands them to us already sorted.
+    private final List<Categorizer> localExperts;
+
+    // 📊 THE SCOREBOARD: who answered? (one counter per expert, plus "persistent" and "gemini")
+    private final Map<String, Counter> answeredBy = new HashMap<>();
+
+    public CategorizationService(GeminiClient gemini, BatchingCategorizer batcher, PersistentCategoryTier persistentTier,
+                                 List<Categorizer> localExperts, MeterRegistry meterRegistry) {
+        this.gemini = gemini;
+        this.batcher = batcher;
+        this.persistentTier = persistentTier;
+        this.localExperts = localExperts;
+        for (Categorizer expert : localExperts) {
+            answeredBy.put(expert.name(), meterRegistry.counter("ledger.category.source", "source", expert.name()));
+        }
+        answeredBy.put("persistent", meterRegistry.counter("ledger.category.source", "source", "persistent"));
+        answeredBy.put("gemini", meterRegistry.counter("ledger.category.source", "source", "gemini"));
+    }
 
     // ===================================================================================
     // 🧠 THE BRAIN METHOD
@@ -52,82 +87,98 @@ public class CategorizationService {
 
     // 📌 THE STICKY NOTE TRICK (@Cacheable)
     // Before running this heavy code, Spring Boot checks its memory (Cache).
-    // It asks: "Have I categorized 'KFC' + '120.00' before?"
+    // It asks: "Have I categorized 'KFC' before?"
+    // The sticky note is labelled with the CLEANED merchant name (see MerchantNormalizer),
+    // so "UBER * 8721" and "UBER * 9911" share one note, whatever the amount.
     // - IF YES: It returns the saved answer instantly (0 seconds). ⚡
     // - IF NO: It runs the code below, asks Google, then saves the answer on a sticky note.
-    @Cacheable("categories")
+    // "unless" = Never write an ERROR (or a fallback) on a sticky note. Otherwise one network
+    // hiccup would make "KFC" look broken forever, and every retry would just read the bad note.
+    @Cacheable(value = CacheConfig.CATEGORIES, keyGenerator = "merchantKeyGenerator",
+            unless = "T(com.electrumprep.ledger.service.CategorizationService).isFallback(#result)")
     public String categorize(String reference, String amount) {
+        String merchantKey = MerchantNormalizer.normalize(reference);
+
+        // 🧩 LOCAL EXPERTS NEXT (microseconds, no network)
+        // Ask each one in order. The first CONFIDENT answer wins.
+        for (Categorizer expert : localExperts) {
+            String guess = expert.categorize(merchantKey);
+            if (guess != null) {
+                answeredBy.get(expert.name()).increment();
+                return guess;
+            }
+        }
 
-        // 1. Prepare the Phone Number (URL)
-        // We combine the Google Address + Your Secret Key to get the full link.
-        String fullUrl = apiUrl + apiKey;
+        // 🗄️ LONG-TERM MEMORY
+        // Maybe we asked Google about this merchant before the last restart?
+        String remembered = persistentTier.lookup(merchantKey);
+        if (remembered != null) {
+            answeredBy.get("persistent").increment();
+            return remembered;
+        }
+
+        // ☎️ LAST RESORT: the remote AI, only for what nobody local was sure about.
+        String category = askGemini(reference, amount);
+        answeredBy.get("gemini").increment();
+
+        // ✍️ Only real answers go into the filing cabinet (never "Unknown (...)" or "Uncategorized").
+        if (!isFallback(category)) {
+            persistentTier.remember(merchantKey, category);
+        }
+        return category;
+    }
+
+    // 🩹 "Is this a stand-in answer that should be retried later?" (Any "Unknown (...)" counts.)
+    public static boolean isFallback(String category) {
+        return UNCATEGORIZED.equals(category) || (category != null && category.startsWith("Unknown ("));
+    }
 
-        // 2. Write the Instructions (The Prompt)
+    // ☎️ ASK GOOGLE
+    private String askGemini(String reference, String amount) {
+
+        // 🚗 CARPOOL FIRST
+        // If batching is on, we hop into the next shared call to Google.
+        // If the shared answer didn't cover us (null), we fall back to our own call below.
+        if (batcher.isEnabled()) {
+            String carpoolAnswer = batcher.categorize(reference, amount);
+            if (carpoolAnswer != null) {
+                return carpoolAnswer;
+            }
+        }
+        return categorizeSingle(reference, amount);
+    }
+
+    // 🚕 THE PRIVATE TAXI (One prompt, one transaction)
+    String categorizeSingle(String reference, String amount) {
+
+        // 1. Write the Instructions (The Prompt)
         // We act like a strict boss telling an intern what to do.
         // We give it a specific "Menu" of options so it doesn't invent random words.
         String prompt = "You are a banking AI. Classify this transaction: '" + reference + "' (Amount: " + amount + "). " +
-                "Strictly choose ONE category from this exact list: " +
-                "[Food & Dining, Groceries, Transport, Entertainment, Shopping, Utilities, Health, Tech, Transfer]. " +
+                "Strictly choose ONE category from this exact list: " + CATEGORIES + ". " +
                 "Reply ONLY with the category name. Do not explain.";
 
-        // 3. Package the Letter (JSON)
-        // Computers speak in JSON format (curly braces {}).
-        // We use a helper method below to pack our prompt into a neat box.
-        Map<String, Object> requestBody = createRequestBody(prompt);
-
-        // 4. Stamp the Envelope (Headers)
-        // We tell Google: "I am sending you JSON data, please read it correctly."
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        // 5. Combine Letter + Envelope (Entity)
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
         try {
-            // 6. SEND THE REQUEST! (Making the Call)
-            // This is where we actually talk to Google.
+            // 2. SEND THE REQUEST! (Making the Call)
             // We wait here for about 1 second for Google to reply.
-            // "JsonNode.class" means: "Treat the reply as a flexible data tree."
-            ResponseEntity<JsonNode> response = restTemplate.postForEntity(fullUrl, entity, JsonNode.class);
-            JsonNode root = response.getBody();
-
-            // 7. Open the Reply (Peeling the Onion)
-            // Google wraps the answer in many layers of folders.
-            // We have to dig deep to find the actual text we want.
-            // Structure: Response -> Candidates List -> First Candidate -> Content -> Parts -> Text
-            if (root != null && root.has("candidates") && !root.path("candidates").isEmpty()) {
-                return root.path("candidates")
-                        .get(0)                 // Get the first answer
-                        .path("content")        // Open the content box
-                        .path("parts")          // Look at the parts
-                        .get(0)                 // Get the first part
-                        .path("text")           // READ THE TEXT! (e.g., "Food & Dining")
-                        .asText()
-                        .trim()                 // Cut off accidental spaces
-                        .replace("\n", ""); // Cut off accidental new lines
+            String text = gemini.generate(prompt, false);
+            if (text == null) {
+                return NO_DATA;
             }
-            return "Unknown (No Data)";
+            return text.replace("\n", ""); // Cut off accidental new lines
+
+        } catch (GeminiClient.GeminiUnavailableException e) {
+            // 🔌 FAIL FAST: The fuse is blown (or the line is busy). No waiting, no error spam.
+            logger.debug("Gemini unavailable: {}", e.getMessage());
+            return UNCATEGORIZED;
 
         } catch (Exception e) {
-            // 8. SAFETY NET (Error Handling)
+            // 3. SAFETY NET (Error Handling)
             // If the internet breaks, or Google is down, or we run out of credit...
             // Do NOT crash the app.
             // Just log the error in the captain's log and return a safe default value.
             logger.error("AI Service Error: {}", e.getMessage());
-            return "Unknown (AI Error)";
+            return AI_ERROR;
         }
     }
-
-    // 🧹 HELPER METHOD
-    // This just keeps the main code clean.
-    // It builds the complex nested Map structure that Google requires.
-    private Map<String, Object> createRequestBody(String prompt) {
-        return Map.of(
-                "contents", List.of(
-                        Map.of("parts", List.of(
-                                Map.of("text", prompt)
-                        ))
-                )
-        );
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package com.electrumprep.ledger.service;
+
+// -----------------------------------------------------------------------------------
+// 🧩 THE PLUG SOCKET (Categorizer Interface)
+// Any "local expert" that can guess a category WITHOUT calling Google plugs in here.
+// CategorizationService asks every plugged-in expert in @Order, and stops at the
+// first one that is confident enough. Only the leftovers go to Gemini.
+// -----------------------------------------------------------------------------------
+
+public interface Categorizer {
+
+    // 🏷️ A short name for logs and metrics (e.g. "dictionary", "bayes").
+    String name();
+
+    // 🤔 "What do you think this is?"
+    // merchantKey = the cleaned reference (see MerchantNormalizer), e.g. "UBER EATS".
+    // Return null if you have no CONFIDENT answer. The next expert will try.
+    String categorize(String merchantKey);
+}
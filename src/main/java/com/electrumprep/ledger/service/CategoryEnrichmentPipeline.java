@@ -0,0 +1,290 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// We need the "Transaction" blueprint and the "Repository" to write answers back.
+// We need a "Semaphore" (a bowl of tickets) to limit how much work can pile up.
+// We need "ThreadLocalRandom" to add a little randomness (Jitter) to our retries.
+import com.electrumprep.ledger.model.CategoryAssigned;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// -----------------------------------------------------------------------------------
+// 🏭 THE AI BACK OFFICE (Category Enrichment Pipeline)
+// In "async" mode, the Switch does NOT wait for Gemini anymore.
+// It saves the payment with the category "PENDING" and drops a note in this box.
+// A small team of background workers then:
+// 1. Asks Gemini for the category.
+// 2. Retries (with a random pause) if Gemini is having a bad day.
+// 3. Writes the answer back onto the saved receipt.
+// Rows that never made it into the box (full) or that ran out of attempts are picked up
+// again by a sweep at startup and then every "sweep-interval".
+// -----------------------------------------------------------------------------------
+
+@Service // 🏷️ STICKER: Tells Spring Boot: "This is a Worker Class. Keep it ready to do jobs."
+public class CategoryEnrichmentPipeline {
+
+    // 🏷️ THE PLACEHOLDER LABEL
+    // Every payment saved in async mode starts life with this category.
+    public static final String PENDING = "PENDING";
+
+    private static final Logger logger = LoggerFactory.getLogger(CategoryEnrichmentPipeline.class);
+
+    // How many receipts we read per page when recovering after a restart.
+    private static final int RECOVERY_PAGE_SIZE = 200;
+
+    private final CategorizationService aiService;
+    private final TransactionRepository repository;
+    private final TaskExecutor executor;
+    private final ApplicationEventPublisher events;
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final Duration sweepInterval;
+
+    // 🎟️ THE TICKET BOWL (Backpressure)
+    // Every job (queued OR running) holds one ticket.
+    // When the bowl is empty, the payment path does NOT wait: the row simply stays PENDING
+    // and the recovery step picks it up later. Payments are never slowed down by the AI.
+    private final Semaphore capacity;
+
+    // 👷 THE WORK BENCHES
+    // How many jobs may actually talk to Gemini at once. With a fixed thread pool the team size
+    // already limited this; with virtual threads (one cheap thread per job) THIS is the limit.
+    private final Semaphore workerSlots;
+
+    // 🗂️ Ids queued or being worked on right now, so a sweep never queues the same row twice.
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private Thread sweeper;
+    private volatile boolean running;
+
+    public CategoryEnrichmentPipeline(CategorizationService aiService,
+                                      TransactionRepository repository,
+                                      @Qualifier("enrichmentExecutor") TaskExecutor executor,
+                                      ApplicationEventPublisher events,
+                                      @Value("${ledger.categorization.mode:sync}") String mode,
+                                      @Value("${ledger.enrichment.workers:4}") int workers,
+                                      @Value("${ledger.enrichment.queue-capacity:10000}") int queueCapacity,
+                                      @Value("${ledger.enrichment.max-attempts:5}") int maxAttempts,
+                                      @Value("${ledger.enrichment.base-backoff-ms:500}") long baseBackoffMs,
+                                      @Value("${ledger.enrichment.max-backoff-ms:30000}") long maxBackoffMs,
+                                      @Value("${ledger.enrichment.sweep-interval:5m}") Duration sweepInterval) {
+        this.aiService = aiService;
+        this.repository = repository;
+        this.executor = executor;
+        this.events = events;
+        this.enabled = "async".equalsIgnoreCase(mode);
+        this.capacity = new Semaphore(queueCapacity);
+        this.workerSlots = new Semaphore(workers);
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.sweepInterval = sweepInterval;
+    }
+
+    // ❓ "Are we in async mode?" (The Switch asks this before deciding to wait for Gemini.)
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ===================================================================================
+    // 📥 1. DROP A NOTE IN THE BOX (Called from the payment path)
+    // ===================================================================================
+    // NEVER blocks. Returns false if the box is full (the row stays PENDING for later).
+    public boolean submit(Transaction txn) {
+        if (!capacity.tryAcquire()) {
+            logger.warn("Enrichment queue full, transaction {} stays {} until the next sweep", txn.getId(), PENDING);
+            return false;
+        }
+        dispatch(txn);
+        return true;
+    }
+
+    // ===================================================================================
+    // 🚑 2. THE SWEEPS (Recovery after a restart, and every "sweep-interval" after that)
+    // ===================================================================================
+    // If the app crashed, the box was full, or Gemini kept failing (circuit open), some receipts
+    // are still PENDING in the database. We walk through them page by page and put them back in the queue.
+    // Unlike submit(), this DOES wait for tickets: it runs in the background, so waiting is fine.
+    // It runs in BOTH modes, because the bulk upload lane always saves rows as PENDING.
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverPending() {
+        sweep(null);
+    }
+
+    // 🧹 The periodic sweep: only rows PENDING for longer than one interval (fresh ones are still
+    // on their way through the box), and never a row that is queued or being worked on.
+    public void sweepStale() {
+        sweep(LocalDateTime.now().minus(sweepInterval));
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        sweeper = new Thread(this::sweepLoop, "enrichment-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (sweeper != null) {
+            sweeper.interrupt();
+            sweeper.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void sweepLoop() {
+        while (running) {
+            try {
+                Thread.sleep(sweepInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                sweepStale();
+            } catch (RuntimeException e) {
+                logger.warn("{} sweep failed, will retry on the next run: {}", PENDING, e.getMessage());
+            }
+        }
+    }
+
+    // "before" = null: every PENDING row (startup).
+    private void sweep(LocalDateTime before) {
+        long lastId = 0L;
+        int requeued = 0;
+        try {
+            while (true) {
+                PageRequest pageRequest = PageRequest.of(0, RECOVERY_PAGE_SIZE);
+                List<Transaction> page = before == null
+                        ? repository.findByCategoryAndIdGreaterThanOrderByIdAsc(PENDING, lastId, pageRequest)
+                        : repository.findByCategoryAndTimestampBeforeAndIdGreaterThanOrderByIdAsc(PENDING, before, lastId, pageRequest);
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (Transaction txn : page) {
+                    lastId = txn.getId();
+                    if (inFlight.contains(txn.getId())) {
+                        continue;
+                    }
+                    capacity.acquire();
+                    dispatch(txn);
+                    requeued++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (requeued > 0) {
+            logger.info("Re-queued {} {} transactions for categorization", requeued, PENDING);
+        }
+    }
+
+    // 🚚 Hand the job to a worker. The ticket is returned when the job is done (success or not).
+    private void dispatch(Transaction txn) {
+        Long id = txn.getId();
+        if (id != null && !inFlight.add(id)) {
+            capacity.release(); // Already queued (e.g. a sweep racing the payment path).
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    workerSlots.acquire();
+                    try {
+                        enrich(txn);
+                    } finally {
+                        workerSlots.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); // Shutting down: the row stays PENDING for the next sweep.
+                } finally {
+                    done(id);
+                }
+            });
+        } catch (RuntimeException e) {
+            // The executor refused (e.g. shutting down). Give the ticket back; recovery will retry.
+            done(id);
+            logger.warn("Could not schedule enrichment for transaction {}: {}", txn.getId(), e.getMessage());
+        }
+    }
+
+    private void done(Long id) {
+        if (id != null) {
+            inFlight.remove(id);
+        }
+        capacity.release();
+    }
+
+    // ===================================================================================
+    // 🔁 3. THE WORKER'S JOB (Ask, Retry, Write Back)
+    // ===================================================================================
+    void enrich(Transaction txn) {
+        Long id = txn.getId();
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            String category = aiService.categorize(txn.getReference(), txn.getAmount().toString());
+
+            if (!CategorizationService.isFallback(category)) {
+                // ✅ Got an answer! Write it onto the receipt (only if it is still PENDING),
+                // and tell the listeners (e.g. the spend rollups) that it moved out of PENDING.
+                if (repository.updateCategory(id, PENDING, category) == 1) {
+                    events.publishEvent(new CategoryAssigned(txn, category));
+                }
+                return;
+            }
+
+            if (attempt < maxAttempts && !sleep(backoffFor(attempt))) {
+                return; // We were told to stop (shutdown). The row stays PENDING for recovery.
+            }
+        }
+        // 😴 Gemini kept failing. We leave the row PENDING so the next sweep tries again.
+        logger.warn("Giving up on transaction {} after {} attempts, left as {}", id, maxAttempts, PENDING);
+    }
+
+    // 🎲 THE RANDOM PAUSE (Exponential Backoff + Jitter)
+    // Attempt 1 waits ~0.5s, attempt 2 ~1s, attempt 3 ~2s... (capped at maxBackoffMs).
+    // We pick a random time between half and the full value, so 4 workers that failed
+    // at the same moment do NOT all hit Gemini again at the exact same millisecond.
+    long backoffFor(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "WritableByteChannel" is NIO's "somewhere bytes can go" (a file or the HTTP response).
+// "CharsetEncoder" turns characters into bytes straight inside our buffer, so a line is
+// never copied into a temporary byte[] first.
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+// -----------------------------------------------------------------------------------
+// 🖨️ THE LINE PRINTER (Buffered NIO output for clearing files)
+// Lines are built in ONE reused StringBuilder, encoded into ONE direct buffer, and the
+// buffer goes to the channel only when it is full. Memory stays at "bufferSize" bytes,
+// whether the file has 10 lines or 10 million.
+// Characters the charset cannot show (e.g. "é" in a US-ASCII fixed-width file) become "?",
+// so a column never shifts.
+// -----------------------------------------------------------------------------------
+
+final class ClearingFileWriter implements Closeable {
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder;
+    private final StringBuilder line = new StringBuilder(256);
+
+    ClearingFileWriter(WritableByteChannel channel, Charset charset, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .replaceWith(new byte[]{'?'});
+    }
+
+    // ✏️ The line being built (empty). Fill it, then call endLine().
+    StringBuilder line() {
+        line.setLength(0);
+        return line;
+    }
+
+    void endLine() throws IOException {
+        line.append('\n');
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+    }
+
+    // 🚚 Hand what we have to the channel (also lets a slow HTTP client see progress).
+    void flush() throws IOException {
+        drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Writes the rest; the channel itself belongs to the caller.
+    @Override
+    public void close() throws IOException {
+        drain();
+    }
+}
@@ -0,0 +1,117 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.CompactPayment;
+import com.electrumprep.ledger.model.Transaction;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Currency;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// -----------------------------------------------------------------------------------
+// 🗜️ THE PRESS (Transaction <-> CompactPayment)
+// Squeezes a Transaction into its pocket form (see CompactPayment) and reads names back out.
+// It owns the number plates for banks and categories. Number 0 is always "UNKNOWN"
+// (a missing bank or category), so hot code never has to check for null.
+// Reading the bank out of "SUCCESS - Sent to ABSA BANK" is a map lookup on the whole status
+// (its hash is cached inside the String), not a substring per payment.
+// -----------------------------------------------------------------------------------
+
+@Component
+public class CompactPayments {
+
+    public static final String UNKNOWN = "UNKNOWN";
+    public static final int UNKNOWN_ID = 0;
+
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+
+    // 710 -> "ZAR", for every currency the JVM knows.
+    private static final Map<Integer, String> CURRENCIES_BY_CODE = Currency.getAvailableCurrencies().stream()
+            .filter(currency -> currency.getNumericCode() > 0)
+            .collect(Collectors.toUnmodifiableMap(Currency::getNumericCode, Currency::getCurrencyCode, (a, b) -> a));
+
+    private final SymbolTable banks = new SymbolTable();
+    private final SymbolTable categories = new SymbolTable();
+
+    // Full status text -> bank number (filled on first sight of each status).
+    private final ConcurrentHashMap<String, Integer> bankByStatus = new ConcurrentHashMap<>();
+
+    public CompactPayments() {
+        banks.intern(UNKNOWN);
+        categories.intern(UNKNOWN);
+    }
+
+    // ===================================================================================
+    // 🗜️ SQUEEZE
+    // ===================================================================================
+    // Throws IllegalArgumentException for an amount with more than 2 decimals or an unknown currency.
+    public CompactPayment compact(Transaction txn) {
+        return compact(txn.getId(), txn.getAmount(), txn.getCurrency(), txn.getStatus(), txn.getTimestamp(),
+                txn.getCategory(), txn.getSenderAccount());
+    }
+
+    public CompactPayment compact(Long id, BigDecimal amount, String currency, String status, LocalDateTime timestamp,
+                                  String category, String senderAccount) {
+        return new CompactPayment(id == null ? 0 : id, PostingEngine.toCents(amount), currencyCode(currency),
+                toEpochMicros(timestamp), bankOfStatus(status), categoryId(category), senderAccount);
+    }
+
+    // 🏦 "SUCCESS - Sent to ABSA BANK" -> number of "ABSA BANK" (anything else -> UNKNOWN_ID)
+    public int bankOfStatus(String status) {
+        if (status == null) {
+            return UNKNOWN_ID;
+        }
+        Integer id = bankByStatus.get(status);
+        if (id != null) {
+            return id;
+        }
+        int bank = status.startsWith(RoutingTrie.Route.SENT_TO)
+                ? banks.intern(status.substring(RoutingTrie.Route.SENT_TO.length()))
+                : UNKNOWN_ID;
+        bankByStatus.putIfAbsent(status, bank);
+        return bank;
+    }
+
+    public int categoryId(String category) {
+        return category == null ? UNKNOWN_ID : categories.intern(category);
+    }
+
+    // ===================================================================================
+    // 📖 READ BACK
+    // ===================================================================================
+    public String bank(int bankId) {
+        return banks.name(bankId);
+    }
+
+    public String category(int categoryId) {
+        return categories.name(categoryId);
+    }
+
+    // 💱 "ZAR" <-> 710 (0 = no currency)
+    public static short currencyCode(String currency) {
+        return currency == null ? 0 : (short) Currency.getInstance(currency).getNumericCode();
+    }
+
+    public static String currency(short code) {
+        return code == 0 ? null : CURRENCIES_BY_CODE.get((int) code);
+    }
+
+    // ⏱️ LocalDateTime <-> microseconds. The wall clock is kept as-is (treated as UTC both ways),
+    // so "today 00:00" is still a whole day in micros. Long.MIN_VALUE = no timestamp.
+    public static long toEpochMicros(LocalDateTime time) {
+        if (time == null) {
+            return Long.MIN_VALUE;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * MICROS_PER_SECOND + time.getNano() / 1_000;
+    }
+
+    public static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, MICROS_PER_SECOND),
+                (int) Math.floorMod(micros, MICROS_PER_SECOND) * 1_000, ZoneOffset.UTC);
+    }
+}
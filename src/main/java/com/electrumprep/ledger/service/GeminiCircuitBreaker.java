@@ -0,0 +1,176 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "MeterRegistry" is the scoreboard that /actuator/metrics reads from.
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+// -----------------------------------------------------------------------------------
+// 🔌 THE FUSE BOX (Circuit Breaker for Gemini)
+// If Google starts failing a lot, calling it again and again only makes things worse:
+// every payment waits for a timeout, and Google gets even more traffic.
+// The fuse box watches the last N calls:
+// - CLOSED (normal):   calls go through. Too many failures? -> the fuse "blows" (OPEN).
+// - OPEN (tripped):    calls fail INSTANTLY (no waiting), for a cool-down period.
+// - HALF_OPEN (test):  after the cool-down, a few trial calls are let through.
+//                      All good -> CLOSED again. Any failure -> OPEN again.
+// -----------------------------------------------------------------------------------
+
+@Component
+public class GeminiCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiCircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final int failureRateThreshold;   // e.g. 50 = "open when half the calls fail"
+    private final int minimumCalls;           // Don't judge on 2 calls: wait for at least this many.
+    private final long openDurationNanos;     // How long the fuse stays blown.
+    private final int halfOpenCalls;          // How many trial calls after the cool-down.
+    private final MeterRegistry meterRegistry;
+
+    // 🎞️ THE LAST N CALLS (a ring: true = failed)
+    private final boolean[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    // 🔒 ONE HAND ON THE SWITCH AT A TIME
+    // A ReentrantLock instead of "synchronized": a virtual thread that waits here (or logs a
+    // state change while holding it) can step off its carrier thread instead of pinning it.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public GeminiCircuitBreaker(@Value("${gemini.circuit.failure-rate-threshold:50}") int failureRateThreshold,
+                                @Value("${gemini.circuit.sliding-window-size:20}") int slidingWindowSize,
+                                @Value("${gemini.circuit.minimum-calls:10}") int minimumCalls,
+                                @Value("${gemini.circuit.open-duration:30s}") Duration openDuration,
+                                @Value("${gemini.circuit.half-open-calls:3}") int halfOpenCalls,
+                                MeterRegistry meterRegistry) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.window = new boolean[slidingWindowSize];
+        this.minimumCalls = Math.min(minimumCalls, slidingWindowSize);
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.meterRegistry = meterRegistry;
+        // 📊 0 = CLOSED, 1 = OPEN, 2 = HALF_OPEN (so a dashboard can draw it as a line)
+        meterRegistry.gauge("ledger.gemini.circuit.state", this, breaker -> breaker.state.ordinal());
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    // 🚪 "May I call Google right now?"
+    public boolean tryAcquirePermission() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openDurationNanos) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits >= halfOpenCalls) {
+                    return false;
+                }
+                halfOpenPermits++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ↩️ "I got permission but never made the call." (Gives a trial slot back.)
+    public void releasePermission() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+                halfOpenPermits--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ✅ "The call worked."
+    public void onSuccess() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                if (++halfOpenSuccesses >= halfOpenCalls) {
+                    transitionTo(State.CLOSED);
+                }
+                return;
+            }
+            record(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ❌ "The call failed (timeout, 5xx, rate limit...)."
+    public void onError() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                transitionTo(State.OPEN);
+                return;
+            }
+            record(true);
+            if (state == State.CLOSED && recorded >= minimumCalls
+                    && failures * 100 >= failureRateThreshold * recorded) {
+                transitionTo(State.OPEN);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(boolean failed) {
+        if (recorded == window.length) {
+            // The ring is full: the oldest call falls out before the new one comes in.
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    // 🔀 Change state, reset the counters, and tell the scoreboard.
+    private void transitionTo(State target) {
+        State from = state;
+        state = target;
+        openedAt = System.nanoTime();
+        halfOpenPermits = 0;
+        halfOpenSuccesses = 0;
+        if (target == State.CLOSED) {
+            Arrays.fill(window, false);
+            next = 0;
+            recorded = 0;
+            failures = 0;
+        }
+        meterRegistry.counter("ledger.gemini.circuit.transitions", "from", from.name(), "to", target.name()).increment();
+        logger.warn("Gemini circuit breaker {} -> {}", from, target);
+    }
+}
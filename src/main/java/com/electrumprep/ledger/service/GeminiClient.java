@@ -0,0 +1,275 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "JsonNode" helps us handle the complex data format (JSON) that Google sends back.
+// "RestTemplate" is the phone we use to call Google.
+// "HttpClient" is Java's built-in modern phone line (HTTP/2, keeps connections open).
+// "Semaphore" is a bowl of tickets: no ticket, no call.
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// -----------------------------------------------------------------------------------
+// ☎️ THE PHONE LINE (Gemini Client)
+// This class knows HOW to talk to Google, but not WHAT to ask.
+// The "what" (the prompts) lives in CategorizationService and BatchingCategorizer.
+// Keeping the phone in one place means there is exactly one door to Google,
+// and that door has three safety features:
+// 1. ⏱️ TIMEOUTS: We never wait forever for Google to pick up or to answer.
+// 2. 🎟️ BULKHEAD: Only N calls may be "on the phone" at once. The rest fail fast,
+//    so a slow Google can never swallow all of Tomcat's request threads.
+// 3. 🔌 CIRCUIT BREAKER: If Google keeps failing, we stop calling for a while.
+// -----------------------------------------------------------------------------------
+
+@Component // 🏷️ STICKER: Tells Spring Boot: "Build one of these and share it."
+public class GeminiClient {
+
+    // 🚫 THE "LINE IS BUSY" SIGNAL
+    // Thrown when we did NOT even try to call Google (fuse blown or too many calls in flight).
+    // CategorizationService turns it into the "Uncategorized" fallback.
+    public static class GeminiUnavailableException extends RuntimeException {
+        public GeminiUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    // 🔑 SECRETS FROM THE SAFE
+    private final String apiKey;
+    private final String apiUrl;
+
+    // 📞 THE PHONE
+    // RestTemplate on top of Java's HttpClient: HTTP/2, pooled keep-alive connections,
+    // and real timeouts (the old "new RestTemplate()" had NONE).
+    // Built on first use (or by the startup warm-up), NOT in the constructor: a new server
+    // should take payments before it has set up a phone line it may not even need.
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private volatile RestTemplate restTemplate;
+    // Only one thread builds it. A lock, not "synchronized": a virtual thread waiting here stays unpinned.
+    private final ReentrantLock phoneLock = new ReentrantLock();
+
+    // 🎟️ THE BULKHEAD
+    private final Semaphore inFlight;
+    private final long bulkheadWaitMs;
+
+    // 🔌 THE FUSE BOX
+    private final GeminiCircuitBreaker circuitBreaker;
+
+    // 📊 THE SCOREBOARD: calls we refused to make
+    private final Counter rejectedByCircuit;
+    private final Counter rejectedByBulkhead;
+
+    // ⏱️ THE STOPWATCH: how long real calls took, by how they ended (ledger.gemini.latency{outcome=...}).
+    // One Timer per outcome, built up front, so a call never builds tags.
+    enum Outcome { SUCCESS, RATE_LIMITED, CLIENT_ERROR, SERVER_ERROR, TIMEOUT, CONNECTION, OTHER }
+    private final Timer[] latency = new Timer[Outcome.values().length];
+
+    public GeminiClient(@Value("${gemini.api.url}") String apiUrl,
+                        @Value("${gemini.api.key}") String apiKey,
+                        @Value("${gemini.client.connect-timeout:2s}") Duration connectTimeout,
+                        @Value("${gemini.client.read-timeout:10s}") Duration readTimeout,
+                        @Value("${gemini.client.max-concurrent-calls:8}") int maxConcurrentCalls,
+                        @Value("${gemini.client.bulkhead-wait:250ms}") Duration bulkheadWait,
+                        GeminiCircuitBreaker circuitBreaker,
+                        MeterRegistry meterRegistry) {
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.circuitBreaker = circuitBreaker;
+        this.inFlight = new Semaphore(maxConcurrentCalls);
+        this.bulkheadWaitMs = bulkheadWait.toMillis();
+
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+
+        this.rejectedByCircuit = meterRegistry.counter("ledger.gemini.calls.rejected", "reason", "circuit_open");
+        this.rejectedByBulkhead = meterRegistry.counter("ledger.gemini.calls.rejected", "reason", "bulkhead_full");
+        meterRegistry.gauge("ledger.gemini.calls.in_flight", inFlight,
+                permits -> maxConcurrentCalls - permits.availablePermits());
+        for (Outcome outcome : Outcome.values()) {
+            latency[outcome.ordinal()] = Timer.builder("ledger.gemini.latency")
+                    .description("Time one call to Gemini took, by outcome")
+                    .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(readTimeout.plus(connectTimeout))
+                    .register(meterRegistry);
+        }
+    }
+
+    // 🔥 Set up the phone line now (called in the background once the app is ready).
+    public void warmUp() {
+        phone();
+    }
+
+    private RestTemplate phone() {
+        RestTemplate phone = restTemplate;
+        if (phone == null) {
+            phoneLock.lock();
+            try {
+                phone = restTemplate;
+                if (phone == null) {
+                    HttpClient httpClient = HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_2)   // Many calls share one connection.
+                            .connectTimeout(connectTimeout)       // Max time to "get a dial tone".
+                            .build();
+                    JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+                    requestFactory.setReadTimeout(readTimeout);   // Max time to wait for the answer.
+                    phone = new RestTemplate(requestFactory);
+                    restTemplate = phone;
+                }
+            } finally {
+                phoneLock.unlock();
+            }
+        }
+        return phone;
+    }
+
+    // ===================================================================================
+    // 📨 SEND ONE PROMPT, GET ONE ANSWER
+    // ===================================================================================
+    // "json" = true asks Google to reply in strict JSON (used for batch answers).
+    // Returns the text Google wrote, or null if the reply was empty.
+    // Network problems are NOT swallowed here: the caller decides what "safe default" means.
+    public String generate(String prompt, boolean json) {
+
+        // 🔌 1. Is the fuse blown? Then don't even dial.
+        if (!circuitBreaker.tryAcquirePermission()) {
+            rejectedByCircuit.increment();
+            throw new GeminiUnavailableException("Gemini circuit breaker is open");
+        }
+
+        // 🎟️ 2. Grab a ticket (wait a tiny bit at most).
+        if (!acquireTicket()) {
+            circuitBreaker.releasePermission(); // We never called, so the fuse learns nothing.
+            rejectedByBulkhead.increment();
+            throw new GeminiUnavailableException("Too many Gemini calls in flight");
+        }
+
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.OTHER;
+        try {
+            String text = call(prompt, json);
+            outcome = Outcome.SUCCESS;
+            circuitBreaker.onSuccess();
+            return text;
+        } catch (HttpClientErrorException e) {
+            outcome = e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS ? Outcome.RATE_LIMITED : Outcome.CLIENT_ERROR;
+            // 4xx = WE sent something wrong. Google itself is fine, so the fuse doesn't care...
+            // ...EXCEPT "429 Too Many Requests", which means "back off!".
+            if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                circuitBreaker.onError();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            // Timeouts, connection refused, 5xx, garbage replies... all count against Google.
+            outcome = classify(e);
+            circuitBreaker.onError();
+            throw e;
+        } finally {
+            latency[outcome.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inFlight.release();
+        }
+    }
+
+    // 🏷️ "What kind of failure was it?" (5xx, a timeout, no connection at all, or something else)
+    static Outcome classify(RuntimeException e) {
+        if (e instanceof HttpServerErrorException) {
+            return Outcome.SERVER_ERROR;
+        }
+        if (e instanceof ResourceAccessException) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof HttpTimeoutException || cause instanceof SocketTimeoutException) {
+                    return Outcome.TIMEOUT;
+                }
+            }
+            return Outcome.CONNECTION;
+        }
+        return Outcome.OTHER;
+    }
+
+    private boolean acquireTicket() {
+        try {
+            return inFlight.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // 📨 THE ACTUAL CALL
+    private String call(String prompt, boolean json) {
+
+        // 1. Prepare the Phone Number (URL)
+        // We combine the Google Address + Your Secret Key to get the full link.
+        String fullUrl = apiUrl + apiKey;
+
+        // 2. Stamp the Envelope (Headers)
+        // We tell Google: "I am sending you JSON data, please read it correctly."
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        // 3. Combine Letter + Envelope (Entity)
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(createRequestBody(prompt, json), headers);
+
+        // 4. SEND THE REQUEST! (Making the Call)
+        // "JsonNode.class" means: "Treat the reply as a flexible data tree."
+        ResponseEntity<JsonNode> response = phone().postForEntity(fullUrl, entity, JsonNode.class);
+        return extractText(response.getBody());
+    }
+
+    // 🧅 PEELING THE ONION
+    // Google wraps the answer in many layers of folders.
+    // Structure: Response -> Candidates List -> First Candidate -> Content -> Parts -> Text
+    static String extractText(JsonNode root) {
+        if (root != null && root.has("candidates") && !root.path("candidates").isEmpty()) {
+            return root.path("candidates")
+                    .get(0)                 // Get the first answer
+                    .path("content")        // Open the content box
+                    .path("parts")          // Look at the parts
+                    .path(0)                // Get the first part
+                    .path("text")           // READ THE TEXT! (e.g., "Food & Dining")
+                    .asText()
+                    .trim();                // Cut off accidental spaces
+        }
+        return null;
+    }
+
+    // 🧹 HELPER METHOD
+    // It builds the complex nested Map structure that Google requires.
+    private Map<String, Object> createRequestBody(String prompt, boolean json) {
+        Map<String, Object> contents = Map.of("parts", List.of(Map.of("text", prompt)));
+        if (!json) {
+            return Map.of("contents", List.of(contents));
+        }
+        return Map.of(
+                "contents", List.of(contents),
+                "generationConfig", Map.of("responseMimeType", "application/json")
+        );
+    }
+}
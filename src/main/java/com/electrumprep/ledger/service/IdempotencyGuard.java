@@ -0,0 +1,167 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "Caffeine" gives us a bounded, self-expiring memory (the same engine as the category cache).
+// "CompletableFuture" is an IOU: the first request promises an answer, the twins wait for it.
+import com.electrumprep.ledger.model.IdempotencyKey;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.repository.IdempotencyKeyRepository;
+import com.electrumprep.ledger.repository.TransactionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+// -----------------------------------------------------------------------------------
+// 🎫 THE COAT CHECK (Idempotency Guard)
+// Phones time out, so clients press "Pay" again. Without this class, every retry
+// booked the payment AGAIN (and asked Gemini again).
+// Now the client sends an "Idempotency-Key" header (a ticket number it makes up once).
+// - 🆕 First time we see the ticket: we do the work and remember the result.
+// - 🔁 Same ticket again: we hand back the SAME receipt. No routing, no AI, no new row.
+// - 👯 Two identical tickets at the SAME moment: only one does the work, the other waits for it.
+// Three layers keep it safe:
+// 1. RAM (bounded + expiring) for the fast, common case.
+// 2. The database for retries after a restart or on another server: the "idempotency_keys"
+//    table points each ticket at its receipt (in the hot table, or in the archive).
+// 3. That table's primary key, claimed in the SAME database transaction as the receipt,
+//    so even a perfect race between two servers can't book twice.
+//    (Journal mode writes receipts later, in the drainer: see PaymentJournalService.)
+// -----------------------------------------------------------------------------------
+
+@Component
+public class IdempotencyGuard {
+
+    // 🧾 THE ANSWER: the receipt, and whether it was a replay of an earlier request.
+    public record Outcome(Transaction transaction, boolean replayed) { }
+
+    // The longest ticket number we accept (it has to fit the database column).
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final TransactionRepository repository;
+    private final IdempotencyKeyRepository keys;
+    private final TransactionArchive archive;
+
+    // 🧠 THE SHORT-TERM MEMORY: ticket -> IOU for the receipt.
+    private final Cache<String, CompletableFuture<Transaction>> window;
+
+    // 📊 THE SCOREBOARD
+    private final Counter executed;
+    private final Counter replayedFromMemory;
+    private final Counter replayedFromDatabase;
+
+    public IdempotencyGuard(TransactionRepository repository,
+                            IdempotencyKeyRepository keys,
+                            TransactionArchive archive,
+                            MeterRegistry meterRegistry,
+                            @Value("${ledger.idempotency.window:24h}") Duration ttl,
+                            @Value("${ledger.idempotency.max-keys:100000}") long maxKeys) {
+        this.repository = repository;
+        this.keys = keys;
+        this.archive = archive;
+        this.window = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, window, "idempotency");
+        this.executed = meterRegistry.counter("ledger.idempotency.requests", "result", "executed");
+        this.replayedFromMemory = meterRegistry.counter("ledger.idempotency.requests", "result", "replayed_memory");
+        this.replayedFromDatabase = meterRegistry.counter("ledger.idempotency.requests", "result", "replayed_database");
+    }
+
+    // ===================================================================================
+    // 🎫 RUN ONCE PER TICKET
+    // ===================================================================================
+    // "work" is the real payment processing. It must save the Transaction WITH the key on it (see book()).
+    // If the work fails, the ticket is forgotten, so the client may retry it.
+    public Outcome execute(String key, Supplier<Transaction> work) {
+        CompletableFuture<Transaction> mine = new CompletableFuture<>();
+        CompletableFuture<Transaction> existing = window.asMap().putIfAbsent(key, mine);
+
+        if (existing != null) {
+            // 👯 Someone already has this ticket (finished, or still working): wait for THEIR answer.
+            Transaction txn = await(existing);
+            replayedFromMemory.increment();
+            return new Outcome(txn, true);
+        }
+
+        // 🆕 We won the ticket. Nobody else with this key will do the work while we hold it.
+        try {
+            Outcome outcome = runOnce(key, work);
+            mine.complete(outcome.transaction());
+            return outcome;
+        } catch (RuntimeException e) {
+            // ❌ Forget the ticket (so a retry can try again), and tell the twins what happened.
+            window.asMap().remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Outcome runOnce(String key, Supplier<Transaction> work) {
+        // 🗄️ Maybe we booked it before a restart (or another server did).
+        Transaction stored = stored(key);
+        if (stored != null) {
+            replayedFromDatabase.increment();
+            return new Outcome(stored, true);
+        }
+        try {
+            Transaction txn = work.get();
+            executed.increment();
+            return new Outcome(txn, false);
+        } catch (DataIntegrityViolationException e) {
+            // 🏁 Lost a race with ANOTHER server: the unique constraint stopped the double booking.
+            // Their row is the real receipt.
+            Transaction winner = stored(key);
+            if (winner == null) {
+                throw e;
+            }
+            replayedFromDatabase.increment();
+            return new Outcome(winner, true);
+        }
+    }
+
+    // 📂 SAVE A RECEIPT WITH ITS TICKET (Called by the Switch instead of repository.save)
+    // The receipt and the ticket stub commit together. If the ticket is already taken, this throws
+    // DataIntegrityViolationException and the receipt is rolled back with it.
+    @Transactional
+    public Transaction book(Transaction txn) {
+        Transaction saved = repository.save(txn);
+        keys.claim(saved.getIdempotencyKey(), saved.getId(), saved.getTimestamp());
+        return saved;
+    }
+
+    // 🎟️ The receipt a ticket was booked with: the stub says which one, the hot table or the archive has it.
+    private Transaction stored(String key) {
+        IdempotencyKey stub = keys.findById(key).orElse(null);
+        if (stub == null) {
+            return null;
+        }
+        return repository.findByIdAndTimestamp(stub.getTransactionId(), stub.getTimestamp())
+                .or(() -> archive.find(stub.getTransactionId(), stub.getTimestamp()))
+                .orElse(null);
+    }
+
+    // ⏳ Wait for the IOU. If the first request failed, we fail the same way.
+    private static Transaction await(CompletableFuture<Transaction> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
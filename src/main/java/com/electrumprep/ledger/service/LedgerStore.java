@@ -0,0 +1,83 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.Account;
+import com.electrumprep.ledger.model.Posting;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.repository.AccountRepository;
+import com.electrumprep.ledger.repository.PostingRepository;
+import com.electrumprep.ledger.repository.TransactionRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// -----------------------------------------------------------------------------------
+// 🗄️ THE LEDGER STOREROOM (Database side of the PostingEngine)
+// The engine keeps balances in RAM for speed. This class is the only place that
+// reads them from, and writes them back to, the "accounts" and "postings" tables.
+// -----------------------------------------------------------------------------------
+
+@Component
+public class LedgerStore {
+
+    // 📸 "After my last change, account X had balance Y (and this was its N-th change)."
+    public record BalanceSnapshot(String accountNumber, BigDecimal balance, BigDecimal overdraftLimit, long version) { }
+
+    private final AccountRepository accounts;
+    private final PostingRepository postings;
+    private final TransactionRepository transactions;
+    private final TransactionTemplate tx;
+
+    public LedgerStore(AccountRepository accounts, PostingRepository postings, TransactionRepository transactions,
+                       PlatformTransactionManager transactionManager) {
+        this.accounts = accounts;
+        this.postings = postings;
+        this.transactions = transactions;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    // 🔎 The stored card, or null for an account we have never seen.
+    public Account load(String accountNumber) {
+        return accounts.findById(accountNumber).orElse(null);
+    }
+
+    // 🩹 Payments booked since "since" whose posting lines never reached the database.
+    public List<Transaction> unposted(LocalDateTime since) {
+        return transactions.findUnpostedSince(since, PaymentJournalService.DUPLICATE_STATUS + "%");
+    }
+
+    // ===================================================================================
+    // 💾 WRITE ONE BATCH (All or nothing)
+    // ===================================================================================
+    // The postings and the new balances go in ONE database transaction, so the books on disk
+    // can never show a debit without its matching credit.
+    public void write(List<Posting> newPostings, Collection<BalanceSnapshot> balances) {
+        tx.executeWithoutResult(status -> {
+            postings.saveAll(newPostings);
+
+            Map<String, Account> stored = accounts.findAllById(balances.stream().map(BalanceSnapshot::accountNumber).toList())
+                    .stream().collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+            LocalDateTime now = LocalDateTime.now();
+            for (BalanceSnapshot snapshot : balances) {
+                Account card = stored.get(snapshot.accountNumber());
+                if (card == null) {
+                    accounts.save(new Account(snapshot.accountNumber(), snapshot.balance(),
+                            snapshot.overdraftLimit(), snapshot.version(), now));
+                } else if (snapshot.version() > card.getPostingVersion()) {
+                    // Only move forward: an older snapshot must never overwrite a newer balance.
+                    card.setBalance(snapshot.balance());
+                    card.setPostingVersion(snapshot.version());
+                    card.setUpdatedAt(now);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package com.electrumprep.ledger.service;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// -----------------------------------------------------------------------------------
+// 🧽 THE LABEL CLEANER (Merchant Normalizer)
+// Bank references are messy: "UBER * 8721", "Uber *9911", "UBER 12/03 R85.00".
+// To a human these are all "UBER". To a cache they are three different strangers.
+// This class scrubs the noise away so all of them share ONE cache entry:
+// 1. UPPER-CASE everything.
+// 2. Throw away every word that contains a digit (card suffixes, dates, amounts, ids).
+// 3. Turn symbols (*, #, /, -) into spaces and squash repeated spaces.
+// -----------------------------------------------------------------------------------
+
+public final class MerchantNormalizer {
+
+    // Any "word" with a digit in it: 8721, X1234, R85.00, 12/03, #77, TRIP123
+    private static final Pattern TOKEN_WITH_DIGIT = Pattern.compile("\\S*\\d\\S*");
+
+    // Anything that is not a letter, "&" or a space
+    private static final Pattern SYMBOLS = Pattern.compile("[^\\p{L}& ]+");
+
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private MerchantNormalizer() {
+        // 🚫 Just a toolbox of static methods. No objects needed.
+    }
+
+    // ✨ "UBER * 8721" -> "UBER"
+    // If scrubbing leaves nothing (e.g. the reference was "12345"), we keep the raw text
+    // so two different number-only references do not collide on an empty key.
+    public static String normalize(String reference) {
+        if (reference == null) {
+            return "";
+        }
+        String upper = reference.toUpperCase(Locale.ROOT);
+        String cleaned = TOKEN_WITH_DIGIT.matcher(upper).replaceAll(" ");
+        cleaned = SYMBOLS.matcher(cleaned).replaceAll(" ");
+        cleaned = SPACES.matcher(cleaned).replaceAll(" ").trim();
+        return cleaned.isEmpty() ? upper.trim() : cleaned;
+    }
+}
@@ -0,0 +1,79 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "AtomicLong" and "AtomicLongArray" are counters that many threads can update WITHOUT locks
+// (the CPU does it in one "compare-and-set" step).
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// -----------------------------------------------------------------------------------
+// 🎠 THE CAROUSEL (Lock-free ring buffer, many writers -> ONE reader)
+// A fixed circle of slots, allocated once (no garbage per message).
+// - Writers "claim" the next slot number with compare-and-set, fill it, then raise its flag.
+// - The single reader walks the circle in order, taking each slot once its flag is up.
+// The circle is full when writers are a whole lap ahead of the reader: offer() then says no.
+// Same idea as the LMAX Disruptor, cut down to what one partition needs.
+// -----------------------------------------------------------------------------------
+
+public class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+
+    // 🚩 The flag of each slot: "the message with THIS sequence number is ready".
+    private final AtomicLongArray published;
+
+    // 🎟️ Next sequence a writer may claim, and next sequence the reader will take.
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    // "capacity" is rounded up to a power of two (so "slot = sequence & mask").
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, i - (long) size); // "Nothing published yet" for the first lap.
+        }
+    }
+
+    // ✍️ WRITER SIDE (any thread). False = the circle is full, try again later.
+    public boolean offer(E item) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        slots.lazySet(slot, item);
+        published.set(slot, sequence); // Volatile write: the item above is visible before the flag.
+        return true;
+    }
+
+    // 📖 READER SIDE (the ONE partition thread only). Null = nothing ready yet.
+    public E poll() {
+        long sequence = head.get();
+        int slot = (int) sequence & mask;
+        if (published.get(slot) != sequence) {
+            return null;
+        }
+        E item = slots.get(slot);
+        slots.lazySet(slot, null);
+        head.lazySet(sequence + 1);
+        return item;
+    }
+
+    // 📏 How many messages are waiting (a snapshot, for the metrics).
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,205 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.repository.TransactionRepository;
+import com.electrumprep.ledger.repository.TransactionRepository.ReferenceCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// -----------------------------------------------------------------------------------
+// 🎓 EXPERT #2: THE APPRENTICE (Naive Bayes over letter triplets)
+// The cheat sheet only knows famous merchants. The apprentice has studied every
+// category Gemini already gave us (in the "transactions" table) and learned which
+// little letter patterns go with which category.
+// e.g. "...BURGER..." -> "BUR", "URG", "RGE", "GER" -> these appear a lot in "Food & Dining".
+// It only answers when it is VERY sure (min-confidence). Otherwise Gemini gets the job.
+// -----------------------------------------------------------------------------------
+
+@Component
+@Order(2) // 🥈 Asked SECOND: still local and fast, but less certain than the cheat sheet.
+public class NaiveBayesCategorizer implements Categorizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(NaiveBayesCategorizer.class);
+
+    private static final int GRAM = 3;
+
+    private final TransactionRepository repository;
+    private final int maxSamples;
+    private final int minSamples;
+    private final double minConfidence;
+
+    // 🧠 THE BRAIN (swapped in one go after training; null = "not trained yet")
+    // Readers never lock: they just grab whatever model is current.
+    private volatile Model model;
+
+    public NaiveBayesCategorizer(TransactionRepository repository,
+                                 @Value("${ledger.categorizer.bayes.max-samples:50000}") int maxSamples,
+                                 @Value("${ledger.categorizer.bayes.min-samples:200}") int minSamples,
+                                 @Value("${ledger.categorizer.bayes.min-confidence:0.95}") double minConfidence) {
+        this.repository = repository;
+        this.maxSamples = maxSamples;
+        this.minSamples = minSamples;
+        this.minConfidence = minConfidence;
+    }
+
+    @Override
+    public String name() {
+        return "bayes";
+    }
+
+    @Override
+    public String categorize(String merchantKey) {
+        Model current = model;
+        return current == null ? null : current.predict(merchantKey, minConfidence);
+    }
+
+    // ===================================================================================
+    // 📚 STUDY TIME (Train from the database, in the background after startup)
+    // ===================================================================================
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void trainFromHistory() {
+        try {
+            List<ReferenceCategory> samples = repository.findTrainingSamples(
+                    CategorizationService.CATEGORIES, PageRequest.of(0, maxSamples));
+            train(samples);
+        } catch (RuntimeException e) {
+            logger.warn("Could not train local classifier: {}", e.getMessage());
+        }
+    }
+
+    // 🏋️ Build a fresh model and swap it in. Too few examples = stay silent (no model).
+    public void train(List<? extends ReferenceCategory> samples) {
+        if (samples.size() < minSamples) {
+            logger.info("Local classifier skipped: {} labelled samples (need {})", samples.size(), minSamples);
+            return;
+        }
+        Model.Builder builder = new Model.Builder(CategorizationService.CATEGORIES);
+        for (ReferenceCategory sample : samples) {
+            builder.add(MerchantNormalizer.normalize(sample.getReference()), sample.getCategory());
+        }
+        this.model = builder.build();
+        logger.info("Local classifier trained on {} samples", samples.size());
+    }
+
+    // ===================================================================================
+    // 🧮 THE MATHS (Multinomial Naive Bayes with +1 smoothing)
+    // ===================================================================================
+    // Immutable once built, so any number of threads can read it at the same time.
+    static final class Model {
+
+        private final List<String> classes;
+        private final double[] logPriors;        // "How common is each category overall?"
+        private final Map<String, double[]> logLikelihoods; // Triplet -> score per category.
+
+        private Model(List<String> classes, double[] logPriors, Map<String, double[]> logLikelihoods) {
+            this.classes = classes;
+            this.logPriors = logPriors;
+            this.logLikelihoods = logLikelihoods;
+        }
+
+        // 🎯 Returns the best category, or null if its probability is below minConfidence.
+        String predict(String text, double minConfidence) {
+            // With only ONE category in the history, every answer would look "100% sure".
+            if (classes.size() < 2) {
+                return null;
+            }
+            double[] scores = logPriors.clone();
+            String padded = " " + text + " ";
+            for (int i = 0; i + GRAM <= padded.length(); i++) {
+                // Triplets nobody ever saw say nothing about any category, so we skip them.
+                double[] likelihood = logLikelihoods.get(padded.substring(i, i + GRAM));
+                if (likelihood == null) {
+                    continue;
+                }
+                for (int c = 0; c < scores.length; c++) {
+                    scores[c] += likelihood[c];
+                }
+            }
+
+            // Turn the scores into probabilities (softmax) and keep the winner.
+            int best = 0;
+            for (int c = 1; c < scores.length; c++) {
+                if (scores[c] > scores[best]) {
+                    best = c;
+                }
+            }
+            double total = 0;
+            for (double score : scores) {
+                total += Math.exp(score - scores[best]);
+            }
+            double confidence = 1.0 / total;
+            return confidence >= minConfidence ? classes.get(best) : null;
+        }
+
+        // 🧱 Collects counts, then freezes them into log-probabilities.
+        static final class Builder {
+            private final List<String> classes;
+            private final int[] docCounts;
+            private final long[] gramTotals;
+            private final Map<String, int[]> gramCounts = new HashMap<>();
+
+            Builder(List<String> classes) {
+                this.classes = classes;
+                this.docCounts = new int[classes.size()];
+                this.gramTotals = new long[classes.size()];
+            }
+
+            void add(String text, String category) {
+                int c = classes.indexOf(category);
+                if (c < 0) {
+                    return;
+                }
+                docCounts[c]++;
+                String padded = " " + text + " ";
+                for (int i = 0; i + GRAM <= padded.length(); i++) {
+                    gramCounts.computeIfAbsent(padded.substring(i, i + GRAM), k -> new int[classes.size()])[c]++;
+                    gramTotals[c]++;
+                }
+            }
+
+            Model build() {
+                // Only categories that actually appear in the history can be predicted.
+                List<Integer> seen = new ArrayList<>();
+                int docs = 0;
+                for (int c = 0; c < classes.size(); c++) {
+                    if (docCounts[c] > 0) {
+                        seen.add(c);
+                        docs += docCounts[c];
+                    }
+                }
+                int k = seen.size();
+                double vocabulary = gramCounts.size();
+                List<String> labels = new ArrayList<>(k);
+                double[] logPriors = new double[k];
+                for (int j = 0; j < k; j++) {
+                    int c = seen.get(j);
+                    labels.add(classes.get(c));
+                    logPriors[j] = Math.log((double) docCounts[c] / docs);
+                }
+                Map<String, double[]> logLikelihoods = new HashMap<>(gramCounts.size() * 2);
+                for (Map.Entry<String, int[]> gram : gramCounts.entrySet()) {
+                    double[] scores = new double[k];
+                    for (int j = 0; j < k; j++) {
+                        int c = seen.get(j);
+                        scores[j] = Math.log((gram.getValue()[c] + 1.0) / (gramTotals[c] + vocabulary));
+                    }
+                    logLikelihoods.put(gram.getKey(), scores);
+                }
+                return new Model(List.copyOf(labels), logPriors, logLikelihoods);
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "FileChannel" writes bytes to a file and can "force" them onto the disk (fsync).
+// "CRC32" is a checksum: if a record was only half written when the power went out,
+// the checksum will not match and we know to stop reading there.
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// -----------------------------------------------------------------------------------
+// 📓 THE DIARY (Append-only Payment Journal)
+// Writing to the remote database costs a full round trip AND a commit per payment.
+// Writing to a local file is much cheaper, as long as we don't "fsync" after every line.
+// So the diary does GROUP COMMIT:
+// 1. Many request threads hand in their record at the same time.
+// 2. ONE writer thread appends all of them to the file and calls fsync ONCE.
+// 3. Only then does every waiting request get its "OK, it's safe on disk".
+//
+// On disk, a record is: [length (4 bytes)] [CRC32 of the payload (4 bytes)] [payload].
+// The diary is split into numbered segment files (journal-00000000000000000001.log, ...).
+// Segments whose records have all reached the database are deleted (see release()).
+// -----------------------------------------------------------------------------------
+
+public class PaymentJournal<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentJournal.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final long POLL_MS = 50;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    // 📝 A record that is safe on disk: which segment it lives in, and what it was.
+    public record Entry<T>(long segment, T item) { }
+
+    // ✋ One request waiting for its record to be written.
+    private record Pending<T>(byte[] payload, T item, CompletableFuture<Void> durable) { }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxBatch;
+    private final Consumer<List<Entry<T>>> onDurable;
+
+    // 🚏 Records waiting for the next group commit.
+    private final BlockingQueue<Pending<T>> queue = new LinkedBlockingQueue<>();
+
+    private FileChannel channel;
+    private volatile long activeSegment;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    private Thread writer;
+    private volatile boolean running;
+
+    // "onDurable" is called by the writer thread, in file order, right after each fsync.
+    public PaymentJournal(Path directory, long segmentBytes, int maxBatch, Consumer<List<Entry<T>>> onDurable) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBatch = maxBatch;
+        this.onDurable = onDurable;
+    }
+
+    // ===================================================================================
+    // 🔁 1. READ BACK WHAT IS ALREADY ON DISK (Call once, before start)
+    // ===================================================================================
+    // Returns every complete record of every segment, oldest first.
+    // A torn record at the end of a segment (crash in the middle of a write) is cut off.
+    public List<Entry<byte[]>> recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Entry<byte[]>> records = new ArrayList<>();
+        for (long segment : segments()) {
+            Path file = segmentFile(segment);
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long validEnd = readSegment(in, segment, records);
+                if (validEnd < in.size()) {
+                    logger.warn("Journal segment {} has a torn tail at byte {}, truncating", file.getFileName(), validEnd);
+                    in.truncate(validEnd);
+                    in.force(true);
+                }
+            }
+            activeSegment = segment;
+        }
+        return records;
+    }
+
+    private long readSegment(FileChannel in, long segment, List<Entry<byte[]>> records) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        long position = 0;
+        long size = in.size();
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            in.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            in.read(payload, position + HEADER_BYTES);
+            crc.reset();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            records.add(new Entry<>(segment, payload.array()));
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    // 🟢 OPEN A FRESH SEGMENT AND START THE WRITER
+    // New records never go into an old segment, so recovered segments can be deleted as a whole.
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        openSegment(activeSegment + 1);
+        running = true;
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // ===================================================================================
+    // ✍️ 2. APPEND (Called by request threads)
+    // ===================================================================================
+    // The future completes once the record has been fsync'ed (or fails if the disk said no).
+    public CompletableFuture<Void> append(byte[] payload, T item) {
+        return enqueue(payload, item).durable();
+    }
+
+    // ⏳ APPEND AND WAIT, with a deadline that never gives up on a record that may reach the disk.
+    // Not picked up by the writer within "timeoutMs"? It is taken back out of the queue (so it will
+    // never be written) and TimeoutException is thrown. Once the writer HAS it, only the writer's
+    // answer counts: we wait for the fsync, however long it takes.
+    public void appendAndWait(byte[] payload, T item, long timeoutMs)
+            throws ExecutionException, TimeoutException, InterruptedException {
+        Pending<T> pending = enqueue(payload, item);
+        try {
+            pending.durable().get(timeoutMs, TimeUnit.MILLISECONDS);
+            return;
+        } catch (InterruptedException | TimeoutException e) {
+            if (queue.remove(pending)) {
+                throw e;
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt(); // Keep the flag for the caller; join() ignores it.
+            }
+        }
+        try {
+            pending.durable().join();
+        } catch (CompletionException e) {
+            throw new ExecutionException(e.getCause());
+        }
+    }
+
+    private Pending<T> enqueue(byte[] payload, T item) {
+        Pending<T> pending = new Pending<>(payload, item, new CompletableFuture<>());
+        if (!running) {
+            pending.durable().completeExceptionally(new IllegalStateException("Journal is not running"));
+            return pending;
+        }
+        queue.add(pending);
+        return pending;
+    }
+
+    // ===================================================================================
+    // 🧑‍💻 3. THE WRITER (One thread, one fsync per group)
+    // ===================================================================================
+    private void writeLoop() {
+        List<Pending<T>> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                // No interrupts here: an interrupted FileChannel closes itself in the middle of a write.
+                Pending<T> first = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Pending<T>> batch) {
+        long start;
+        try {
+            start = channel.position();
+        } catch (IOException e) {
+            failAll(batch, e);
+            return;
+        }
+        try {
+            fill(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false); // ⏳ THE ONE FSYNC for the whole group.
+        } catch (IOException e) {
+            failAll(batch, e);
+            undoPartialWrite(start);
+            return;
+        }
+
+        List<Entry<T>> written = new ArrayList<>(batch.size());
+        for (Pending<T> pending : batch) {
+            written.add(new Entry<>(activeSegment, pending.item()));
+        }
+        try {
+            onDurable.accept(written);
+            // Roll over BEFORE the callers hear back, so a release() right after sees the segment closed.
+            if (channel.position() >= segmentBytes) {
+                openSegment(activeSegment + 1);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not roll journal segment: {}", e.getMessage());
+        } finally {
+            batch.forEach(pending -> pending.durable().complete(null));
+        }
+    }
+
+    // 📦 Copy the whole group into one buffer (grown if a group is bigger than the buffer).
+    private void fill(List<Pending<T>> batch) {
+        int needed = 0;
+        for (Pending<T> pending : batch) {
+            needed += HEADER_BYTES + pending.payload().length;
+        }
+        if (buffer.capacity() < needed) {
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(needed) << 1);
+        }
+        buffer.clear();
+        CRC32 crc = new CRC32();
+        for (Pending<T> pending : batch) {
+            crc.reset();
+            crc.update(pending.payload());
+            buffer.putInt(pending.payload().length).putInt((int) crc.getValue()).put(pending.payload());
+        }
+        buffer.flip();
+    }
+
+    // 🧽 A failed write may have left half a group in the file. Cut it off, or (if even that fails)
+    // move on to a new segment, so later records are never hidden behind garbage.
+    private void undoPartialWrite(long start) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException e) {
+            try {
+                openSegment(activeSegment + 1);
+            } catch (IOException again) {
+                logger.error("Journal is unusable: {}", again.getMessage());
+            }
+        }
+    }
+
+    private void failAll(List<Pending<T>> batch, IOException e) {
+        logger.error("Journal write of {} records failed: {}", batch.size(), e.getMessage());
+        UncheckedIOException failure = new UncheckedIOException(e);
+        batch.forEach(pending -> pending.durable().completeExceptionally(failure));
+    }
+
+    private void openSegment(long segment) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(segmentFile(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        syncDirectory();
+        activeSegment = segment;
+    }
+
+    // 📁 fsync'ing a segment saves its bytes, not its NAME: the new directory entry must be
+    // fsync'ed too, or a power cut can make a freshly rolled segment (and its records) vanish.
+    // Some platforms (Windows) cannot open a directory; there the file system takes care of it.
+    private void syncDirectory() throws IOException {
+        FileChannel dir;
+        try {
+            dir = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (dir) {
+            dir.force(true);
+        }
+    }
+
+    // ===================================================================================
+    // 🗑️ 4. RELEASE (Everything before this segment is in the database)
+    // ===================================================================================
+    // Deletes every closed segment older than "segment". Records are drained in file order,
+    // so once a record of segment N is in the database, all of segments 1..N-1 are too.
+    public void release(long segment) {
+        for (long old : segments()) {
+            if (old >= segment || old >= activeSegment) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(segmentFile(old));
+            } catch (IOException e) {
+                logger.warn("Could not delete journal segment {}: {}", old, e.getMessage());
+            }
+        }
+    }
+
+    // 🔴 STOP: write what is still queued, then close the file. New appends are refused.
+    public void close() throws InterruptedException, IOException {
+        running = false;
+        if (writer != null) {
+            writer.join();
+        }
+        // Anyone who slipped in after the writer stopped is told "no".
+        Pending<T> late;
+        while ((late = queue.poll()) != null) {
+            late.durable().completeExceptionally(new IllegalStateException("Journal is closed"));
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    // 🧹 Delete every segment. Only after close(), and only when EVERYTHING is in the database.
+    public void deleteAll() throws IOException {
+        for (long segment : segments()) {
+            Files.deleteIfExists(segmentFile(segment));
+        }
+    }
+
+    // Segment numbers on disk, oldest first.
+    private List<Long> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentFile(long segment) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+    }
+}
@@ -0,0 +1,492 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "SessionFactoryImplementor" gives us Hibernate's OWN id dispenser for transactions,
+// so journaled payments get their final id at once, from the same sequence as everyone else.
+// "JdbcTemplate" drains the journal with plain batched INSERTs (receipts and ticket stubs in one transaction).
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.model.TransactionReversed;
+import com.electrumprep.ledger.repository.PostingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// -----------------------------------------------------------------------------------
+// 📓➡️🗄️ THE DIARY KEEPER (Write-ahead Journal for the payment path)
+// When "ledger.journal.enabled=true", a payment is NOT saved to Postgres while the client waits.
+// Instead:
+// 1. It gets its final id (from the same sequence Hibernate uses).
+// 2. It is written to the local journal (PaymentJournal), together with everybody else's
+//    payments from the same moment, with ONE fsync. Then the client gets its receipt.
+// 3. A background "drainer" copies journaled payments into the "transactions" table
+//    in big batched INSERTs, and deletes journal segments that are fully copied.
+// On startup, anything still in the journal (a crash before it was drained) is replayed.
+// -----------------------------------------------------------------------------------
+
+@Service
+public class PaymentJournalService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentJournalService.class);
+
+    // ✍️ The drain INSERT. Rows already in the table are looked up first and left out (see drain),
+    // so a clash is never silently swallowed by the database.
+    private static final String INSERT_SQL =
+            "INSERT INTO transactions (id, reference, amount, sender_account, receiver_account, currency, status, " +
+            "timestamp, category, idempotency_key) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // 🎫 The ticket stubs of the same batch (see IdempotencyKey), in the same database transaction.
+    // No "ON CONFLICT": if another server claimed a key since we looked, the whole batch rolls back
+    // and the retry sees that server's stub.
+    private static final String KEY_SQL =
+            "INSERT INTO idempotency_keys (idempotency_key, transaction_id, timestamp) VALUES (?, ?, ?)";
+    // ↩️ Status of a journaled payment whose Idempotency-Key turned out to be booked already
+    // (by another server, in the gap before the stub reached the database). Its money goes back.
+    static final String DUPLICATE_STATUS = "REVERSED - Duplicate of transaction ";
+
+    // Version byte at the start of every journal record, so the format can change later.
+    // V1 wrote amount and timestamp as text; V2 writes them as numbers (cents, epoch micros).
+    // Both are read, so a journal left behind by an older build still replays.
+    private static final byte FORMAT_V1 = 1;
+    private static final byte FORMAT_V2 = 2;
+
+    // 🚫 "The journal could not make this payment durable." The payment was NOT accepted.
+    public static class JournalWriteException extends RuntimeException {
+        public JournalWriteException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    // 📦 A payment waiting to be drained. "replayed" = it came from the journal at startup.
+    private record Drainable(long segment, Transaction txn, boolean replayed) { }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final EntityManagerFactory entityManagerFactory;
+    private final PostingEngine postingEngine;
+    private final PostingRepository postingRepository;
+    private final CategoryEnrichmentPipeline enrichmentPipeline;
+    private final ApplicationEventPublisher events;
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int groupCommitSize;
+    private final long ackTimeoutMs;
+    private final int drainBatchSize;
+    private final DistributionSummary drainBatchSizes;
+    private final Counter duplicateCounter;
+
+    // 🚰 Durable payments waiting for their INSERT (in journal order).
+    private final BlockingQueue<Drainable> drainQueue = new LinkedBlockingQueue<>();
+    // A batch the drainer was still retrying when it was stopped (it goes first on shutdown).
+    private final List<Drainable> unfinished = new ArrayList<>();
+    private PaymentJournal<Transaction> journal;
+    private BeforeExecutionGenerator idGenerator;
+    private SessionFactoryImplementor sessionFactory;
+    private Thread drainer;
+    private volatile boolean running;
+
+    public PaymentJournalService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 EntityManagerFactory entityManagerFactory,
+                                 PostingEngine postingEngine,
+                                 PostingRepository postingRepository,
+                                 CategoryEnrichmentPipeline enrichmentPipeline,
+                                 ApplicationEventPublisher events,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${ledger.journal.enabled:false}") boolean enabled,
+                                 @Value("${ledger.journal.directory:journal}") String directory,
+                                 @Value("${ledger.journal.segment-size-mb:64}") long segmentSizeMb,
+                                 @Value("${ledger.journal.group-commit-size:4096}") int groupCommitSize,
+                                 @Value("${ledger.journal.ack-timeout:5s}") Duration ackTimeout,
+                                 @Value("${ledger.journal.drain-batch-size:1000}") int drainBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.entityManagerFactory = entityManagerFactory;
+        this.postingEngine = postingEngine;
+        this.postingRepository = postingRepository;
+        this.enrichmentPipeline = enrichmentPipeline;
+        this.events = events;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentSizeMb * 1024 * 1024;
+        this.groupCommitSize = groupCommitSize;
+        this.ackTimeoutMs = ackTimeout.toMillis();
+        this.drainBatchSize = drainBatchSize;
+        meterRegistry.gauge("ledger.journal.undrained", drainQueue, BlockingQueue::size);
+        this.drainBatchSizes = SwitchMetrics.batchSizeSummary(meterRegistry, "journal_drain");
+        this.duplicateCounter = meterRegistry.counter("ledger.journal.duplicates");
+    }
+
+    // ❓ "Should the Switch write to the journal instead of the database?"
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ===================================================================================
+    // 🟢 STARTUP: replay the old journal, then open a new segment
+    // ===================================================================================
+    // Runs before the web server takes traffic, so leftovers are in the database (where the
+    // Idempotency-Key check can see them) before any retry arrives.
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        idGenerator = (BeforeExecutionGenerator) sessionFactory.getMappingMetamodel()
+                .getEntityDescriptor(Transaction.class).getGenerator();
+
+        journal = new PaymentJournal<>(directory, segmentBytes, groupCommitSize, this::onDurable);
+        List<PaymentJournal.Entry<byte[]>> leftovers = journal.recover();
+        for (PaymentJournal.Entry<byte[]> entry : leftovers) {
+            drainQueue.add(new Drainable(entry.segment(), decode(entry.item()), true));
+        }
+        if (!leftovers.isEmpty()) {
+            logger.info("Replaying {} journaled payments that were not drained before the last stop", leftovers.size());
+            if (!drainUntilEmpty()) {
+                logger.warn("Database unavailable during replay, {} payments stay queued", unfinished.size() + drainQueue.size());
+            }
+        }
+
+        journal.start();
+        running = true;
+        drainer = new Thread(this::drainLoop, "journal-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    // 🔴 SHUTDOWN: stop accepting, copy everything still queued, and clean up the journal.
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (journal == null) {
+            return;
+        }
+        journal.close();
+        running = false;
+        drainer.join(TimeUnit.SECONDS.toMillis(10));
+        if (drainUntilEmpty()) {
+            journal.deleteAll();
+        } else {
+            logger.warn("{} journaled payments not drained, they will be replayed on the next start",
+                    unfinished.size() + drainQueue.size());
+        }
+    }
+
+    // ===================================================================================
+    // ✍️ 1. ACCEPT A PAYMENT (Called by the Switch instead of repository.save)
+    // ===================================================================================
+    // Returns once the payment is fsync'ed in the journal. The database INSERT happens later.
+    // JournalWriteException only ever means "NOT in the journal and never will be": a payment the
+    // writer already took is waited for, past "ack-timeout" if need be (see appendAndWait).
+    public Transaction accept(Transaction txn) {
+        txn.setId(nextId(txn));
+        try {
+            journal.appendAndWait(encode(txn), txn, ackTimeoutMs);
+            return txn;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JournalWriteException("Interrupted while waiting for the journal", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new JournalWriteException("Payment could not be journaled", e);
+        }
+    }
+
+    // 🔢 One id from Hibernate's pooled optimizer (a database trip only once per 50 ids).
+    private Long nextId(Transaction txn) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return (Long) idGenerator.generate((SharedSessionContractImplementor) session, txn, null, EventType.INSERT);
+        }
+    }
+
+    // 📬 Called by the journal writer right after each fsync, in file order.
+    private void onDurable(List<PaymentJournal.Entry<Transaction>> written) {
+        for (PaymentJournal.Entry<Transaction> entry : written) {
+            drainQueue.add(new Drainable(entry.segment(), entry.item(), false));
+        }
+    }
+
+    // ===================================================================================
+    // 🚰 2. THE DRAINER (Journal -> "transactions" table)
+    // ===================================================================================
+    private void drainLoop() {
+        while (running) {
+            try {
+                Drainable first = drainQueue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Drainable> batch = new ArrayList<>(drainBatchSize);
+                batch.add(first);
+                drainQueue.drainTo(batch, drainBatchSize - 1);
+                while (!drain(batch)) {
+                    if (!running) {
+                        unfinished.addAll(batch);
+                        return;
+                    }
+                    Thread.sleep(1000); // The database is down: keep the batch and try again.
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Drains on the calling thread (startup and shutdown). False if the database refused.
+    private boolean drainUntilEmpty() {
+        if (!unfinished.isEmpty()) {
+            if (!drain(unfinished)) {
+                return false;
+            }
+            unfinished.clear();
+        }
+        List<Drainable> batch = new ArrayList<>(drainBatchSize);
+        while (drainQueue.drainTo(batch, drainBatchSize) > 0) {
+            if (!drain(batch)) {
+                unfinished.addAll(batch);
+                return false;
+            }
+            batch.clear();
+        }
+        return true;
+    }
+
+    private boolean drain(List<Drainable> batch) {
+        drainBatchSizes.record(batch.size());
+        Map<Drainable, String> duplicates = new HashMap<>();
+        try {
+            tx.executeWithoutResult(txStatus -> {
+                duplicates.clear();
+                // 🔍 1. Which of these rows are in already, and who holds their keys?
+                Set<Long> stored = storedIds(batch);
+                Map<String, Long> holders = keyHolders(batch);
+                List<Object[]> rows = new ArrayList<>(batch.size());
+                List<Object[]> stubs = new ArrayList<>();
+                for (Drainable item : batch) {
+                    Transaction t = item.txn();
+                    if (stored.contains(t.getId())) {
+                        // Expected for a replay (crash between the INSERT and deleting the segment).
+                        if (!item.replayed()) {
+                            logger.error("Journaled transaction {} clashed with an existing row and was not inserted", t.getId());
+                        }
+                        continue;
+                    }
+                    String status = t.getStatus();
+                    String key = t.getIdempotencyKey();
+                    if (key != null) {
+                        Long holder = holders.putIfAbsent(key, t.getId());
+                        if (holder == null) {
+                            stubs.add(new Object[]{key, t.getId(), t.getTimestamp()});
+                        } else if (!holder.equals(t.getId())) {
+                            // 2. The key was booked by someone else: keep the row for the record, take the money back.
+                            status = DUPLICATE_STATUS + holder;
+                            duplicates.put(item, status);
+                        }
+                    }
+                    rows.add(new Object[]{t.getId(), t.getReference(), t.getAmount(), t.getSenderAccount(),
+                            t.getReceiverAccount(), t.getCurrency(), status, t.getTimestamp(), t.getCategory(), key});
+                }
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                if (!stubs.isEmpty()) {
+                    jdbcTemplate.batchUpdate(KEY_SQL, stubs);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Journal drain of {} payments failed: {}", batch.size(), e.getMessage());
+            return false;
+        }
+        for (Drainable item : batch) {
+            if (duplicates.containsKey(item)) {
+                refund(item, duplicates.get(item));
+                continue;
+            }
+            if (item.replayed()) {
+                repost(item.txn());
+            }
+            if (CategoryEnrichmentPipeline.PENDING.equals(item.txn().getCategory())) {
+                enrichmentPipeline.submit(item.txn());
+            }
+        }
+        // Everything before the LAST drained record's segment is now in the database.
+        journal.release(batch.get(batch.size() - 1).segment());
+        return true;
+    }
+
+    private Set<Long> storedIds(List<Drainable> batch) {
+        List<Object> ids = batch.stream().map(item -> (Object) item.txn().getId()).toList();
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM transactions WHERE id IN (" + placeholders(ids.size()) + ")", Long.class, ids.toArray()));
+    }
+
+    private Map<String, Long> keyHolders(List<Drainable> batch) {
+        List<Object> keys = batch.stream().map(item -> item.txn().getIdempotencyKey())
+                .filter(Objects::nonNull).distinct().map(key -> (Object) key).toList();
+        Map<String, Long> holders = new HashMap<>();
+        if (!keys.isEmpty()) {
+            jdbcTemplate.query("SELECT idempotency_key, transaction_id FROM idempotency_keys WHERE idempotency_key IN ("
+                            + placeholders(keys.size()) + ")",
+                    rs -> { holders.put(rs.getString(1), rs.getLong(2)); }, keys.toArray());
+        }
+        return holders;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    // ↩️ A duplicate's postings were recorded when it was accepted (or not at all, for a replay
+    // that never got that far): write the opposite lines only if the originals exist.
+    // 📣 This run announced it as booked, so the in-memory views (spend rollups, read model, risk
+    // windows) are told to count it out again. A replayed one was announced by the previous run:
+    // the startup rebuilds read the stored REVERSED row and leave it out.
+    private void refund(Drainable item, String status) {
+        Transaction txn = item.txn();
+        duplicateCounter.increment();
+        logger.error("Journaled transaction {} reused Idempotency-Key '{}' of another booking and was reversed",
+                txn.getId(), txn.getIdempotencyKey());
+        if (!item.replayed()) {
+            events.publishEvent(new TransactionReversed(txn, status));
+        }
+        if (item.replayed() && !postingRepository.existsByTransactionId(txn.getId())) {
+            return;
+        }
+        postingEngine.refund(txn.getSenderAccount(), txn.getReceiverAccount(), txn.getAmount(), txn.getId());
+    }
+
+    // 📒 A replayed payment whose postings never reached the database moves the money again.
+    private void repost(Transaction txn) {
+        if (postingRepository.existsByTransactionId(txn.getId())) {
+            return;
+        }
+        try {
+            postingEngine.record(postingEngine.post(txn.getSenderAccount(), txn.getReceiverAccount(), txn.getAmount()),
+                    txn.getId());
+        } catch (IllegalArgumentException e) {
+            logger.error("Could not re-post replayed transaction {}: {}", txn.getId(), e.getMessage());
+        }
+    }
+
+    // ===================================================================================
+    // 🧬 RECORD FORMAT (Compact binary, written and read in the same field order)
+    // ===================================================================================
+    // No BigDecimal or LocalDateTime is turned into text and parsed back: the amount is
+    // written as cents, the currency as its ISO number and the timestamp as epoch micros.
+    static byte[] encode(Transaction txn) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_V2);
+            out.writeLong(txn.getId());
+            writeNullable(out, txn.getReference());
+            out.writeBoolean(txn.getAmount() != null);
+            if (txn.getAmount() != null) {
+                out.writeLong(PostingEngine.toCents(txn.getAmount()));
+            }
+            writeNullable(out, txn.getSenderAccount());
+            writeNullable(out, txn.getReceiverAccount());
+            out.writeShort(CompactPayments.currencyCode(txn.getCurrency()));
+            writeNullable(out, txn.getStatus());
+            out.writeLong(CompactPayments.toEpochMicros(txn.getTimestamp()));
+            writeNullable(out, txn.getCategory());
+            writeNullable(out, txn.getIdempotencyKey());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Transaction decode(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            byte format = in.readByte();
+            if (format == FORMAT_V1) {
+                return decodeV1(in);
+            }
+            if (format != FORMAT_V2) {
+                throw new IllegalStateException("Unknown journal record format " + format);
+            }
+            Transaction txn = new Transaction();
+            txn.setId(in.readLong());
+            txn.setReference(readNullable(in));
+            txn.setAmount(in.readBoolean() ? PostingEngine.toMoney(in.readLong()) : null);
+            txn.setSenderAccount(readNullable(in));
+            txn.setReceiverAccount(readNullable(in));
+            txn.setCurrency(CompactPayments.currency(in.readShort()));
+            txn.setStatus(readNullable(in));
+            long timestamp = in.readLong();
+            txn.setTimestamp(timestamp == Long.MIN_VALUE ? null : CompactPayments.fromEpochMicros(timestamp));
+            txn.setCategory(readNullable(in));
+            txn.setIdempotencyKey(readNullable(in));
+            return txn;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Transaction decodeV1(DataInputStream in) throws IOException {
+        Transaction txn = new Transaction();
+        txn.setId(in.readLong());
+        txn.setReference(readNullable(in));
+        String amount = readNullable(in);
+        txn.setAmount(amount == null ? null : new BigDecimal(amount));
+        txn.setSenderAccount(readNullable(in));
+        txn.setReceiverAccount(readNullable(in));
+        txn.setCurrency(readNullable(in));
+        txn.setStatus(readNullable(in));
+        String timestamp = readNullable(in);
+        txn.setTimestamp(timestamp == null ? null : LocalDateTime.parse(timestamp));
+        txn.setCategory(readNullable(in));
+        txn.setIdempotencyKey(readNullable(in));
+        return txn;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
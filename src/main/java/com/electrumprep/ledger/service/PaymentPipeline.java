@@ -0,0 +1,210 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "LockSupport" lets the partition thread take a nap when its carousel is empty,
+// and lets a writer wake it up again (no locks, no condition variables).
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// -----------------------------------------------------------------------------------
+// 🛤️ THE SORTING LANES (Partitioned payment pipeline)
+// Without this, a payment runs on whatever web thread picked it up. Two payments from the
+// SAME account can run at the same time, and fight over the same balance.
+// With "ledger.pipeline.enabled=true":
+// - There are N lanes (partitions), each with ONE worker thread and its own carousel
+//   (MpscRingBuffer).
+// - Every payment goes to lane hash(senderAccount) % N. So all payments of one sender
+//   are handled one after the other, in arrival order, by the same thread.
+// - Different senders spread over the lanes, so more CPU cores = more lanes = more payments.
+// Only the short, CPU-only step (checks, routing, debit/credit) runs in the lane.
+// Slow work (Gemini, the database) stays on the caller's thread, so a lane never waits on I/O.
+// -----------------------------------------------------------------------------------
+
+@Service
+public class PaymentPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentPipeline.class);
+
+    // How many empty polls a lane spins through before it takes a nap.
+    private static final int SPINS_BEFORE_PARK = 100;
+
+    // 🚫 "All lanes are jammed." The payment was NOT processed; the client may retry.
+    public static class PipelineFullException extends RuntimeException {
+        public PipelineFullException(String message) {
+            super(message);
+        }
+    }
+
+    // 📦 One job on the carousel: the work, where to put the answer, and when it arrived.
+    private record Job<T>(Supplier<T> work, CompletableFuture<T> result, long enqueuedAt) { }
+
+    // 🛤️ ONE LANE: its carousel, its worker, and its stopwatch.
+    private final class Partition implements Runnable {
+        final MpscRingBuffer<Job<?>> ring;
+        final Timer latency;
+        volatile Thread worker;
+        volatile boolean sleeping;
+
+        Partition(int index, MeterRegistry meterRegistry) {
+            this.ring = new MpscRingBuffer<>(ringSize);
+            String partition = String.valueOf(index);
+            Gauge.builder("ledger.pipeline.queue.depth", ring, MpscRingBuffer::size)
+                    .tag("partition", partition)
+                    .register(meterRegistry);
+            this.latency = Timer.builder("ledger.pipeline.latency")
+                    .description("Time from entering the lane until the lane finished the job")
+                    .tag("partition", partition)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+        }
+
+        boolean offer(Job<?> job) {
+            if (!ring.offer(job)) {
+                return false;
+            }
+            // 🔔 Wake the worker if it is napping. (It re-checks the carousel after saying it
+            // will nap, so either it sees our job, or we see "sleeping" and wake it.)
+            if (sleeping) {
+                LockSupport.unpark(worker);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (running || ring.size() > 0) {
+                Job<?> job = ring.poll();
+                if (job != null) {
+                    idle = 0;
+                    execute(job);
+                    latency.record(System.nanoTime() - job.enqueuedAt(), TimeUnit.NANOSECONDS);
+                } else if (++idle < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    sleeping = true;
+                    if (ring.size() == 0 && running) {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                    }
+                    sleeping = false;
+                }
+            }
+        }
+
+        private <T> void execute(Job<T> job) {
+            try {
+                job.result().complete(job.work().get());
+            } catch (Throwable e) {
+                job.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final boolean enabled;
+    private final int ringSize;
+    private final long offerTimeoutNanos;
+
+    private final Partition[] partitions;
+    private volatile boolean running;
+
+    public PaymentPipeline(MeterRegistry meterRegistry,
+                           @Value("${ledger.pipeline.enabled:false}") boolean enabled,
+                           @Value("${ledger.pipeline.partitions:0}") int partitions,
+                           @Value("${ledger.pipeline.ring-size:1024}") int ringSize,
+                           @Value("${ledger.pipeline.offer-timeout:1s}") Duration offerTimeout) {
+        this.enabled = enabled;
+        this.ringSize = ringSize;
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        // 0 = one lane per CPU core.
+        int count = partitions > 0 ? partitions : Runtime.getRuntime().availableProcessors();
+        this.partitions = new Partition[enabled ? count : 0];
+        for (int i = 0; i < this.partitions.length; i++) {
+            this.partitions[i] = new Partition(i, meterRegistry);
+        }
+    }
+
+    // ❓ "Should the Switch send payments through the lanes?"
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 🟢 START ONE WORKER PER LANE
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < partitions.length; i++) {
+            Thread worker = new Thread(partitions[i], "payment-lane-" + i);
+            worker.setDaemon(true);
+            partitions[i].worker = worker;
+            worker.start();
+        }
+        if (partitions.length > 0) {
+            logger.info("Payment pipeline started with {} lanes of {} slots", partitions.length, partitions[0].ring.capacity());
+        }
+    }
+
+    // 🔴 FINISH WHAT IS ON THE CAROUSELS, THEN STOP
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Partition partition : partitions) {
+            if (partition.worker != null) {
+                LockSupport.unpark(partition.worker);
+                partition.worker.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        }
+    }
+
+    // ===================================================================================
+    // 🛤️ RUN "work" IN THE LANE OF "key" (and wait for its answer)
+    // ===================================================================================
+    // Jobs with the same key always run one at a time, in the order they were handed in.
+    // Exceptions thrown by the work are thrown here, unchanged.
+    public <T> T execute(String key, Supplier<T> work) {
+        Partition partition = partitions[partitionOf(key)];
+        Job<T> job = new Job<>(work, new CompletableFuture<>(), System.nanoTime());
+
+        // 🧱 BACKPRESSURE: a full lane makes the caller wait a little, then gives up.
+        long deadline = job.enqueuedAt() + offerTimeoutNanos;
+        while (!partition.offer(job)) {
+            if (!running || System.nanoTime() > deadline) {
+                throw new PipelineFullException("Payment lane " + partitionOf(key) + " is full");
+            }
+            LockSupport.parkNanos(50_000);
+        }
+
+        try {
+            return job.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    // 🎯 Which lane? (spread the hash bits, then a cheap non-negative modulo)
+    int partitionOf(String key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, partitions.length);
+    }
+}
@@ -0,0 +1,95 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "MeterRegistry" is the scoreboard that /actuator/metrics reads from.
+import com.electrumprep.ledger.model.MerchantCategory;
+import com.electrumprep.ledger.repository.MerchantCategoryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// -----------------------------------------------------------------------------------
+// 🗄️ THE LONG-TERM MEMORY (Second Cache Tier)
+// The RAM cache (tier 1) is fast but forgets everything on restart.
+// This tier keeps every learned "merchant -> category" card in the database,
+// so a freshly started server asks the filing cabinet before it asks Google.
+// -----------------------------------------------------------------------------------
+
+@Component
+public class PersistentCategoryTier {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistentCategoryTier.class);
+
+    private final MerchantCategoryRepository repository;
+    private final boolean enabled;
+    private final Duration ttl;
+
+    // 📊 THE SCOREBOARD
+    // How often the filing cabinet saved us a trip to Google.
+    private final Counter hits;
+    private final Counter misses;
+
+    public PersistentCategoryTier(MerchantCategoryRepository repository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${ledger.category-cache.persistent:true}") boolean enabled,
+                                  @Value("${ledger.category-cache.ttl:24h}") Duration ttl) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.hits = meterRegistry.counter("ledger.category.cache.persistent", "result", "hit");
+        this.misses = meterRegistry.counter("ledger.category.cache.persistent", "result", "miss");
+    }
+
+    // 🔎 "Do we have a (fresh) card for this merchant?"
+    // Returns null on a miss, on an expired card, or if the database is unreachable.
+    public String lookup(String merchantKey) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            MerchantCategory card = repository.findById(merchantKey).orElse(null);
+            if (card != null && card.getUpdatedAt() != null
+                    && card.getUpdatedAt().isAfter(LocalDateTime.now().minus(ttl))) {
+                hits.increment();
+                return card.getCategory();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Category tier-2 lookup failed for '{}': {}", merchantKey, e.getMessage());
+        }
+        misses.increment();
+        return null;
+    }
+
+    // ✍️ "Write a new card." (Never fails the payment: it's only a cache.)
+    public void remember(String merchantKey, String category) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            repository.save(new MerchantCategory(merchantKey, category, LocalDateTime.now()));
+        } catch (RuntimeException e) {
+            logger.warn("Category tier-2 write failed for '{}': {}", merchantKey, e.getMessage());
+        }
+    }
+
+    // 🔥 "What are the newest (still fresh) cards?" Used to warm the RAM cache after a restart.
+    public List<MerchantCategory> freshest(int limit) {
+        if (!enabled || limit <= 0) {
+            return List.of();
+        }
+        try {
+            return repository.findByUpdatedAtAfterOrderByUpdatedAtDesc(LocalDateTime.now().minus(ttl), PageRequest.of(0, limit));
+        } catch (RuntimeException e) {
+            logger.warn("Category tier-2 warm-up read failed: {}", e.getMessage());
+            return List.of();
+        }
+    }
+}
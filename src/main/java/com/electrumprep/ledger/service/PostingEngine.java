@@ -0,0 +1,462 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "AtomicReference" holds one account's balance; it is changed with compare-and-set, no lock.
+// "BlockingQueue" is the out-tray: finished postings wait there until the next database trip.
+// It has a fixed size, so a slow database makes payments wait instead of filling the heap.
+import com.electrumprep.ledger.model.Account;
+import com.electrumprep.ledger.model.AccountBalance;
+import com.electrumprep.ledger.model.Posting;
+import com.electrumprep.ledger.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+// -----------------------------------------------------------------------------------
+// 📒 THE POSTING ENGINE (Double-entry balances in RAM)
+// Every payment moves money from one account to another:
+// - DEBIT the sender  (balance goes down)
+// - CREDIT the receiver (balance goes up, by exactly the same amount)
+// The live balances are kept in memory as whole cents (a "long"), so the
+// "does the sender have enough money?" check costs microseconds, not a database trip.
+// The database is updated in the background, in batches (see LedgerStore).
+// 🩹 After a crash, payments saved without their postings move their money again at startup.
+//
+// ⚛️ NO LOCKS: each account card changes its balance and version in ONE compare-and-set.
+// A payment debits the sender (the funds check is part of that step), then credits the
+// receiver. So the few pool accounts that EVERY payment credits (e.g. INV-POOL-888) never
+// make a payment lane wait for a lock; at worst a compare-and-set is tried again.
+// The books add up once each move is done (a balance read in between may see money in flight).
+// -----------------------------------------------------------------------------------
+
+@Service
+public class PostingEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostingEngine.class);
+
+    // 🚫 "Not enough money." It IS an IllegalArgumentException, so both payment lanes
+    // already treat it like any other refused payment (e.g. a REJECTED line in a bulk upload).
+    public static class InsufficientFundsException extends IllegalArgumentException {
+        public InsufficientFundsException(String accountNumber) {
+            super("Insufficient funds in account " + accountNumber);
+        }
+    }
+
+    // 🧾 THE CARBON COPY of one payment, handed back to the caller.
+    // It is needed later to either write the postings (record) or undo them (reverse).
+    public record Entry(String debitAccount, String creditAccount, long cents,
+                       LedgerStore.BalanceSnapshot debitSnapshot, LedgerStore.BalanceSnapshot creditSnapshot) { }
+
+    // 📨 One item in the out-tray: posting lines (may be empty) and the balances after them.
+    // "entry" is the move behind the lines (null when there are none), so a parked item can be undone.
+    private record Outgoing(Entry entry, List<Posting> postings, List<LedgerStore.BalanceSnapshot> snapshots) { }
+
+    // 📏 One account's balance, and how many changes led to it. Never changed in place.
+    private record Level(long cents, long version) { }
+
+    // 💳 THE LIVE CARD of one account.
+    private static final class AccountState {
+        final String accountNumber;
+        final long overdraftCents;
+        final boolean unlimited;   // The funding account may go as negative as it likes.
+        final AtomicReference<Level> level;
+
+        AccountState(String accountNumber, long balanceCents, long overdraftCents, long version, boolean unlimited) {
+            this.accountNumber = accountNumber;
+            this.overdraftCents = overdraftCents;
+            this.unlimited = unlimited;
+            this.level = new AtomicReference<>(new Level(balanceCents, version));
+        }
+
+        // ➕➖ Add "cents" (negative = debit) and hand back the balance after it.
+        // Refused (and nothing changed) if the funds check is on and a debit would pass the overdraft.
+        LedgerStore.BalanceSnapshot add(long cents, boolean enforceFunds) {
+            while (true) {
+                Level before = level.get();
+                long balance = Math.addExact(before.cents(), cents);
+                if (enforceFunds && cents < 0 && !unlimited && balance < -overdraftCents) {
+                    throw new InsufficientFundsException(accountNumber);
+                }
+                Level after = new Level(balance, before.version() + 1);
+                if (level.compareAndSet(before, after)) {
+                    return new LedgerStore.BalanceSnapshot(accountNumber, toMoney(balance), toMoney(overdraftCents), after.version());
+                }
+            }
+        }
+    }
+
+    private final LedgerStore store;
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final String fundingAccount;
+    private final boolean checkFunds;
+    private final long flushIntervalMs;
+    private final int flushBatchSize;
+    private final int maxAttempts;
+    private final Duration repostWindow;
+
+    // 🗂️ THE CARD BOX (every account we have touched since startup)
+    private final Map<String, AccountState> accounts = new ConcurrentHashMap<>();
+
+    // 📤 THE OUT-TRAY and the clerk that carries it to the database.
+    private final BlockingQueue<Outgoing> outbox;
+    private final List<Outgoing> retrying = new ArrayList<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final DistributionSummary flushBatchSizes;
+    private final Counter parked;
+    private int failures;   // Failed trips in a row (only touched under flushLock).
+    private Thread flusher;
+    private volatile boolean running;
+
+    public PostingEngine(LedgerStore store,
+                         MeterRegistry meterRegistry,
+                         @Value("${ledger.posting.funding-account:CASH-IN}") String fundingAccount,
+                         @Value("${ledger.posting.check-funds:false}") boolean checkFunds,
+                         @Value("${ledger.posting.flush-interval:200ms}") Duration flushInterval,
+                         @Value("${ledger.posting.flush-batch-size:1000}") int flushBatchSize,
+                         @Value("${ledger.posting.outbox-capacity:100000}") int outboxCapacity,
+                         @Value("${ledger.posting.max-attempts:5}") int maxAttempts,
+                         @Value("${ledger.posting.repost-window:24h}") Duration repostWindow) {
+        this.store = store;
+        this.fundingAccount = fundingAccount;
+        this.checkFunds = checkFunds;
+        this.flushIntervalMs = flushInterval.toMillis();
+        this.flushBatchSize = flushBatchSize;
+        this.maxAttempts = maxAttempts;
+        this.repostWindow = repostWindow;
+        this.outbox = new LinkedBlockingQueue<>(outboxCapacity);
+        meterRegistry.gauge("ledger.posting.outbox.size", outbox, BlockingQueue::size);
+        this.flushBatchSizes = SwitchMetrics.batchSizeSummary(meterRegistry, "postings");
+        this.parked = Counter.builder("ledger.posting.parked")
+                .description("Out-tray items the database refused on their own, taken out and undone")
+                .register(meterRegistry);
+    }
+
+    public String getFundingAccount() {
+        return fundingAccount;
+    }
+
+    // 🟢 START THE CLERK (after putting back what the last crash lost)
+    @PostConstruct
+    public void start() {
+        repostUnrecorded();
+        running = true;
+        flusher = new Thread(this::flushLoop, "ledger-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // 🔴 LAST TRIP BEFORE CLOSING (nothing in the out-tray is left behind)
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        while (flush() && hasWaiting()) {
+            // Keep carrying until the tray is empty (or the database refuses).
+        }
+    }
+
+    private boolean hasWaiting() {
+        flushLock.lock();
+        try {
+            return !outbox.isEmpty() || !retrying.isEmpty();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // 🩹 A payment whose row was saved while its postings were still in the out-tray moves the
+    // money again, like a replayed journal payment (see PaymentJournalService.repost).
+    // Never refused for funds: the payment was already booked.
+    private void repostUnrecorded() {
+        List<Transaction> lost = store.unposted(LocalDateTime.now().minus(repostWindow));
+        for (Transaction txn : lost) {
+            try {
+                record(move(txn.getSenderAccount(), txn.getReceiverAccount(), toCents(txn.getAmount()), false), txn.getId());
+            } catch (IllegalArgumentException e) {
+                logger.error("Could not re-post transaction {}: {}", txn.getId(), e.getMessage());
+            }
+        }
+        if (!lost.isEmpty()) {
+            logger.warn("Re-posted {} transactions that had no postings after a restart", lost.size());
+            flush();
+        }
+    }
+
+    // ===================================================================================
+    // ✍️ 1. POST A PAYMENT (Debit one account, credit the other, atomically)
+    // ===================================================================================
+    // Throws IllegalArgumentException for a bad amount, InsufficientFundsException when
+    // the funds check is on and the sender would go past their overdraft.
+    // Nothing is written yet: call record() after the payment is saved, or reverse() if it wasn't.
+    public Entry post(String debitAccount, String creditAccount, BigDecimal amount) {
+        long cents = toCents(amount);
+        if (cents < 0) {
+            throw new IllegalArgumentException("Posting amount cannot be negative");
+        }
+        if (debitAccount.equals(creditAccount)) {
+            throw new IllegalArgumentException("Cannot post from account " + debitAccount + " to itself");
+        }
+        return move(debitAccount, creditAccount, cents, checkFunds);
+    }
+
+    // 🔀 The actual move: debit first (it may be refused), then credit.
+    private Entry move(String debitAccount, String creditAccount, long cents, boolean enforceFunds) {
+        // Fetch both cards first (a first visit may need the database, see preload).
+        AccountState debit = state(debitAccount, null);
+        AccountState credit = state(creditAccount, null);
+
+        // 💸 THE FUNDS CHECK is part of the debit: balance - amount may not go below -overdraft.
+        LedgerStore.BalanceSnapshot debited = debit.add(Math.negateExact(cents), enforceFunds);
+        LedgerStore.BalanceSnapshot credited;
+        try {
+            credited = credit.add(cents, false);
+        } catch (ArithmeticException e) {
+            debit.add(cents, false);
+            throw e;
+        }
+        return new Entry(debitAccount, creditAccount, cents, debited, credited);
+    }
+
+    // 🗂️ FETCH THE CARDS NOW (e.g. on the web thread, before a payment enters its lane),
+    // so the posting itself never has to wait for the database.
+    public void preload(String... accountNumbers) {
+        for (String accountNumber : accountNumbers) {
+            state(accountNumber, null);
+        }
+    }
+
+    // ===================================================================================
+    // 📤 2. RECORD IT (The payment was saved: queue its two lines for the database)
+    // ===================================================================================
+    // "transactionId" is null for deposits (they have no Transaction row).
+    public void record(Entry entry, Long transactionId) {
+        if (entry == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BigDecimal amount = toMoney(entry.cents());
+        List<Posting> lines = List.of(
+                new Posting(null, transactionId, entry.debitAccount(), amount.negate(), now),
+                new Posting(null, transactionId, entry.creditAccount(), amount, now));
+        enqueue(new Outgoing(entry, lines, List.of(entry.debitSnapshot(), entry.creditSnapshot())));
+    }
+
+    // ===================================================================================
+    // ↩️ 3. REVERSE IT (The payment could NOT be saved: put the money back)
+    // ===================================================================================
+    // No posting lines are written (the payment never happened), only the corrected balances.
+    public void reverse(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        // Never refused: the money is only going back where it came from.
+        Entry undo = move(entry.creditAccount(), entry.debitAccount(), entry.cents(), false);
+        enqueue(new Outgoing(null, List.of(), List.of(undo.debitSnapshot(), undo.creditSnapshot())));
+    }
+
+    // ↩️ 3b. TAKE BACK A BOOKED PAYMENT (its lines may already be written): the opposite two lines,
+    // for the same transaction, so its postings add up to zero. Never refused.
+    public void refund(String debitAccount, String creditAccount, BigDecimal amount, Long transactionId) {
+        record(move(creditAccount, debitAccount, toCents(amount), false), transactionId);
+    }
+
+    // 🔎 "What is the balance of INV-POOL-888?" Empty if we have never heard of the account.
+    public Optional<AccountBalance> balance(String accountNumber) {
+        AccountState state = accounts.get(accountNumber);
+        if (state == null) {
+            Account card = store.load(accountNumber);
+            if (card == null) {
+                return Optional.empty();
+            }
+            state = state(accountNumber, card);
+        }
+        return Optional.of(new AccountBalance(accountNumber, toMoney(state.level.get().cents()), toMoney(state.overdraftCents)));
+    }
+
+    // ===================================================================================
+    // 🗂️ THE CARD BOX
+    // ===================================================================================
+    // First visit: read the card from the database (or start a new one at 0).
+    // Two threads may load the same card at once; putIfAbsent keeps only the first one.
+    private AccountState state(String accountNumber, Account alreadyLoaded) {
+        AccountState state = accounts.get(accountNumber);
+        if (state != null) {
+            return state;
+        }
+        boolean unlimited = fundingAccount.equals(accountNumber);
+        Account card = alreadyLoaded != null ? alreadyLoaded : store.load(accountNumber);
+        AccountState loaded = card == null
+                ? new AccountState(accountNumber, 0L, 0L, 0L, unlimited)
+                : new AccountState(accountNumber, toCents(card.getBalance()), toCents(card.getOverdraftLimit()),
+                card.getPostingVersion(), unlimited);
+        AccountState raced = accounts.putIfAbsent(accountNumber, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    // 🧱 BACKPRESSURE: a full out-tray makes the caller wait until the clerk has made room.
+    // (Never dropped: the balance in RAM has already changed.)
+    private void enqueue(Outgoing item) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                outbox.put(item);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ===================================================================================
+    // 🚚 THE CLERK (Background flusher)
+    // ===================================================================================
+    // Every "flush-interval" (or as soon as "flush-batch-size" items are waiting),
+    // everything in the out-tray goes to the database in ONE transaction.
+    private void flushLoop() {
+        while (running) {
+            try {
+                Outgoing first = outbox.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    flushLock.lock();
+                    try {
+                        retrying.add(first);
+                    } finally {
+                        flushLock.unlock();
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 💾 Write what is waiting. If the database says no, the items stay for the next trip.
+    // After "max-attempts" failed trips in a row, the items are tried one by one (see isolate).
+    // Returns false only when the write failed.
+    boolean flush() {
+        flushLock.lock();
+        try {
+            outbox.drainTo(retrying, Math.max(0, flushBatchSize - retrying.size()));
+            if (retrying.isEmpty()) {
+                return true;
+            }
+            List<Posting> lines = new ArrayList<>();
+            Map<String, LedgerStore.BalanceSnapshot> latest = new HashMap<>();
+            for (Outgoing item : retrying) {
+                lines.addAll(item.postings());
+                for (LedgerStore.BalanceSnapshot snapshot : item.snapshots()) {
+                    // Only the newest balance of each account matters.
+                    latest.merge(snapshot.accountNumber(), snapshot,
+                            (a, b) -> a.version() >= b.version() ? a : b);
+                }
+            }
+            flushBatchSizes.record(lines.size());
+            try {
+                store.write(lines, latest.values());
+                retrying.clear();
+                failures = 0;
+                return true;
+            } catch (RuntimeException e) {
+                logger.warn("Ledger flush of {} postings failed, will retry: {}", lines.size(), e.getMessage());
+                if (++failures < maxAttempts) {
+                    return false;
+                }
+                return isolate();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // ☣️ FIND THE POISON: write each waiting item on its own.
+    // If at least one goes through, the database is up, so the ones it refused are bad items:
+    // they are logged, counted (ledger.posting.parked), and their money is moved back, so the
+    // payment has no postings at all and is re-posted at the next startup.
+    // If none goes through, the database is down: everything stays for the next trip.
+    private boolean isolate() {
+        List<Outgoing> refused = new ArrayList<>();
+        List<RuntimeException> reasons = new ArrayList<>();
+        for (Outgoing item : retrying) {
+            try {
+                store.write(item.postings(), item.snapshots());
+            } catch (RuntimeException e) {
+                refused.add(item);
+                reasons.add(e);
+            }
+        }
+        boolean databaseUp = refused.size() < retrying.size();
+        retrying.clear();
+        if (!databaseUp) {
+            retrying.addAll(refused);
+            return false;
+        }
+        failures = 0;
+        for (int i = 0; i < refused.size(); i++) {
+            park(refused.get(i), reasons.get(i));
+        }
+        return true;
+    }
+
+    private void park(Outgoing item, RuntimeException reason) {
+        parked.increment();
+        Entry entry = item.entry();
+        if (entry == null) {
+            logger.error("Parked {} balance updates the database refused: {}", item.snapshots().size(), reason.getMessage());
+            return;
+        }
+        Long transactionId = item.postings().get(0).getTransactionId();
+        logger.error("Parked the postings of transaction {} ({} -> {}, {} cents), moving the money back: {}",
+                transactionId, entry.debitAccount(), entry.creditAccount(), entry.cents(), reason.getMessage());
+        // Straight into this trip's pile: the clerk must never wait on its own full out-tray.
+        Entry undo = move(entry.creditAccount(), entry.debitAccount(), entry.cents(), false);
+        retrying.add(new Outgoing(null, List.of(), List.of(undo.debitSnapshot(), undo.creditSnapshot())));
+    }
+
+    // 🪙 MONEY <-> CENTS
+    // More than 2 decimals (e.g. R10.005) is refused instead of silently rounded.
+    static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount is required");
+        }
+        try {
+            return amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must have at most 2 decimals: " + amount);
+        }
+    }
+
+    static BigDecimal toMoney(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,471 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "ReentrantLock" is a door lock. Accounts are spread over many of them (shards), so two
+// different senders almost never wait for each other.
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.model.TransactionReversed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.concurrent.locks.ReentrantLock;
+
+// -----------------------------------------------------------------------------------
+// 🕵️ THE RISK DESK (Pre-authorization velocity and fraud scoring)
+// Before a payment is routed, the risk desk looks at the SENDER's recent behaviour:
+// 1. 🚦 VELOCITY: how many payments, and how much money, in the last minute / hour / 24 hours?
+//    Over a limit = DECLINE.
+// 2. 📈 UNUSUAL AMOUNT: how far is this amount from what this sender usually pays
+//    (rolling mean and standard deviation)? Far = REVIEW, very far = DECLINE.
+// 3. 🚫 DENYLIST: senders (or requested receivers) starting with a blocked prefix = DECLINE.
+// The answer is a score (0-100) and a decision, in about a microsecond:
+// - Windows are small ring arrays of buckets (count + cents per bucket), NOT lists of timestamps,
+//   so a busy sender costs the same memory as a quiet one.
+// - Accounts are sharded over N locks; one check touches one shard.
+// A payment that passes HOLDS its place in the velocity windows (so two payments racing for the
+// last slot cannot both get it). Once it is booked, its amount is learned into the usual-amount
+// profile; if it never gets booked (no money, save failed), the hold is released again.
+// The bulk lane skips velocity: an upload is many payments on purpose.
+// On startup the windows are rebuilt from the last 24 hours of the "transactions" table.
+// -----------------------------------------------------------------------------------
+
+@Service
+// The journal replays its leftovers into the database first, so the rebuild sees them.
+@DependsOn("paymentJournalService")
+public class RiskEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskEngine.class);
+
+    private static final String REBUILD_SQL =
+            "SELECT sender_account, amount, timestamp FROM transactions WHERE timestamp >= ? " +
+            "AND (status IS NULL OR status NOT LIKE '" + PaymentJournalService.DUPLICATE_STATUS + "%') ORDER BY timestamp, id";
+
+    // Every this many checks, a shard forgets senders that were quiet for longer than the day window.
+    private static final int SWEEP_EVERY = 4096;
+
+    // The bulk lane checks no velocity window at all.
+    private static final Window[] NO_WINDOWS = {};
+
+    // ✅ / 🔎 / 🛑
+    public enum Decision { APPROVE, REVIEW, DECLINE }
+
+    // 🧾 THE VERDICT: score 0-100 (100 = a hard rule was broken), the decision, and why.
+    // "amountCents" / "atMillis" say which amount was checked when, and "held" whether it sits in the
+    // velocity windows yet; booked() and release() need them.
+    public record Assessment(int score, Decision decision, String reason, long amountCents, long atMillis, boolean held) {
+        static final Assessment OFF = new Assessment(0, Decision.APPROVE, null, 0, 0, false);
+
+        static Assessment decline(String reason) {
+            return new Assessment(100, Decision.DECLINE, reason, 0, 0, false);
+        }
+    }
+
+    // ⏱️ THE THREE WINDOWS (span, number of buckets)
+    enum Window {
+        MINUTE(TimeUnit.MINUTES.toMillis(1), 12, "minute"),
+        HOUR(TimeUnit.HOURS.toMillis(1), 12, "hour"),
+        DAY(TimeUnit.DAYS.toMillis(1), 24, "24 hours");
+
+        final long bucketMillis;
+        final int buckets;
+        final String label;
+
+        Window(long spanMillis, int buckets, String label) {
+            this.bucketMillis = spanMillis / buckets;
+            this.buckets = buckets;
+            this.label = label;
+        }
+    }
+
+    // 🎡 ONE SLIDING WINDOW: a ring of buckets. A bucket remembers WHICH time slice it holds,
+    // so a stale bucket is simply reset when the ring comes round to it again.
+    static final class SlidingWindow {
+        private final Window window;
+        private final long[] slice;
+        private final int[] counts;
+        private final long[] cents;
+
+        SlidingWindow(Window window) {
+            this.window = window;
+            this.slice = new long[window.buckets];
+            this.counts = new int[window.buckets];
+            this.cents = new long[window.buckets];
+            Arrays.fill(slice, Long.MIN_VALUE);
+        }
+
+        void add(long nowMillis, long amountCents) {
+            long current = nowMillis / window.bucketMillis;
+            int i = (int) Math.floorMod(current, (long) window.buckets);
+            if (slice[i] != current) {
+                slice[i] = current;
+                counts[i] = 0;
+                cents[i] = 0;
+            }
+            counts[i]++;
+            cents[i] += amountCents;
+        }
+
+        // Take back an add(), if its bucket still holds the same time slice (an older one has left the window anyway).
+        void remove(long atMillis, long amountCents) {
+            long slot = atMillis / window.bucketMillis;
+            int i = (int) Math.floorMod(slot, (long) window.buckets);
+            if (slice[i] == slot) {
+                counts[i]--;
+                cents[i] -= amountCents;
+            }
+        }
+
+        // Payments in the buckets that are still inside the window.
+        int count(long nowMillis) {
+            long oldest = nowMillis / window.bucketMillis - window.buckets;
+            int total = 0;
+            for (int i = 0; i < window.buckets; i++) {
+                if (slice[i] > oldest) {
+                    total += counts[i];
+                }
+            }
+            return total;
+        }
+
+        long cents(long nowMillis) {
+            long oldest = nowMillis / window.bucketMillis - window.buckets;
+            long total = 0;
+            for (int i = 0; i < window.buckets; i++) {
+                if (slice[i] > oldest) {
+                    total += cents[i];
+                }
+            }
+            return total;
+        }
+    }
+
+    // 👤 ONE SENDER: three windows, plus an exponentially weighted mean and variance of the amounts.
+    // Only touched while holding the shard lock.
+    private static final class Profile {
+        final SlidingWindow[] windows = {
+                new SlidingWindow(Window.MINUTE), new SlidingWindow(Window.HOUR), new SlidingWindow(Window.DAY)};
+        double mean;
+        double variance;
+        long payments;
+        long lastSeenMillis;
+    }
+
+    // 🗄️ ONE SHARD: its lock and its senders.
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<String, Profile> profiles = new HashMap<>();
+        int checksSinceSweep;
+    }
+
+    // 🚫 A SORTED, PREFIX-FREE LIST: "does this account start with any blocked prefix?" is one
+    // binary search (the closest entry at or below the account is the only candidate), no allocation.
+    static final class PrefixList {
+        private final String[] prefixes;
+
+        PrefixList(List<String> entries) {
+            String[] sorted = entries.stream().map(String::trim).filter(s -> !s.isEmpty()).sorted().distinct()
+                    .toArray(String[]::new);
+            // Drop "ABC9" when "AB" is there too: it is already covered, and it would hide "AB" from the search.
+            int kept = 0;
+            for (String prefix : sorted) {
+                if (kept == 0 || !prefix.startsWith(sorted[kept - 1])) {
+                    sorted[kept++] = prefix;
+                }
+            }
+            this.prefixes = Arrays.copyOf(sorted, kept);
+        }
+
+        boolean matches(String account) {
+            if (account == null || prefixes.length == 0) {
+                return false;
+            }
+            int i = Arrays.binarySearch(prefixes, account);
+            int floor = i >= 0 ? i : -i - 2;
+            return floor >= 0 && account.startsWith(prefixes[floor]);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Shard[] shards;
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final boolean enabled;
+    private final int[] maxCount = new int[Window.values().length];
+    private final long[] maxCents = new long[Window.values().length];
+    private final double alpha;
+    private final int minHistory;
+    private final int reviewScore;
+    private final double declineZ;
+    private final PrefixList deniedSenders;
+    private final PrefixList deniedReceivers;
+
+    // 📊 THE SCOREBOARD
+    private final Counter[] decisions = new Counter[Decision.values().length];
+
+    public RiskEngine(JdbcTemplate jdbcTemplate,
+                      MeterRegistry meterRegistry,
+                      @Value("${ledger.risk.enabled:true}") boolean enabled,
+                      @Value("${ledger.risk.shards:64}") int shards,
+                      @Value("${ledger.risk.velocity.minute.max-count:20}") int minuteCount,
+                      @Value("${ledger.risk.velocity.minute.max-amount:50000}") BigDecimal minuteAmount,
+                      @Value("${ledger.risk.velocity.hour.max-count:200}") int hourCount,
+                      @Value("${ledger.risk.velocity.hour.max-amount:200000}") BigDecimal hourAmount,
+                      @Value("${ledger.risk.velocity.day.max-count:1000}") int dayCount,
+                      @Value("${ledger.risk.velocity.day.max-amount:500000}") BigDecimal dayAmount,
+                      @Value("${ledger.risk.amount.window:50}") int amountWindow,
+                      @Value("${ledger.risk.amount.min-history:10}") int minHistory,
+                      @Value("${ledger.risk.review-score:70}") int reviewScore,
+                      @Value("${ledger.risk.amount.decline-z:10}") double declineZ,
+                      @Value("${ledger.risk.denylist.senders:}") List<String> deniedSenders,
+                      @Value("${ledger.risk.denylist.receivers:}") List<String> deniedReceivers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        // Round up to a power of two, so "which shard?" is a cheap bit mask.
+        int size = Integer.highestOneBit(Math.max(1, shards - 1)) << 1;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            this.shards[i] = new Shard();
+        }
+        limit(Window.MINUTE, minuteCount, minuteAmount);
+        limit(Window.HOUR, hourCount, hourAmount);
+        limit(Window.DAY, dayCount, dayAmount);
+        this.alpha = 2.0 / (amountWindow + 1);
+        this.minHistory = minHistory;
+        this.reviewScore = reviewScore;
+        this.declineZ = declineZ;
+        this.deniedSenders = new PrefixList(deniedSenders);
+        this.deniedReceivers = new PrefixList(deniedReceivers);
+        for (Decision decision : Decision.values()) {
+            this.decisions[decision.ordinal()] =
+                    meterRegistry.counter("ledger.risk.decisions", "decision", decision.name().toLowerCase());
+        }
+    }
+
+    private void limit(Window window, int count, BigDecimal amount) {
+        maxCount[window.ordinal()] = count;
+        maxCents[window.ordinal()] = PostingEngine.toCents(amount);
+    }
+
+    // ===================================================================================
+    // 🟢 STARTUP: replay the last 24 hours into the windows
+    // ===================================================================================
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        int[] replayed = {0};
+        jdbcTemplate.query(REBUILD_SQL, rs -> {
+            String sender = rs.getString("sender_account");
+            BigDecimal amount = rs.getBigDecimal("amount");
+            Timestamp at = rs.getTimestamp("timestamp");
+            if (sender == null || amount == null || at == null) {
+                return;
+            }
+            long cents = PostingEngine.toCents(amount);
+            long atMillis = at.toLocalDateTime().atZone(zone).toInstant().toEpochMilli();
+            withProfile(sender, (shard, profile) -> {
+                hold(shard, profile, cents, atMillis);
+                learn(profile, cents);
+            });
+            replayed[0]++;
+        }, Timestamp.valueOf(LocalDateTime.now().minus(Duration.ofDays(1))));
+        logger.info("Risk windows rebuilt from {} payments of the last 24 hours", replayed[0]);
+    }
+
+    // ===================================================================================
+    // 🕵️ THE CHECK (and, if it passes, the payment holds its place in the windows)
+    // ===================================================================================
+    // "receiver" = the receiver the client asked for (may be null; the Routing Table picks the pool account).
+    public Assessment assess(String sender, String receiver, BigDecimal amount) {
+        return count(sender, receiver, amount, true);
+    }
+
+    // 📦 The bulk lane: denylist and unusual amounts only. Nothing is held; booked() counts the
+    // payment afterwards, so online payments of the same sender still see it.
+    public Assessment assessBatch(String sender, String receiver, BigDecimal amount) {
+        return count(sender, receiver, amount, false);
+    }
+
+    private Assessment count(String sender, String receiver, BigDecimal amount, boolean velocity) {
+        if (!enabled) {
+            return Assessment.OFF;
+        }
+        Assessment assessment = assess(sender, receiver, PostingEngine.toCents(amount), System.currentTimeMillis(), velocity);
+        decisions[assessment.decision().ordinal()].increment();
+        return assessment;
+    }
+
+    // The same check on an explicit clock (for tests); decisions are not counted here.
+    public Assessment assess(String sender, String receiver, long amountCents, long nowMillis) {
+        return assess(sender, receiver, amountCents, nowMillis, true);
+    }
+
+    private Assessment assess(String sender, String receiver, long amountCents, long nowMillis, boolean velocity) {
+        // 🚫 3. DENYLIST (no lock needed: the lists never change)
+        if (deniedSenders.matches(sender)) {
+            return Assessment.decline("sender account is blocked");
+        }
+        if (deniedReceivers.matches(receiver)) {
+            return Assessment.decline("receiver account is blocked");
+        }
+
+        Shard shard = shard(sender);
+        shard.lock.lock();
+        try {
+            Profile profile = shard.profiles.computeIfAbsent(sender, s -> new Profile());
+
+            // 🚦 1. VELOCITY: would THIS payment go over a limit?
+            double usage = 0;
+            for (Window window : velocity ? Window.values() : NO_WINDOWS) {
+                SlidingWindow ring = profile.windows[window.ordinal()];
+                int count = ring.count(nowMillis) + 1;
+                long cents = ring.cents(nowMillis) + amountCents;
+                int max = maxCount[window.ordinal()];
+                long maxAmount = maxCents[window.ordinal()];
+                if (count > max) {
+                    return Assessment.decline("more than " + max + " payments per " + window.label);
+                }
+                if (cents > maxAmount) {
+                    return Assessment.decline("more than R" + PostingEngine.toMoney(maxAmount) + " per " + window.label);
+                }
+                usage = Math.max(usage, Math.max((double) count / max, (double) cents / maxAmount));
+            }
+
+            // 📈 2. UNUSUAL AMOUNT: distance from this sender's usual amount, in standard deviations.
+            // (The deviation has a floor, so a sender who always pays exactly R100 is not flagged for R101.)
+            double z = 0;
+            if (profile.payments >= minHistory) {
+                double deviation = Math.max(Math.sqrt(profile.variance), Math.max(profile.mean * 0.1, 100));
+                z = (amountCents - profile.mean) / deviation;
+                if (z >= declineZ) {
+                    return Assessment.decline(String.format("amount is %.0f times the usual spread above normal", z));
+                }
+            }
+
+            // Up to 50 points for how close the busiest window is to its limit, 10 per standard deviation.
+            int score = (int) Math.min(99, Math.round(usage * 50) + Math.round(Math.max(0, z) * 10));
+            if (velocity) {
+                hold(shard, profile, amountCents, nowMillis);
+            }
+            return score >= reviewScore
+                    ? new Assessment(score, Decision.REVIEW, z > 0 ? String.format("amount is %.1f deviations above normal", z) : "close to velocity limits",
+                    amountCents, nowMillis, velocity)
+                    : new Assessment(score, Decision.APPROVE, null, amountCents, nowMillis, velocity);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    // ===================================================================================
+    // ✍️ AFTER THE CHECK: booked, or given back
+    // ===================================================================================
+
+    // ✅ The payment is saved (or journaled): it becomes part of the sender's usual amounts.
+    public void booked(String sender, Assessment assessment) {
+        if (!enabled || assessment.decision() == Decision.DECLINE) {
+            return;
+        }
+        withProfile(sender, (shard, profile) -> {
+            if (!assessment.held()) {
+                hold(shard, profile, assessment.amountCents(), assessment.atMillis());
+            }
+            learn(profile, assessment.amountCents());
+        });
+    }
+
+    // ↩️ The payment was not booked after all (refused for funds, save failed): it stops counting.
+    public void release(String sender, Assessment assessment) {
+        if (!enabled || !assessment.held()) {
+            return;
+        }
+        unhold(sender, assessment.amountCents(), assessment.atMillis());
+    }
+
+    // ↩️ A journaled payment was taken back as a duplicate after it was booked: it stops counting.
+    // Its hold is found by the payment's timestamp (stamped a moment after the check, so the same
+    // bucket but for a payment checked right at a bucket's edge).
+    @EventListener
+    public void onReversed(TransactionReversed event) {
+        Transaction txn = event.transaction();
+        if (!enabled || txn.getSenderAccount() == null || txn.getAmount() == null || txn.getTimestamp() == null) {
+            return;
+        }
+        long atMillis = txn.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        unhold(txn.getSenderAccount(), PostingEngine.toCents(txn.getAmount()), atMillis);
+    }
+
+    private void unhold(String sender, long amountCents, long atMillis) {
+        withProfile(sender, (shard, profile) -> {
+            for (SlidingWindow ring : profile.windows) {
+                ring.remove(atMillis, amountCents);
+            }
+        });
+    }
+
+    private void withProfile(String sender, BiConsumer<Shard, Profile> work) {
+        Shard shard = shard(sender);
+        shard.lock.lock();
+        try {
+            work.accept(shard, shard.profiles.computeIfAbsent(sender, s -> new Profile()));
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    // Exponentially weighted mean and variance: recent payments count more, nothing is stored.
+    private void learn(Profile profile, long amountCents) {
+        if (profile.payments++ == 0) {
+            profile.mean = amountCents;
+        } else {
+            double diff = amountCents - profile.mean;
+            double step = alpha * diff;
+            profile.mean += step;
+            profile.variance = (1 - alpha) * (profile.variance + diff * step);
+        }
+    }
+
+    private void hold(Shard shard, Profile profile, long amountCents, long atMillis) {
+        for (SlidingWindow ring : profile.windows) {
+            ring.add(atMillis, amountCents);
+        }
+        profile.lastSeenMillis = Math.max(profile.lastSeenMillis, atMillis);
+
+        // 🧹 Now and then: forget senders that were quiet for longer than the longest window.
+        if (++shard.checksSinceSweep >= SWEEP_EVERY) {
+            shard.checksSinceSweep = 0;
+            long quietSince = atMillis - Window.DAY.bucketMillis * Window.DAY.buckets;
+            for (Iterator<Profile> it = shard.profiles.values().iterator(); it.hasNext(); ) {
+                if (it.next().lastSeenMillis < quietSince) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private Shard shard(String sender) {
+        int h = sender.hashCode();
+        return shards[(h ^ (h >>> 16)) & (shards.length - 1)];
+    }
+}
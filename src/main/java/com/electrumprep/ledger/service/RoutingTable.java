@@ -0,0 +1,123 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.RoutingRule;
+import com.electrumprep.ledger.repository.RoutingRuleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// -----------------------------------------------------------------------------------
+// 🗺️ THE ROUTING TABLE (Live Map of the Roads)
+// Holds the CURRENT signpost tree and answers "where does this account go?".
+// - Rules come from the "routing_rules" table. If it is empty, from routing-rules.csv.
+// - reload() builds a NEW tree and swaps it in with one write to a "volatile" field.
+//   Payments that are being routed at that moment simply finish on the old tree.
+// - The read path (route) never takes a lock.
+// -----------------------------------------------------------------------------------
+
+@Component
+public class RoutingTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingTable.class);
+
+    private final RoutingRuleRepository repository;
+    private final Resource defaultRules;
+
+    // 🔄 THE SWAP SLOT
+    // "volatile" = every thread sees the new tree as soon as it is swapped in.
+    private volatile RoutingTrie trie;
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    public RoutingTable(RoutingRuleRepository repository,
+                        @Value("${ledger.routing.default-rules:classpath:routing-rules.csv}") Resource defaultRules) {
+        this.repository = repository;
+        this.defaultRules = defaultRules;
+        reload();
+    }
+
+    // 🔎 "Where does this account go?" (Lock-free.)
+    public RoutingTrie.Route route(String senderAccount) {
+        return trie.route(senderAccount);
+    }
+
+    // ===================================================================================
+    // 🔄 RELOAD (Build a new tree, then swap)
+    // ===================================================================================
+    // The lock only keeps two reloads from racing each other. Readers never wait.
+    // (A ReentrantLock, not "synchronized": the reload reads the database, and a virtual
+    // thread blocked on I/O inside "synchronized" would pin its carrier thread.)
+    // If the new rules are broken, an IllegalArgumentException is thrown and the old tree stays.
+    // If the database cannot be read on a reload, its DataAccessException is thrown and the old tree stays too.
+    // Returns how many rules are now live.
+    public int reload() {
+        reloadLock.lock();
+        try {
+            List<RoutingRule> rules = loadFromTable();
+            String source = "routing_rules table";
+            if (rules.isEmpty()) {
+                rules = loadFromFile(defaultRules);
+                source = defaultRules.getDescription();
+            }
+            RoutingTrie compiled = RoutingTrie.compile(rules);
+            trie = compiled;
+            logger.info("Routing table loaded with {} rules from {}", compiled.size(), source);
+            return compiled.size();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private List<RoutingRule> loadFromTable() {
+        try {
+            return repository.findAll();
+        } catch (DataAccessException e) {
+            // The database is having a bad moment. At startup there is no tree yet, so the file
+            // rules get us going. Later, the live tree (maybe full of table rules) is worth more
+            // than the file: keep it and let the caller try again.
+            if (trie != null) {
+                logger.warn("Could not read routing_rules, keeping the current rules: {}", e.getMessage());
+                throw e;
+            }
+            logger.warn("Could not read routing_rules, using the default rules: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    // 📥 READ THE FILE
+    // Lines look like "INV,INVESTEC BANK,INV-POOL-888,10". Lines starting with "#" are comments.
+    static List<RoutingRule> loadFromFile(Resource file) {
+        List<RoutingRule> rules = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.trim().startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",", -1);
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException("Bad routing rule line: " + line);
+                }
+                rules.add(new RoutingRule(parts[0].trim(), parts[1].trim(), parts[2].trim(),
+                        Integer.parseInt(parts[3].trim())));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read routing rules " + file, e);
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,139 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.RoutingRule;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// -----------------------------------------------------------------------------------
+// 🌳 THE SIGNPOST TREE (Compiled Prefix Trie)
+// The old if-else chain checked every rule one by one: 3 rules = 3 checks, 10,000 rules =
+// 10,000 checks. This tree is built ONCE from the rules, then each lookup just walks the
+// account number letter by letter ("I" -> "N" -> "V"...). The cost depends on the length
+// of the account number, NOT on how many rules there are.
+// The tree is IMMUTABLE: once built, nobody changes it. A reload builds a brand new tree
+// and swaps it in, so readers never need a lock (see RoutingTable).
+// -----------------------------------------------------------------------------------
+
+public final class RoutingTrie {
+
+    // 🎯 THE ANSWER: which bank, which pool account receives the money, and the status stamp.
+    // The stamp ("SUCCESS - Sent to ABSA BANK") is built ONCE per rule, here, instead of
+    // glued together again for every payment.
+    public record Route(String targetBank, String poolAccount, String status) {
+
+        // The start of every approved status; what follows is the target bank.
+        public static final String SENT_TO = "SUCCESS - Sent to ";
+
+        public Route(String targetBank, String poolAccount) {
+            this(targetBank, poolAccount, SENT_TO + targetBank);
+        }
+    }
+
+    // 🪵 ONE BRANCH POINT
+    // "labels" are the next letters we can follow (sorted, for binary search),
+    // "next" are the branches behind them. "route" is set if a rule ends exactly here.
+    private static final class Node {
+        private final char[] labels;
+        private final Node[] next;
+        private final Route route;
+        private final int priority;
+
+        private Node(char[] labels, Node[] next, Route route, int priority) {
+            this.labels = labels;
+            this.next = next;
+            this.route = route;
+            this.priority = priority;
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    private RoutingTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    // How many rules went into this tree.
+    public int size() {
+        return size;
+    }
+
+    // ===================================================================================
+    // 🔎 LOOKUP (The hot path: no locks, no allocation)
+    // ===================================================================================
+    // Walk down the tree and remember the best sign we passed:
+    // higher priority wins, and on a tie the deeper (longer, more specific) prefix wins.
+    public Route route(String account) {
+        Node node = root;
+        Route best = root.route;
+        int bestPriority = root.priority;
+        for (int i = 0; i < account.length(); i++) {
+            int slot = Arrays.binarySearch(node.labels, account.charAt(i));
+            if (slot < 0) {
+                break;
+            }
+            node = node.next[slot];
+            if (node.route != null && node.priority >= bestPriority) {
+                best = node.route;
+                bestPriority = node.priority;
+            }
+        }
+        return best;
+    }
+
+    // ===================================================================================
+    // 🏗️ COMPILE (Rules -> Tree)
+    // ===================================================================================
+    // Throws IllegalArgumentException if the rules are unusable (no default road, blanks...),
+    // so a bad reload is refused and the old tree keeps working.
+    public static RoutingTrie compile(List<RoutingRule> rules) {
+        Draft root = new Draft();
+        for (RoutingRule rule : rules) {
+            if (rule.getAccountPrefix() == null || isBlank(rule.getTargetBank()) || isBlank(rule.getPoolAccount())) {
+                throw new IllegalArgumentException("Incomplete routing rule: " + rule);
+            }
+            Draft node = root;
+            for (char c : rule.getAccountPrefix().toCharArray()) {
+                node = node.children.computeIfAbsent(c, k -> new Draft());
+            }
+            // Two rules with the same prefix: the higher priority one owns the spot.
+            if (node.route == null || rule.getPriority() > node.priority) {
+                node.route = new Route(rule.getTargetBank(), rule.getPoolAccount());
+                node.priority = rule.getPriority();
+            }
+        }
+        if (root.route == null) {
+            throw new IllegalArgumentException("Routing rules need a default rule (empty account prefix)");
+        }
+        return new RoutingTrie(root.freeze(), rules.size());
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // ✏️ THE PENCIL SKETCH (a mutable node, only used while compiling)
+    private static final class Draft {
+        private final Map<Character, Draft> children = new TreeMap<>();
+        private Route route;
+        private int priority = Integer.MIN_VALUE;
+
+        // Ink it: turn the sketch into the final, read-only node (children already sorted).
+        private Node freeze() {
+            char[] labels = new char[children.size()];
+            Node[] next = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Draft> child : children.entrySet()) {
+                labels[i] = child.getKey();
+                next[i] = child.getValue().freeze();
+                i++;
+            }
+            return new Node(labels, next, route, priority);
+        }
+    }
+}
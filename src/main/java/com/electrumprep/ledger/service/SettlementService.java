@@ -0,0 +1,573 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "FileChannel" is NIO's file handle: our ClearingFileWriter pours its buffer straight into it.
+// "Channels.newChannel" does the same for the HTTP response, so both use one writer.
+// "TransactionTemplate" opens a read-only database transaction: Postgres only streams
+// rows with a real cursor inside a transaction, otherwise it loads EVERYTHING first.
+import com.electrumprep.ledger.model.SettlementFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// -----------------------------------------------------------------------------------
+// 🏦 THE CLEARING HOUSE (Settlement files out, bank returns in)
+// The Switch sends money to INV-POOL-888, ABS-MERCHANT-001 and SB-CLEARING-999, but the banks
+// also need a FILE at the end of the day listing every payment they must settle.
+// 1. 📤 SETTLEMENT: ONE forward-only cursor reads the day's approved payments (oldest first)
+//    and hands each row to the file of its target bank. Every file has its own buffered NIO
+//    writer, so memory stays the same for 10 or 10 million rows. Files are written as ".part"
+//    and only renamed when complete: a half-written file is never picked up.
+// 2. 📥 RETURNS: the bank sends back the payments it could not settle, as (reference, amount,
+//    reason). The file is read line by line; every "import-chunk" lines become a hash index
+//    (reference + cents -> waiting lines), the database is asked ONCE for the candidates of
+//    the whole chunk (idx_transactions_reference_amount), and each line is matched and reported.
+// Two formats: CSV, or fixed-width text (US-ASCII, one record per line) as many clearing
+// systems still expect. Nothing is changed in the database: the result is a report.
+// -----------------------------------------------------------------------------------
+
+@Service
+public class SettlementService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SettlementService.class);
+
+    // 📄 THE FORMATS: CSV (".csv", UTF-8) or fixed-width (".txt", US-ASCII).
+    public enum Format {
+        CSV("csv", StandardCharsets.UTF_8),
+        FIXED("txt", StandardCharsets.US_ASCII);
+
+        private final String extension;
+        private final Charset charset;
+
+        Format(String extension, Charset charset) {
+            this.extension = extension;
+            this.charset = charset;
+        }
+    }
+
+    // 📏 THE FIXED-WIDTH LAYOUT (field widths in characters)
+    // H | date (8) | bank (30)
+    // D | id (19) | reference (35) | sender (20) | receiver (20) | currency (3) | cents (15) | yyyyMMddHHmmss (14)
+    // T | rows (10) | total cents (18)
+    // Returns: R | reference (35) | cents (15) | reason (4)
+    static final int REFERENCE_WIDTH = 35;
+    private static final int BANK_WIDTH = 30;
+    private static final int ID_WIDTH = 19;
+    private static final int ACCOUNT_WIDTH = 20;
+    private static final int CURRENCY_WIDTH = 3;
+    private static final int CENTS_WIDTH = 15;
+    private static final int REASON_WIDTH = 4;
+    private static final int COUNT_WIDTH = 10;
+    private static final int TOTAL_WIDTH = 18;
+
+    private static final String CSV_HEADER = "id,reference,sender_account,receiver_account,currency,amount,timestamp";
+    private static final String REPORT_HEADER = "line,reference,amount,reason,transaction_id,result";
+
+    // 🔎 The day's approved payments ("SUCCESS - Sent to <bank>"), oldest first, one pass.
+    private static final String DAY_SQL =
+            "SELECT id, reference, amount, sender_account, receiver_account, currency, status, timestamp " +
+            "FROM transactions WHERE timestamp >= ? AND timestamp < ? AND status LIKE ? ORDER BY timestamp, id";
+    // ... or only the ones for one bank (the status says which).
+    private static final String BANK_DAY_SQL =
+            "SELECT id, reference, amount, sender_account, receiver_account, currency, status, timestamp " +
+            "FROM transactions WHERE timestamp >= ? AND timestamp < ? AND status = ? ORDER BY timestamp, id";
+
+    // How often (in rows) a streamed file is pushed to the client.
+    private static final int FLUSH_EVERY = 1000;
+
+    private final JdbcTemplate settlementJdbc;
+    private final TransactionTemplate readOnlyTx;
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final Path directory;
+    private final int bufferSize;
+    private final int importChunk;
+
+    public SettlementService(TransactionReadStore readStore,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${ledger.settlement.directory:settlement}") String directory,
+                             @Value("${ledger.settlement.fetch-size:1000}") int fetchSize,
+                             @Value("${ledger.settlement.buffer-size:65536}") int bufferSize,
+                             @Value("${ledger.settlement.import-chunk:1000}") int importChunk) {
+        this.directory = Path.of(directory);
+        this.bufferSize = bufferSize;
+        this.importChunk = importChunk;
+
+        // Same as the history export: a private JdbcTemplate with its own fetch size,
+        // on the read replica when there is one (settlement never needs the write pool).
+        DataSource replica = readStore.replica();
+        this.settlementJdbc = new JdbcTemplate(replica != null ? replica : jdbcTemplate.getDataSource());
+        this.settlementJdbc.setFetchSize(fetchSize);
+        this.readOnlyTx = new TransactionTemplate(replica != null ? new DataSourceTransactionManager(replica) : transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    // ===================================================================================
+    // 📤 1. SETTLEMENT FILES (one per target bank, written to disk)
+    // ===================================================================================
+    // <directory>/<yyyy-MM-dd>/<BANK>.<csv|txt>. Running the same day again replaces its files.
+    public List<SettlementFile> writeFiles(LocalDate date, Format format) throws IOException {
+        long started = System.nanoTime();
+        Path folder = Files.createDirectories(directory.resolve(date.toString()));
+        Map<String, BankFile> files = new LinkedHashMap<>();
+        boolean done = false;
+        try {
+            readOnlyTx.executeWithoutResult(status -> settlementJdbc.query(DAY_SQL, (ResultSet rs) -> {
+                try {
+                    String bank = rs.getString("status").substring(RoutingTrie.Route.SENT_TO.length());
+                    BankFile file = files.get(bank);
+                    if (file == null) {
+                        file = BankFile.open(folder, bank, date, format, bufferSize);
+                        files.put(bank, file);
+                    }
+                    file.add(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, start(date), start(date.plusDays(1)), RoutingTrie.Route.SENT_TO + "%"));
+
+            List<SettlementFile> written = new ArrayList<>(files.size());
+            for (BankFile file : files.values()) {
+                written.add(file.finish());
+            }
+            done = true;
+            logger.info("Settlement for {}: {} file(s), {} payment(s) in {} ms", date, written.size(),
+                    written.stream().mapToLong(SettlementFile::rows).sum(), (System.nanoTime() - started) / 1_000_000);
+            return written;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (!done) {
+                for (BankFile file : files.values()) {
+                    file.abandon();
+                }
+            }
+        }
+    }
+
+    // ===================================================================================
+    // 🚰 2. ONE BANK'S FILE, streamed straight to the client (nothing on disk)
+    // ===================================================================================
+    public SettlementFile streamFile(String bank, LocalDate date, Format format, OutputStream out) throws IOException {
+        try (ClearingFileWriter writer = new ClearingFileWriter(Channels.newChannel(out), format.charset, bufferSize)) {
+            Totals totals = new Totals(bank, date, format, writer);
+            totals.header();
+            readOnlyTx.executeWithoutResult(status -> settlementJdbc.query(BANK_DAY_SQL, (ResultSet rs) -> {
+                try {
+                    totals.add(rs);
+                    if (totals.rows % FLUSH_EVERY == 0) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, start(date), start(date.plusDays(1)), RoutingTrie.Route.SENT_TO + bank));
+            totals.trailer();
+            return new SettlementFile(bank, null, totals.rows, PostingEngine.toMoney(totals.cents));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Timestamp start(LocalDate date) {
+        return Timestamp.valueOf(date.atStartOfDay());
+    }
+
+    // 🧮 One file's lines and running totals (header, detail rows, trailer).
+    private static final class Totals {
+        private final String bank;
+        private final LocalDate date;
+        private final Format format;
+        private final ClearingFileWriter writer;
+        private long rows;
+        private long cents;
+
+        private Totals(String bank, LocalDate date, Format format, ClearingFileWriter writer) {
+            this.bank = bank;
+            this.date = date;
+            this.format = format;
+            this.writer = writer;
+        }
+
+        void header() throws IOException {
+            StringBuilder line = writer.line();
+            if (format == Format.CSV) {
+                line.append(CSV_HEADER);
+            } else {
+                line.append('H');
+                digits(line, date.getYear(), 4);
+                digits(line, date.getMonthValue(), 2);
+                digits(line, date.getDayOfMonth(), 2);
+                text(line, bank, BANK_WIDTH);
+            }
+            writer.endLine();
+        }
+
+        void add(ResultSet rs) throws SQLException, IOException {
+            long amount = PostingEngine.toCents(rs.getBigDecimal("amount"));
+            LocalDateTime at = rs.getObject("timestamp", LocalDateTime.class);
+            StringBuilder line = writer.line();
+            if (format == Format.CSV) {
+                line.append(rs.getLong("id")).append(',');
+                csv(line, rs.getString("reference")).append(',');
+                csv(line, rs.getString("sender_account")).append(',');
+                csv(line, rs.getString("receiver_account")).append(',');
+                csv(line, rs.getString("currency")).append(',');
+                line.append(PostingEngine.toMoney(amount).toPlainString()).append(',');
+                line.append(at);
+            } else {
+                line.append('D');
+                digits(line, rs.getLong("id"), ID_WIDTH);
+                text(line, rs.getString("reference"), REFERENCE_WIDTH);
+                text(line, rs.getString("sender_account"), ACCOUNT_WIDTH);
+                text(line, rs.getString("receiver_account"), ACCOUNT_WIDTH);
+                text(line, rs.getString("currency"), CURRENCY_WIDTH);
+                digits(line, amount, CENTS_WIDTH);
+                digits(line, at.getYear(), 4);
+                digits(line, at.getMonthValue(), 2);
+                digits(line, at.getDayOfMonth(), 2);
+                digits(line, at.getHour(), 2);
+                digits(line, at.getMinute(), 2);
+                digits(line, at.getSecond(), 2);
+            }
+            writer.endLine();
+            rows++;
+            cents += amount;
+        }
+
+        void trailer() throws IOException {
+            StringBuilder line = writer.line();
+            if (format == Format.CSV) {
+                line.append("TRAILER,").append(rows).append(',').append(PostingEngine.toMoney(cents).toPlainString());
+            } else {
+                line.append('T');
+                digits(line, rows, COUNT_WIDTH);
+                digits(line, cents, TOTAL_WIDTH);
+            }
+            writer.endLine();
+        }
+    }
+
+    // 📁 One bank's file on disk: "<BANK>.<ext>.part" until finish() renames it.
+    private static final class BankFile {
+        private final String bank;
+        private final Path part;
+        private final Path target;
+        private final FileChannel channel;
+        private final ClearingFileWriter writer;
+        private final Totals totals;
+
+        private BankFile(String bank, Path part, Path target, FileChannel channel, ClearingFileWriter writer, Totals totals) {
+            this.bank = bank;
+            this.part = part;
+            this.target = target;
+            this.channel = channel;
+            this.writer = writer;
+            this.totals = totals;
+        }
+
+        static BankFile open(Path folder, String bank, LocalDate date, Format format, int bufferSize) throws IOException {
+            String name = bank.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]+", "_") + "." + format.extension;
+            Path target = folder.resolve(name);
+            Path part = folder.resolve(name + ".part");
+            FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            ClearingFileWriter writer = new ClearingFileWriter(channel, format.charset, bufferSize);
+            BankFile file = new BankFile(bank, part, target, channel, writer, new Totals(bank, date, format, writer));
+            file.totals.header();
+            return file;
+        }
+
+        void add(ResultSet rs) throws SQLException, IOException {
+            totals.add(rs);
+        }
+
+        SettlementFile finish() throws IOException {
+            totals.trailer();
+            writer.close();
+            channel.force(false);
+            channel.close();
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new SettlementFile(bank, target.toString(), totals.rows, PostingEngine.toMoney(totals.cents));
+        }
+
+        void abandon() {
+            try {
+                channel.close();
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                logger.warn("Could not remove unfinished settlement file {}", part, e);
+            }
+        }
+    }
+
+    // ===================================================================================
+    // 📥 3. BANK RETURNS (streamed in, matched, streamed out as a CSV report)
+    // ===================================================================================
+    // CSV returns:   reference,amount,reason   (a "reference,..." header line is allowed)
+    // Fixed returns: R + reference (35) + cents (15) + reason (4); H and T lines are skipped.
+    // "date" (optional) only matches payments booked on that day.
+    // Report: line,reference,amount,reason,transaction_id,result (MATCHED / UNMATCHED / INVALID),
+    // then TRAILER,lines,matched,unmatched,invalid.
+    public void reconcileReturns(InputStream in, Format format, LocalDate date, OutputStream out) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, format.charset), bufferSize);
+             ClearingFileWriter report = new ClearingFileWriter(Channels.newChannel(out), StandardCharsets.UTF_8, bufferSize)) {
+            report.line().append(REPORT_HEADER);
+            report.endLine();
+
+            long[] tally = new long[3];   // matched, unmatched, invalid
+            // Payments already matched by an earlier chunk (grows with the matches, not with the day).
+            Set<Long> used = new HashSet<>();
+            List<ReturnLine> chunk = new ArrayList<>(importChunk);
+            long number = 0;
+            String text;
+            while ((text = reader.readLine()) != null) {
+                number++;
+                ReturnLine parsed = ReturnLine.parse(format, number, text);
+                if (parsed == null) {
+                    continue;
+                }
+                chunk.add(parsed);
+                if (chunk.size() == importChunk) {
+                    match(chunk, format, date, used, report, tally);
+                    chunk.clear();
+                }
+            }
+            match(chunk, format, date, used, report, tally);
+
+            report.line().append("TRAILER,").append(tally[0] + tally[1] + tally[2])
+                    .append(',').append(tally[0]).append(',').append(tally[1]).append(',').append(tally[2]);
+            report.endLine();
+            logger.info("Bank returns reconciled: {} matched, {} unmatched, {} invalid", tally[0], tally[1], tally[2]);
+        }
+    }
+
+    // 🔗 THE HASH JOIN for one chunk: index the lines, ask the database once, probe.
+    private void match(List<ReturnLine> chunk, Format format, LocalDate date, Set<Long> used,
+                       ClearingFileWriter report, long[] tally)
+            throws IOException {
+        Map<MatchKey, Candidates> index = new HashMap<>();
+        for (ReturnLine line : chunk) {
+            if (line.error() == null) {
+                index.computeIfAbsent(new MatchKey(line.reference(), line.cents()), key -> new Candidates()).wanted++;
+            }
+        }
+
+        if (!index.isEmpty()) {
+            // Both halves of the key go into the query, so every line is one seek on
+            // idx_transactions_reference_amount (not every payment ever made to "Netflix").
+            // A fixed-width reference that fills its whole field may have been cut: match it on the prefix.
+            List<String> conditions = new ArrayList<>(index.size());
+            List<Object> args = new ArrayList<>(index.size() * 2);
+            for (MatchKey key : index.keySet()) {
+                if (format == Format.FIXED && key.reference().length() == REFERENCE_WIDTH) {
+                    conditions.add("(reference LIKE ? ESCAPE '\\' AND amount = ?)");
+                    args.add(key.reference().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+                } else {
+                    conditions.add("(reference = ? AND amount = ?)");
+                    args.add(key.reference());
+                }
+                args.add(PostingEngine.toMoney(key.cents()));
+            }
+            StringBuilder sql = new StringBuilder("SELECT id, reference, amount FROM transactions WHERE (")
+                    .append(String.join(" OR ", conditions)).append(')');
+            if (date != null) {
+                sql.append(" AND timestamp >= ? AND timestamp < ?");
+                args.add(start(date));
+                args.add(start(date.plusDays(1)));
+            }
+            // Oldest payment first: a return for a repeated (reference, amount) takes the earliest one.
+            sql.append(" ORDER BY id");
+
+            readOnlyTx.executeWithoutResult(status -> settlementJdbc.query(sql.toString(), (ResultSet rs) -> {
+                String reference = rs.getString("reference");
+                if (format == Format.FIXED && reference != null && reference.length() > REFERENCE_WIDTH) {
+                    reference = reference.substring(0, REFERENCE_WIDTH);
+                }
+                Candidates candidates = index.get(new MatchKey(reference, PostingEngine.toCents(rs.getBigDecimal("amount"))));
+                // Never keep more ids than there are lines waiting for them (memory stays bounded).
+                long id = rs.getLong("id");
+                if (candidates != null && candidates.ids.size() < candidates.wanted && !used.contains(id)) {
+                    candidates.ids.add(id);
+                }
+            }, args.toArray()));
+        }
+
+        for (ReturnLine line : chunk) {
+            StringBuilder out = report.line().append(line.number()).append(',');
+            csv(out, line.reference()).append(',');
+            out.append(line.error() == null ? PostingEngine.toMoney(line.cents()).toPlainString() : "").append(',');
+            csv(out, line.reason()).append(',');
+            if (line.error() != null) {
+                out.append(",INVALID: ");
+                csv(out, line.error());
+                tally[2]++;
+            } else {
+                Long id = index.get(new MatchKey(line.reference(), line.cents())).ids.poll();
+                if (id != null) {
+                    used.add(id);
+                    out.append(id).append(",MATCHED");
+                    tally[0]++;
+                } else {
+                    out.append(",UNMATCHED");
+                    tally[1]++;
+                }
+            }
+            report.endLine();
+        }
+        report.flush();
+    }
+
+    // 🔑 What a return line and a payment must agree on.
+    private record MatchKey(String reference, long cents) { }
+
+    // 🪣 The payment ids waiting for one key, and how many return lines want one.
+    private static final class Candidates {
+        private final ArrayDeque<Long> ids = new ArrayDeque<>();
+        private int wanted;
+    }
+
+    // 📥 One line of a return file ("error" is set when it could not be read).
+    private record ReturnLine(long number, String reference, long cents, String reason, String error) {
+
+        // null = not a payment line (header, trailer, blank).
+        static ReturnLine parse(Format format, long number, String text) {
+            if (text.isBlank()) {
+                return null;
+            }
+            try {
+                if (format == Format.CSV) {
+                    List<String> fields = splitCsv(text);
+                    String first = fields.get(0).trim();
+                    if (first.equalsIgnoreCase("reference") || first.equalsIgnoreCase("TRAILER")) {
+                        return null;
+                    }
+                    if (fields.size() < 2) {
+                        return invalid(number, text, "expected reference,amount,reason");
+                    }
+                    return new ReturnLine(number, first, PostingEngine.toCents(new BigDecimal(fields.get(1).trim())),
+                            fields.size() > 2 ? fields.get(2).trim() : "", null);
+                }
+                char type = text.charAt(0);
+                if (type == 'H' || type == 'T') {
+                    return null;
+                }
+                int centsAt = 1 + REFERENCE_WIDTH;
+                if (type != 'R' || text.length() < centsAt + CENTS_WIDTH) {
+                    return invalid(number, text, "expected an R record of at least " + (centsAt + CENTS_WIDTH) + " characters");
+                }
+                String reason = text.substring(centsAt + CENTS_WIDTH, Math.min(text.length(), centsAt + CENTS_WIDTH + REASON_WIDTH));
+                return new ReturnLine(number, text.substring(1, centsAt).stripTrailing(),
+                        Long.parseLong(text.substring(centsAt, centsAt + CENTS_WIDTH).trim()), reason.trim(), null);
+            } catch (NumberFormatException e) {
+                return invalid(number, text, "amount is not a number");
+            } catch (IllegalArgumentException e) {
+                return invalid(number, text, e.getMessage());
+            }
+        }
+
+        private static ReturnLine invalid(long number, String text, String error) {
+            return new ReturnLine(number, text.length() > 40 ? text.substring(0, 40) : text, 0, "", error);
+        }
+    }
+
+    // ===================================================================================
+    // ✂️ FIELD HELPERS
+    // ===================================================================================
+
+    // Zero-padded on the left ("42" in 5 -> "00042").
+    private static void digits(StringBuilder line, long value, int width) {
+        String text = Long.toString(value);
+        if (text.length() > width) {
+            throw new IllegalStateException(value + " does not fit in " + width + " digits");
+        }
+        line.repeat('0', width - text.length()).append(text);
+    }
+
+    // Space-padded on the right, cut when too long.
+    private static void text(StringBuilder line, String value, int width) {
+        String text = value == null ? "" : value;
+        if (text.length() >= width) {
+            line.append(text, 0, width);
+        } else {
+            line.append(text).repeat(' ', width - text.length());
+        }
+    }
+
+    // Quoted only when needed (a comma, a quote or a line break inside).
+    private static StringBuilder csv(StringBuilder line, String value) {
+        if (value == null) {
+            return line;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return line.append(value);
+        }
+        return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    // "a,\"b,c\",d" -> [a, b,c, d]
+    private static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,469 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "LongAdder" is a counter built for MANY threads adding at once (each thread mostly
+// touches its own cell, so they don't fight over one memory location).
+// "ConcurrentSkipListMap" is a sorted map, so "all buckets between 09:00 and 10:00" is one slice.
+import com.electrumprep.ledger.model.CategoryAssigned;
+import com.electrumprep.ledger.model.CompactPayment;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.model.TransactionReversed;
+import com.electrumprep.ledger.model.TransactionsBooked;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// -----------------------------------------------------------------------------------
+// 📊 THE TALLY BOARD (Spend Rollups)
+// "How much was spent on Groceries this month?" used to mean: read EVERY payment and add up.
+// The tally board keeps running totals instead, updated the moment a payment is booked:
+// - per MINUTE, HOUR and DAY
+// - per CATEGORY, target BANK and SENDER account (senders per HOUR and DAY only: a board of
+//   every sender x every minute of two days has no upper bound)
+// Questions are answered from memory (a sorted slice of buckets, no database).
+// Every few seconds the changed totals are copied to the "spend_rollups" table (checkpoint),
+// so a restart does not start from zero.
+// Buckets older than their retention are forgotten: a question about them is recounted from the
+// payments themselves (hot table + archive, filtered by sender or category where possible).
+// -----------------------------------------------------------------------------------
+
+@Service
+// The journal replays its leftovers into the database first, so the startup rebuild sees them.
+@DependsOn("paymentJournalService")
+public class SpendRollups {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpendRollups.class);
+
+    // 🧮 Written as absolute totals (not increments), so writing the same bucket twice is harmless.
+    private static final String CHECKPOINT_SQL =
+            "MERGE INTO spend_rollups r USING (SELECT CAST(? AS VARCHAR(16)) AS granularity, CAST(? AS VARCHAR(16)) AS dimension, " +
+            "CAST(? AS TIMESTAMP) AS bucket_start, CAST(? AS VARCHAR(255)) AS dim_key, " +
+            "CAST(? AS BIGINT) AS txn_count, CAST(? AS NUMERIC(19, 2)) AS amount) v " +
+            "ON (r.granularity = v.granularity AND r.dimension = v.dimension " +
+            "AND r.bucket_start = v.bucket_start AND r.dim_key = v.dim_key) " +
+            "WHEN MATCHED THEN UPDATE SET txn_count = v.txn_count, amount = v.amount " +
+            "WHEN NOT MATCHED THEN INSERT (granularity, dimension, bucket_start, dim_key, txn_count, amount) " +
+            "VALUES (v.granularity, v.dimension, v.bucket_start, v.dim_key, v.txn_count, v.amount)";
+
+    private static final String LOAD_SQL =
+            "SELECT granularity, dimension, bucket_start, dim_key, txn_count, amount FROM spend_rollups " +
+            "WHERE bucket_start >= ? AND bucket_start < ?";
+
+    // Journaled duplicates that were taken back (see PaymentJournalService) never count.
+    private static final String COUNTED =
+            " AND (status IS NULL OR status NOT LIKE '" + PaymentJournalService.DUPLICATE_STATUS + "%')";
+
+    private static final String REBUILD_SQL =
+            "SELECT amount, sender_account, status, timestamp, category FROM transactions WHERE timestamp >= ?" + COUNTED;
+
+    // 🧮 Recounting a range the board no longer holds.
+    private static final String RECOUNT_SQL =
+            "SELECT amount, sender_account, status, timestamp, category FROM transactions WHERE timestamp >= ? AND timestamp < ?" + COUNTED;
+
+    // ⏱️ HOW WIDE IS ONE BUCKET? (in microseconds, see CompactPayment.epochMicros)
+    public enum Granularity {
+        MINUTE(60_000_000L), HOUR(3_600_000_000L), DAY(86_400_000_000L);
+
+        private final long micros;
+
+        Granularity(long micros) {
+            this.micros = micros;
+        }
+
+        // Start of the bucket a moment falls in: plain integer math, no date objects.
+        public long bucketOf(long epochMicros) {
+            return Math.floorDiv(epochMicros, micros) * micros;
+        }
+    }
+
+    // 🏷️ WHAT ARE WE GROUPING BY?
+    public enum Dimension { CATEGORY, BANK, SENDER }
+
+    // 🚫 Is this pair kept on the board? SENDER x MINUTE is not: there are as many senders as
+    // customers, so those cells would grow with every new sender. Such questions are recounted.
+    static boolean onBoard(Granularity granularity, Dimension dimension) {
+        return granularity != Granularity.MINUTE || dimension != Dimension.SENDER;
+    }
+
+    // 🔢 ONE TOTAL: "in this bucket, for this key: N payments, R amount".
+    // A cell knows its own address, so "changed since the last checkpoint" is just the cell
+    // itself in a queue (queued once per checkpoint, however often it changes).
+    private static final class Cell {
+        final Granularity granularity;
+        final Dimension dimension;
+        final long bucket;
+        final String key;
+        final LongAdder count = new LongAdder();
+        final LongAdder cents = new LongAdder();
+        final AtomicBoolean dirty = new AtomicBoolean();
+
+        Cell(Granularity granularity, Dimension dimension, long bucket, String key) {
+            this.granularity = granularity;
+            this.dimension = dimension;
+            this.bucket = bucket;
+            this.key = key;
+        }
+    }
+
+    // 🧾 One line of an answer.
+    public record Row(LocalDateTime bucket, String key, long count, BigDecimal amount) { }
+
+    // 🧾 A whole answer: every bucket in the range, plus the totals over the range per key.
+    public record Report(Granularity granularity, Dimension dimension, LocalDateTime from, LocalDateTime to,
+                         List<Row> buckets, List<Row> totals) { }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final CompactPayments compact;
+    private final TransactionArchive archive;
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final Map<Granularity, Duration> retention = new EnumMap<>(Granularity.class);
+    private final long checkpointIntervalMs;
+
+    // 🗂️ THE BOARD: granularity -> dimension -> (bucket start in micros, sorted) -> key -> cell
+    private final Map<Granularity, Map<Dimension, ConcurrentSkipListMap<Long, ConcurrentHashMap<String, Cell>>>> board =
+            new EnumMap<>(Granularity.class);
+
+    // ✏️ Cells changed since the last checkpoint.
+    private final Queue<Cell> dirty = new ConcurrentLinkedQueue<>();
+
+    private Thread checkpointer;
+    private volatile boolean running;
+
+    public SpendRollups(JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager,
+                        CompactPayments compact,
+                        TransactionArchive archive,
+                        @Value("${ledger.stats.retention.minute:48h}") Duration minuteRetention,
+                        @Value("${ledger.stats.retention.hour:90d}") Duration hourRetention,
+                        @Value("${ledger.stats.retention.day:1825d}") Duration dayRetention,
+                        @Value("${ledger.stats.checkpoint-interval:10s}") Duration checkpointInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.compact = compact;
+        this.archive = archive;
+        this.retention.put(Granularity.MINUTE, minuteRetention);
+        this.retention.put(Granularity.HOUR, hourRetention);
+        this.retention.put(Granularity.DAY, dayRetention);
+        this.checkpointIntervalMs = checkpointInterval.toMillis();
+        for (Granularity granularity : Granularity.values()) {
+            Map<Dimension, ConcurrentSkipListMap<Long, ConcurrentHashMap<String, Cell>>> byDimension =
+                    new EnumMap<>(Dimension.class);
+            for (Dimension dimension : Dimension.values()) {
+                byDimension.put(dimension, new ConcurrentSkipListMap<>());
+            }
+            board.put(granularity, byDimension);
+        }
+    }
+
+    // ===================================================================================
+    // 🟢 STARTUP: old totals from the table, the last two days straight from the payments
+    // ===================================================================================
+    // A crash can lose up to one checkpoint interval of tallies. Recounting from midnight
+    // yesterday makes the recent buckets exact again, for the price of reading ~2 days of rows once.
+    @PostConstruct
+    public void start() {
+        LocalDateTime recountFrom = LocalDate.now().minusDays(1).atStartOfDay();
+        LocalDateTime oldest = LocalDateTime.now().minus(retention.get(Granularity.DAY));
+        int[] loaded = {0, 0};
+        tx.executeWithoutResult(status -> {
+            jdbcTemplate.query(LOAD_SQL, rs -> {
+                Granularity granularity = Granularity.valueOf(rs.getString("granularity"));
+                Dimension dimension = Dimension.valueOf(rs.getString("dimension"));
+                if (!onBoard(granularity, dimension)) {
+                    return; // Checkpointed by an older build.
+                }
+                Cell cell = cell(granularity, dimension,
+                        CompactPayments.toEpochMicros(rs.getTimestamp("bucket_start").toLocalDateTime()), rs.getString("dim_key"));
+                cell.count.add(rs.getLong("txn_count"));
+                cell.cents.add(PostingEngine.toCents(rs.getBigDecimal("amount")));
+                loaded[0]++;
+            }, Timestamp.valueOf(oldest), Timestamp.valueOf(recountFrom));
+            jdbcTemplate.query(REBUILD_SQL, rs -> {
+                CompactPayment payment = compact.compact(null, rs.getBigDecimal("amount"), null, rs.getString("status"),
+                        rs.getTimestamp("timestamp").toLocalDateTime(), rs.getString("category"), rs.getString("sender_account"));
+                apply(payment, payment.categoryId(), 1);
+                loaded[1]++;
+            }, Timestamp.valueOf(recountFrom));
+        });
+        evictExpired();
+        logger.info("Spend rollups ready: {} checkpointed cells, {} payments recounted since {}", loaded[0], loaded[1], recountFrom);
+
+        running = true;
+        checkpointer = new Thread(this::checkpointLoop, "rollup-checkpointer");
+        checkpointer.setDaemon(true);
+        checkpointer.start();
+    }
+
+    // 🔴 One last checkpoint before closing.
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (checkpointer != null) {
+            checkpointer.interrupt();
+            checkpointer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        checkpoint();
+    }
+
+    // ===================================================================================
+    // ✍️ 1. KEEP THE TALLY (Listening to the Switch and the AI Back Office)
+    // ===================================================================================
+    // Listeners run on the payment's own thread, right after it was saved:
+    // a payment the board cannot read is logged and skipped, never failed.
+    @EventListener
+    public void onBooked(TransactionsBooked event) {
+        for (Transaction txn : event.transactions()) {
+            try {
+                CompactPayment payment = compact.compact(txn);
+                apply(payment, payment.categoryId(), 1);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Transaction {} left out of the spend rollups: {}", txn.getId(), e.getMessage());
+            }
+        }
+    }
+
+    // A PENDING payment got its real category: move it from the PENDING pile to the right one.
+    @EventListener
+    public void onCategoryAssigned(CategoryAssigned event) {
+        try {
+            CompactPayment payment = compact.compact(event.transaction());
+            apply(payment, payment.categoryId(), -1);
+            apply(payment, compact.categoryId(event.category()), 1);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Category of transaction {} not moved in the spend rollups: {}",
+                    event.transaction().getId(), e.getMessage());
+        }
+    }
+
+    // A journaled payment was taken back as a duplicate: it leaves the tally again.
+    @EventListener
+    public void onReversed(TransactionReversed event) {
+        try {
+            CompactPayment payment = compact.compact(event.transaction());
+            apply(payment, payment.categoryId(), -1);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Reversed transaction {} not taken out of the spend rollups: {}",
+                    event.transaction().getId(), e.getMessage());
+        }
+    }
+
+    // Adds (sign = 1) or removes (sign = -1) one payment in all 8 tallies (3 sizes x 3 groupings,
+    // minus SENDER x MINUTE).
+    // Bank and category names are the interned ones, so no text is built per payment.
+    private void apply(CompactPayment payment, int categoryId, int sign) {
+        if (payment.epochMicros() == Long.MIN_VALUE) {
+            return;
+        }
+        long cents = sign * payment.amountMinor();
+        String category = compact.category(categoryId);
+        String bank = compact.bank(payment.bankId());
+        String sender = payment.senderAccount() == null ? CompactPayments.UNKNOWN : payment.senderAccount();
+        for (Granularity granularity : Granularity.values()) {
+            long bucket = granularity.bucketOf(payment.epochMicros());
+            add(cell(granularity, Dimension.CATEGORY, bucket, category), sign, cents);
+            add(cell(granularity, Dimension.BANK, bucket, bank), sign, cents);
+            if (onBoard(granularity, Dimension.SENDER)) {
+                add(cell(granularity, Dimension.SENDER, bucket, sender), sign, cents);
+            }
+        }
+    }
+
+    private void add(Cell cell, int sign, long cents) {
+        cell.count.add(sign);
+        cell.cents.add(cents);
+        if (!cell.dirty.get() && cell.dirty.compareAndSet(false, true)) {
+            dirty.add(cell);
+        }
+    }
+
+    private Cell cell(Granularity granularity, Dimension dimension, long bucket, String key) {
+        return board.get(granularity).get(dimension)
+                .computeIfAbsent(bucket, b -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new Cell(granularity, dimension, bucket, key));
+    }
+
+    // ===================================================================================
+    // 🔎 2. ANSWER A QUESTION (From memory only)
+    // ===================================================================================
+    // All buckets with from <= start < to. "key" (optional) keeps only one category/bank/sender.
+    // Buckets from before the board's retention are recounted from the payments (slower, but exact),
+    // and so is every SENDER x MINUTE question (best asked for one sender: it is pushed down to the query).
+    public Report query(Granularity granularity, Dimension dimension, LocalDateTime from, LocalDateTime to, String key) {
+        long start = granularity.bucketOf(CompactPayments.toEpochMicros(from));
+        long end = CompactPayments.toEpochMicros(to);
+        long kept = onBoard(granularity, dimension) ? keptFrom(granularity) : Long.MAX_VALUE;
+
+        List<Row> buckets = new ArrayList<>();
+        Map<String, long[]> totals = new TreeMap<>();
+        if (start < kept) {
+            recount(granularity, dimension, CompactPayments.fromEpochMicros(start),
+                    CompactPayments.fromEpochMicros(Math.min(end, kept)), key, buckets, totals);
+        }
+
+        NavigableMap<Long, ConcurrentHashMap<String, Cell>> slice = board.get(granularity).get(dimension)
+                .subMap(Math.max(start, kept), true, Math.max(end, kept), false);
+        for (Map.Entry<Long, ConcurrentHashMap<String, Cell>> bucket : slice.entrySet()) {
+            LocalDateTime bucketStart = CompactPayments.fromEpochMicros(bucket.getKey());
+            for (Map.Entry<String, Cell> entry : bucket.getValue().entrySet()) {
+                if (key != null && !key.equals(entry.getKey())) {
+                    continue;
+                }
+                long count = entry.getValue().count.sum();
+                long cents = entry.getValue().cents.sum();
+                if (count == 0) {
+                    continue; // Everything moved out of this pile (e.g. PENDING after enrichment).
+                }
+                buckets.add(new Row(bucketStart, entry.getKey(), count, PostingEngine.toMoney(cents)));
+                long[] total = totals.computeIfAbsent(entry.getKey(), k -> new long[2]);
+                total[0] += count;
+                total[1] += cents;
+            }
+        }
+        buckets.sort(Comparator.comparing(Row::bucket).thenComparing(Row::key));
+        List<Row> totalRows = new ArrayList<>(totals.size());
+        totals.forEach((k, t) -> totalRows.add(new Row(null, k, t[0], PostingEngine.toMoney(t[1]))));
+        return new Report(granularity, dimension, from, to, buckets, totalRows);
+    }
+
+    // ⏳ The first bucket the board still holds completely (older ones were evicted).
+    private long keptFrom(Granularity granularity) {
+        long cutoff = CompactPayments.toEpochMicros(LocalDateTime.now())
+                - TimeUnit.MILLISECONDS.toMicros(retention.get(granularity).toMillis());
+        long bucket = granularity.bucketOf(cutoff);
+        return bucket == cutoff ? bucket : bucket + granularity.micros;
+    }
+
+    // 🧮 Count [from, to) again from the payments: the hot table, then the archived months.
+    // A sender or category key is pushed down to both, so only matching rows are read.
+    private void recount(Granularity granularity, Dimension dimension, LocalDateTime from, LocalDateTime to, String key,
+                         List<Row> buckets, Map<String, long[]> totals) {
+        String sender = key != null && dimension == Dimension.SENDER && !CompactPayments.UNKNOWN.equals(key) ? key : null;
+        String category = key != null && dimension == Dimension.CATEGORY && !CompactPayments.UNKNOWN.equals(key) ? key : null;
+        TreeMap<Long, Map<String, long[]>> counted = new TreeMap<>();
+        Consumer<CompactPayment> count = payment -> {
+            if (payment.epochMicros() == Long.MIN_VALUE) {
+                return;
+            }
+            String k = switch (dimension) {
+                case CATEGORY -> compact.category(payment.categoryId());
+                case BANK -> compact.bank(payment.bankId());
+                case SENDER -> payment.senderAccount() == null ? CompactPayments.UNKNOWN : payment.senderAccount();
+            };
+            if (key == null || key.equals(k)) {
+                long[] cell = counted.computeIfAbsent(granularity.bucketOf(payment.epochMicros()), b -> new TreeMap<>())
+                        .computeIfAbsent(k, x -> new long[2]);
+                cell[0]++;
+                cell[1] += payment.amountMinor();
+            }
+        };
+
+        StringBuilder sql = new StringBuilder(RECOUNT_SQL);
+        List<Object> args = new ArrayList<>(List.of(Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        if (sender != null) {
+            sql.append(" AND sender_account = ?");
+            args.add(sender);
+        }
+        if (category != null) {
+            sql.append(" AND category = ?");
+            args.add(category);
+        }
+        tx.executeWithoutResult(status -> jdbcTemplate.query(sql.toString(), rs -> {
+            count.accept(compact.compact(null, rs.getBigDecimal("amount"), null, rs.getString("status"),
+                    rs.getTimestamp("timestamp").toLocalDateTime(), rs.getString("category"), rs.getString("sender_account")));
+        }, args.toArray()));
+        archive.scan(from, to, sender, category, txn -> count.accept(compact.compact(txn)));
+
+        counted.forEach((bucket, keys) -> keys.forEach((k, c) -> {
+            buckets.add(new Row(CompactPayments.fromEpochMicros(bucket), k, c[0], PostingEngine.toMoney(c[1])));
+            long[] total = totals.computeIfAbsent(k, x -> new long[2]);
+            total[0] += c[0];
+            total[1] += c[1];
+        }));
+    }
+
+    // ===================================================================================
+    // 💾 3. CHECKPOINT (Changed totals -> "spend_rollups" table)
+    // ===================================================================================
+    private void checkpointLoop() {
+        while (running) {
+            try {
+                Thread.sleep(checkpointIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            checkpoint();
+            evictExpired();
+        }
+    }
+
+    void checkpoint() {
+        List<Cell> changed = new ArrayList<>();
+        Cell next;
+        while ((next = dirty.poll()) != null) {
+            next.dirty.set(false); // Cleared BEFORE reading: a concurrent update queues it again.
+            changed.add(next);
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(changed.size());
+        for (Cell cell : changed) {
+            rows.add(new Object[]{cell.granularity.name(), cell.dimension.name(),
+                    Timestamp.valueOf(CompactPayments.fromEpochMicros(cell.bucket)), cell.key,
+                    cell.count.sum(), PostingEngine.toMoney(cell.cents.sum())});
+        }
+        try {
+            tx.executeWithoutResult(status -> jdbcTemplate.batchUpdate(CHECKPOINT_SQL, rows));
+        } catch (RuntimeException e) {
+            for (Cell cell : changed) { // Try again next time.
+                if (cell.dirty.compareAndSet(false, true)) {
+                    dirty.add(cell);
+                }
+            }
+            logger.warn("Spend rollup checkpoint of {} cells failed: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    // 🧹 Forget buckets older than their retention (they stay in the table).
+    private void evictExpired() {
+        long now = CompactPayments.toEpochMicros(LocalDateTime.now());
+        for (Granularity granularity : Granularity.values()) {
+            long cutoff = now - TimeUnit.MILLISECONDS.toMicros(retention.get(granularity).toMillis());
+            for (Dimension dimension : Dimension.values()) {
+                board.get(granularity).get(dimension).headMap(cutoff).clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "RuntimeMXBean" knows when this JVM was started, so we can measure from the very beginning
+// (class loading, Spring, Hibernate, Flyway...) and not just from main().
+import com.electrumprep.ledger.model.TransactionsBooked;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// -----------------------------------------------------------------------------------
+// ⏱️ THE STARTING PISTOL (Time-to-first-payment)
+// During a peak, a new server is only useful once it has BOOKED a payment. Two numbers,
+// both counted from the moment the JVM started:
+// - ledger.startup.ready:         the app is ready to take traffic.
+// - ledger.startup.first-payment: the first payment was booked.
+// Both are logged once and shown on /actuator/metrics and /actuator/prometheus.
+// -----------------------------------------------------------------------------------
+
+@Component
+public class StartupTimer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimer.class);
+
+    // Milliseconds since the JVM started; -1 = "not yet".
+    private final AtomicLong readyMillis = new AtomicLong(-1);
+    private final AtomicLong firstPaymentMillis = new AtomicLong(-1);
+
+    public StartupTimer(MeterRegistry meterRegistry) {
+        gauge(meterRegistry, "ledger.startup.ready", "JVM start until the app is ready for traffic", readyMillis);
+        gauge(meterRegistry, "ledger.startup.first-payment", "JVM start until the first payment was booked", firstPaymentMillis);
+    }
+
+    private static void gauge(MeterRegistry meterRegistry, String name, String description, AtomicLong millis) {
+        TimeGauge.builder(name, millis, TimeUnit.MILLISECONDS, m -> m.get() < 0 ? Double.NaN : m.get())
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyMillis.set(uptimeMillis());
+        logger.info("Ready for payments {} ms after JVM start", readyMillis.get());
+    }
+
+    // 🏁 After the first payment this is one read of a number that is no longer -1.
+    @EventListener
+    public void onBooked(TransactionsBooked event) {
+        if (firstPaymentMillis.get() < 0 && !event.transactions().isEmpty()
+                && firstPaymentMillis.compareAndSet(-1, uptimeMillis())) {
+            logger.info("First payment booked {} ms after JVM start", firstPaymentMillis.get());
+        }
+    }
+
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
@@ -0,0 +1,73 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.config.CacheConfig;
+import com.electrumprep.ledger.model.MerchantCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+// -----------------------------------------------------------------------------------
+// 🔥 THE WARM-UP LAP (After the doors open)
+// A new server should take payments as soon as possible, so the slow "nice to have" set-up
+// does NOT happen during startup. Once the app is ready, in the background:
+// 1. ☎️ The Gemini phone line is set up (otherwise the first payment that needs Google does it).
+// 2. 🧠 The RAM category cache is filled with the newest cards from the long-term memory
+//    (merchant_categories), so the first payments of known merchants are cache hits.
+// Payments that arrive in the meantime simply take the normal (slower) path.
+// -----------------------------------------------------------------------------------
+
+@Service
+public class StartupWarmup {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private final GeminiClient gemini;
+    private final PersistentCategoryTier persistentTier;
+    private final CacheManager cacheManager;
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final boolean enabled;
+    private final int categoryCards;
+
+    public StartupWarmup(GeminiClient gemini, PersistentCategoryTier persistentTier, CacheManager cacheManager,
+                         @Value("${ledger.startup.warm-up.enabled:true}") boolean enabled,
+                         @Value("${ledger.startup.warm-up.category-cards:10000}") int categoryCards) {
+        this.gemini = gemini;
+        this.persistentTier = persistentTier;
+        this.cacheManager = cacheManager;
+        this.enabled = enabled;
+        this.categoryCards = categoryCards;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        gemini.warmUp();
+
+        // putIfAbsent: a payment that already learned a newer answer keeps it.
+        Cache cache = cacheManager.getCache(CacheConfig.CATEGORIES);
+        List<MerchantCategory> cards = persistentTier.freshest(categoryCards);
+        if (cache != null) {
+            for (MerchantCategory card : cards) {
+                if (card.getCategory() != null) {
+                    cache.putIfAbsent(card.getMerchantKey(), card.getCategory());
+                }
+            }
+        }
+        logger.info("Warm-up done in {} ms: Gemini client ready, {} category cards cached",
+                (System.nanoTime() - start) / 1_000_000, cards.size());
+    }
+}
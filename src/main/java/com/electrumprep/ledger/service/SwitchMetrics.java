@@ -0,0 +1,127 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "MeterRegistry" is the scoreboard that /actuator/metrics and /actuator/prometheus read from.
+// "ObservationRegistry" turns an Observation into a trace span (when tracing is switched on).
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// -----------------------------------------------------------------------------------
+// ⏱️ THE SWITCH STOPWATCHES (Hot-path metrics)
+// Where does the time of ONE payment go? One stopwatch per stage of the Switch:
+// validate -> risk -> route -> post (balances) -> categorize (sync mode) -> save (database or journal),
+// and batch_save for the one saveAll of a bulk-upload chunk.
+// Each stopwatch is a Timer with a histogram (ledger.switch.stage{stage=...}), so Prometheus can
+// draw p50/p99 per stage. Plus two counters: which bank each payment was routed to, and why
+// payments were refused. And how many rows each bulk-upload INSERT batch carried.
+//
+// Cheap on purpose: the Timers are built once, and a stage is measured with two
+// System.nanoTime() calls and one record(...) (no Timer.Sample, no Duration objects).
+// Trace spans per stage are OPTIONAL (ledger.metrics.stage-spans): when off, the span is the
+// shared no-op Observation, which costs nothing.
+// -----------------------------------------------------------------------------------
+
+@Component
+public class SwitchMetrics {
+
+    // 🧩 THE STAGES (in the order a payment goes through them)
+    public enum Stage {
+        VALIDATE, RISK, ROUTE, POST, CATEGORIZE, SAVE, BATCH_SAVE;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observations;
+    private final boolean stageSpans;
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final DistributionSummary batchSizes;
+
+    // 📊 One counter per bank / per refusal reason, made the first time it is needed
+    // (banks come from the hot-swappable Routing Table, so they are not known up front).
+    private final Map<String, Counter> routedTo = new ConcurrentHashMap<>();
+    private final Map<String, Counter> refused = new ConcurrentHashMap<>();
+
+    public SwitchMetrics(MeterRegistry meterRegistry,
+                         ObservationRegistry observations,
+                         @Value("${ledger.metrics.stage-spans:false}") boolean stageSpans) {
+        this.meterRegistry = meterRegistry;
+        this.observations = observations;
+        this.stageSpans = stageSpans;
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("ledger.switch.stage")
+                    .description("Time one payment spends in one stage of the Switch")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(500))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(meterRegistry);
+        }
+        this.batchSizes = batchSizeSummary(meterRegistry, "transactions");
+    }
+
+    // 📦 "How many rows went to the database in one batch?" (ledger.db.batch.size{batch=...})
+    // Shared with the other batch writers (journal drain, ledger flush), so all of them line up.
+    public static DistributionSummary batchSizeSummary(MeterRegistry meterRegistry, String batch) {
+        return DistributionSummary.builder("ledger.db.batch.size")
+                .description("Rows written to the database in one batch")
+                .tag("batch", batch)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(10_000.0)
+                .register(meterRegistry);
+    }
+
+    // 🟢 START A STAGE: the span (or the free no-op one). Take System.nanoTime() right after.
+    public Observation startSpan(Stage stage) {
+        if (!stageSpans) {
+            return Observation.NOOP;
+        }
+        // A child of whatever is current (normally the http.server.requests span of this request).
+        // Its own name, so the Timer Micrometer makes for every Observation does not clash with ours.
+        return Observation.createNotStarted("ledger.switch.span", observations)
+                .contextualName("switch " + stage.tag)
+                .lowCardinalityKeyValue("stage", stage.tag)
+                .start();
+    }
+
+    // 🔴 END A STAGE: stop the stopwatch (and the span).
+    public void record(Stage stage, long startNanos, Observation span) {
+        stageTimers[stage.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        span.stop();
+    }
+
+    // 🔀 "This payment went to ABSA BANK."
+    public void routed(String bank) {
+        counter(routedTo, bank, "ledger.switch.routed", "bank").increment();
+    }
+
+    // 🛑 "This payment was refused" (invalid, risk, insufficient_funds...).
+    public void refused(String reason) {
+        counter(refused, reason, "ledger.switch.refused", "reason").increment();
+    }
+
+    // 📦 A bulk-upload chunk was saved with "rows" rows.
+    public void batchSaved(int rows) {
+        batchSizes.record(rows);
+    }
+
+    // get() first: after the first payment of a bank this never allocates.
+    private Counter counter(Map<String, Counter> counters, String value, String name, String tag) {
+        Counter counter = counters.get(value);
+        return counter != null ? counter
+                : counters.computeIfAbsent(value, v -> meterRegistry.counter(name, tag, v));
+    }
+}
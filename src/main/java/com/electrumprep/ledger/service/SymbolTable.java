@@ -0,0 +1,58 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// -----------------------------------------------------------------------------------
+// 🔢 THE NUMBER PLATES (String interning: name <-> small int)
+// "INVESTEC BANK" is the same 13 letters on every payment. Here it gets a number (e.g. 3)
+// the first time it is seen, and from then on hot code carries the number, not the text.
+// - intern("INVESTEC BANK") -> 3   (lock-free after the first time)
+// - name(3)                 -> "INVESTEC BANK"   (one array read, no lock)
+// Numbers are only valid inside this process: never store them on disk or in the database.
+// Meant for SMALL vocabularies (banks, categories), because names are never forgotten.
+// -----------------------------------------------------------------------------------
+
+public final class SymbolTable {
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // id -> name. Replaced by a bigger copy when full ("volatile": readers always see a complete array).
+    private volatile String[] names = new String[16];
+    private int size;
+
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        lock.lock();
+        try {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            String[] current = names;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = name;
+            names = current; // Publish the name BEFORE its number becomes visible in "ids".
+            ids.put(name, size);
+            return size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,555 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "YearMonth" is one calendar month (2026-02): the unit of a partition and of an archive file.
+// "ConnectionCallback" lets us ask the JDBC driver which database this is (Postgres or H2).
+import com.electrumprep.ledger.model.HistoryCursor;
+import com.electrumprep.ledger.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+
+// -----------------------------------------------------------------------------------
+// 🧊 THE COLD ROOM (Monthly partitions + columnar archive)
+// One ever-growing "transactions" table makes every index, vacuum and lookup slower each month.
+// 1. 📅 PARTITIONS: on Postgres the table is split by month (transactions_2026_02, ...).
+//    This class creates the next months ahead of time, so new payments never land in the
+//    catch-all "transactions_default" partition. H2 has no partitions: there the table keeps
+//    the same keys, and a month is simply a timestamp range.
+// 2. 📦 ARCHIVE: once a month is older than "hot-months", its rows are written to ONE
+//    compressed columnar file (ArchiveFile), checked, recorded in "transaction_archive" and
+//    removed from the hot table (DETACH + DROP of the partition, in the same transaction).
+//    Two servers racing for the same month: the month is CLAIMED (catalog row first, behind an
+//    advisory lock on Postgres) before a byte is written, so only one ever writes it. Every
+//    run writes its own uniquely named file, and only ever deletes the file it made itself.
+// 3. 🔎 READING: history pages, the export and old stats continue into the archive files when
+//    the hot table runs out, skipping row groups by timestamp, sender and category.
+// Archive files live on LOCAL disk: with several servers, give them a shared "directory".
+// -----------------------------------------------------------------------------------
+
+@Service
+public class TransactionArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionArchive.class);
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    // 📒 THE CATALOG: which months are in the archive, in which file.
+    private static final String CATALOG_SQL = "SELECT month_start, file, row_count FROM transaction_archive ORDER BY month_start";
+    private static final String RECORD_SQL =
+            "INSERT INTO transaction_archive (month_start, file, row_count, archived_at) VALUES (?, ?, ?, ?)";
+    private static final String CLAIMED_SQL = "SELECT COUNT(*) FROM transaction_archive WHERE month_start = ?";
+    private static final String ROWS_SQL = "UPDATE transaction_archive SET row_count = ? WHERE month_start = ?";
+    private static final String RECORDED_SQL = "SELECT COUNT(*) FROM transaction_archive WHERE file = ?";
+    // 🔐 One advisory lock per month (Postgres): a second server skips the month instead of waiting.
+    private static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_xact_lock(?)";
+    private static final long LOCK_NAMESPACE = 0x41524348L << 32; // "ARCH"
+
+    // 🔥 THE HOT TABLE
+    private static final String OLDEST_SQL = "SELECT MIN(timestamp) FROM transactions";
+    private static final String MONTH_SQL =
+            "SELECT id, reference, amount, sender_account, receiver_account, currency, status, timestamp, category, " +
+            "idempotency_key FROM transactions WHERE timestamp >= ? AND timestamp < ? ORDER BY timestamp, id";
+    // Only the rows that are in the file: a late row of the same month stays hot.
+    private static final String DELETE_SQL = "DELETE FROM transactions WHERE id = ? AND timestamp >= ? AND timestamp < ?";
+    private static final int DELETE_BATCH = 1000;
+
+    // 📅 POSTGRES PARTITIONS
+    private static final String PARTITIONED_SQL =
+            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid " +
+            "WHERE c.relname = 'transactions' AND pg_table_is_visible(c.oid))";
+    private static final String PARTITION_EXISTS_SQL = "SELECT to_regclass(?) IS NOT NULL";
+
+    private static final RowMapper<Transaction> ROW = (rs, rowNum) -> {
+        Transaction txn = new Transaction();
+        txn.setId(rs.getLong("id"));
+        txn.setReference(rs.getString("reference"));
+        txn.setAmount(rs.getBigDecimal("amount"));
+        txn.setSenderAccount(rs.getString("sender_account"));
+        txn.setReceiverAccount(rs.getString("receiver_account"));
+        txn.setCurrency(rs.getString("currency"));
+        txn.setStatus(rs.getString("status"));
+        txn.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+        txn.setCategory(rs.getString("category"));
+        txn.setIdempotencyKey(rs.getString("idempotency_key"));
+        return txn;
+    };
+
+    // 📒 One archived month.
+    private record Month(YearMonth month, String file, long rows) { }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate archiveJdbc;
+    private final JdbcTemplate catalogJdbc;
+    private final TransactionTemplate tx;
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final boolean enabled;
+    private final Path directory;
+    private final int hotMonths;
+    private final int partitionsAhead;
+    private final int rowGroupRows;
+    private final Duration checkInterval;
+    private final Duration catalogRefresh;
+
+    // 📒 The catalog in memory (month -> file), re-read at most every "catalog-refresh".
+    private final ConcurrentSkipListMap<YearMonth, Month> catalog = new ConcurrentSkipListMap<>();
+    private final AtomicInteger archivedMonths = new AtomicInteger();
+    private volatile long catalogReadAt;
+    private volatile boolean started;
+    private volatile boolean postgres;
+    private volatile boolean partitioned;
+
+    private final Counter rowsArchived;
+    private final Counter groupsRead;
+    private final Counter groupsSkipped;
+
+    // 🔒 One archive run at a time on this server. A lock, not "synchronized": the run does JDBC and
+    // file I/O, and a virtual thread waiting on a monitor would pin its carrier all that time.
+    private final ReentrantLock archiveLock = new ReentrantLock();
+
+    private Thread caretaker;
+    private volatile boolean running;
+
+    public TransactionArchive(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              TransactionReadStore readStore,
+                              MeterRegistry meterRegistry,
+                              @Value("${ledger.archive.enabled:false}") boolean enabled,
+                              @Value("${ledger.archive.directory:archive}") String directory,
+                              @Value("${ledger.archive.hot-months:3}") int hotMonths,
+                              @Value("${ledger.archive.partitions-ahead:2}") int partitionsAhead,
+                              @Value("${ledger.archive.row-group-rows:8192}") int rowGroupRows,
+                              @Value("${ledger.archive.fetch-size:1000}") int fetchSize,
+                              @Value("${ledger.archive.check-interval:1h}") Duration checkInterval,
+                              @Value("${ledger.archive.catalog-refresh:1m}") Duration catalogRefresh) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.hotMonths = Math.max(1, hotMonths);
+        this.partitionsAhead = partitionsAhead;
+        this.rowGroupRows = rowGroupRows;
+        this.checkInterval = checkInterval;
+        this.catalogRefresh = catalogRefresh;
+        this.tx = new TransactionTemplate(transactionManager);
+        // A month is read through a cursor (Postgres only streams inside a transaction: the archive one).
+        this.archiveJdbc = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.archiveJdbc.setFetchSize(fetchSize);
+        // The catalog is re-read from the replica when there is one (history reads stay off the write pool).
+        DataSource replica = readStore.replica();
+        this.catalogJdbc = replica != null ? new JdbcTemplate(replica) : jdbcTemplate;
+
+        meterRegistry.gauge("ledger.archive.months", archivedMonths);
+        this.rowsArchived = meterRegistry.counter("ledger.archive.rows.archived");
+        this.groupsRead = meterRegistry.counter("ledger.archive.row-groups", "result", "read");
+        this.groupsSkipped = meterRegistry.counter("ledger.archive.row-groups", "result", "skipped");
+    }
+
+    // ===================================================================================
+    // 🟢 STARTUP: read the catalog, make sure the next months have partitions
+    // ===================================================================================
+    @PostConstruct
+    public void start() {
+        postgres = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())));
+        partitioned = postgres && Boolean.TRUE.equals(jdbcTemplate.queryForObject(PARTITIONED_SQL, Boolean.class));
+        readCatalog(jdbcTemplate);
+        preparePartitions();
+        started = true;
+        logger.info("Transaction archive ready: {} archived month(s), {}", catalog.size(),
+                partitioned ? "monthly partitions" : "one hot table");
+
+        // 🧹 The caretaker: new partitions every month, and (if enabled) the archive job.
+        running = true;
+        caretaker = new Thread(this::caretakerLoop, "archive-caretaker");
+        caretaker.setDaemon(true);
+        caretaker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (caretaker != null) {
+            caretaker.interrupt();
+            caretaker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void caretakerLoop() {
+        while (running) {
+            try {
+                if (enabled) {
+                    archiveClosedMonths();
+                }
+                preparePartitions();
+            } catch (RuntimeException e) {
+                logger.warn("Archive caretaker run failed: {}", e.getMessage());
+            }
+            try {
+                Thread.sleep(checkInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // ===================================================================================
+    // 📅 1. PARTITIONS (Postgres only)
+    // ===================================================================================
+    // This month and the next "partitions-ahead". A month that already has rows in the default
+    // partition is created empty, filled from it, and then attached (all in one transaction).
+    void preparePartitions() {
+        if (!partitioned) {
+            return;
+        }
+        YearMonth now = YearMonth.now();
+        for (int i = 0; i <= partitionsAhead; i++) {
+            YearMonth month = now.plusMonths(i);
+            String name = partitionName(month);
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(PARTITION_EXISTS_SQL, Boolean.class, name))) {
+                continue;
+            }
+            tx.executeWithoutResult(status -> {
+                jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE transactions INCLUDING DEFAULTS)");
+                jdbcTemplate.update("WITH moved AS (DELETE FROM transactions_default WHERE timestamp >= ? AND timestamp < ? " +
+                        "RETURNING *) INSERT INTO " + name + " SELECT * FROM moved", start(month), start(month.plusMonths(1)));
+                jdbcTemplate.execute("ALTER TABLE transactions ATTACH PARTITION " + name +
+                        " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+            });
+            logger.info("Created partition {}", name);
+        }
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "transactions_" + PARTITION_SUFFIX.format(month);
+    }
+
+    // ===================================================================================
+    // 📦 2. THE ARCHIVE JOB (closed months -> columnar files)
+    // ===================================================================================
+    // The hot months are this one and the "hot-months - 1" before it. Returns how many were archived.
+    public int archiveClosedMonths() {
+        archiveLock.lock();
+        try {
+            return archiveDueMonths();
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
+    private int archiveDueMonths() {
+        readCatalog(jdbcTemplate);
+        Timestamp oldest = jdbcTemplate.queryForObject(OLDEST_SQL, Timestamp.class);
+        if (oldest == null) {
+            return 0;
+        }
+        YearMonth firstHot = YearMonth.now().minusMonths(hotMonths - 1);
+        int archived = 0;
+        for (YearMonth month = YearMonth.from(oldest.toLocalDateTime()); month.isBefore(firstHot); month = month.plusMonths(1)) {
+            if (catalog.containsKey(month)) {
+                // Rows booked into a month AFTER it was archived (e.g. a very late journal replay) stay hot.
+                continue;
+            }
+            try {
+                if (archive(month)) {
+                    archived++;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Archiving {} failed, will retry on the next run: {}", month, e.getMessage());
+                return archived;
+            }
+        }
+        return archived;
+    }
+
+    // False if another server holds (or just finished) the month.
+    private boolean archive(YearMonth month) throws IOException {
+        long started = System.nanoTime();
+        Timestamp from = start(month);
+        Timestamp to = start(month.plusMonths(1));
+        Files.createDirectories(directory);
+        // 🏷️ A name nobody else uses (not another server, not an earlier crashed run).
+        String fileName = "transactions-" + month + "-" + UUID.randomUUID().toString().substring(0, 8) + ".col";
+        Path target = directory.resolve(fileName);
+        Path part = directory.resolve(fileName + ".part");
+        long[] rows = {0};
+        boolean[] created = {false};
+
+        // 🔒 Claim, write, record and remove in ONE transaction: a crash leaves either all or nothing.
+        // Anything that no longer matches the file rolls it all back (the month is retried next run).
+        try {
+            Boolean done = tx.execute(status -> {
+                if (!claim(month, fileName)) {
+                    return false;
+                }
+                long[] ids;
+                try {
+                    ids = write(part, from, to, rows);
+                    Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+                    created[0] = true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                jdbcTemplate.update(ROWS_SQL, rows[0], Date.valueOf(month.atDay(1)));
+                String partition = partitionName(month);
+                long removed;
+                if (partitioned && Boolean.TRUE.equals(jdbcTemplate.queryForObject(PARTITION_EXISTS_SQL, Boolean.class, partition))) {
+                    // DETACH locks the partition: counted after it, nobody can still add a row.
+                    jdbcTemplate.execute("ALTER TABLE transactions DETACH PARTITION " + partition);
+                    removed = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partition, Long.class);
+                    jdbcTemplate.execute("DROP TABLE " + partition);
+                } else {
+                    // H2, or rows of that month sitting in the default partition.
+                    removed = delete(ids, from, to);
+                }
+                if (removed != rows[0]) {
+                    throw new IllegalStateException(month + " changed while it was archived (" + removed +
+                            " rows removed, " + rows[0] + " in the file)");
+                }
+                return true;
+            });
+            if (!Boolean.TRUE.equals(done)) {
+                return false;
+            }
+        } catch (UncheckedIOException e) {
+            discard(created[0], target, fileName);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            discard(created[0], target, fileName);
+            throw e;
+        } finally {
+            Files.deleteIfExists(part);
+        }
+        catalog.put(month, new Month(month, fileName, rows[0]));
+        archivedMonths.set(catalog.size());
+        rowsArchived.increment(rows[0]);
+        logger.info("Archived {}: {} rows, {} bytes, in {} ms", month, rows[0], Files.size(target),
+                (System.nanoTime() - started) / 1_000_000);
+        return true;
+    }
+
+    // 🙋 "This month is mine." The catalog row goes in FIRST (row count filled in later); readers
+    // do not see it before the commit, and a second claimant fails on the primary key.
+    // On Postgres a try-lock makes that second server skip the month at once instead of waiting.
+    private boolean claim(YearMonth month, String fileName) {
+        Date monthStart = Date.valueOf(month.atDay(1));
+        if (postgres && !Boolean.TRUE.equals(jdbcTemplate.queryForObject(TRY_LOCK_SQL, Boolean.class,
+                LOCK_NAMESPACE | (month.getYear() * 12L + month.getMonthValue())))) {
+            logger.info("{} is being archived by another server", month);
+            return false;
+        }
+        Long claimed = jdbcTemplate.queryForObject(CLAIMED_SQL, Long.class, monthStart);
+        if (claimed != null && claimed > 0) {
+            return false;
+        }
+        jdbcTemplate.update(RECORD_SQL, monthStart, fileName, 0L, Timestamp.valueOf(LocalDateTime.now()));
+        return true;
+    }
+
+    // ✍️ Stream the month, oldest first, into the file (never the whole month in memory,
+    // only its ids: those, and nothing else, are deleted). Read back before anything is removed.
+    private long[] write(Path part, Timestamp from, Timestamp to, long[] rows) throws IOException {
+        LongStream.Builder written = LongStream.builder();
+        try (ArchiveFile.Writer writer = new ArchiveFile.Writer(part, rowGroupRows)) {
+            try {
+                archiveJdbc.query(MONTH_SQL, (ResultSet rs) -> {
+                    try {
+                        Transaction txn = ROW.mapRow(rs, 0);
+                        writer.add(txn);
+                        written.add(txn.getId());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, from, to);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            rows[0] = writer.rows();
+        }
+        try (ArchiveFile.Reader reader = ArchiveFile.Reader.open(part)) {
+            if (reader.rows() != rows[0]) {
+                throw new IOException(part + " holds " + reader.rows() + " rows instead of " + rows[0]);
+            }
+        }
+        return written.build().toArray();
+    }
+
+    // 🧽 The run failed: remove the file IT wrote, unless the catalog points at it after all
+    // (a commit that went through although we were told otherwise). When in doubt, keep it.
+    private void discard(boolean created, Path target, String fileName) {
+        if (!created) {
+            return;
+        }
+        try {
+            Long recorded = jdbcTemplate.queryForObject(RECORDED_SQL, Long.class, fileName);
+            if (recorded != null && recorded == 0) {
+                Files.deleteIfExists(target);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Left archive file {} in place: {}", target, e.getMessage());
+        }
+    }
+
+    private long delete(long[] ids, Timestamp from, Timestamp to) {
+        long removed = 0;
+        for (int offset = 0; offset < ids.length; offset += DELETE_BATCH) {
+            int end = Math.min(ids.length, offset + DELETE_BATCH);
+            List<Object[]> batch = new ArrayList<>(end - offset);
+            for (int i = offset; i < end; i++) {
+                batch.add(new Object[]{ids[i], from, to});
+            }
+            for (int count : jdbcTemplate.batchUpdate(DELETE_SQL, batch)) {
+                removed += count;
+            }
+        }
+        return removed;
+    }
+
+    // ===================================================================================
+    // 🔎 3. READING THE ARCHIVE
+    // ===================================================================================
+
+    // 📄 History: up to "limit" rows older than the bookmark (null = the newest archived rows), newest first.
+    public List<Transaction> newest(HistoryCursor after, int limit) {
+        List<Transaction> rows = new ArrayList<>(Math.min(limit, 1024));
+        ArchiveFile.Filter filter = after == null ? ArchiveFile.Filter.ALL
+                : new ArchiveFile.Filter(Long.MIN_VALUE, Long.MAX_VALUE,
+                CompactPayments.toEpochMicros(after.timestamp()), after.id(), null, null);
+        for (Month month : months().descendingMap().values()) {
+            if (after != null && start(month.month()).toLocalDateTime().isAfter(after.timestamp())) {
+                continue;
+            }
+            if (!read(month, filter, true, txn -> {
+                rows.add(txn);
+                return rows.size() < limit;
+            })) {
+                break;
+            }
+        }
+        return rows;
+    }
+
+    // 🎫 One archived receipt by id and timestamp (a late Idempotency-Key retry of an archived payment).
+    public Optional<Transaction> find(long id, LocalDateTime timestamp) {
+        Month month = months().get(YearMonth.from(timestamp));
+        if (month == null) {
+            return Optional.empty();
+        }
+        long micros = CompactPayments.toEpochMicros(timestamp);
+        ArchiveFile.Filter filter = new ArchiveFile.Filter(micros, micros + 1, Long.MAX_VALUE, Long.MAX_VALUE, null, null);
+        Transaction[] found = new Transaction[1];
+        read(month, filter, false, txn -> {
+            if (txn.getId() == id) {
+                found[0] = txn;
+            }
+            return found[0] == null;
+        });
+        return Optional.ofNullable(found[0]);
+    }
+
+    // 🚰 Oldest first, with predicate pushdown. from/to (to not included), sender and category are optional.
+    public void scan(LocalDateTime from, LocalDateTime to, String senderAccount, String category, Consumer<Transaction> each) {
+        ArchiveFile.Filter filter = new ArchiveFile.Filter(
+                from == null ? Long.MIN_VALUE : CompactPayments.toEpochMicros(from),
+                to == null ? Long.MAX_VALUE : CompactPayments.toEpochMicros(to),
+                Long.MAX_VALUE, Long.MAX_VALUE, senderAccount, category);
+        for (Month month : months().values()) {
+            LocalDateTime monthStart = start(month.month()).toLocalDateTime();
+            if ((to != null && !monthStart.isBefore(to))
+                    || (from != null && !start(month.month().plusMonths(1)).toLocalDateTime().isAfter(from))) {
+                continue;
+            }
+            read(month, filter, false, txn -> {
+                each.accept(txn);
+                return true;
+            });
+        }
+    }
+
+    private boolean read(Month month, ArchiveFile.Filter filter, boolean newestFirst,
+                         Predicate<Transaction> visitor) {
+        Path file = directory.resolve(month.file());
+        if (!Files.exists(file)) {
+            logger.warn("Archive file {} for {} is missing on this server: its rows are left out", file, month.month());
+            return true;
+        }
+        try (ArchiveFile.Reader reader = ArchiveFile.Reader.open(file)) {
+            try {
+                return reader.scan(filter, newestFirst, visitor);
+            } finally {
+                groupsRead.increment(reader.groupsRead());
+                groupsSkipped.increment(reader.groupsSkipped());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read archive file " + file, e);
+        }
+    }
+
+    // 📒 The catalog, re-read at most every "catalog-refresh" (another server may have archived a month).
+    private ConcurrentSkipListMap<YearMonth, Month> months() {
+        if (started && System.nanoTime() - catalogReadAt > catalogRefresh.toNanos()) {
+            readCatalog(catalogJdbc);
+        }
+        return catalog;
+    }
+
+    private void readCatalog(JdbcTemplate source) {
+        List<Month> months = source.query(CATALOG_SQL, (rs, rowNum) ->
+                new Month(YearMonth.from(rs.getDate("month_start").toLocalDate()), rs.getString("file"), rs.getLong("row_count")));
+        for (Month month : months) {
+            catalog.put(month.month(), month);
+        }
+        catalog.keySet().retainAll(months.stream().map(Month::month).toList());
+        archivedMonths.set(catalog.size());
+        catalogReadAt = System.nanoTime();
+    }
+
+    private static Timestamp start(YearMonth month) {
+        return Timestamp.valueOf(month.atDay(1).atStartOfDay());
+    }
+
+    // 📋 Archived month -> row count.
+    public Map<YearMonth, Long> archived() {
+        Map<YearMonth, Long> rows = new TreeMap<>();
+        catalog.forEach((month, entry) -> rows.put(month, entry.rows()));
+        return rows;
+    }
+}
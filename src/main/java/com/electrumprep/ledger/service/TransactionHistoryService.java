@@ -0,0 +1,206 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "JdbcTemplate" talks SQL directly (no Hibernate objects kept in memory).
+// "TransactionTemplate" opens a read-only database transaction: Postgres only streams
+// rows with a real cursor inside a transaction, otherwise it loads EVERYTHING first.
+// "JsonGenerator" writes JSON piece by piece straight onto the network.
+import com.electrumprep.ledger.model.HistoryCursor;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.repository.TransactionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// -----------------------------------------------------------------------------------
+// 📜 THE ARCHIVIST (Transaction History)
+// The old "give me EVERYTHING" query loaded the whole table into one List.
+// With millions of rows that means out-of-memory errors and long GC pauses.
+// The archivist offers two safer ways to read history:
+// 1. 📄 PAGES:  newest first, at most N rows per call, with a bookmark for the next page.
+// 2. 🚰 EXPORT: the whole table as NDJSON, streamed row by row from a database cursor.
+//    Memory use stays the same whether the table has 10 rows or 10 million.
+// With the read model on (see TransactionReadStore), pages come from memory / the read replica,
+// and the export reads from the replica when there is one.
+// Months moved to the archive (see TransactionArchive) are read from there: pages continue
+// into it when the hot table runs out, and the export starts with it.
+// -----------------------------------------------------------------------------------
+
+@Service
+public class TransactionHistoryService {
+
+    // 🔎 The export query. Plain SQL, oldest first, so a file export reads like a journal.
+    private static final String EXPORT_SQL =
+            "SELECT id, reference, amount, sender_account, receiver_account, currency, status, timestamp, category " +
+            "FROM transactions ORDER BY timestamp, id";
+
+    // How often (in rows) we push what we've written so far to the client.
+    private static final int FLUSH_EVERY = 1000;
+
+    // 📄 ONE PAGE: the rows, plus the bookmark for the next page (null = this was the last page).
+    public record Page(List<Transaction> items, String nextCursor) { }
+
+    private final TransactionRepository repository;
+    private final TransactionReadStore readStore;
+    private final TransactionArchive archive;
+    private final JdbcTemplate exportJdbc;
+    private final TransactionTemplate readOnlyTx;
+    private final ObjectMapper objectMapper;
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public TransactionHistoryService(TransactionRepository repository,
+                                     TransactionReadStore readStore,
+                                     TransactionArchive archive,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     ObjectMapper objectMapper,
+                                     @Value("${ledger.history.default-page-size:100}") int defaultPageSize,
+                                     @Value("${ledger.history.max-page-size:1000}") int maxPageSize,
+                                     @Value("${ledger.history.export-fetch-size:500}") int exportFetchSize) {
+        this.repository = repository;
+        this.readStore = readStore;
+        this.archive = archive;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+
+        // A private copy of the JdbcTemplate, so the fetch size only applies to exports.
+        // With a read replica, the export runs there (with its own transaction manager).
+        DataSource replica = readStore.replica();
+        this.exportJdbc = new JdbcTemplate(replica != null ? replica : jdbcTemplate.getDataSource());
+        this.exportJdbc.setFetchSize(exportFetchSize);
+        this.readOnlyTx = new TransactionTemplate(replica != null ? new DataSourceTransactionManager(replica) : transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    // ===================================================================================
+    // 📄 1. ONE PAGE OF HISTORY (Newest first)
+    // ===================================================================================
+    // "cursor" = the bookmark from the previous page (null for the first page).
+    // "limit"  = how many rows the client wants (capped at max-page-size).
+    public Page page(String cursor, Integer limit) {
+        int size = Math.min(limit == null || limit < 1 ? defaultPageSize : limit, maxPageSize);
+
+        // We ask for ONE extra row: if it comes back, we know there is another page.
+        PageRequest firstRows = PageRequest.of(0, size + 1);
+        HistoryCursor bookmark = cursor == null || cursor.isBlank() ? null : HistoryCursor.decode(cursor);
+        List<Transaction> rows;
+        if (readStore.isEnabled()) {
+            // 🪞 Read model: no connection from the write pool.
+            rows = readStore.newest(bookmark, size + 1);
+        } else if (bookmark == null) {
+            rows = repository.findNewest(firstRows);
+        } else {
+            rows = repository.findOlderThan(bookmark.timestamp(), bookmark.id(), firstRows);
+        }
+
+        // 🧊 The hot rows ran out: the rest of the page comes from the archived months.
+        if (rows.size() <= size && (!readStore.isEnabled() || readStore.reachesEnd())) {
+            List<Transaction> older = archive.newest(rows.isEmpty() ? bookmark : HistoryCursor.after(rows.get(rows.size() - 1)),
+                    size + 1 - rows.size());
+            if (!older.isEmpty()) {
+                rows = new ArrayList<>(rows);
+                rows.addAll(older);
+            }
+        }
+
+        if (rows.size() <= size) {
+            return new Page(rows, null);
+        }
+        List<Transaction> items = rows.subList(0, size);
+        return new Page(items, HistoryCursor.after(items.get(size - 1)).encode());
+    }
+
+    // ===================================================================================
+    // 🚰 2. THE FIRE HOSE (Streaming NDJSON export)
+    // ===================================================================================
+    // Each row is read from the cursor, written as one JSON line, and forgotten.
+    // If the client hangs up half-way, the write fails and the query is cancelled.
+    public void export(OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.createGenerator(out)) {
+            json.setRootValueSeparator(new SerializedString("\n"));
+            int[] written = {0};
+
+            // 🧊 The archived months first (they are older than anything in the hot table).
+            archive.scan(null, null, null, null, txn -> {
+                try {
+                    writeRow(json, txn);
+                    if (++written[0] % FLUSH_EVERY == 0) {
+                        json.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            readOnlyTx.executeWithoutResult(status -> exportJdbc.query(EXPORT_SQL, (ResultSet rs) -> {
+                try {
+                    writeRow(json, rs);
+                    if (++written[0] % FLUSH_EVERY == 0) {
+                        json.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+
+            if (written[0] > 0) {
+                json.writeRaw('\n');
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ✍️ One row -> one JSON object (same field names as the Transaction class).
+    private void writeRow(JsonGenerator json, ResultSet rs) throws SQLException, IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", rs.getLong("id"));
+        json.writeStringField("reference", rs.getString("reference"));
+        json.writeNumberField("amount", rs.getBigDecimal("amount"));
+        json.writeStringField("senderAccount", rs.getString("sender_account"));
+        json.writeStringField("receiverAccount", rs.getString("receiver_account"));
+        json.writeStringField("currency", rs.getString("currency"));
+        json.writeStringField("status", rs.getString("status"));
+        json.writeFieldName("timestamp");
+        json.writeObject(rs.getObject("timestamp", LocalDateTime.class));
+        json.writeStringField("category", rs.getString("category"));
+        json.writeEndObject();
+    }
+
+    // ✍️ The same object for an archived row.
+    private void writeRow(JsonGenerator json, Transaction txn) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", txn.getId());
+        json.writeStringField("reference", txn.getReference());
+        json.writeNumberField("amount", txn.getAmount());
+        json.writeStringField("senderAccount", txn.getSenderAccount());
+        json.writeStringField("receiverAccount", txn.getReceiverAccount());
+        json.writeStringField("currency", txn.getCurrency());
+        json.writeStringField("status", txn.getStatus());
+        json.writeFieldName("timestamp");
+        json.writeObject(txn.getTimestamp());
+        json.writeStringField("category", txn.getCategory());
+        json.writeEndObject();
+    }
+}
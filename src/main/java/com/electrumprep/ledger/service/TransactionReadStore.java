@@ -0,0 +1,298 @@
+package com.electrumprep.ledger.service;
+
+// 📦 IMPORTS
+// "ConcurrentSkipListMap" is a sorted map that many threads can read while others write,
+// so "the 100 newest rows after this bookmark" is one walk from the right spot, without locks.
+// "HikariDataSource" is the connection pool; here a SECOND, private one for the read replica.
+import com.electrumprep.ledger.model.CategoryAssigned;
+import com.electrumprep.ledger.model.HistoryCursor;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.model.TransactionReversed;
+import com.electrumprep.ledger.model.TransactionsBooked;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// -----------------------------------------------------------------------------------
+// 🪞 THE READING ROOM (Read model for the history, CQRS)
+// Dashboards poll GET /api/transactions all day. Each poll used to borrow a connection from
+// the SAME pool the payments need for their INSERTs. With the reading room switched on:
+// - Every booked payment is announced (TransactionsBooked) and copied into an in-memory,
+//   newest-first index. PENDING categories are updated when the Back Office announces them.
+// - History pages are served from that index. Only rows from the last "retention" (and at most
+//   "max-rows") are kept; older pages come from the READ REPLICA, if one is configured.
+// - Without a replica, the history simply ends at the retention horizon: reads never borrow
+//   a connection from the write pool (only the one-off load at startup does).
+// -----------------------------------------------------------------------------------
+
+@Service
+// The journal replays its leftovers into the database first, so the startup load sees them.
+@DependsOn("paymentJournalService")
+public class TransactionReadStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionReadStore.class);
+
+    private static final String COLUMNS =
+            "id, reference, amount, sender_account, receiver_account, currency, status, timestamp, category, idempotency_key";
+
+    // 🟢 Startup: the newest rows inside the retention window.
+    private static final String WINDOW_SQL =
+            "SELECT " + COLUMNS + " FROM transactions WHERE timestamp >= ? ORDER BY timestamp DESC, id DESC " +
+            "FETCH FIRST ? ROWS ONLY";
+    private static final String OLDER_EXIST_SQL = "SELECT EXISTS (SELECT 1 FROM transactions WHERE timestamp < ?)";
+
+    // 🔖 The replica: the newest rows, or the rows just older than a bookmark (same keyset query as the repository).
+    private static final String NEWEST_SQL =
+            "SELECT " + COLUMNS + " FROM transactions ORDER BY timestamp DESC, id DESC FETCH FIRST ? ROWS ONLY";
+    private static final String OLDER_SQL =
+            "SELECT " + COLUMNS + " FROM transactions WHERE timestamp < ? OR (timestamp = ? AND id < ?) " +
+            "ORDER BY timestamp DESC, id DESC FETCH FIRST ? ROWS ONLY";
+
+    private static final RowMapper<Transaction> ROW = (rs, rowNum) -> {
+        Transaction txn = new Transaction();
+        txn.setId(rs.getLong("id"));
+        txn.setReference(rs.getString("reference"));
+        txn.setAmount(rs.getBigDecimal("amount"));
+        txn.setSenderAccount(rs.getString("sender_account"));
+        txn.setReceiverAccount(rs.getString("receiver_account"));
+        txn.setCurrency(rs.getString("currency"));
+        txn.setStatus(rs.getString("status"));
+        Timestamp timestamp = rs.getTimestamp("timestamp");
+        txn.setTimestamp(timestamp == null ? null : timestamp.toLocalDateTime());
+        txn.setCategory(rs.getString("category"));
+        txn.setIdempotencyKey(rs.getString("idempotency_key"));
+        return txn;
+    };
+
+    // Newest first: the same order as a history page.
+    private static final Comparator<HistoryCursor> NEWEST_FIRST =
+            Comparator.comparing(HistoryCursor::timestamp).thenComparingLong(HistoryCursor::id).reversed();
+
+    private final JdbcTemplate writeJdbc;
+
+    // ⚙️ SETTINGS (From application.properties)
+    private final boolean enabled;
+    private final Duration retention;
+    private final int maxRows;
+
+    // 🪞 THE INDEX: (timestamp, id) -> a private copy of the row (replaced, never changed in place,
+    // so a page that is being written to the network never sees half an update).
+    private final ConcurrentSkipListMap<HistoryCursor, Transaction> index = new ConcurrentSkipListMap<>(NEWEST_FIRST);
+    private final AtomicInteger size = new AtomicInteger();
+    // "false" once something older than the index may exist (trimmed, or the startup load was capped).
+    private volatile boolean complete = true;
+
+    // 📚 THE READ REPLICA (optional): its own small pool, never the write pool.
+    private final HikariDataSource replica;
+    private final JdbcTemplate replicaJdbc;
+    private final Counter replicaReads;
+
+    public TransactionReadStore(JdbcTemplate jdbcTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${ledger.read-model.enabled:false}") boolean enabled,
+                                @Value("${ledger.read-model.retention:24h}") Duration retention,
+                                @Value("${ledger.read-model.max-rows:200000}") int maxRows,
+                                @Value("${ledger.read-model.datasource.url:}") String replicaUrl,
+                                @Value("${ledger.read-model.datasource.username:}") String replicaUsername,
+                                @Value("${ledger.read-model.datasource.password:}") String replicaPassword,
+                                @Value("${ledger.read-model.datasource.max-pool-size:4}") int replicaPoolSize) {
+        this.writeJdbc = jdbcTemplate;
+        this.enabled = enabled;
+        this.retention = retention;
+        this.maxRows = maxRows;
+        if (enabled && !replicaUrl.isBlank()) {
+            replica = new HikariDataSource();
+            replica.setPoolName("read-replica");
+            replica.setJdbcUrl(replicaUrl);
+            replica.setUsername(replicaUsername);
+            replica.setPassword(replicaPassword);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setReadOnly(true);
+            replicaJdbc = new JdbcTemplate(replica);
+        } else {
+            replica = null;
+            replicaJdbc = null;
+        }
+        meterRegistry.gauge("ledger.read-model.rows", size);
+        this.replicaReads = meterRegistry.counter("ledger.read-model.replica.reads");
+    }
+
+    // ❓ "Should history pages come from here instead of the write database?"
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ❓ "Do pages from here run all the way to the oldest hot row?" (the whole table is in the
+    // index, or the replica serves the rest). Only then may the history continue into the archive.
+    public boolean reachesEnd() {
+        return complete || replicaJdbc != null;
+    }
+
+    // 📚 The replica pool (for the NDJSON export), or null when there is none.
+    public DataSource replica() {
+        return replica;
+    }
+
+    // ===================================================================================
+    // 🟢 STARTUP: fill the index with the newest rows
+    // ===================================================================================
+    // Read from the replica if there is one; otherwise this is the ONE time the write pool is used.
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        JdbcTemplate source = replicaJdbc != null ? replicaJdbc : writeJdbc;
+        Timestamp horizon = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+        // One row more than we keep: if it comes back, the window did not fit.
+        List<Transaction> rows = source.query(WINDOW_SQL, ROW, horizon, maxRows + 1);
+        rows.stream().limit(maxRows).forEach(this::put);
+        complete = rows.size() <= maxRows && !Boolean.TRUE.equals(source.queryForObject(OLDER_EXIST_SQL, Boolean.class, horizon));
+        logger.info("Read model ready: {} rows loaded, {}", size.get(),
+                complete ? "the whole history" : replicaJdbc != null ? "older pages from the replica" : "older pages not served");
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (replica != null) {
+            replica.close();
+        }
+    }
+
+    // ===================================================================================
+    // 📣 LISTENING TO THE WRITE SIDE
+    // ===================================================================================
+    @EventListener
+    public void onBooked(TransactionsBooked event) {
+        if (!enabled) {
+            return;
+        }
+        for (Transaction txn : event.transactions()) {
+            if (txn.getId() != null && txn.getTimestamp() != null) {
+                put(copy(txn));
+            }
+        }
+        trim();
+    }
+
+    // 🏷️ The Back Office found the real category: swap in a fresh copy with it.
+    @EventListener
+    public void onCategoryAssigned(CategoryAssigned event) {
+        Transaction txn = event.transaction();
+        if (!enabled || txn.getId() == null || txn.getTimestamp() == null) {
+            return;
+        }
+        index.computeIfPresent(HistoryCursor.after(txn), (key, stored) -> {
+            Transaction updated = copy(stored);
+            updated.setCategory(event.category());
+            return updated;
+        });
+    }
+
+    // ↩️ A journaled payment was taken back as a duplicate: show it the way its row was stored.
+    @EventListener
+    public void onReversed(TransactionReversed event) {
+        Transaction txn = event.transaction();
+        if (!enabled || txn.getId() == null || txn.getTimestamp() == null) {
+            return;
+        }
+        index.computeIfPresent(HistoryCursor.after(txn), (key, stored) -> {
+            Transaction updated = copy(stored);
+            updated.setStatus(event.status());
+            return updated;
+        });
+    }
+
+    private void put(Transaction txn) {
+        if (index.put(HistoryCursor.after(txn), txn) == null) {
+            size.incrementAndGet();
+        }
+    }
+
+    // ✂️ Drop the oldest rows: over "max-rows", or older than "retention".
+    private void trim() {
+        LocalDateTime horizon = null;
+        Map.Entry<HistoryCursor, Transaction> oldest;
+        while ((oldest = index.lastEntry()) != null) {
+            if (size.get() <= maxRows) {
+                if (horizon == null) {
+                    horizon = LocalDateTime.now().minus(retention);
+                }
+                if (!oldest.getKey().timestamp().isBefore(horizon)) {
+                    return;
+                }
+            }
+            if (index.remove(oldest.getKey()) != null) {
+                size.decrementAndGet();
+                complete = false;
+            }
+        }
+    }
+
+    // ===================================================================================
+    // 📄 READING: up to "limit" rows older than the bookmark (null = the newest rows)
+    // ===================================================================================
+    public List<Transaction> newest(HistoryCursor after, int limit) {
+        NavigableMap<HistoryCursor, Transaction> view = after == null ? index : index.tailMap(after, false);
+        List<Transaction> rows = new ArrayList<>(Math.min(limit, 1024));
+        HistoryCursor last = after;
+        for (Map.Entry<HistoryCursor, Transaction> entry : view.entrySet()) {
+            if (rows.size() == limit) {
+                return rows;
+            }
+            rows.add(entry.getValue());
+            last = entry.getKey();
+        }
+        // 📚 Past the end of the index: the rest (if any) lives only in the database.
+        if (rows.size() < limit && !complete && replicaJdbc != null) {
+            replicaReads.increment();
+            rows.addAll(olderFromReplica(last, limit - rows.size()));
+        }
+        return rows;
+    }
+
+    private List<Transaction> olderFromReplica(HistoryCursor after, int limit) {
+        if (after == null) {
+            return replicaJdbc.query(NEWEST_SQL, ROW, limit);
+        }
+        Timestamp timestamp = Timestamp.valueOf(after.timestamp());
+        return replicaJdbc.query(OLDER_SQL, ROW, timestamp, timestamp, after.id(), limit);
+    }
+
+    private static Transaction copy(Transaction txn) {
+        Transaction copy = new Transaction();
+        copy.setId(txn.getId());
+        copy.setReference(txn.getReference());
+        copy.setAmount(txn.getAmount());
+        copy.setSenderAccount(txn.getSenderAccount());
+        copy.setReceiverAccount(txn.getReceiverAccount());
+        copy.setCurrency(txn.getCurrency());
+        copy.setStatus(txn.getStatus());
+        copy.setTimestamp(txn.getTimestamp());
+        copy.setCategory(txn.getCategory());
+        copy.setIdempotencyKey(txn.getIdempotencyKey());
+        return copy;
+    }
+}
@@ -5,20 +5,29 @@ package com.electrumprep.ledger.service;
 // We need the "Repository" to save the final result to the database.
 // We need the "Service" sticker to tell Spring Boot this is a worker class.
 // We need "BigDecimal" for precise money math (no penny errors!).
+import com.electrumprep.ledger.model.BatchItemResult;
 import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.model.TransactionsBooked;
 import com.electrumprep.ledger.repository.TransactionRepository;
+import com.electrumprep.ledger.service.SwitchMetrics.Stage;
+import io.micrometer.observation.Observation;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 // -----------------------------------------------------------------------------------
 // 🚦 THE TRANSACTION SWITCH (The Traffic Cop)
 // This is the "Brain" of the entire operation.
 // It decides:
 // 1. Is this money fake? (Validation)
-// 2. Where should it go? (Routing)
-// 3. What is this for? (AI Categorization)
+// 2. Does this look like fraud? (Risk Desk)
+// 3. Where should it go? (Routing)
+// 4. What is this for? (AI Categorization)
 // -----------------------------------------------------------------------------------
 
 @Service // 🏷️ STICKER: Tells Spring Boot: "This is the Manager. It handles the logic."
@@ -28,14 +37,59 @@ public class TransactionSwitch {
     // The Manager (Switch) can't do everything alone. It hires help:
     // 1. The "Librarian" (Repository) to store the records.
     // 2. The "Translator" (AI Service) to understand the messy text.
+    // 3. The "Back Office" (Enrichment Pipeline) to do the AI work later, in async mode.
+    // 4. The "Map" (Routing Table) to know which bank each account belongs to.
+    // 5. The "Bookkeeper" (Posting Engine) to move the money between account balances.
+    // 6. The "Diary Keeper" (Payment Journal) for fast, durable acceptance (when switched on).
+    // 7. The "Sorting Lanes" (Payment Pipeline) so each sender's payments run one at a time.
+    // 8. The "Town Crier" (Event Publisher) to announce booked payments (e.g. to the Spend Rollups).
+    // 9. The "Stopwatches" (Switch Metrics) to see where the time of each payment goes.
+    // 10. The "Risk Desk" (Risk Engine) to stop payments that are too fast, too big or blocked.
+    // 11. The "Coat Check" (Idempotency Guard) to save a receipt together with its ticket stub.
     private final TransactionRepository repository;
     private final CategorizationService aiService;
+    private final CategoryEnrichmentPipeline enrichmentPipeline;
+    private final RoutingTable routingTable;
+    private final PostingEngine postingEngine;
+    private final PaymentJournalService journal;
+    private final PaymentPipeline pipeline;
+    private final ApplicationEventPublisher events;
+    private final SwitchMetrics metrics;
+    private final RiskEngine riskEngine;
+    private final IdempotencyGuard idempotencyGuard;
+
+    // 💥 "This chunk could not be saved." Its balance changes were undone; "results" says so per payment.
+    public static class BatchNotSavedException extends RuntimeException {
+        private final List<BatchItemResult> results;
+
+        public BatchNotSavedException(List<BatchItemResult> results, Throwable cause) {
+            super("Batch not saved: " + cause.getMessage(), cause);
+            this.results = results;
+        }
+
+        public List<BatchItemResult> results() {
+            return results;
+        }
+    }
 
     // 🏗️ CONSTRUCTOR (Hiring Process)
     // Spring Boot automatically gives us these tools when the app starts.
-    public TransactionSwitch(TransactionRepository repository, CategorizationService aiService) {
+    public TransactionSwitch(TransactionRepository repository, CategorizationService aiService,
+                             CategoryEnrichmentPipeline enrichmentPipeline, RoutingTable routingTable,
+                             PostingEngine postingEngine, PaymentJournalService journal,
+                             PaymentPipeline pipeline, ApplicationEventPublisher events, SwitchMetrics metrics,
+                             RiskEngine riskEngine, IdempotencyGuard idempotencyGuard) {
         this.repository = repository;
         this.aiService = aiService;
+        this.enrichmentPipeline = enrichmentPipeline;
+        this.routingTable = routingTable;
+        this.postingEngine = postingEngine;
+        this.journal = journal;
+        this.pipeline = pipeline;
+        this.events = events;
+        this.metrics = metrics;
+        this.riskEngine = riskEngine;
+        this.idempotencyGuard = idempotencyGuard;
     }
 
     // ===================================================================================
@@ -44,8 +98,224 @@ public class TransactionSwitch {
     // ===================================================================================
     public Transaction processAndRoute(Transaction txn) {
 
+        // 🛑🔀📒 1-3b. CHECK IT, PICK THE ROAD, MOVE THE MONEY (see checkRouteAndPost below)
+        // In pipeline mode this part runs in the sender's own lane, so payments of one
+        // account are checked and debited strictly one after the other.
+        // Both account cards are fetched here first: a first visit reads the database, and a lane never waits on I/O.
+        if (pipeline.isEnabled() && txn.getSenderAccount() != null) {
+            postingEngine.preload(txn.getSenderAccount(), routingTable.route(txn.getSenderAccount()).poolAccount());
+        }
+        Checked checked = pipeline.isEnabled()
+                ? pipeline.execute(txn.getSenderAccount(), () -> checkRouteAndPost(txn))
+                : checkRouteAndPost(txn);
+        Transaction saved;
+        try {
+            saved = categorizeAndSave(txn);
+        } catch (RuntimeException e) {
+            // The receipt was NOT saved, so the money goes back (and it stops counting for the Risk Desk).
+            postingEngine.reverse(checked.entry());
+            riskEngine.release(txn.getSenderAccount(), checked.risk());
+            throw e;
+        }
+        postingEngine.record(checked.entry(), saved.getId());
+        riskEngine.booked(txn.getSenderAccount(), checked.risk());
+        events.publishEvent(new TransactionsBooked(List.of(saved)));
+
+        // 📬 6. HAND OVER TO THE BACK OFFICE (Async mode only)
+        // The receipt is now safely in the database, so the worker can find it by its id.
+        // (With the journal on, the row only exists after the drain, so the drainer does this.)
+        if (enrichmentPipeline.isEnabled() && !journal.isEnabled()) {
+            enrichmentPipeline.submit(saved);
+        }
+        return saved;
+    }
+
+    // 🧾 What the checkpoint hands back: the balance change, and the Risk Desk's hold on the windows.
+    private record Checked(PostingEngine.Entry entry, RiskEngine.Assessment risk) {
+    }
+
+    // 📒 3b. MOVE THE MONEY (Debit the sender, credit the pool account)
+    // Refused here (not enough money) = nothing else happens, and the risk hold is given back.
+    private Checked checkRouteAndPost(Transaction txn) {
+        RiskEngine.Assessment risk = validateAndRoute(txn, false);
+        try {
+            return new Checked(post(txn), risk);
+        } catch (RuntimeException e) {
+            riskEngine.release(txn.getSenderAccount(), risk);
+            throw e;
+        }
+    }
+
+    // ⏱️ The posting on the stopwatch; refusals are counted by reason.
+    private PostingEngine.Entry post(Transaction txn) {
+        Observation span = metrics.startSpan(Stage.POST);
+        long start = System.nanoTime();
+        try {
+            return postingEngine.post(txn.getSenderAccount(), txn.getReceiverAccount(), txn.getAmount());
+        } catch (PostingEngine.InsufficientFundsException e) {
+            metrics.refused("insufficient_funds");
+            throw e;
+        } catch (IllegalArgumentException e) {
+            metrics.refused("invalid");
+            throw e;
+        } finally {
+            metrics.record(Stage.POST, start, span);
+        }
+    }
+
+    // 🤖📂 4-5. CATEGORIZE AND SAVE (anything thrown here reverses the postings above)
+    private Transaction categorizeAndSave(Transaction txn) {
+        // 🤖 4. THE SMART CONSULTANT (AI Enrichment)
+        boolean asyncEnrichment = enrichmentPipeline.isEnabled();
+        if (asyncEnrichment) {
+            // ⚡ ASYNC MODE: Don't wait for Google at all.
+            // We write "PENDING" on the ticket and let the Back Office fill it in later.
+            txn.setCategory(CategoryEnrichmentPipeline.PENDING);
+        } else {
+            // 🐢 SYNC MODE: We pause to call our AI Friend (Google Gemini).
+            // We ask: "Hey, what category is 'Uber * 8721'?"
+            // The AI replies: "Transport".
+            // We write that answer onto the ticket.
+            Observation span = metrics.startSpan(Stage.CATEGORIZE);
+            long start = System.nanoTime();
+            try {
+                txn.setCategory(aiService.categorize(txn.getReference(), txn.getAmount().toString()));
+            } finally {
+                metrics.record(Stage.CATEGORIZE, start, span);
+            }
+        }
+
+        // 📂 5. FILE IT AWAY (Save to Database)
+        // Finally, we hand the completed ticket to the Librarian to put in the permanent file.
+        // This sends the SQL "INSERT" command to the database.
+        // 📓 JOURNAL MODE: write it to the local journal instead (group-committed, fsync'ed),
+        // and let the background drainer do the INSERT.
+        // 🎫 With an Idempotency-Key, the ticket stub is saved in the same database transaction.
+        Observation span = metrics.startSpan(Stage.SAVE);
+        long start = System.nanoTime();
+        try {
+            if (journal.isEnabled()) {
+                return journal.accept(txn);
+            }
+            return txn.getIdempotencyKey() != null ? idempotencyGuard.book(txn) : repository.save(txn);
+        } finally {
+            metrics.record(Stage.SAVE, start, span);
+        }
+    }
+
+    // ===================================================================================
+    // 📦 THE BULK LANE (Settlement files, thousands of payments at once)
+    // ===================================================================================
+    // Same checks and routing as processAndRoute, but:
+    // - A bad payment (or one without enough money) does NOT stop the others: it just gets a "REJECTED" result.
+    // - Good payments are saved with ONE saveAll, which Hibernate sends as batched INSERTs.
+    // - Categories are always filled in by the Back Office later (PENDING), because
+    //   nobody wants 200,000 payments waiting in line for Google.
+    // - The Risk Desk skips its velocity limits (an upload IS many payments at once); the
+    //   booked payments still count towards the sender's windows afterwards.
+    // "firstIndex" is the position of chunk.get(0) in the whole upload (for the results).
+    // If the save fails, BatchNotSavedException carries a result for every payment of the chunk.
+    public List<BatchItemResult> processBatch(List<Transaction> chunk, int firstIndex) {
+        List<BatchItemResult> results = new ArrayList<>(chunk.size());
+        List<Transaction> accepted = new ArrayList<>(chunk.size());
+        List<Integer> acceptedIndexes = new ArrayList<>(chunk.size());
+        List<PostingEngine.Entry> entries = new ArrayList<>(chunk.size());
+        List<RiskEngine.Assessment> risks = new ArrayList<>(chunk.size());
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Transaction txn = chunk.get(i);
+            try {
+                RiskEngine.Assessment risk = validateAndRoute(txn, true);
+                entries.add(post(txn));
+                risks.add(risk);
+                txn.setCategory(CategoryEnrichmentPipeline.PENDING);
+                accepted.add(txn);
+                acceptedIndexes.add(firstIndex + i);
+            } catch (IllegalArgumentException e) {
+                results.add(BatchItemResult.rejected(firstIndex + i, e.getMessage()));
+            }
+        }
+
+        // 📂 One trip to the database for the whole chunk.
+        List<Transaction> saved;
+        Observation span = metrics.startSpan(Stage.BATCH_SAVE);
+        long start = System.nanoTime();
+        try {
+            saved = repository.saveAll(accepted);
+        } catch (RuntimeException e) {
+            // Nothing of this chunk was saved: every balance change and risk hold goes back.
+            entries.forEach(postingEngine::reverse);
+            for (int i = 0; i < accepted.size(); i++) {
+                riskEngine.release(accepted.get(i).getSenderAccount(), risks.get(i));
+                results.add(BatchItemResult.rejected(acceptedIndexes.get(i), "Not saved: " + e.getMessage()));
+            }
+            results.sort(Comparator.comparingInt(BatchItemResult::index));
+            throw new BatchNotSavedException(results, e);
+        } finally {
+            metrics.record(Stage.BATCH_SAVE, start, span);
+            metrics.batchSaved(accepted.size());
+        }
+        for (int i = 0; i < saved.size(); i++) {
+            Transaction txn = saved.get(i);
+            postingEngine.record(entries.get(i), txn.getId());
+            riskEngine.booked(txn.getSenderAccount(), risks.get(i));
+            results.add(BatchItemResult.accepted(acceptedIndexes.get(i), txn));
+            enrichmentPipeline.submit(txn);
+        }
+        events.publishEvent(new TransactionsBooked(saved));
+        results.sort(Comparator.comparingInt(BatchItemResult::index));
+        return results;
+    }
+
+    // ===================================================================================
+    // 🛑🕵️🔀 THE CHECKPOINT (Validation + Risk + Routing, shared by both lanes)
+    // ===================================================================================
+    // Throws IllegalArgumentException if the payment is not allowed.
+    // "batch" = the bulk lane (no velocity limits); the Risk Desk's answer comes back for booked()/release().
+    private RiskEngine.Assessment validateAndRoute(Transaction txn, boolean batch) {
+        Observation span = metrics.startSpan(Stage.VALIDATE);
+        long start = System.nanoTime();
+        try {
+            validate(txn);
+        } catch (IllegalArgumentException e) {
+            metrics.refused("invalid");
+            throw e;
+        } finally {
+            metrics.record(Stage.VALIDATE, start, span);
+        }
+
+        RiskEngine.Assessment risk;
+        span = metrics.startSpan(Stage.RISK);
+        start = System.nanoTime();
+        try {
+            risk = assessRisk(txn, batch);
+        } finally {
+            metrics.record(Stage.RISK, start, span);
+        }
+
+        span = metrics.startSpan(Stage.ROUTE);
+        start = System.nanoTime();
+        try {
+            route(txn);
+        } catch (RuntimeException e) {
+            riskEngine.release(txn.getSenderAccount(), risk);
+            throw e;
+        } finally {
+            metrics.record(Stage.ROUTE, start, span);
+        }
+        return risk;
+    }
+
+    private void validate(Transaction txn) {
+
         // 🛑 1. THE BOUNCER (Validation)
         // Before we do anything, we check if the request is legal.
+        if (txn.getAmount() == null) {
+            throw new IllegalArgumentException("Amount is required");
+        }
+        if (txn.getSenderAccount() == null) {
+            throw new IllegalArgumentException("Sender account is required");
+        }
         // Rule: You cannot send negative money (e.g., -R500). That's stealing!
         if (txn.getAmount().compareTo(BigDecimal.ZERO) < 0) {
             // If they try, we throw them out immediately with an error.
@@ -56,49 +326,41 @@ public class TransactionSwitch {
         // If the user forgot to say which currency, we assume it's South African Rands.
         // This prevents the "NullPointerException" crash we saw earlier.
         txn.setCurrency("ZAR");
+    }
 
-        // 🔀 3. THE TRAFFIC COP (Routing Logic)
-        // We look at the "License Plate" (Account Number) to decide which road to take.
-        String targetBank;
-        String receiverPoolAccount;
-
-        // "StartsWith" checks the first 3 letters of the account.
-        if (txn.getSenderAccount().startsWith("INV")) {
-            // Case A: It's an Investec Client -> Send to Investec Pool
-            targetBank = "INVESTEC BANK";
-            receiverPoolAccount = "INV-POOL-888";
-        } else if (txn.getSenderAccount().startsWith("ABS")) {
-            // Case B: It's an Absa Client -> Send to Absa Merchant
-            targetBank = "ABSA BANK";
-            receiverPoolAccount = "ABS-MERCHANT-001";
-        } else {
-            // Case C: Everyone else -> Send to Standard Bank Clearing
-            targetBank = "STANDARD BANK";
-            receiverPoolAccount = "SB-CLEARING-999";
+    private RiskEngine.Assessment assessRisk(Transaction txn, boolean batch) {
+
+        // 🕵️ THE RISK DESK (Velocity, unusual amounts, denylist)
+        // Runs BEFORE routing, so a receiver the client asked for is still on the ticket.
+        // A REVIEW still goes through: it is counted (ledger.risk.decisions) for the fraud team.
+        RiskEngine.Assessment risk = batch
+                ? riskEngine.assessBatch(txn.getSenderAccount(), txn.getReceiverAccount(), txn.getAmount())
+                : riskEngine.assess(txn.getSenderAccount(), txn.getReceiverAccount(), txn.getAmount());
+        if (risk.decision() == RiskEngine.Decision.DECLINE) {
+            metrics.refused("risk");
+            throw new IllegalArgumentException("FRAUD ALERT: " + risk.reason());
         }
+        return risk;
+    }
 
-        // We stamp the final destination onto the transaction ticket.
-        txn.setReceiverAccount(receiverPoolAccount);
+    private void route(Transaction txn) {
 
-        // 🤖 4. THE SMART CONSULTANT (AI Enrichment)
-        // We pause for a split second to call our AI Friend (Google Gemini).
-        // We ask: "Hey, what category is 'Uber * 8721'?"
-        // The AI replies: "Transport".
-        String predictedCategory = aiService.categorize(txn.getReference(), txn.getAmount().toString());
+        // 🔀 3. THE TRAFFIC COP (Routing Logic)
+        // We look at the "License Plate" (Account Number) to decide which road to take.
+        // The roads are no longer hard-coded here: the Routing Table knows them
+        // (e.g. "INV..." -> Investec Pool, "ABS..." -> Absa Merchant, everyone else -> Standard Bank).
+        RoutingTrie.Route route = routingTable.route(txn.getSenderAccount());
 
-        // We write that answer onto the ticket.
-        txn.setCategory(predictedCategory);
+        // We stamp the final destination onto the transaction ticket.
+        txn.setReceiverAccount(route.poolAccount());
 
-        // ✅ 5. STAMP OF APPROVAL (Finalize)
+        // ✅ STAMP OF APPROVAL
         // We declare the transaction successful and record the destination.
-        txn.setStatus("SUCCESS - Sent to " + targetBank);
+        // (The stamp text is prepared once per routing rule, so nothing is glued together here.)
+        txn.setStatus(route.status());
+        metrics.routed(route.targetBank());
 
         // We record the exact millisecond this happened.
         txn.setTimestamp(LocalDateTime.now());
-
-        // 📂 6. FILE IT AWAY (Save to Database)
-        // Finally, we hand the completed ticket to the Librarian to put in the permanent file.
-        // This sends the SQL "INSERT" command to the database.
-        return repository.save(txn);
     }
-}
\ No newline at end of file
+}
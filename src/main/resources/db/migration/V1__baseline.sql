@@ -0,0 +1,85 @@
+-- -----------------------------------------------------------------------------------
+-- V1: THE STARTING SCHEMA
+-- The tables exactly as Hibernate's old "ddl-auto=update" built them from the entities.
+-- Databases built by that old "update" are baselined at version 0, so this script still runs on
+-- them: everything is "IF NOT EXISTS", and what they are missing (the sequences, the newer tables,
+-- the idempotency_key column) is added. db/vendor/postgresql/V1_1 then moves transactions_seq past
+-- their existing ids.
+-- Never edit a script that has run somewhere: add V2__..., V3__... instead.
+-- -----------------------------------------------------------------------------------
+
+-- Number dispensers: Hibernate grabs 50 ids per trip (allocationSize = 50), so batching works.
+CREATE SEQUENCE IF NOT EXISTS transactions_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS postings_seq START WITH 1 INCREMENT BY 50;
+
+-- The receipts (Transaction.java)
+CREATE TABLE IF NOT EXISTS transactions (
+    id               BIGINT NOT NULL,
+    reference        VARCHAR(255),
+    amount           NUMERIC(38, 2),
+    sender_account   VARCHAR(255),
+    receiver_account VARCHAR(255),
+    currency         VARCHAR(255),
+    status           VARCHAR(255),
+    timestamp        TIMESTAMP(6),
+    category         VARCHAR(255),
+    idempotency_key  VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_transactions_idempotency_key UNIQUE (idempotency_key)
+);
+-- An old table (IDENTITY id, no tickets yet) gets the ticket column. Its UNIQUE key is not needed there:
+-- V4 rebuilds the table on Postgres, and V5 moves the rule to the idempotency_keys table.
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS idempotency_key VARCHAR(255);
+CREATE INDEX IF NOT EXISTS idx_transactions_timestamp_id ON transactions (timestamp, id);
+CREATE INDEX IF NOT EXISTS idx_transactions_sender_account ON transactions (sender_account);
+
+-- Balances (Account.java) and their double-entry lines (Posting.java)
+CREATE TABLE IF NOT EXISTS accounts (
+    account_number  VARCHAR(255) NOT NULL,
+    balance         NUMERIC(19, 2) NOT NULL,
+    overdraft_limit NUMERIC(19, 2) NOT NULL,
+    posting_version BIGINT NOT NULL,
+    updated_at      TIMESTAMP(6),
+    PRIMARY KEY (account_number)
+);
+
+CREATE TABLE IF NOT EXISTS postings (
+    id             BIGINT NOT NULL,
+    account_number VARCHAR(255) NOT NULL,
+    amount         NUMERIC(19, 2) NOT NULL,
+    transaction_id BIGINT,
+    created_at     TIMESTAMP(6),
+    PRIMARY KEY (id)
+);
+CREATE INDEX IF NOT EXISTS idx_postings_account_id ON postings (account_number, id);
+
+-- The routing table (RoutingRule.java)
+CREATE TABLE IF NOT EXISTS routing_rules (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    account_prefix VARCHAR(255) NOT NULL,
+    target_bank    VARCHAR(255) NOT NULL,
+    pool_account   VARCHAR(255) NOT NULL,
+    priority       INTEGER NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- The long-term category memory (MerchantCategory.java)
+CREATE TABLE IF NOT EXISTS merchant_categories (
+    merchant_key VARCHAR(255) NOT NULL,
+    category     VARCHAR(255),
+    updated_at   TIMESTAMP(6),
+    PRIMARY KEY (merchant_key)
+);
+
+-- Spend stats checkpoints (SpendRollup.java)
+CREATE TABLE IF NOT EXISTS spend_rollups (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    granularity  VARCHAR(16) NOT NULL,
+    dimension    VARCHAR(16) NOT NULL,
+    bucket_start TIMESTAMP(6) NOT NULL,
+    dim_key      VARCHAR(255) NOT NULL,
+    txn_count    BIGINT NOT NULL,
+    amount       NUMERIC(19, 2) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_spend_rollups_bucket UNIQUE (granularity, dimension, bucket_start, dim_key)
+);
@@ -0,0 +1,7 @@
+-- -----------------------------------------------------------------------------------
+-- V2: THE RETURNS INDEX CARD
+-- Bank return files only carry (reference, amount). Matching them against the receipts
+-- must not read the whole drawer, so the pair gets its own index (see SettlementService).
+-- -----------------------------------------------------------------------------------
+
+CREATE INDEX idx_transactions_reference_amount ON transactions (reference, amount);
@@ -0,0 +1,13 @@
+-- -----------------------------------------------------------------------------------
+-- V3: THE ARCHIVE CATALOG
+-- One row per month that was moved out of the hot table into a columnar archive file
+-- (see TransactionArchive). The primary key makes sure only one server archives a month.
+-- -----------------------------------------------------------------------------------
+
+CREATE TABLE transaction_archive (
+    month_start DATE NOT NULL,
+    file        VARCHAR(255) NOT NULL,
+    row_count   BIGINT NOT NULL,
+    archived_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (month_start)
+);
@@ -0,0 +1,26 @@
+-- -----------------------------------------------------------------------------------
+-- V5: THE TICKET BOOK (idempotency keys in their own table)
+-- Since V4 every unique key on "transactions" has to include the timestamp, so
+-- UNIQUE (idempotency_key, timestamp) no longer stopped two racing requests with the
+-- same key (each gets its own now()). And once a month is archived its keys leave the
+-- table, so a late retry would book again.
+-- This table is NOT partitioned and never archived: one row per key, written in the same
+-- database transaction as the payment. Lookups go key -> (transaction_id, timestamp).
+-- -----------------------------------------------------------------------------------
+
+CREATE TABLE idempotency_keys (
+    idempotency_key VARCHAR(255) NOT NULL,
+    transaction_id  BIGINT NOT NULL,
+    timestamp       TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (idempotency_key)
+);
+
+-- Keys already booked (the oldest payment wins if a race slipped through since V4).
+INSERT INTO idempotency_keys (idempotency_key, transaction_id, timestamp)
+SELECT t.idempotency_key, t.id, t.timestamp
+FROM transactions t
+WHERE t.idempotency_key IS NOT NULL
+  AND t.id = (SELECT MIN(o.id) FROM transactions o WHERE o.idempotency_key = t.idempotency_key);
+
+-- The per-month key on "transactions" is replaced by the table above.
+ALTER TABLE transactions DROP CONSTRAINT IF EXISTS uk_transactions_idempotency_key;
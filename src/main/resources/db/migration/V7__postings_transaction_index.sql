@@ -0,0 +1,8 @@
+-- -----------------------------------------------------------------------------------
+-- V7: THE "WHICH LINES BELONG TO THIS PAYMENT?" INDEX CARD
+-- At startup the posting engine looks for payments without any posting lines (lost in a
+-- crash), and the journal replay asks the same for each replayed payment. Without this
+-- index both read the whole postings table.
+-- -----------------------------------------------------------------------------------
+
+CREATE INDEX idx_postings_transaction_id ON postings (transaction_id);
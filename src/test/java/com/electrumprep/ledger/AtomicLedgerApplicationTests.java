@@ -12,7 +12,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 // Its only job is to answer one question: "Does the app even start?"
 // -----------------------------------------------------------------------------------
 
-@SpringBootTest // 🏷️ STICKER: Tells Java: "Please try to start the WHOLE application just like real life."
+@SpringBootTest(properties = {
+		// 🧱 The tables come from the Flyway scripts; "validate" makes Hibernate check they match the Java classes.
+		"spring.jpa.hibernate.ddl-auto=validate"
+}) // 🏷️ STICKER: Tells Java: "Please try to start the WHOLE application just like real life."
 class AtomicLedgerApplicationTests {
 
 	// 🕵️ THE TEST CASE
@@ -0,0 +1,59 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.service.BatchingCategorizer;
+import com.electrumprep.ledger.service.GeminiClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE CARPOOL TEST (Unit Test)
+// Two payments arrive at the same time -> ONE call to the (fake) Google.
+// -----------------------------------------------------------------------------------
+
+@ExtendWith(MockitoExtension.class)
+public class BatchingCategorizerTest {
+
+    @Mock // Fake Google
+    private GeminiClient gemini;
+
+    private BatchingCategorizer batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+    }
+
+    @Test
+    void shouldShareOneCallAndFallBackForUncoveredItems() throws Exception {
+        // 1. GIVEN: A bus with 2 seats and a generous boarding window.
+        // Google answers seat 1 properly, but invents an off-menu category for seat 2.
+        batcher = new BatchingCategorizer(gemini, Runnable::run, true, 2, 5_000, 5_000);
+        batcher.start();
+        when(gemini.generate(anyString(), eq(true)))
+                .thenReturn("```json\n[{\"id\": 1, \"category\": \"Transport\"}, {\"id\": 2, \"category\": \"Pizza\"}]\n```");
+
+        // 2. WHEN: Two payments arrive together
+        CompletableFuture<String> a = CompletableFuture.supplyAsync(() -> batcher.categorize("Uber * 8721", "75.00"));
+        CompletableFuture<String> b = CompletableFuture.supplyAsync(() -> batcher.categorize("Netflix", "199.00"));
+        List<String> answers = Arrays.asList(a.get(), b.get());
+
+        // 3. THEN: Only ONE trip to Google...
+        verify(gemini, times(1)).generate(anyString(), eq(true));
+        // ...one passenger got "Transport", the other got null (= "take your own taxi").
+        assertTrue(answers.contains("Transport"));
+        assertTrue(answers.contains(null));
+    }
+}
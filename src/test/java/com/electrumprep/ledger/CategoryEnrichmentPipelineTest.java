@@ -0,0 +1,116 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+// Same "Stunt Double" tools as TransactionSwitchTest.
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.repository.TransactionRepository;
+import com.electrumprep.ledger.service.CategorizationService;
+import com.electrumprep.ledger.service.CategoryEnrichmentPipeline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE BACK OFFICE DRILL (Unit Test)
+// We test the enrichment pipeline WITHOUT real threads:
+// the "executor" just runs each job right away on the test thread.
+// -----------------------------------------------------------------------------------
+
+@ExtendWith(MockitoExtension.class)
+public class CategoryEnrichmentPipelineTest {
+
+    @Mock // Fake AI
+    private CategorizationService aiService;
+
+    @Mock // Fake Database
+    private TransactionRepository repository;
+
+    private CategoryEnrichmentPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        // Queue of 1, 3 attempts, 1ms backoff (so the test doesn't sleep for real).
+        pipeline = new CategoryEnrichmentPipeline(aiService, repository, Runnable::run, event -> { },
+                "async", 1, 1, 3, 1, 2, Duration.ofMinutes(5));
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 1: Retry until Gemini answers, then write back
+    // ===================================================================================
+    @Test
+    void shouldRetryAiErrorsAndWriteCategoryBack() {
+        // GIVEN: Gemini fails once, then answers "Transport".
+        when(aiService.categorize("Uber * 8721", "75.00"))
+                .thenReturn(CategorizationService.AI_ERROR)
+                .thenReturn("Transport");
+
+        // WHEN: A saved payment is handed over
+        assertTrue(pipeline.submit(savedTxn(7L)));
+
+        // THEN: We asked twice and wrote the good answer onto row 7 (only if still PENDING).
+        verify(aiService, times(2)).categorize("Uber * 8721", "75.00");
+        verify(repository).updateCategory(7L, CategoryEnrichmentPipeline.PENDING, "Transport");
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 2: Give up politely (the row stays PENDING for recovery)
+    // ===================================================================================
+    @Test
+    void shouldLeaveRowPendingWhenRetriesRunOut() {
+        when(aiService.categorize(any(), any())).thenReturn(CategorizationService.AI_ERROR);
+
+        pipeline.submit(savedTxn(8L));
+
+        verify(aiService, times(3)).categorize(any(), any());
+        verify(repository, never()).updateCategory(any(), any(), any());
+    }
+
+    // An empty reply from Google is not an answer either: it is retried, never written back.
+    @Test
+    void shouldNotFinalizeAnEmptyGeminiReply() {
+        when(aiService.categorize(any(), any())).thenReturn(CategorizationService.NO_DATA);
+
+        pipeline.submit(savedTxn(10L));
+
+        verify(aiService, times(3)).categorize(any(), any());
+        verify(repository, never()).updateCategory(any(), any(), any());
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 3: The periodic sweep picks up rows left PENDING (box full, attempts used up)
+    // ===================================================================================
+    @Test
+    void sweepShouldRequeueStalePendingRows() {
+        when(repository.findByCategoryAndTimestampBeforeAndIdGreaterThanOrderByIdAsc(
+                eq(CategoryEnrichmentPipeline.PENDING), any(LocalDateTime.class), eq(0L), any()))
+                .thenReturn(List.of(savedTxn(9L)));
+        when(repository.findByCategoryAndTimestampBeforeAndIdGreaterThanOrderByIdAsc(
+                eq(CategoryEnrichmentPipeline.PENDING), any(LocalDateTime.class), eq(9L), any()))
+                .thenReturn(List.of());
+        when(aiService.categorize("Uber * 8721", "75.00")).thenReturn("Transport");
+
+        pipeline.sweepStale();
+
+        verify(repository).updateCategory(9L, CategoryEnrichmentPipeline.PENDING, "Transport");
+    }
+
+    private Transaction savedTxn(Long id) {
+        Transaction txn = new Transaction();
+        txn.setId(id);
+        txn.setReference("Uber * 8721");
+        txn.setAmount(new BigDecimal("75.00"));
+        return txn;
+    }
+}
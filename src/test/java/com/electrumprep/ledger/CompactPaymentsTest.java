@@ -0,0 +1,66 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.CompactPayment;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.service.CompactPayments;
+import com.electrumprep.ledger.service.RoutingTrie;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE PRESS TEST
+// 1. A Transaction squeezed into a CompactPayment reads back the same (cents, micros, names).
+// 2. Missing values become UNKNOWN, and more than 2 decimals is refused (like the Bookkeeper does).
+// -----------------------------------------------------------------------------------
+
+public class CompactPaymentsTest {
+
+    private final CompactPayments compact = new CompactPayments();
+
+    @Test
+    void compactFormShouldReadBackTheSamePayment() {
+        LocalDateTime at = LocalDateTime.of(2026, 2, 8, 14, 30, 15, 123_456_000);
+        Transaction txn = new Transaction();
+        txn.setId(42L);
+        txn.setAmount(new BigDecimal("1250.5"));
+        txn.setCurrency("ZAR");
+        txn.setStatus(new RoutingTrie.Route("ABSA BANK", "ABS-MERCHANT-001").status());
+        txn.setTimestamp(at);
+        txn.setCategory("Groceries");
+        txn.setSenderAccount("ABS-7781");
+
+        CompactPayment payment = compact.compact(txn);
+
+        assertEquals(42L, payment.id());
+        assertEquals(125_050L, payment.amountMinor());
+        assertEquals(710, payment.currency());
+        assertEquals("ZAR", CompactPayments.currency(payment.currency()));
+        assertEquals(at, CompactPayments.fromEpochMicros(payment.epochMicros()));
+        assertEquals("ABSA BANK", compact.bank(payment.bankId()));
+        assertEquals("Groceries", compact.category(payment.categoryId()));
+        // Same names, same numbers.
+        assertEquals(payment.bankId(), compact.bankOfStatus("SUCCESS - Sent to ABSA BANK"));
+        assertEquals(payment.categoryId(), compact.categoryId("Groceries"));
+    }
+
+    @Test
+    void missingValuesShouldBeUnknownAndFractionsOfCentsRefused() {
+        Transaction txn = new Transaction();
+        txn.setAmount(new BigDecimal("10.00"));
+
+        CompactPayment payment = compact.compact(txn);
+
+        assertEquals(CompactPayments.UNKNOWN_ID, payment.bankId());
+        assertEquals(CompactPayments.UNKNOWN, compact.category(payment.categoryId()));
+        assertEquals(Long.MIN_VALUE, payment.epochMicros());
+        assertNull(CompactPayments.currency(payment.currency()));
+
+        txn.setAmount(new BigDecimal("10.005"));
+        assertThrows(IllegalArgumentException.class, () -> compact.compact(txn));
+    }
+}
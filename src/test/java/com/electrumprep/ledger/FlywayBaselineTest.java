@@ -0,0 +1,45 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+// The real Flyway scripts, run the way application.properties runs them, on an in-memory H2 database.
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE OLD DATABASE TEST
+// A database built by the old "ddl-auto=update" only has "transactions" (IDENTITY id, no
+// idempotency_key). Baselined at version 0, every script still runs: the missing tables,
+// sequences and columns appear, and the old receipts survive.
+// -----------------------------------------------------------------------------------
+
+public class FlywayBaselineTest {
+
+    @Test
+    void anOldUpdateBuiltDatabaseShouldGetTheWholeSchema() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:old-" + System.nanoTime() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE transactions (id BIGINT GENERATED BY DEFAULT AS IDENTITY, reference VARCHAR(255), " +
+                "amount NUMERIC(38,2), sender_account VARCHAR(255), receiver_account VARCHAR(255), currency VARCHAR(255), " +
+                "status VARCHAR(255), timestamp TIMESTAMP(6), category VARCHAR(255), PRIMARY KEY (id))");
+        jdbc.update("INSERT INTO transactions (reference, amount, sender_account, timestamp) VALUES ('Uber', 10.00, 'INV-1', LOCALTIMESTAMP)");
+
+        Flyway.configure().dataSource(dataSource)
+                .locations("classpath:db/migration", "classpath:db/vendor/h2")
+                .baselineOnMigrate(true).baselineVersion("0")
+                .load().migrate();
+
+        for (String table : List.of("accounts", "postings", "routing_rules", "merchant_categories", "spend_rollups",
+                "transaction_archive", "idempotency_keys")) {
+            assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class), table);
+        }
+        assertNotNull(jdbc.queryForObject("SELECT NEXT VALUE FOR transactions_seq", Long.class));
+        assertEquals("Uber", jdbc.queryForObject("SELECT reference FROM transactions WHERE idempotency_key IS NULL", String.class));
+    }
+}
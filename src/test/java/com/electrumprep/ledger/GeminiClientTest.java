@@ -0,0 +1,119 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+// "HttpServer" is a tiny web server built into Java. We use it as a FAKE Google.
+import com.electrumprep.ledger.service.GeminiCircuitBreaker;
+import com.electrumprep.ledger.service.GeminiClient;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE FAKE GOOGLE TEST
+// We start a local stub server and point the real GeminiClient at it.
+// Then we make the stub slow or broken, and check that our safety features kick in.
+// -----------------------------------------------------------------------------------
+
+public class GeminiClientTest {
+
+    private static final String REPLY =
+            "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\" Transport \"}]}}]}";
+
+    private HttpServer stub;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long delayMs = 0;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/", exchange -> {
+            hits.incrementAndGet();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = REPLY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.stop(0);
+    }
+
+    private GeminiClient client(Duration readTimeout, GeminiCircuitBreaker breaker) {
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort() + "/generate?key=";
+        return new GeminiClient(url, "test-key", Duration.ofSeconds(1), readTimeout, 2, Duration.ofMillis(50),
+                breaker, new SimpleMeterRegistry());
+    }
+
+    private GeminiCircuitBreaker breaker() {
+        // Open after 2 calls if 50% fail, stay open for 200ms, 1 trial call.
+        return new GeminiCircuitBreaker(50, 4, 2, Duration.ofMillis(200), 1, new SimpleMeterRegistry());
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 1: Happy path
+    // ===================================================================================
+    @Test
+    void shouldReadTextFromStub() {
+        assertEquals("Transport", client(Duration.ofSeconds(2), breaker()).generate("prompt", false));
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 2: A slow Google hits the read timeout instead of hanging forever
+    // ===================================================================================
+    @Test
+    void shouldTimeOutOnSlowReply() {
+        delayMs = 1_000;
+        GeminiClient client = client(Duration.ofMillis(100), breaker());
+
+        long start = System.nanoTime();
+        assertThrows(RuntimeException.class, () -> client.generate("prompt", false));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 900);
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 3: The fuse blows, fails fast, then recovers
+    // ===================================================================================
+    @Test
+    void shouldOpenCircuitAfterFailuresAndCloseAfterRecovery() throws Exception {
+        status = 503;
+        GeminiCircuitBreaker breaker = breaker();
+        GeminiClient client = client(Duration.ofSeconds(2), breaker);
+
+        // Two failures -> fuse blows.
+        assertThrows(RuntimeException.class, () -> client.generate("p", false));
+        assertThrows(RuntimeException.class, () -> client.generate("p", false));
+        assertEquals(GeminiCircuitBreaker.State.OPEN, breaker.getState());
+
+        // While OPEN: fail INSTANTLY, the stub is not even called.
+        int before = hits.get();
+        assertThrows(GeminiClient.GeminiUnavailableException.class, () -> client.generate("p", false));
+        assertEquals(before, hits.get());
+
+        // Google recovers; after the cool-down one trial call closes the circuit again.
+        status = 200;
+        Thread.sleep(250);
+        assertEquals("Transport", client.generate("p", false));
+        assertEquals(GeminiCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
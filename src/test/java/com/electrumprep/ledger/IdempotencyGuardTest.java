@@ -0,0 +1,115 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.IdempotencyKey;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.repository.IdempotencyKeyRepository;
+import com.electrumprep.ledger.repository.TransactionRepository;
+import com.electrumprep.ledger.service.IdempotencyGuard;
+import com.electrumprep.ledger.service.TransactionArchive;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE COAT CHECK TEST
+// 1. Twins arriving together: the work runs ONCE, both get the same receipt.
+// 2. A retry after a restart: the ticket stub points at the receipt, in the database or the archive.
+// 3. A failed attempt is NOT remembered, so the client can retry it.
+// -----------------------------------------------------------------------------------
+
+public class IdempotencyGuardTest {
+
+    private final TransactionRepository repository = mock(TransactionRepository.class);
+    private final IdempotencyKeyRepository keys = mock(IdempotencyKeyRepository.class);
+    private final TransactionArchive archive = mock(TransactionArchive.class);
+    private final IdempotencyGuard guard = new IdempotencyGuard(repository, keys, archive, new SimpleMeterRegistry(),
+            Duration.ofHours(1), 1000);
+
+    @Test
+    void shouldCoalesceConcurrentRequestsWithTheSameKey() throws Exception {
+        when(keys.findById(anyString())).thenReturn(Optional.empty());
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch bothArrived = new CountDownLatch(2);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<IdempotencyGuard.Outcome> first = pool.submit(() -> {
+                bothArrived.countDown();
+                return guard.execute("key-1", () -> slowBooking(runs, bothArrived));
+            });
+            Future<IdempotencyGuard.Outcome> second = pool.submit(() -> {
+                bothArrived.countDown();
+                return guard.execute("key-1", () -> slowBooking(runs, bothArrived));
+            });
+
+            Transaction a = first.get().transaction();
+            Transaction b = second.get().transaction();
+            assertEquals(1, runs.get(), "only one request did the work");
+            assertSame(a, b);
+            assertNotEquals(first.get().replayed(), second.get().replayed());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldReplayFromTheDatabaseAfterARestart() {
+        LocalDateTime at = LocalDateTime.of(2026, 3, 1, 9, 0);
+        Transaction stored = new Transaction();
+        stored.setId(7L);
+        when(keys.findById("key-2")).thenReturn(Optional.of(new IdempotencyKey("key-2", 7L, at)));
+        when(repository.findByIdAndTimestamp(7L, at)).thenReturn(Optional.of(stored));
+
+        IdempotencyGuard.Outcome outcome = guard.execute("key-2", () -> fail("must not book again"));
+
+        assertTrue(outcome.replayed());
+        assertSame(stored, outcome.transaction());
+
+        // A month that was archived since: the stub still finds the receipt there.
+        Transaction archived = new Transaction();
+        archived.setId(3L);
+        LocalDateTime old = LocalDateTime.of(2025, 6, 1, 9, 0);
+        when(keys.findById("key-old")).thenReturn(Optional.of(new IdempotencyKey("key-old", 3L, old)));
+        when(repository.findByIdAndTimestamp(3L, old)).thenReturn(Optional.empty());
+        when(archive.find(3L, old)).thenReturn(Optional.of(archived));
+
+        assertSame(archived, guard.execute("key-old", () -> fail("must not book again")).transaction());
+    }
+
+    @Test
+    void shouldForgetFailedAttempts() {
+        when(keys.findById(anyString())).thenReturn(Optional.empty());
+
+        assertThrows(IllegalStateException.class,
+                () -> guard.execute("key-3", () -> { throw new IllegalStateException("database down"); }));
+
+        IdempotencyGuard.Outcome retry = guard.execute("key-3", Transaction::new);
+        assertFalse(retry.replayed());
+    }
+
+    // 🐢 A booking that waits until both twins are inside the guard, so they really overlap.
+    private static Transaction slowBooking(AtomicInteger runs, CountDownLatch bothArrived) {
+        runs.incrementAndGet();
+        try {
+            bothArrived.await();
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new Transaction();
+    }
+}
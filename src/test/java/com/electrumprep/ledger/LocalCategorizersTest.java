@@ -0,0 +1,67 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.repository.TransactionRepository;
+import com.electrumprep.ledger.repository.TransactionRepository.ReferenceCategory;
+import com.electrumprep.ledger.service.MerchantDictionaryCategorizer;
+import com.electrumprep.ledger.service.NaiveBayesCategorizer;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE LOCAL EXPERTS EXAM
+// Can the Cheat Sheet and the Apprentice answer WITHOUT calling Google?
+// -----------------------------------------------------------------------------------
+
+public class LocalCategorizersTest {
+
+    // 🪪 A tiny fake database row for the Apprentice to learn from.
+    private record Sample(String reference, String category) implements ReferenceCategory {
+        @Override public String getReference() { return reference; }
+        @Override public String getCategory() { return category; }
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 1: The Cheat Sheet (real merchant-dictionary.csv)
+    // ===================================================================================
+    @Test
+    void dictionaryShouldPreferLongestWholeWordMatch() {
+        MerchantDictionaryCategorizer dictionary =
+                new MerchantDictionaryCategorizer(new ClassPathResource("merchant-dictionary.csv"));
+
+        assertEquals("Transport", dictionary.categorize("UBER"));
+        assertEquals("Food & Dining", dictionary.categorize("UBER EATS")); // Longest name wins
+        assertEquals("Entertainment", dictionary.categorize("NETFLIX COM"));
+        assertNull(dictionary.categorize("SUBERB FLOWERS")); // "UBER" inside a word does not count
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 2: The Apprentice learns from history
+    // ===================================================================================
+    @Test
+    void bayesShouldLearnFromLabelledHistoryAndStaySilentWhenUnsure() {
+        NaiveBayesCategorizer bayes = new NaiveBayesCategorizer(mock(TransactionRepository.class), 100, 10, 0.9);
+
+        // Before training: no opinion at all.
+        assertNull(bayes.categorize("BURGER PALACE"));
+
+        List<Sample> history = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            history.add(new Sample("BURGER BARN " + i, "Food & Dining"));
+            history.add(new Sample("BURGER SHACK " + i, "Food & Dining"));
+            history.add(new Sample("CITY POWER PREPAID " + i, "Utilities"));
+            history.add(new Sample("CITY WATER ACCOUNT " + i, "Utilities"));
+        }
+        bayes.train(history);
+
+        assertEquals("Food & Dining", bayes.categorize("BURGER PALACE"));
+        assertEquals("Utilities", bayes.categorize("CITY POWER"));
+        assertNull(bayes.categorize("ZQX")); // Never seen anything like it -> let Gemini decide
+    }
+}
@@ -0,0 +1,29 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.service.MerchantNormalizer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE LABEL CLEANER TEST
+// Different-looking references for the SAME merchant must get the SAME cache key.
+// -----------------------------------------------------------------------------------
+
+public class MerchantNormalizerTest {
+
+    @Test
+    void shouldStripCardSuffixesAndAmounts() {
+        assertEquals("UBER", MerchantNormalizer.normalize("UBER * 8721"));
+        assertEquals("UBER", MerchantNormalizer.normalize("Uber *9911"));
+        assertEquals("UBER EATS", MerchantNormalizer.normalize("uber eats 12/03 R85.00 X1234"));
+        assertEquals("WOOLWORTHS FOOD", MerchantNormalizer.normalize("Woolworths-Food #77"));
+    }
+
+    @Test
+    void shouldKeepRawTextWhenNothingIsLeft() {
+        // A reference made only of numbers must NOT collapse into an empty (shared) key.
+        assertEquals("12345", MerchantNormalizer.normalize("12345"));
+    }
+}
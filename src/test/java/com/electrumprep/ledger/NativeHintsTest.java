@@ -0,0 +1,32 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.config.NativeHints;
+import com.electrumprep.ledger.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE PACKING LIST TEST
+// A native image only has what the hints promise, so check the promises without GraalVM:
+// the resource files are packed, and Jackson may build and fill a Transaction.
+// -----------------------------------------------------------------------------------
+
+public class NativeHintsTest {
+
+    @Test
+    void resourcesAndJsonTypesShouldBePacked() throws Exception {
+        RuntimeHints hints = new RuntimeHints();
+        new NativeHints.Registrar().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.resource().forResource("routing-rules.csv").test(hints));
+        assertTrue(RuntimeHintsPredicates.resource().forResource("merchant-dictionary.csv").test(hints));
+        assertTrue(RuntimeHintsPredicates.resource().forResource("db/vendor/postgresql/V4__partition_transactions.sql").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(Transaction.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(Transaction.class.getMethod("setReference", String.class)).test(hints));
+    }
+}
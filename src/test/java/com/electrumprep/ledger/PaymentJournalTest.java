@@ -0,0 +1,121 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.service.PaymentJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE DIARY TEST
+// 1. Many records handed in at once are all on disk, in order, after the futures complete.
+// 2. After a "crash" that left half a record, recovery returns only the complete ones.
+// 3. Released segments are deleted, the active one never is.
+// 4. A deadline only fails a record the writer never took; one it took is waited for.
+// -----------------------------------------------------------------------------------
+
+public class PaymentJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReplayEveryAcknowledgedRecordAndDropATornTail() throws Exception {
+        List<String> durable = Collections.synchronizedList(new ArrayList<>());
+        PaymentJournal<String> journal = new PaymentJournal<>(directory, 1 << 20, 64,
+                written -> written.forEach(entry -> durable.add(entry.item())));
+        journal.recover();
+        journal.start();
+
+        List<CompletableFuture<Void>> acks = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String payment = "payment-" + i;
+            acks.add(journal.append(payment.getBytes(StandardCharsets.UTF_8), payment));
+        }
+        CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).get();
+        assertEquals(500, durable.size());
+        assertEquals("payment-499", durable.get(499), "handed over in file order");
+        journal.close();
+
+        // 💥 Simulate a crash in the middle of the next write: a header promising 100 bytes, then 3.
+        try (var files = Files.list(directory)) {
+            Path segment = files.findFirst().orElseThrow();
+            Files.write(segment, new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 9, 9, 9}, StandardOpenOption.APPEND);
+        }
+
+        PaymentJournal<String> reopened = new PaymentJournal<>(directory, 1 << 20, 64, written -> { });
+        List<PaymentJournal.Entry<byte[]>> recovered = reopened.recover();
+        assertEquals(500, recovered.size());
+        assertEquals("payment-0", new String(recovered.get(0).item(), StandardCharsets.UTF_8));
+        assertEquals("payment-499", new String(recovered.get(499).item(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldDeleteOnlyReleasedClosedSegments() throws Exception {
+        List<Long> segments = Collections.synchronizedList(new ArrayList<>());
+        // A tiny segment size: every group commit rolls over to a new file.
+        PaymentJournal<String> journal = new PaymentJournal<>(directory, 1, 1,
+                written -> written.forEach(entry -> segments.add(entry.segment())));
+        journal.recover();
+        journal.start();
+        for (int i = 0; i < 3; i++) {
+            journal.append(new byte[]{(byte) i}, "p" + i).get();
+        }
+        assertEquals(List.of(1L, 2L, 3L), segments);
+
+        journal.release(3);
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.count(), "segments 1 and 2 deleted; 3 and the new active 4 stay");
+        }
+        journal.close();
+        journal.deleteAll();
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void deadlineShouldNeverFailARecordTheWriterAlreadyTook() throws Exception {
+        List<String> durable = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch slowDisk = new CountDownLatch(1);
+        PaymentJournal<String> journal = new PaymentJournal<>(directory, 1 << 20, 1, written -> {
+            try {
+                slowDisk.await(); // The writer is stuck on "p0" long past the deadline.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.forEach(entry -> durable.add(entry.item()));
+        });
+        journal.recover();
+        journal.start();
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                journal.appendAndWait(new byte[]{0}, "p0", 50);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        // "p1" is still in the queue behind "p0": it is taken back and fails.
+        assertThrows(TimeoutException.class, () -> journal.appendAndWait(new byte[]{1}, "p1", 50));
+        assertFalse(first.isDone(), "p0 is with the writer: still waiting, not failed");
+
+        slowDisk.countDown();
+        first.get();
+        journal.close();
+        assertEquals(List.of("p0"), durable);
+    }
+}
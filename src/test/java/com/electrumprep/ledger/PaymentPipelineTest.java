@@ -0,0 +1,84 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.service.MpscRingBuffer;
+import com.electrumprep.ledger.service.PaymentPipeline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE SORTING LANES TEST
+// 1. The carousel hands items out in order and says "full" after one lap.
+// 2. Many threads sending for the same accounts: each account's jobs run one at a time,
+//    in the order each sender handed them in, and errors come back to the right caller.
+// -----------------------------------------------------------------------------------
+
+public class PaymentPipelineTest {
+
+    @Test
+    void ringBufferShouldBeFifoAndBounded() {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(3); // Rounded up to 4 slots.
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(99), "one full lap ahead of the reader");
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, ring.poll());
+        }
+        assertNull(ring.poll());
+    }
+
+    @Test
+    void shouldRunEachKeyInOrderWithoutOverlap() throws Exception {
+        PaymentPipeline pipeline = new PaymentPipeline(new SimpleMeterRegistry(), true, 2, 8, Duration.ofSeconds(5));
+        pipeline.start();
+
+        // Per account: the last sequence number seen, and "is a job of this account running right now?"
+        Map<String, Integer> lastSeen = new ConcurrentHashMap<>();
+        Map<String, Boolean> busy = new ConcurrentHashMap<>();
+        ExecutorService senders = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> all = new ArrayList<>();
+            for (int s = 0; s < 4; s++) {
+                String account = "INV-" + s; // One sending thread per account, so its order is known.
+                all.add(senders.submit(() -> {
+                    for (int n = 0; n < 2_000; n++) {
+                        int sequence = n;
+                        pipeline.execute(account, () -> {
+                            assertNull(busy.put(account, true), "two jobs of " + account + " overlapped");
+                            Integer previous = lastSeen.put(account, sequence);
+                            assertEquals(sequence == 0 ? null : sequence - 1, previous);
+                            busy.remove(account);
+                            return sequence;
+                        });
+                    }
+                }));
+            }
+            for (Future<?> sender : all) {
+                sender.get();
+            }
+        } finally {
+            senders.shutdownNow();
+        }
+        assertEquals(4, lastSeen.size());
+        lastSeen.values().forEach(last -> assertEquals(1_999, last));
+
+        IllegalArgumentException refused = assertThrows(IllegalArgumentException.class,
+                () -> pipeline.execute("INV-0", () -> { throw new IllegalArgumentException("nope"); }));
+        assertEquals("nope", refused.getMessage());
+        pipeline.stop();
+    }
+}
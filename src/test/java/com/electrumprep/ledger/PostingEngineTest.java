@@ -0,0 +1,157 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.AccountBalance;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.service.LedgerStore;
+import com.electrumprep.ledger.service.PostingEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE BOOKKEEPING TEST
+// 1. Many threads moving money at once: the books still add up to exactly 0.
+// 2. The funds check refuses an overdraft, and a reversal puts the money back.
+// 3. An item the database refuses on its own is parked and undone; the others are written.
+// 4. At startup, a payment saved without postings (a crash) moves its money again.
+// The database is a stunt double (every account starts at 0).
+// -----------------------------------------------------------------------------------
+
+public class PostingEngineTest {
+
+    private static final List<String> ACCOUNTS = List.of("INV-1", "INV-2", "ABS-1", "ABS-2", "STD-1", "INV-POOL-888");
+
+    private PostingEngine engine(boolean checkFunds) {
+        return engine(mock(LedgerStore.class), checkFunds);
+    }
+
+    private PostingEngine engine(LedgerStore store, boolean checkFunds) {
+        return new PostingEngine(store, new SimpleMeterRegistry(), "CASH-IN",
+                checkFunds, Duration.ofMillis(200), 1000, 1000, 5, Duration.ofHours(24));
+    }
+
+    @Test
+    void debitsShouldEqualCreditsUnderConcurrentLoad() throws Exception {
+        PostingEngine engine = engine(true);
+        for (String account : ACCOUNTS) {
+            engine.post("CASH-IN", account, new BigDecimal("1000.00"));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < 8; w++) {
+                workers.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 5_000; i++) {
+                        String from = ACCOUNTS.get(random.nextInt(ACCOUNTS.size()));
+                        String to = ACCOUNTS.get(random.nextInt(ACCOUNTS.size()));
+                        if (from.equals(to)) {
+                            continue;
+                        }
+                        try {
+                            engine.post(from, to, BigDecimal.valueOf(random.nextInt(1, 50_000), 2));
+                        } catch (PostingEngine.InsufficientFundsException e) {
+                            // Expected now and then: the funds check is on.
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BigDecimal total = engine.balance("CASH-IN").orElseThrow().balance();
+        for (String account : ACCOUNTS) {
+            BigDecimal balance = engine.balance(account).orElseThrow().balance();
+            assertTrue(balance.signum() >= 0, account + " went below its (zero) overdraft: " + balance);
+            total = total.add(balance);
+        }
+        assertEquals(0, total.signum(), "debits and credits must cancel out");
+        assertEquals(new BigDecimal("-6000.00"), engine.balance("CASH-IN").orElseThrow().balance());
+    }
+
+    @Test
+    void shouldRefuseAnOverdraftAndReverseCleanly() {
+        PostingEngine engine = engine(true);
+        engine.post("CASH-IN", "INV-1", new BigDecimal("100.00"));
+
+        assertThrows(PostingEngine.InsufficientFundsException.class,
+                () -> engine.post("INV-1", "INV-POOL-888", new BigDecimal("100.01")));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.post("INV-1", "INV-POOL-888", new BigDecimal("0.001")));
+
+        PostingEngine.Entry entry = engine.post("INV-1", "INV-POOL-888", new BigDecimal("60.00"));
+        assertEquals(new BigDecimal("40.00"), engine.balance("INV-1").map(AccountBalance::balance).orElseThrow());
+
+        engine.reverse(entry);
+        assertEquals(new BigDecimal("100.00"), engine.balance("INV-1").map(AccountBalance::balance).orElseThrow());
+        assertEquals(new BigDecimal("0.00"), engine.balance("INV-POOL-888").map(AccountBalance::balance).orElseThrow());
+    }
+
+    @Test
+    void shouldParkAnItemTheDatabaseRefusesAndWriteTheRest() throws Exception {
+        // The database refuses the lines of transaction 2 (and only those), every time.
+        LedgerStore store = mock(LedgerStore.class);
+        doThrow(new IllegalStateException("value too long"))
+                .when(store).write(argThat(lines -> lines.stream().anyMatch(p -> Long.valueOf(2).equals(p.getTransactionId()))), any());
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        PostingEngine engine = new PostingEngine(store, meters, "CASH-IN", false, Duration.ofMillis(200), 1000,
+                1000, 1, Duration.ofHours(24));
+        for (long id = 1; id <= 3; id++) {
+            engine.record(engine.post("INV-" + id, "INV-POOL-888", new BigDecimal("10.00")), id);
+        }
+
+        engine.stop();
+
+        // Transactions 1 and 3 were written; 2 was parked and its money moved back.
+        verify(store).write(argThat(lines -> lines.size() == 2 && Long.valueOf(1).equals(lines.get(0).getTransactionId())), any());
+        verify(store).write(argThat(lines -> lines.size() == 2 && Long.valueOf(3).equals(lines.get(0).getTransactionId())), any());
+        verify(store).write(argThat(List::isEmpty), argThat(balances -> balances.stream()
+                .anyMatch(b -> b.accountNumber().equals("INV-2") && b.balance().signum() == 0)));
+        assertEquals(1.0, meters.counter("ledger.posting.parked").count());
+        assertEquals(new BigDecimal("0.00"), engine.balance("INV-2").map(AccountBalance::balance).orElseThrow());
+        assertEquals(new BigDecimal("20.00"), engine.balance("INV-POOL-888").map(AccountBalance::balance).orElseThrow());
+    }
+
+    @Test
+    void shouldRepostTransactionsWithoutPostingsAtStartup() throws Exception {
+        // A payment was saved, but the server died before its postings left the out-tray.
+        Transaction lost = new Transaction();
+        lost.setId(7L);
+        lost.setSenderAccount("INV-1");
+        lost.setReceiverAccount("INV-POOL-888");
+        lost.setAmount(new BigDecimal("25.00"));
+        LedgerStore store = mock(LedgerStore.class);
+        when(store.unposted(any())).thenReturn(List.of(lost));
+        PostingEngine engine = engine(store, true);
+
+        engine.start();
+        engine.stop();
+
+        // The money moved again (never refused for funds: it was already booked), and the lines were written.
+        assertEquals(new BigDecimal("-25.00"), engine.balance("INV-1").map(AccountBalance::balance).orElseThrow());
+        verify(store).write(argThat(lines -> lines.size() == 2 && Long.valueOf(7).equals(lines.get(0).getTransactionId())
+                && new BigDecimal("-25.00").equals(lines.get(0).getAmount())), any());
+    }
+}
@@ -0,0 +1,157 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+// The clock is passed in by hand, so "one minute later" takes no time at all.
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.model.TransactionReversed;
+import com.electrumprep.ledger.service.RiskEngine;
+import com.electrumprep.ledger.service.RiskEngine.Decision;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE RISK DESK TEST
+// 1. Velocity: the 4th payment in a minute is declined, and a minute later the window has slid on.
+// 2. Unusual amounts: far above the sender's usual amount = REVIEW, very far = DECLINE.
+// 3. Denylist: blocked prefixes, also when one blocked prefix starts with another.
+// 4. Startup: the windows are rebuilt from the last 24 hours of the database.
+// 5. Payments that never got booked give their place back; the bulk lane has no velocity limits.
+// 6. A journaled duplicate that was taken back gives its place back too (live and at startup).
+// -----------------------------------------------------------------------------------
+
+public class RiskEngineTest {
+
+    // A moment that starts a fresh bucket in every window.
+    private static final long T0 = 1_800_000_000_000L - 1_800_000_000_000L % 3_600_000L;
+    private static final long MINUTE = 60_000L;
+
+    private static RiskEngine engine(JdbcTemplate jdbc, int perMinute, int perHour, String hourAmount,
+                                     List<String> deniedSenders, List<String> deniedReceivers) {
+        return new RiskEngine(jdbc, new SimpleMeterRegistry(), true, 8,
+                perMinute, new BigDecimal("1000000"), perHour, new BigDecimal(hourAmount), 1000, new BigDecimal("1000000"),
+                50, 10, 70, 10, deniedSenders, deniedReceivers);
+    }
+
+    @Test
+    void velocityLimitsShouldSlideWithTime() {
+        RiskEngine risk = engine(null, 3, 200, "1000", List.of(), List.of());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Decision.APPROVE, risk.assess("INV-1", null, 10_00, T0 + i * 1000).decision());
+        }
+        RiskEngine.Assessment fourth = risk.assess("INV-1", null, 10_00, T0 + 5000);
+        assertEquals(Decision.DECLINE, fourth.decision());
+        assertEquals(100, fourth.score());
+        assertEquals("more than 3 payments per minute", fourth.reason());
+        // Someone else is not slowed down by INV-1.
+        assertEquals(Decision.APPROVE, risk.assess("INV-2", null, 10_00, T0 + 5000).decision());
+
+        // A minute later the first three have left the minute window (the declined one never counted).
+        assertEquals(Decision.APPROVE, risk.assess("INV-1", null, 10_00, T0 + MINUTE).decision());
+
+        // ...but not the hour window: R1000 per hour, R40 used, so R961 is too much.
+        RiskEngine.Assessment big = risk.assess("INV-1", null, 961_00, T0 + 2 * MINUTE);
+        assertEquals("more than R1000.00 per hour", big.reason());
+        assertEquals(Decision.APPROVE, risk.assess("INV-1", null, 961_00, T0 + 61 * MINUTE).decision());
+    }
+
+    @Test
+    void amountsFarFromTheUsualShouldBeReviewedOrDeclined() {
+        RiskEngine risk = engine(null, 1000, 1000, "1000000", List.of(), List.of());
+
+        // Twenty booked payments of about R100, one per minute.
+        for (int i = 0; i < 20; i++) {
+            risk.booked("ABS-9", risk.assess("ABS-9", null, i % 2 == 0 ? 95_00 : 105_00, T0 + i * MINUTE));
+        }
+
+        // R150 is a bit more than usual (fine), R250 is 15 spreads away (declined), R180 is 8 (reviewed).
+        risk.booked("ABS-9", risk.assess("ABS-9", null, 150_00, T0 + 20 * MINUTE));
+        assertEquals(Decision.DECLINE, risk.assess("ABS-9", null, 250_00, T0 + 21 * MINUTE).decision());
+        RiskEngine.Assessment review = risk.assess("ABS-9", null, 180_00, T0 + 22 * MINUTE);
+        assertEquals(Decision.REVIEW, review.decision());
+        assertTrue(review.score() >= 70 && review.score() < 100, "score " + review.score());
+
+        // A brand-new sender has no history yet: any amount is judged on velocity only.
+        assertEquals(Decision.APPROVE, risk.assess("ABS-10", null, 900_00, T0).decision());
+    }
+
+    @Test
+    void blockedPrefixesShouldBeDeclined() {
+        RiskEngine risk = engine(null, 1000, 1000, "1000000", List.of("AB", "ABC9", " ZZ-1 "), List.of("MULE-"));
+
+        assertEquals(Decision.DECLINE, risk.assess("ABD-1", null, 1_00, T0).decision());
+        assertEquals(Decision.DECLINE, risk.assess("ABC9-1", null, 1_00, T0).decision());
+        assertEquals(Decision.DECLINE, risk.assess("ZZ-19", null, 1_00, T0).decision());
+        assertEquals(Decision.APPROVE, risk.assess("AC-1", null, 1_00, T0).decision());
+        assertEquals(Decision.APPROVE, risk.assess("ZZ-2", null, 1_00, T0).decision());
+        assertEquals(Decision.APPROVE, risk.assess("A", null, 1_00, T0).decision());
+
+        RiskEngine.Assessment mule = risk.assess("STD-1", "MULE-77", 1_00, T0);
+        assertEquals(Decision.DECLINE, mule.decision());
+        assertEquals("receiver account is blocked", mule.reason());
+    }
+
+    @Test
+    void unbookedPaymentsShouldGiveTheirPlaceBack() {
+        RiskEngine risk = engine(null, 2, 200, "1000000", List.of(), List.of());
+
+        // Two holds fill the minute; releasing one (e.g. no money) makes room again.
+        RiskEngine.Assessment refused = risk.assess("SB-1", null, 10_00, T0);
+        risk.booked("SB-1", risk.assess("SB-1", null, 10_00, T0 + 1000));
+        assertEquals(Decision.DECLINE, risk.assess("SB-1", null, 10_00, T0 + 2000).decision());
+        risk.release("SB-1", refused);
+        assertEquals(Decision.APPROVE, risk.assess("SB-1", null, 10_00, T0 + 3000).decision());
+        assertEquals(Decision.DECLINE, risk.assess("SB-1", null, 10_00, T0 + 4000).decision());
+    }
+
+    @Test
+    void reversedDuplicatesShouldGiveTheirPlaceBack() {
+        RiskEngine risk = engine(null, 2, 200, "1000000", List.of(), List.of());
+        LocalDateTime at = LocalDateTime.now();
+        long atMillis = at.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        // Two booked payments fill the minute; then the journal finds the second was a duplicate.
+        risk.booked("SB-2", risk.assess("SB-2", null, 10_00, atMillis));
+        risk.booked("SB-2", risk.assess("SB-2", null, 10_00, atMillis));
+        assertEquals(Decision.DECLINE, risk.assess("SB-2", null, 10_00, atMillis).decision());
+        Transaction duplicate = new Transaction();
+        duplicate.setSenderAccount("SB-2");
+        duplicate.setAmount(new BigDecimal("10.00"));
+        duplicate.setTimestamp(at);
+        risk.onReversed(new TransactionReversed(duplicate, "REVERSED - Duplicate of transaction 1"));
+
+        assertEquals(Decision.APPROVE, risk.assess("SB-2", null, 10_00, atMillis).decision());
+    }
+
+    @Test
+    void windowsShouldBeRebuiltFromTheDatabase() {
+        JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:risk;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbc.execute("CREATE TABLE transactions (id BIGINT PRIMARY KEY, amount NUMERIC(38,2), " +
+                "sender_account VARCHAR(255), timestamp TIMESTAMP, status VARCHAR(255))");
+        LocalDateTime now = LocalDateTime.now();
+        // Three payments in the last hour, one from two days ago (too old to count),
+        // and a journaled duplicate that was taken back (never counts).
+        jdbc.update("INSERT INTO transactions VALUES (1, 10.00, 'INV-5', ?, 'SUCCESS')", now.minusDays(2));
+        jdbc.update("INSERT INTO transactions VALUES (2, 10.00, 'INV-5', ?, 'SUCCESS')", now.minusMinutes(30));
+        jdbc.update("INSERT INTO transactions VALUES (3, 10.00, 'INV-5', ?, 'SUCCESS')", now.minusMinutes(20));
+        jdbc.update("INSERT INTO transactions VALUES (4, 10.00, 'INV-5', ?, 'SUCCESS')", now.minusMinutes(10));
+        jdbc.update("INSERT INTO transactions VALUES (5, 10.00, 'INV-5', ?, 'REVERSED - Duplicate of transaction 4')",
+                now.minusMinutes(5));
+
+        RiskEngine risk = engine(jdbc, 1000, 4, "1000000", List.of(), List.of());
+        risk.start();
+
+        assertEquals(Decision.APPROVE, risk.assess("INV-5", null, new BigDecimal("10.00")).decision());
+        RiskEngine.Assessment fifth = risk.assess("INV-5", null, new BigDecimal("10.00"));
+        assertEquals("more than 4 payments per hour", fifth.reason());
+    }
+}
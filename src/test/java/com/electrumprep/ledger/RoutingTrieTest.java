@@ -0,0 +1,76 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.RoutingRule;
+import com.electrumprep.ledger.repository.RoutingRuleRepository;
+import com.electrumprep.ledger.service.RoutingTable;
+import com.electrumprep.ledger.service.RoutingTrie;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE SIGNPOST TREE TEST
+// The tree must give the same answers as the old if-else chain, plus handle
+// longer prefixes, priorities and broken rule sets.
+// The live table falls back to the file only at startup: a failed reload keeps the current rules.
+// -----------------------------------------------------------------------------------
+
+public class RoutingTrieTest {
+
+    private static final RoutingRule DEFAULT = new RoutingRule("", "STANDARD BANK", "SB-CLEARING-999", 0);
+
+    @Test
+    void shouldPickTheMostSpecificRoadUnlessPriorityOverrules() {
+        RoutingTrie trie = RoutingTrie.compile(List.of(
+                DEFAULT,
+                new RoutingRule("INV", "INVESTEC BANK", "INV-POOL-888", 10),
+                new RoutingRule("INV-PB", "INVESTEC PRIVATE BANK", "INV-PB-POOL", 10),
+                new RoutingRule("AB", "ABSA BANK", "ABS-MERCHANT-001", 20),
+                new RoutingRule("ABX", "LOW PRIORITY BANK", "LOW-POOL", 5)));
+
+        // Longest prefix wins on equal priority.
+        assertEquals("INVESTEC BANK", trie.route("INV-2026").targetBank());
+        assertEquals("INVESTEC PRIVATE BANK", trie.route("INV-PB-7").targetBank());
+        // A shorter prefix with a HIGHER priority beats a longer one.
+        assertEquals("ABSA BANK", trie.route("ABX-1").targetBank());
+        // No match at all -> the default road.
+        assertEquals(new RoutingTrie.Route("STANDARD BANK", "SB-CLEARING-999"), trie.route("FNB-1"));
+        assertEquals("STANDARD BANK", trie.route("").targetBank());
+    }
+
+    @Test
+    void shouldRefuseRulesWithoutADefaultRoad() {
+        assertThrows(IllegalArgumentException.class, () -> RoutingTrie.compile(List.of(
+                new RoutingRule("INV", "INVESTEC BANK", "INV-POOL-888", 10))));
+        assertThrows(IllegalArgumentException.class, () -> RoutingTrie.compile(List.of(
+                DEFAULT, new RoutingRule("ABS", " ", "ABS-MERCHANT-001", 10))));
+    }
+
+    @Test
+    void reloadShouldKeepTheLiveRulesWhenTheDatabaseFails() {
+        RoutingRuleRepository repository = mock(RoutingRuleRepository.class);
+        when(repository.findAll())
+                .thenThrow(new DataAccessResourceFailureException("down at startup"))
+                .thenReturn(List.of(DEFAULT, new RoutingRule("FNB", "FNB", "FNB-POOL", 10)))
+                .thenThrow(new DataAccessResourceFailureException("down again"));
+
+        // Startup: no tree yet, so the file rules get us going.
+        RoutingTable table = new RoutingTable(repository, new ClassPathResource("routing-rules.csv"));
+        assertEquals("INVESTEC BANK", table.route("INV-2026").targetBank());
+
+        // The operator's own rules go live...
+        assertEquals(2, table.reload());
+        assertEquals("FNB", table.route("FNB-1").targetBank());
+
+        // ...and a database hiccup on the next reload does NOT swap them for the file.
+        assertThrows(DataAccessResourceFailureException.class, table::reload);
+        assertEquals("FNB", table.route("FNB-1").targetBank());
+    }
+}
@@ -0,0 +1,149 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+// A tiny in-memory H2 database holds the receipts; the files go to a temporary folder.
+import com.electrumprep.ledger.model.SettlementFile;
+import com.electrumprep.ledger.service.SettlementService;
+import com.electrumprep.ledger.service.TransactionReadStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE CLEARING HOUSE TEST
+// 1. One run writes one file per target bank (CSV and fixed-width), only with that day's
+//    approved payments, and a header + trailer with the right count and total.
+// 2. A bank return file is matched on (reference, amount): each payment is used once,
+//    unknown and broken lines are reported, and a cut fixed-width reference still matches.
+// -----------------------------------------------------------------------------------
+
+public class SettlementServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 2, 1);
+
+    @TempDir
+    Path folder;
+
+    private JdbcTemplate jdbc;
+    private SettlementService settlement;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:settlement-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE transactions (id BIGINT PRIMARY KEY, reference VARCHAR(255), amount NUMERIC(38,2), " +
+                "sender_account VARCHAR(255), receiver_account VARCHAR(255), currency VARCHAR(255), status VARCHAR(255), " +
+                "timestamp TIMESTAMP, category VARCHAR(255), idempotency_key VARCHAR(255))");
+        jdbc.execute("CREATE INDEX idx_transactions_reference_amount ON transactions (reference, amount)");
+
+        insert(1, "Uber, Sandton", "120.50", "INV-POOL-888", "SUCCESS - Sent to INVESTEC BANK", DAY.atTime(9, 0, 5));
+        insert(2, "Woolworths", "99.99", "ABS-MERCHANT-001", "SUCCESS - Sent to ABSA BANK", DAY.atTime(10, 15));
+        insert(3, "Netflix", "199.00", "INV-POOL-888", "SUCCESS - Sent to INVESTEC BANK", DAY.atTime(23, 59, 59));
+        insert(4, "Netflix", "199.00", "INV-POOL-888", "SUCCESS - Sent to INVESTEC BANK", DAY.atTime(12, 0));
+        // Not settled: refused, or booked on another day.
+        insert(5, "Refused", "10.00", "SB-CLEARING-999", "FAILED - Insufficient funds", DAY.atTime(11, 0));
+        insert(6, "Tomorrow", "10.00", "SB-CLEARING-999", "SUCCESS - Sent to STANDARD BANK", DAY.plusDays(1).atStartOfDay());
+        insert(7, "A very long school fees reference for February", "5000.00", "ABS-MERCHANT-001",
+                "SUCCESS - Sent to ABSA BANK", DAY.atTime(8, 0));
+
+        TransactionReadStore noReadModel = new TransactionReadStore(null, new SimpleMeterRegistry(), false,
+                Duration.ofHours(24), 10, "", "", "", 1);
+        settlement = new SettlementService(noReadModel, jdbc, new DataSourceTransactionManager(dataSource),
+                folder.toString(), 2, 64, 2);
+    }
+
+    private void insert(long id, String reference, String amount, String receiver, String status, LocalDateTime at) {
+        jdbc.update("INSERT INTO transactions (id, reference, amount, sender_account, receiver_account, currency, status, timestamp) " +
+                "VALUES (?, ?, ?, 'STD-100', ?, 'ZAR', ?, ?)", id, reference, new BigDecimal(amount), receiver, status, at);
+    }
+
+    @Test
+    void shouldWriteOneFilePerBankForTheDay() throws Exception {
+        List<SettlementFile> files = settlement.writeFiles(DAY, SettlementService.Format.CSV);
+
+        // Oldest payment first decides the order; refused and next-day payments are left out.
+        assertEquals(List.of("ABSA BANK", "INVESTEC BANK"), files.stream().map(SettlementFile::bank).toList());
+        assertEquals(3, files.get(1).rows());
+        assertEquals(new BigDecimal("518.50"), files.get(1).total());
+        assertEquals(List.of(
+                "id,reference,sender_account,receiver_account,currency,amount,timestamp",
+                "1,\"Uber, Sandton\",STD-100,INV-POOL-888,ZAR,120.50,2026-02-01T09:00:05",
+                "4,Netflix,STD-100,INV-POOL-888,ZAR,199.00,2026-02-01T12:00",
+                "3,Netflix,STD-100,INV-POOL-888,ZAR,199.00,2026-02-01T23:59:59",
+                "TRAILER,3,518.50"), Files.readAllLines(Path.of(files.get(1).file())));
+
+        // Fixed-width: every record has its exact layout, and no ".part" file is left behind.
+        List<SettlementFile> fixed = settlement.writeFiles(DAY, SettlementService.Format.FIXED);
+        List<String> absa = Files.readAllLines(folder.resolve("2026-02-01/ABSA_BANK.txt"), StandardCharsets.US_ASCII);
+        assertEquals(fixed.get(0).file(), folder.resolve("2026-02-01/ABSA_BANK.txt").toString());
+        assertEquals("H20260201" + "%-30s".formatted("ABSA BANK"), absa.get(0));
+        assertEquals("D0000000000000000007" + "A very long school fees reference f" + "%-20s%-20s".formatted("STD-100", "ABS-MERCHANT-001")
+                + "ZAR" + "000000000500000" + "20260201080000", absa.get(1));
+        assertEquals(127, absa.get(2).length());
+        assertEquals("T0000000002000000000000509999", absa.get(3));
+        try (var listing = Files.list(folder.resolve("2026-02-01"))) {
+            assertEquals(4, listing.count());
+        }
+
+        // One bank, streamed: same lines as the file on disk.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SettlementFile streamed = settlement.streamFile("ABSA BANK", DAY, SettlementService.Format.FIXED, out);
+        assertEquals(2, streamed.rows());
+        assertEquals(String.join("\n", absa) + "\n", out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void shouldMatchReturnsOnReferenceAndAmount() throws Exception {
+        String csv = """
+                reference,amount,reason
+                Netflix,199.00,AC01
+                Netflix,199.00,AC04
+                Netflix,199.00,AC04
+                Woolworths,99.98,AM05
+                Woolworths,lots,AM05
+                "Uber, Sandton",120.50,MD07
+                """;
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        settlement.reconcileReturns(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                SettlementService.Format.CSV, DAY, report);
+
+        // The two Netflix payments are used once each (oldest id first); the third return (in the next
+        // chunk of 2 lines) finds none.
+        assertEquals(List.of(
+                "line,reference,amount,reason,transaction_id,result",
+                "2,Netflix,199.00,AC01,3,MATCHED",
+                "3,Netflix,199.00,AC04,4,MATCHED",
+                "4,Netflix,199.00,AC04,,UNMATCHED",
+                "5,Woolworths,99.98,AM05,,UNMATCHED",
+                "6,\"Woolworths,lots,AM05\",,,,INVALID: amount is not a number",
+                "7,\"Uber, Sandton\",120.50,MD07,1,MATCHED",
+                "TRAILER,6,3,2,1"), report.toString(StandardCharsets.UTF_8).lines().toList());
+
+        // Fixed-width: the reference was cut to 35 characters in the file, and still finds its payment.
+        String fixed = "H20260202ABSA BANK\n"
+                + "R" + "A very long school fees reference f" + "000000000500000" + "AC01\n"
+                + "T0000000001\n";
+        ByteArrayOutputStream fixedReport = new ByteArrayOutputStream();
+        settlement.reconcileReturns(new ByteArrayInputStream(fixed.getBytes(StandardCharsets.US_ASCII)),
+                SettlementService.Format.FIXED, null, fixedReport);
+        assertEquals("2,A very long school fees reference f,5000.00,AC01,7,MATCHED",
+                fixedReport.toString(StandardCharsets.UTF_8).lines().toList().get(1));
+    }
+}
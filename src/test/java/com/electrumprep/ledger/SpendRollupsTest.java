@@ -0,0 +1,118 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.CategoryAssigned;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.model.TransactionReversed;
+import com.electrumprep.ledger.model.TransactionsBooked;
+import com.electrumprep.ledger.service.CategoryEnrichmentPipeline;
+import com.electrumprep.ledger.service.CompactPayments;
+import com.electrumprep.ledger.service.SpendRollups;
+import com.electrumprep.ledger.service.SpendRollups.Dimension;
+import com.electrumprep.ledger.service.SpendRollups.Granularity;
+import com.electrumprep.ledger.service.TransactionArchive;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE TALLY BOARD TEST
+// 1. Booked payments land in the right minute/hour/day buckets, per category, bank and sender.
+// 2. An enriched PENDING payment moves from the PENDING pile to its real category.
+// 3. Senders are not tallied per minute (unbounded): that question goes to the payments.
+// 4. A journaled duplicate that was taken back leaves the tally again.
+// The database is a stunt double (start() is never called, so nothing is loaded or checkpointed).
+// -----------------------------------------------------------------------------------
+
+public class SpendRollupsTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().withMinute(10).withSecond(0).withNano(0);
+
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private final SpendRollups rollups = new SpendRollups(jdbc, mock(PlatformTransactionManager.class),
+            new CompactPayments(), mock(TransactionArchive.class), Duration.ofHours(48), Duration.ofDays(90), Duration.ofDays(1825), Duration.ofSeconds(10));
+
+    private static Transaction txn(String sender, String bank, String amount, String category, LocalDateTime at) {
+        Transaction txn = new Transaction();
+        txn.setSenderAccount(sender);
+        txn.setStatus("SUCCESS - Sent to " + bank);
+        txn.setAmount(new BigDecimal(amount));
+        txn.setCategory(category);
+        txn.setTimestamp(at);
+        return txn;
+    }
+
+    @Test
+    void bookedPaymentsShouldBeTalliedPerBucketAndKey() {
+        rollups.onBooked(new TransactionsBooked(List.of(
+                txn("INV-1", "INVESTEC BANK", "100.00", "Groceries", NOW),
+                txn("INV-1", "INVESTEC BANK", "50.25", "Transport", NOW.plusMinutes(1)),
+                txn("ABS-1", "ABSA BANK", "10.00", "Groceries", NOW.plusMinutes(2)))));
+
+        // Per hour, per category: both payments of the hour in one bucket.
+        SpendRollups.Report byCategory = rollups.query(Granularity.HOUR, Dimension.CATEGORY, NOW.minusHours(1), NOW.plusHours(1), null);
+        assertEquals(2, byCategory.buckets().size());
+        SpendRollups.Row groceries = byCategory.totals().get(0);
+        assertEquals("Groceries", groceries.key());
+        assertEquals(2, groceries.count());
+        assertEquals(new BigDecimal("110.00"), groceries.amount());
+
+        // Per minute, per bank, only Investec: one bucket per minute.
+        SpendRollups.Report investec = rollups.query(Granularity.MINUTE, Dimension.BANK, NOW, NOW.plusMinutes(5), "INVESTEC BANK");
+        assertEquals(2, investec.buckets().size());
+        assertEquals(new BigDecimal("150.25"), investec.totals().get(0).amount());
+
+        // Per day, per sender. The range end is not included.
+        SpendRollups.Report bySender = rollups.query(Granularity.DAY, Dimension.SENDER, NOW, NOW.plusDays(1), null);
+        assertEquals(List.of("ABS-1", "INV-1"), bySender.totals().stream().map(SpendRollups.Row::key).toList());
+    }
+
+    @Test
+    void sendersPerMinuteShouldBeRecountedNotKept() {
+        rollups.onBooked(new TransactionsBooked(List.of(txn("INV-1", "INVESTEC BANK", "100.00", "Groceries", NOW))));
+
+        // The stunt double database has no rows, so the board's own payment does not show up.
+        assertTrue(rollups.query(Granularity.MINUTE, Dimension.SENDER, NOW, NOW.plusMinutes(5), "INV-1").buckets().isEmpty());
+        verify(jdbc).query(contains("AND sender_account = ?"), any(RowCallbackHandler.class), any(Object[].class));
+        assertEquals(1, rollups.query(Granularity.HOUR, Dimension.SENDER, NOW, NOW.plusHours(1), "INV-1").buckets().size());
+    }
+
+    @Test
+    void enrichedPaymentShouldMoveOutOfThePendingPile() {
+        Transaction pending = txn("INV-1", "INVESTEC BANK", "99.99", CategoryEnrichmentPipeline.PENDING, NOW);
+        rollups.onBooked(new TransactionsBooked(List.of(pending)));
+
+        rollups.onCategoryAssigned(new CategoryAssigned(pending, "Entertainment"));
+
+        SpendRollups.Report report = rollups.query(Granularity.DAY, Dimension.CATEGORY, NOW.minusDays(1), NOW.plusDays(1), null);
+        assertEquals(1, report.totals().size(), "the empty PENDING pile is left out");
+        assertEquals("Entertainment", report.totals().get(0).key());
+        assertEquals(new BigDecimal("99.99"), report.totals().get(0).amount());
+    }
+
+    @Test
+    void reversedDuplicateShouldLeaveTheTally() {
+        Transaction first = txn("INV-1", "INVESTEC BANK", "40.00", "Groceries", NOW);
+        Transaction duplicate = txn("INV-1", "INVESTEC BANK", "40.00", "Groceries", NOW);
+        rollups.onBooked(new TransactionsBooked(List.of(first, duplicate)));
+
+        rollups.onReversed(new TransactionReversed(duplicate, "REVERSED - Duplicate of transaction 1"));
+
+        SpendRollups.Row groceries = rollups.query(Granularity.DAY, Dimension.CATEGORY, NOW.minusDays(1), NOW.plusDays(1), null)
+                .totals().get(0);
+        assertEquals(1, groceries.count());
+        assertEquals(new BigDecimal("40.00"), groceries.amount());
+    }
+}
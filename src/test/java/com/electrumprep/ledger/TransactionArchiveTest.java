@@ -0,0 +1,149 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+// The real Flyway scripts build the schema in an in-memory H2 database; archive files go to a temporary folder.
+import com.electrumprep.ledger.model.HistoryCursor;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.repository.TransactionRepository;
+import com.electrumprep.ledger.service.CompactPayments;
+import com.electrumprep.ledger.service.SpendRollups;
+import com.electrumprep.ledger.service.TransactionArchive;
+import com.electrumprep.ledger.service.TransactionHistoryService;
+import com.electrumprep.ledger.service.TransactionReadStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE COLD ROOM TEST
+// 1. Months older than "hot-months" move into archive files and out of the hot table;
+//    a second server sees them in the catalog and does not archive them again.
+// 2. A sender filter skips whole row groups, history pages continue from the hot table into
+//    the archive, and old stats are recounted from it.
+// -----------------------------------------------------------------------------------
+
+public class TransactionArchiveTest {
+
+    private static final YearMonth OLD = YearMonth.now().minusMonths(5);
+    private static final YearMonth LATER = YearMonth.now().minusMonths(4);
+    private static final YearMonth EMPTY = YearMonth.now().minusMonths(3);
+
+    @TempDir
+    Path folder;
+
+    private static List<Long> ids(List<Transaction> rows) {
+        return rows.stream().map(Transaction::getId).toList();
+    }
+
+    @Test
+    void closedMonthsShouldMoveToTheArchiveAndStayReadable() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:archive-" + System.nanoTime() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration", "classpath:db/vendor/h2").load().migrate();
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager txManager = new DataSourceTransactionManager(dataSource);
+
+        // 10 payments 5 months ago (ABS-2 first, then INV-1), 2 payments 4 months ago, 1 this month.
+        for (long id = 1; id <= 10; id++) {
+            insert(jdbc, id, id <= 6 ? "ABS-2" : "INV-1", id % 2 == 0 ? "Transport" : "Groceries", OLD.atDay((int) id).atTime(12, 0));
+        }
+        insert(jdbc, 11, "STD-3", "Tech", LATER.atDay(1).atTime(9, 0));
+        insert(jdbc, 12, "STD-3", "Tech", LATER.atDay(2).atTime(9, 0));
+        insert(jdbc, 13, "STD-3", "Tech", YearMonth.now().atDay(1).atStartOfDay());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TransactionReadStore readModelOff = new TransactionReadStore(jdbc, registry, false, Duration.ofHours(24), 10, "", "", "", 1);
+        TransactionArchive archive = newArchive(jdbc, txManager, readModelOff, registry);
+        TransactionArchive otherServer = newArchive(jdbc, txManager, readModelOff, new SimpleMeterRegistry());
+        try {
+            archive.start();
+
+            // 1. Three closed months archived (row groups of 3; the empty one is recorded as closed too),
+            //    only this month stays hot.
+            assertEquals(3, archive.archiveClosedMonths());
+            assertEquals(Map.of(OLD, 10L, LATER, 2L, EMPTY, 0L), archive.archived());
+            assertEquals(List.of(13L), jdbc.queryForList("SELECT id FROM transactions", Long.class));
+            String file = jdbc.queryForObject("SELECT file FROM transaction_archive WHERE month_start = ?", String.class,
+                    Date.valueOf(OLD.atDay(1)));
+            assertTrue(file.startsWith("transactions-" + OLD + "-") && Files.exists(folder.resolve(file)));
+
+            otherServer.start();
+            assertEquals(archive.archived(), otherServer.archived());
+            assertEquals(0, otherServer.archiveClosedMonths());
+            assertTrue(Files.exists(folder.resolve(file)), "the other server never touches a file it did not write");
+
+            // 2a. Newest first, continuing after a bookmark.
+            assertEquals(List.of(12L, 11L, 10L), ids(archive.newest(null, 3)));
+            assertEquals(List.of(9L, 8L), ids(archive.newest(new HistoryCursor(OLD.atDay(10).atTime(12, 0), 10L), 2)));
+            Transaction row = archive.newest(null, 1).get(0);
+            assertEquals(new BigDecimal("12.00"), row.getAmount());
+            assertEquals("SUCCESS - Sent to STANDARD BANK", row.getStatus());
+            assertEquals("key-12", row.getIdempotencyKey());
+
+            // 2b. Only INV-1: the two ABS-2 groups and the STD-3 month are skipped from the footer alone.
+            double skipped = registry.counter("ledger.archive.row-groups", "result", "skipped").count();
+            List<Long> inv = new ArrayList<>();
+            archive.scan(null, null, "INV-1", null, txn -> inv.add(txn.getId()));
+            assertEquals(List.of(7L, 8L, 9L, 10L), inv);
+            assertEquals(3, registry.counter("ledger.archive.row-groups", "result", "skipped").count() - skipped);
+
+            // 2c. History: the hot page ends after id 13, the rest comes from the archive.
+            TransactionRepository repository = mock(TransactionRepository.class);
+            Transaction hot = new Transaction();
+            hot.setId(13L);
+            hot.setTimestamp(YearMonth.now().atDay(1).atStartOfDay());
+            when(repository.findNewest(any())).thenReturn(List.of(hot));
+            TransactionHistoryService history = new TransactionHistoryService(repository, readModelOff, archive, jdbc,
+                    txManager, new ObjectMapper(), 100, 3, 500);
+            TransactionHistoryService.Page first = history.page(null, 3);
+            assertEquals(List.of(13L, 12L, 11L), ids(first.items()));
+            assertEquals(List.of(10L, 9L, 8L), ids(history.page(first.nextCursor(), 3).items()));
+
+            // 2d. Stats older than the board's retention are recounted from the archive.
+            SpendRollups rollups = new SpendRollups(jdbc, txManager, new CompactPayments(), archive,
+                    Duration.ofHours(48), Duration.ofDays(30), Duration.ofDays(30), Duration.ofSeconds(10));
+            SpendRollups.Report report = rollups.query(SpendRollups.Granularity.DAY, SpendRollups.Dimension.SENDER,
+                    OLD.atDay(1).atStartOfDay(), OLD.plusMonths(1).atDay(1).atStartOfDay(), "INV-1");
+            assertEquals(4, report.buckets().size());
+            assertEquals(OLD.atDay(7).atStartOfDay(), report.buckets().get(0).bucket());
+            assertEquals(List.of(new SpendRollups.Row(null, "INV-1", 4, new BigDecimal("34.00"))), report.totals());
+        } finally {
+            archive.stop();
+            otherServer.stop();
+        }
+    }
+
+    private TransactionArchive newArchive(JdbcTemplate jdbc, DataSourceTransactionManager txManager,
+                                          TransactionReadStore readStore, SimpleMeterRegistry registry) {
+        return new TransactionArchive(jdbc, txManager, readStore, registry, false, folder.toString(),
+                3, 2, 3, 100, Duration.ofHours(1), Duration.ZERO);
+    }
+
+    private static void insert(JdbcTemplate jdbc, long id, String sender, String category, LocalDateTime at) {
+        jdbc.update("INSERT INTO transactions (id, reference, amount, sender_account, receiver_account, currency, status, " +
+                        "timestamp, category, idempotency_key) VALUES (?, 'SHOP', ?, ?, 'SB-CLEARING-999', 'ZAR', " +
+                        "'SUCCESS - Sent to STANDARD BANK', ?, ?, ?)",
+                id, BigDecimal.valueOf(id).setScale(2), sender, at, category, "key-" + id);
+    }
+}
@@ -0,0 +1,114 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+// We use a tiny in-memory H2 database for the export, so the real JDBC cursor code runs.
+import com.electrumprep.ledger.model.HistoryCursor;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.repository.TransactionRepository;
+import com.electrumprep.ledger.service.TransactionArchive;
+import com.electrumprep.ledger.service.TransactionHistoryService;
+import com.electrumprep.ledger.service.TransactionReadStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE ARCHIVIST TEST
+// 1. Pages are capped, and a bookmark is only handed out when there is more to read.
+// 2. The export writes one JSON line per row, straight from the database.
+// -----------------------------------------------------------------------------------
+
+public class TransactionHistoryServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Test
+    void shouldCapThePageAndHandOutABookmark() {
+        // GIVEN: 5 rows, newest first, and a page size cap of 3
+        TransactionRepository repository = mock(TransactionRepository.class);
+        LocalDateTime now = LocalDateTime.of(2026, 2, 8, 14, 30);
+        List<Transaction> rows = new ArrayList<>();
+        for (long id = 5; id >= 1; id--) {
+            Transaction txn = new Transaction();
+            txn.setId(id);
+            txn.setTimestamp(now.minusMinutes(5 - id));
+            rows.add(txn);
+        }
+        // The service asks for one extra row (3 + 1) to find out if there is another page.
+        when(repository.findNewest(any())).thenAnswer(i -> rows.subList(0, 4));
+        when(repository.findOlderThan(eq(now.minusMinutes(2)), eq(3L), any())).thenAnswer(i -> rows.subList(3, 5));
+
+        TransactionHistoryService history = newService(repository, new JdbcTemplate(new DriverManagerDataSource()));
+
+        // WHEN: The client asks for 50 rows (more than allowed)
+        TransactionHistoryService.Page first = history.page(null, 50);
+
+        // THEN: It only gets 3, and a bookmark pointing at the last one (id 3)
+        assertEquals(3, first.items().size());
+        assertEquals(new HistoryCursor(now.minusMinutes(2), 3L), HistoryCursor.decode(first.nextCursor()));
+
+        // AND: The second page is the last one, so there is no bookmark.
+        TransactionHistoryService.Page second = history.page(first.nextCursor(), 50);
+        assertEquals(List.of(2L, 1L), second.items().stream().map(Transaction::getId).toList());
+        assertNull(second.nextCursor());
+
+        // AND: A made-up bookmark is refused.
+        assertThrows(IllegalArgumentException.class, () -> history.page("not-a-cursor", 10));
+    }
+
+    @Test
+    void shouldStreamEveryRowAsOneJsonLine() throws Exception {
+        // GIVEN: A small in-memory "transactions" table
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:history-export;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE transactions (id BIGINT PRIMARY KEY, reference VARCHAR(255), amount NUMERIC(38,2), " +
+                "sender_account VARCHAR(255), receiver_account VARCHAR(255), currency VARCHAR(255), " +
+                "status VARCHAR(255), timestamp TIMESTAMP, category VARCHAR(255))");
+        jdbc.update("INSERT INTO transactions VALUES (2, 'KFC', 89.90, 'ABS-1', 'ABSA-POOL', 'ZAR', 'SUCCESS', '2026-02-08 14:31:00', 'Food & Dining')");
+        jdbc.update("INSERT INTO transactions VALUES (1, 'Uber * 8721', 75.00, 'INV-1', 'INV-POOL', 'ZAR', 'SUCCESS', '2026-02-08 14:30:00', NULL)");
+
+        TransactionHistoryService history = newService(mock(TransactionRepository.class), jdbc);
+
+        // WHEN: We export
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        history.export(out);
+
+        // THEN: Two lines, oldest first, with the same field names as the Transaction JSON.
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(1L, first.get("id").asLong());
+        assertEquals("INV-1", first.get("senderAccount").asText());
+        assertTrue(lines[0].contains("\"amount\":75.00"), "money keeps its cents exactly");
+        assertEquals("2026-02-08T14:30:00", first.get("timestamp").asText());
+        assertTrue(first.get("category").isNull());
+        assertEquals("Food & Dining", objectMapper.readTree(lines[1]).get("category").asText());
+    }
+
+    private TransactionHistoryService newService(TransactionRepository repository, JdbcTemplate jdbc) {
+        // The read model is off here: pages come straight from the repository (and nothing is archived).
+        TransactionReadStore readModelOff = new TransactionReadStore(jdbc, new SimpleMeterRegistry(), false,
+                Duration.ofHours(24), 1000, "", "", "", 1);
+        return new TransactionHistoryService(repository, readModelOff, mock(TransactionArchive.class), jdbc,
+                new DataSourceTransactionManager(jdbc.getDataSource()), objectMapper, 100, 3, 500);
+    }
+}
@@ -0,0 +1,102 @@
+package com.electrumprep.ledger;
+
+// 📦 IMPORTS
+// A tiny in-memory H2 database plays both roles: the write database and the "read replica".
+import com.electrumprep.ledger.model.CategoryAssigned;
+import com.electrumprep.ledger.model.HistoryCursor;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.model.TransactionsBooked;
+import com.electrumprep.ledger.service.CategoryEnrichmentPipeline;
+import com.electrumprep.ledger.service.TransactionReadStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// -----------------------------------------------------------------------------------
+// 🧪 THE READING ROOM TEST
+// 1. Booked payments are served newest first from memory, with bookmarks, and an enriched
+//    PENDING payment shows its real category. Only "max-rows" are kept.
+// 2. At startup the window is loaded from the database, and pages past the window come
+//    from the read replica.
+// -----------------------------------------------------------------------------------
+
+public class TransactionReadStoreTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    private static Transaction txn(long id, LocalDateTime at, String category) {
+        Transaction txn = new Transaction();
+        txn.setId(id);
+        txn.setReference("SHOP " + id);
+        txn.setAmount(new BigDecimal("10.00"));
+        txn.setSenderAccount("INV-" + id);
+        txn.setTimestamp(at);
+        txn.setCategory(category);
+        return txn;
+    }
+
+    private static List<Long> ids(List<Transaction> rows) {
+        return rows.stream().map(Transaction::getId).toList();
+    }
+
+    @Test
+    void bookedPaymentsShouldBeServedNewestFirstFromMemory() {
+        // The write database is never touched (start() is not called).
+        TransactionReadStore store = new TransactionReadStore(null, new SimpleMeterRegistry(), true,
+                Duration.ofHours(24), 4, "", "", "", 1);
+        Transaction pending = txn(2, NOW.minusMinutes(4), CategoryEnrichmentPipeline.PENDING);
+        store.onBooked(new TransactionsBooked(List.of(txn(1, NOW.minusMinutes(5), "Groceries"), pending)));
+        store.onBooked(new TransactionsBooked(List.of(txn(3, NOW.minusMinutes(1), "Tech"),
+                txn(4, NOW.minusMinutes(1), "Tech"))));
+
+        // Same timestamp: the higher id is newer. The bookmark continues right after the last row.
+        assertEquals(List.of(4L, 3L, 2L), ids(store.newest(null, 3)));
+        assertEquals(List.of(2L, 1L), ids(store.newest(new HistoryCursor(NOW.minusMinutes(1), 3L), 10)));
+
+        // The Back Office found the category: the stored copy shows it, the original is untouched.
+        store.onCategoryAssigned(new CategoryAssigned(pending, "Shopping"));
+        assertEquals("Shopping", store.newest(new HistoryCursor(NOW.minusMinutes(1), 3L), 1).get(0).getCategory());
+        assertEquals(CategoryEnrichmentPipeline.PENDING, pending.getCategory());
+
+        // A fifth payment pushes the oldest one out (max-rows = 4).
+        store.onBooked(new TransactionsBooked(List.of(txn(5, NOW, "Tech"))));
+        assertEquals(List.of(5L, 4L, 3L, 2L), ids(store.newest(null, 10)));
+    }
+
+    @Test
+    void olderPagesShouldComeFromTheReplica() {
+        String url = "jdbc:h2:mem:read-model;DB_CLOSE_DELAY=-1";
+        JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+        jdbc.execute("CREATE TABLE transactions (id BIGINT PRIMARY KEY, reference VARCHAR(255), amount NUMERIC(38,2), " +
+                "sender_account VARCHAR(255), receiver_account VARCHAR(255), currency VARCHAR(255), status VARCHAR(255), " +
+                "timestamp TIMESTAMP, category VARCHAR(255), idempotency_key VARCHAR(255))");
+        // Two rows inside the 1-hour window, two from yesterday.
+        jdbc.update("INSERT INTO transactions (id, reference, timestamp, category) VALUES (1, 'OLD', ?, 'Tech')", NOW.minusDays(1));
+        jdbc.update("INSERT INTO transactions (id, reference, timestamp, category) VALUES (2, 'OLD', ?, 'Tech')", NOW.minusDays(1));
+        jdbc.update("INSERT INTO transactions (id, reference, timestamp, category) VALUES (3, 'NEW', ?, 'Tech')", NOW.minusMinutes(2));
+        jdbc.update("INSERT INTO transactions (id, reference, timestamp, category) VALUES (4, 'NEW', ?, 'Tech')", NOW.minusMinutes(1));
+
+        TransactionReadStore store = new TransactionReadStore(jdbc, new SimpleMeterRegistry(), true,
+                Duration.ofHours(1), 100, url, "sa", "", 1);
+        try {
+            store.start();
+
+            // The first page is the window, from memory; the rest continues on the replica.
+            assertEquals(List.of(4L, 3L), ids(store.newest(null, 2)));
+            List<Transaction> next = store.newest(new HistoryCursor(NOW.minusMinutes(2), 3L), 5);
+            assertEquals(List.of(2L, 1L), ids(next));
+            assertEquals("OLD", next.get(0).getReference());
+            assertEquals(List.of(4L, 3L, 2L), ids(store.newest(null, 3)));
+        } finally {
+            store.stop();
+        }
+    }
+}
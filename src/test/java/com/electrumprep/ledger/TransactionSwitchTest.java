@@ -3,20 +3,51 @@ package com.electrumprep.ledger;
 // 📦 IMPORTS
 // We are grabbing the "Mockito" tools.
 // Mockito is a special library that lets us create "Fake Objects" (Stunt Doubles).
+import com.electrumprep.ledger.model.BatchItemResult;
 import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.repository.RoutingRuleRepository;
 import com.electrumprep.ledger.repository.TransactionRepository;
+import com.electrumprep.ledger.service.BatchIngestionService;
 import com.electrumprep.ledger.service.CategorizationService; // <--- Needed for the new AI stuff
+import com.electrumprep.ledger.service.CategoryEnrichmentPipeline;
+import com.electrumprep.ledger.service.IdempotencyGuard;
+import com.electrumprep.ledger.service.LedgerStore;
+import com.electrumprep.ledger.service.PaymentJournalService;
+import com.electrumprep.ledger.service.PaymentPipeline;
+import com.electrumprep.ledger.service.PostingEngine;
+import com.electrumprep.ledger.service.RiskEngine;
+import com.electrumprep.ledger.service.RoutingTable;
+import com.electrumprep.ledger.service.SwitchMetrics;
 import com.electrumprep.ledger.service.TransactionSwitch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 // -----------------------------------------------------------------------------------
@@ -39,6 +70,41 @@ public class TransactionSwitchTest {
     @Mock // Fake AI Service (Added this because your Switch needs it now!)
     private CategorizationService aiService;
 
+    @Mock // Fake Back Office (By default a mock says "false" to isEnabled(), so we stay in SYNC mode.)
+    private CategoryEnrichmentPipeline enrichmentPipeline;
+
+    @Mock // Fake Bookkeeper (balances are tested on their own in PostingEngineTest)
+    private PostingEngine postingEngine;
+
+    @Mock // Fake Journal (a mock says "false" to isEnabled(), so payments are saved directly)
+    private PaymentJournalService journal;
+
+    @Mock // Fake Lanes (disabled: the work runs right here on the test thread)
+    private PaymentPipeline pipeline;
+
+    @Mock // Fake Town Crier (nobody is listening in this test)
+    private ApplicationEventPublisher events;
+
+    @Mock // Fake Coat Check (these payments carry no Idempotency-Key, so repository.save is used)
+    private IdempotencyGuard idempotencyGuard;
+
+    // 🗺️ The REAL routing map, built from the default routing-rules.csv (the fake table is empty).
+    @Spy
+    private RoutingTable routingTable = new RoutingTable(mock(RoutingRuleRepository.class),
+            new ClassPathResource("routing-rules.csv"));
+
+    // ⏱️ REAL stopwatches on a scoreboard we can read back (no tracing).
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    @Spy
+    private SwitchMetrics metrics = new SwitchMetrics(meters, ObservationRegistry.NOOP, false);
+
+    // 🕵️ The REAL Risk Desk, with tiny limits: 3 payments per minute, and "STD-666..." is blocked.
+    // (The database is never touched: start() is not called.)
+    @Spy
+    private RiskEngine riskEngine = new RiskEngine(null, meters, true, 4,
+            3, new BigDecimal("50000"), 200, new BigDecimal("200000"), 1000, new BigDecimal("500000"),
+            50, 10, 70, 10, List.of("STD-666"), List.of());
+
     // 🧠 THE REAL SUBJECT
     // This is the actual code we want to test.
     // @InjectMocks tells Mockito: "Create the Switch, and plug in the Fake DB and Fake AI automatically."
@@ -111,4 +177,252 @@ public class TransactionSwitchTest {
         // THEN: We check the status
         assertTrue(result.getStatus().contains("ABSA BANK"));
     }
-}
\ No newline at end of file
+
+    // ===================================================================================
+    // 🧪 TEST 4: Async Mode (Don't wait for the AI)
+    // Scenario: The Back Office is switched on, so Gemini must NOT be called on the payment path.
+    // ===================================================================================
+    @Test
+    void shouldSaveAsPendingAndHandOverInAsyncMode() {
+        // 1. GIVEN: Async mode is ON
+        Transaction txn = new Transaction();
+        txn.setAmount(new BigDecimal("75.00"));
+        txn.setReference("Uber * 8721");
+        txn.setSenderAccount("SB-42");
+        when(enrichmentPipeline.isEnabled()).thenReturn(true);
+        when(repository.save(any(Transaction.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        // WHEN: We process it
+        Transaction result = transactionSwitch.processAndRoute(txn);
+
+        // THEN: It was saved as PENDING, handed to the Back Office, and Gemini was never called.
+        assertEquals(CategoryEnrichmentPipeline.PENDING, result.getCategory());
+        verify(enrichmentPipeline).submit(result);
+        verify(aiService, never()).categorize(any(), any());
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 5: The Bulk Lane
+    // Scenario: A settlement file has one bad payment in the middle. The others must still go through.
+    // ===================================================================================
+    @Test
+    void shouldRejectOnlyTheBadItemInABatch() {
+        // 1. GIVEN: Good, bad (negative), good
+        Transaction first = new Transaction();
+        first.setAmount(new BigDecimal("10.00"));
+        first.setSenderAccount("INV-1");
+        Transaction bad = new Transaction();
+        bad.setAmount(new BigDecimal("-1.00"));
+        bad.setSenderAccount("ABS-2");
+        Transaction last = new Transaction();
+        last.setAmount(new BigDecimal("30.00"));
+        last.setSenderAccount("ABS-3");
+        when(repository.saveAll(any())).thenAnswer(i -> i.getArguments()[0]);
+
+        // WHEN: The chunk starts at position 100 of the upload
+        List<BatchItemResult> results = transactionSwitch.processBatch(List.of(first, bad, last), 100);
+
+        // THEN: Results come back in upload order, and only the bad one was rejected.
+        assertEquals(List.of(100, 101, 102), results.stream().map(BatchItemResult::index).toList());
+        assertEquals(BatchItemResult.ACCEPTED, results.get(0).status());
+        assertEquals(BatchItemResult.REJECTED, results.get(1).status());
+        assertEquals("FRAUD ALERT: Cannot send negative money!", results.get(1).error());
+        assertEquals(BatchItemResult.ACCEPTED, results.get(2).status());
+        assertEquals(CategoryEnrichmentPipeline.PENDING, last.getCategory());
+        verify(enrichmentPipeline).submit(first);
+        verify(enrichmentPipeline).submit(last);
+        verify(aiService, never()).categorize(any(), any());
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 6: The Stopwatches
+    // Scenario: One good payment and one refused payment. Where did they show up?
+    // ===================================================================================
+    @Test
+    void shouldTimeStagesAndCountRoutingOutcomes() {
+        // 1. GIVEN: A good Absa payment and a negative one
+        Transaction good = new Transaction();
+        good.setAmount(new BigDecimal("50.00"));
+        good.setSenderAccount("ABS-123");
+        Transaction bad = new Transaction();
+        bad.setAmount(new BigDecimal("-5.00"));
+        bad.setSenderAccount("ABS-124");
+        when(repository.save(any(Transaction.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        // WHEN
+        transactionSwitch.processAndRoute(good);
+        assertThrows(IllegalArgumentException.class, () -> transactionSwitch.processAndRoute(bad));
+
+        // THEN: Both were checked, only the good one was routed, posted, categorized and saved.
+        assertEquals(2, meters.get("ledger.switch.stage").tag("stage", "validate").timer().count());
+        for (String stage : List.of("route", "post", "categorize", "save")) {
+            assertEquals(1, meters.get("ledger.switch.stage").tag("stage", stage).timer().count(), stage);
+        }
+        assertEquals(1.0, meters.get("ledger.switch.routed").tag("bank", "ABSA BANK").counter().count());
+        assertEquals(1.0, meters.get("ledger.switch.refused").tag("reason", "invalid").counter().count());
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 7: The Risk Desk
+    // Scenario: A sender fires a 4th payment within a minute, and a blocked sender tries once.
+    // ===================================================================================
+    @Test
+    void shouldDeclineTooFastAndBlockedSenders() {
+        // 1. GIVEN: A database that saves anything
+        when(repository.save(any(Transaction.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        // WHEN: INV-777 pays 3 times (the limit), then a 4th time
+        for (int i = 0; i < 3; i++) {
+            Transaction txn = new Transaction();
+            txn.setAmount(new BigDecimal("20.00"));
+            txn.setSenderAccount("INV-777");
+            assertEquals("INV-POOL-888", transactionSwitch.processAndRoute(txn).getReceiverAccount());
+        }
+        Transaction fourth = new Transaction();
+        fourth.setAmount(new BigDecimal("20.00"));
+        fourth.setSenderAccount("INV-777");
+        Exception tooFast = assertThrows(IllegalArgumentException.class, () -> transactionSwitch.processAndRoute(fourth));
+
+        Transaction blocked = new Transaction();
+        blocked.setAmount(new BigDecimal("1.00"));
+        blocked.setSenderAccount("STD-666-01");
+        Exception denied = assertThrows(IllegalArgumentException.class, () -> transactionSwitch.processAndRoute(blocked));
+
+        // THEN: Both were refused before routing, and nothing was saved for them.
+        assertEquals("FRAUD ALERT: more than 3 payments per minute", tooFast.getMessage());
+        assertEquals("FRAUD ALERT: sender account is blocked", denied.getMessage());
+        assertNull(fourth.getReceiverAccount());
+        assertEquals(2.0, meters.get("ledger.switch.refused").tag("reason", "risk").counter().count());
+        verify(repository, times(3)).save(any(Transaction.class));
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 8: The Risk Desk only counts what was booked
+    // Scenario: Refused payments (no money) must not use up the limit, and a bulk upload of
+    // more than the per-minute limit from one sender must still go through.
+    // ===================================================================================
+    @Test
+    void shouldOnlyCountBookedPaymentsAndSkipVelocityInBatches() {
+        // 1. GIVEN: ABS-55 has no money for its first 3 payments, then it has
+        when(postingEngine.post(any(), any(), any()))
+                .thenThrow(new PostingEngine.InsufficientFundsException("ABS-55"))
+                .thenThrow(new PostingEngine.InsufficientFundsException("ABS-55"))
+                .thenThrow(new PostingEngine.InsufficientFundsException("ABS-55"))
+                .thenReturn(null);
+        when(repository.save(any(Transaction.class))).thenAnswer(i -> i.getArguments()[0]);
+        when(repository.saveAll(any())).thenAnswer(i -> i.getArguments()[0]);
+        for (int i = 0; i < 3; i++) {
+            Transaction broke = new Transaction();
+            broke.setAmount(new BigDecimal("20.00"));
+            broke.setSenderAccount("ABS-55");
+            assertThrows(PostingEngine.InsufficientFundsException.class, () -> transactionSwitch.processAndRoute(broke));
+        }
+
+        // WHEN: It pays for real, and then uploads 5 payments at once
+        Transaction paid = new Transaction();
+        paid.setAmount(new BigDecimal("20.00"));
+        paid.setSenderAccount("ABS-55");
+        transactionSwitch.processAndRoute(paid);
+        List<Transaction> upload = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Transaction txn = new Transaction();
+            txn.setAmount(new BigDecimal("20.00"));
+            txn.setSenderAccount("ABS-55");
+            upload.add(txn);
+        }
+        List<BatchItemResult> results = transactionSwitch.processBatch(upload, 0);
+
+        // THEN: The refusals left the minute window alone, and the whole upload was accepted...
+        assertTrue(paid.getStatus().endsWith("ABSA BANK"));
+        assertTrue(results.stream().allMatch(r -> BatchItemResult.ACCEPTED.equals(r.status())));
+        // ...but it counts: the next online payment is over the limit of 3 per minute.
+        Transaction next = new Transaction();
+        next.setAmount(new BigDecimal("20.00"));
+        next.setSenderAccount("ABS-55");
+        Exception tooFast = assertThrows(IllegalArgumentException.class, () -> transactionSwitch.processAndRoute(next));
+        assertEquals("FRAUD ALERT: more than 3 payments per minute", tooFast.getMessage());
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 9: A chunk of an upload cannot be saved
+    // Scenario: 6 payments in chunks of 2; the database fails on the second chunk.
+    // ===================================================================================
+    @Test
+    void shouldRejectOnlyTheChunkThatCouldNotBeSaved() throws Exception {
+        // 1. GIVEN: The second saveAll blows up, the others work
+        when(repository.saveAll(any()))
+                .thenAnswer(i -> i.getArguments()[0])
+                .thenThrow(new IllegalStateException("connection reset"))
+                .thenAnswer(i -> i.getArguments()[0]);
+        StringBuilder upload = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            upload.append("{\"amount\": 10.00, \"senderAccount\": \"ABS-").append(i).append("\"}\n");
+        }
+        BatchIngestionService ingestion = new BatchIngestionService(transactionSwitch, new ObjectMapper(), 2);
+
+        // WHEN: The file is uploaded
+        List<BatchItemResult> results = ingestion.ingest(new ByteArrayInputStream(upload.toString().getBytes()));
+
+        // THEN: Every payment has an answer; only the failed chunk was rejected (and its postings undone).
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), results.stream().map(BatchItemResult::index).toList());
+        assertEquals(List.of(BatchItemResult.ACCEPTED, BatchItemResult.ACCEPTED,
+                        BatchItemResult.REJECTED, BatchItemResult.REJECTED,
+                        BatchItemResult.ACCEPTED, BatchItemResult.ACCEPTED),
+                results.stream().map(BatchItemResult::status).toList());
+        assertEquals("Not saved: connection reset", results.get(2).error());
+        verify(postingEngine, times(2)).reverse(any());
+        verify(repository, times(3)).saveAll(any());
+    }
+
+    // ===================================================================================
+    // 🧪 TEST 10: A slow first visit stays out of the lanes
+    // Scenario: ONE payment lane. Loading the card of ABS-SLOW hangs on the database.
+    // ===================================================================================
+    @Test
+    void shouldKeepTheLanesMovingWhileAnAccountCardLoads() throws Exception {
+        // 1. GIVEN: A real Bookkeeper whose storeroom hangs on ABS-SLOW, and a real single lane
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LedgerStore store = mock(LedgerStore.class);
+        when(store.load("ABS-SLOW")).thenAnswer(i -> {
+            loading.countDown();
+            release.await();
+            return null;
+        });
+        PostingEngine engine = new PostingEngine(store, meters, "CASH-IN", false, Duration.ofMillis(200), 1000,
+                1000, 5, Duration.ofHours(24));
+        PaymentPipeline lanes = new PaymentPipeline(meters, true, 1, 8, Duration.ofSeconds(5));
+        lanes.start();
+        TransactionSwitch laned = new TransactionSwitch(repository, aiService, enrichmentPipeline, routingTable,
+                engine, journal, lanes, events, metrics, riskEngine, idempotencyGuard);
+        when(repository.save(any())).thenAnswer(i -> i.getArguments()[0]);
+
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Transaction slow = new Transaction();
+            slow.setAmount(new BigDecimal("10.00"));
+            slow.setSenderAccount("ABS-SLOW");
+            Future<Transaction> stuck = callers.submit(() -> laned.processAndRoute(slow));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            // WHEN: Someone else pays while that card is still loading
+            Transaction fast = new Transaction();
+            fast.setAmount(new BigDecimal("20.00"));
+            fast.setSenderAccount("ABS-FAST");
+
+            // THEN: The lane is free, so it goes straight through...
+            Transaction done = assertTimeoutPreemptively(Duration.ofSeconds(2), () -> laned.processAndRoute(fast));
+            assertTrue(done.getStatus().endsWith("ABSA BANK"));
+            assertFalse(stuck.isDone());
+
+            // ...and the slow one finishes as soon as its card arrives.
+            release.countDown();
+            assertTrue(stuck.get(5, TimeUnit.SECONDS).getStatus().endsWith("ABSA BANK"));
+            assertEquals(new BigDecimal("-10.00"), engine.balance("ABS-SLOW").orElseThrow().balance());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+            lanes.stop();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.electrumprep.ledger.benchmark;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.config.CacheConfig;
+import com.electrumprep.ledger.service.CategorizationService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.Cache;
+import org.springframework.cache.interceptor.KeyGenerator;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// -----------------------------------------------------------------------------------
+// ⏱️ THE STICKY NOTE STOPWATCH (JMH Benchmark)
+// Question: what does a category cache HIT cost? That is what every repeat merchant pays
+// before the Switch can move on: clean the merchant name (the key maker), then look it up
+// in the Caffeine cache. Built with the real CacheConfig, so the weigher and stats are on.
+// - "hit":  a merchant that is on a sticky note (the common case).
+// - "miss": a merchant that is not (the lookup cost only, Gemini is not called here).
+// Run it with:  mvn -Pbenchmark test-compile exec:exec -Dbenchmark=CategoryCacheBenchmark
+// -----------------------------------------------------------------------------------
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CategoryCacheBenchmark {
+
+    private Cache cache;
+    private KeyGenerator keys;
+    private String[] known;
+    private String[] unknown;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        CacheConfig config = new CacheConfig();
+        cache = config.cacheManager(16 * 1024 * 1024, Duration.ofHours(24)).getCache(CacheConfig.CATEGORIES);
+        keys = config.merchantKeyGenerator();
+
+        // References the way card terminals send them: merchant name plus a changing tail.
+        Random random = new Random(42);
+        known = new String[1024];
+        unknown = new String[1024];
+        for (int i = 0; i < known.length; i++) {
+            String merchant = "MERCHANT " + (i % 256);
+            known[i] = merchant + " * " + random.nextInt(10_000);
+            unknown[i] = "NEW SHOP " + i + " * " + random.nextInt(10_000);
+            cache.put(keys.generate(this, null, known[i], "10.00"),
+                    CategorizationService.CATEGORIES.get(i % CategorizationService.CATEGORIES.size()));
+        }
+    }
+
+    @Benchmark
+    public Object hit() {
+        return cache.get(keys.generate(this, null, known[next++ & (known.length - 1)], "10.00"));
+    }
+
+    @Benchmark
+    public Object miss() {
+        return cache.get(keys.generate(this, null, unknown[next++ & (unknown.length - 1)], "10.00"));
+    }
+}
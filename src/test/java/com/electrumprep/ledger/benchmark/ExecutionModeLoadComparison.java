@@ -0,0 +1,76 @@
+package com.electrumprep.ledger.benchmark;
+
+// 📦 IMPORTS
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+// -----------------------------------------------------------------------------------
+// 🏋️ THE STRESS TEST (Platform threads vs Virtual threads)
+// Starts the whole app twice (once per mode) against an in-memory H2 database and a
+// FAKE, slow Gemini, then fires many payments at the same time and prints:
+// requests per second, p50 / p99 latency, and errors.
+// Every payment has a unique reference, so every one of them waits for "Gemini".
+// The fake Gemini, app start-up and load loop are shared with the LoadHarness.
+//
+// Run it with:
+//   mvn -Pbenchmark test-compile exec:exec \
+//       -Dbenchmark.main=com.electrumprep.ledger.benchmark.ExecutionModeLoadComparison \
+//       -Dbenchmark="platform,virtual 400 20 200"
+// Arguments: modes, concurrent clients, seconds per mode, fake Gemini delay (ms).
+// -----------------------------------------------------------------------------------
+
+public class ExecutionModeLoadComparison {
+
+    public static void main(String[] args) throws Exception {
+        String[] all = args.length == 1 ? args[0].trim().split("\\s+") : args;
+        List<String> modes = Arrays.asList((all.length > 0 ? all[0] : "platform,virtual").split(","));
+        int clients = all.length > 1 ? Integer.parseInt(all[1]) : 400;
+        int seconds = all.length > 2 ? Integer.parseInt(all[2]) : 20;
+        long geminiDelayMs = all.length > 3 ? Long.parseLong(all[3]) : 200;
+
+        HttpServer gemini = LoadHarness.fakeGemini(geminiDelayMs);
+        List<String> report = new ArrayList<>();
+        try {
+            for (String mode : modes) {
+                report.add(run(mode, gemini.getAddress().getPort(), clients, seconds));
+            }
+        } finally {
+            gemini.stop(0);
+        }
+
+        System.out.printf("%nclients=%d, duration=%ds, fake Gemini delay=%dms%n", clients, seconds, geminiDelayMs);
+        System.out.printf("%-9s %10s %9s %9s %8s%n", "mode", "req/s", "p50 ms", "p99 ms", "errors");
+        report.forEach(System.out::println);
+    }
+
+    private static String run(String mode, int geminiPort, int clients, int seconds) throws Exception {
+        Map<String, Object> props = LoadHarness.appProperties("load-" + mode, geminiPort);
+        props.put("spring.threads.virtual.enabled", "virtual".equals(mode));
+        // A generous Gemini quota, so the limit under test is the THREAD model, not the bulkhead.
+        props.put("gemini.client.max-concurrent-calls", clients);
+        // Every payment comes from ABS-1, which the Risk Desk would rightly call far too fast.
+        props.put("ledger.risk.enabled", false);
+
+        try (ConfigurableApplicationContext app = LoadHarness.start(props, List.of())) {
+            URI uri = LoadHarness.paymentsUri(app);
+            HttpClient http = LoadHarness.httpClient();
+            Supplier<String> uniquePayments = () ->
+                    "{\"reference\":\"SHOP-" + UUID.randomUUID() + "\",\"amount\":10.00,\"senderAccount\":\"ABS-1\"}";
+
+            // 🔥 Warm up (JIT, connection pools), then measure.
+            LoadHarness.closedLoop(http, uri, clients, 3, uniquePayments);
+            LoadHarness.Result result = LoadHarness.closedLoop(http, uri, clients, seconds, uniquePayments);
+            return String.format("%-9s %10.0f %9.0f %9.0f %8d", mode, result.throughput(),
+                    result.percentileMs(50), result.percentileMs(99), result.errors());
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.electrumprep.ledger.benchmark;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.AtomicLedgerApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// -----------------------------------------------------------------------------------
+// 🏁 THE TEST TRACK (End-to-end load harness)
+// Starts the whole app against an in-memory H2 database (or any JDBC URL you give it) and a
+// FAKE Gemini, drives POST /api/transactions, and prints the latency curve:
+// p50, p75, p90, p95, p99, p99.9, p99.99 and max, plus throughput and errors.
+// The result is also written as JSON, and can be compared with an older result (the
+// "baseline"): if throughput dropped, or p99 / p99.9 grew, by more than "tolerance" percent,
+// the run FAILS (exit code 1). Run it on the main branch, keep the JSON, then on the pull request.
+//
+// Two ways to push:
+// - rate=0 (closed loop): "clients" users, each sends the next payment when the last one is answered.
+// - rate=N (open loop):   N payments per second on a fixed timetable, whatever the app does.
+//   Latency is measured from when a payment SHOULD have been sent, so a stalled server
+//   cannot hide its stall by slowing the sender down ("coordinated omission").
+//
+// Run it with:
+//   mvn -Pbenchmark test-compile exec:exec \
+//       -Dbenchmark.main=com.electrumprep.ledger.benchmark.LoadHarness \
+//       -Dbenchmark="clients=64 seconds=30 baseline=load-baseline.json"
+// Options (all optional): clients=64 seconds=30 warmup=10 rate=0 gemini-delay=20 merchants=500
+//   out=target/load-report.json baseline=<file> tolerance=10
+//   jdbc-url=<url> jdbc-user=<user> jdbc-password=<password>   (e.g. a local Postgres)
+//   --any.spring.property=value                                  (e.g. --ledger.journal.enabled=true)
+// -----------------------------------------------------------------------------------
+
+public class LoadHarness {
+
+    private static final String GEMINI_REPLY =
+            "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Shopping\"}]}}]}";
+
+    // The points of the latency curve.
+    private static final double[] CURVE = {50, 75, 90, 95, 99, 99.9, 99.99, 100};
+
+    public static void main(String[] args) throws Exception {
+        String[] all = args.length == 1 ? args[0].trim().split("\\s+") : args;
+        Map<String, String> options = new HashMap<>();
+        List<String> springOverrides = new ArrayList<>();
+        for (String arg : all) {
+            if (arg.startsWith("--")) {
+                springOverrides.add(arg);
+            } else if (arg.contains("=")) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int clients = Integer.parseInt(options.getOrDefault("clients", "64"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int rate = Integer.parseInt(options.getOrDefault("rate", "0"));
+        long geminiDelayMs = Long.parseLong(options.getOrDefault("gemini-delay", "20"));
+        int merchants = Integer.parseInt(options.getOrDefault("merchants", "500"));
+        Path out = Path.of(options.getOrDefault("out", "target/load-report.json"));
+        double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "10")) / 100;
+
+        HttpServer gemini = fakeGemini(geminiDelayMs);
+        Result result;
+        try {
+            Map<String, Object> props = appProperties("load-harness", gemini.getAddress().getPort());
+            if (options.containsKey("jdbc-url")) {
+                props.put("spring.datasource.url", options.get("jdbc-url"));
+                props.put("spring.datasource.username", options.getOrDefault("jdbc-user", "postgres"));
+                props.put("spring.datasource.password", options.getOrDefault("jdbc-password", ""));
+                props.remove("spring.jpa.properties.hibernate.dialect");
+            }
+            try (ConfigurableApplicationContext app = start(props, springOverrides)) {
+                URI uri = paymentsUri(app);
+                HttpClient http = httpClient();
+                Supplier<String> payments = randomPayments(merchants);
+
+                // 🔥 Warm up (JIT, connection pools, the category cache), then measure.
+                drive(http, uri, clients, rate, warmup, payments);
+                result = drive(http, uri, clients, rate, seconds, payments);
+            }
+        } finally {
+            gemini.stop(0);
+        }
+
+        Map<String, Object> report = result.toReport();
+        report.put("clients", clients);
+        report.put("rate", rate);
+        report.put("seconds", seconds);
+        report.put("geminiDelayMs", geminiDelayMs);
+        printCurve(result);
+
+        ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        json.writeValue(out.toFile(), report);
+        System.out.println("Report written to " + out.toAbsolutePath());
+
+        if (options.containsKey("baseline")) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> baseline = json.readValue(Path.of(options.get("baseline")).toFile(), Map.class);
+            List<String> regressions = compare(baseline, report, tolerance);
+            if (!regressions.isEmpty()) {
+                regressions.forEach(line -> System.out.println("REGRESSION: " + line));
+                System.exit(1);
+            }
+            System.out.printf("No regression against %s (tolerance %.0f%%)%n", options.get("baseline"), tolerance * 100);
+        }
+    }
+
+    // ===================================================================================
+    // 🧰 THE SHARED TOOLBOX (also used by ExecutionModeLoadComparison)
+    // ===================================================================================
+
+    // 🐌 A fake Google that answers every call after "delayMs" (on virtual threads, so IT is never the bottleneck).
+    static HttpServer fakeGemini(long delayMs) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = GEMINI_REPLY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return server;
+    }
+
+    // ⚙️ The app on a random port, an in-memory H2 database named "name", and the fake Gemini.
+    static Map<String, Object> appProperties(String name, int geminiPort) {
+        Map<String, Object> props = new HashMap<>();
+        props.put("server.port", 0);
+        props.put("spring.datasource.url", "jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE");
+        props.put("spring.datasource.username", "sa");
+        props.put("spring.datasource.password", "");
+        props.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        props.put("spring.jpa.show-sql", false);
+        props.put("logging.level.root", "WARN");
+        props.put("gemini.api.url", "http://127.0.0.1:" + geminiPort + "/generate?key=");
+        props.put("gemini.api.key", "load-test");
+        props.put("ledger.category-cache.persistent", false);
+        return props;
+    }
+
+    // Passed like command-line arguments, so they win over application.properties.
+    static ConfigurableApplicationContext start(Map<String, Object> props, List<String> extraArgs) {
+        List<String> args = new ArrayList<>();
+        props.forEach((key, value) -> args.add("--" + key + "=" + value));
+        args.addAll(extraArgs);
+        return new SpringApplicationBuilder(AtomicLedgerApplication.class).run(args.toArray(String[]::new));
+    }
+
+    static URI paymentsUri(ConfigurableApplicationContext app) {
+        int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+        return URI.create("http://127.0.0.1:" + port + "/api/transactions");
+    }
+
+    static HttpClient httpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    // 🛒 Payments from "merchants" different shops (letters only, so they stay different after
+    // MerchantNormalizer), with a changing card suffix, from senders of all three banks.
+    // 300,000 senders, so the Risk Desk's per-sender velocity limits are not what is being measured.
+    static Supplier<String> randomPayments(int merchants) {
+        String[] banks = {"INV", "ABS", "STD"};
+        return () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return "{\"reference\":\"SHOP " + letters(random.nextInt(merchants)) + " * " + random.nextInt(10_000) +
+                    "\",\"amount\":" + random.nextInt(1, 100_000) / 100.0 +
+                    ",\"senderAccount\":\"" + banks[random.nextInt(banks.length)] + "-" + random.nextInt(100_000) + "\"}";
+        };
+    }
+
+    private static String letters(int n) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append((char) ('A' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return name.toString();
+    }
+
+    // ===================================================================================
+    // 🏹 DRIVING THE LOAD
+    // ===================================================================================
+    static Result drive(HttpClient http, URI uri, int clients, int rate, int seconds, Supplier<String> payments)
+            throws InterruptedException {
+        return rate > 0 ? openLoop(http, uri, rate, seconds, payments) : closedLoop(http, uri, clients, seconds, payments);
+    }
+
+    // "clients" virtual threads send payments back-to-back until the time is up.
+    static Result closedLoop(HttpClient http, URI uri, int clients, int seconds, Supplier<String> payments) {
+        long begin = System.nanoTime();
+        long deadline = begin + Duration.ofSeconds(seconds).toNanos();
+        List<List<Long>> perClient = new ArrayList<>();
+        AtomicInteger errors = new AtomicInteger();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                List<Long> latencies = new ArrayList<>();
+                perClient.add(latencies);
+                pool.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        if (send(http, uri, payments.get())) {
+                            latencies.add((System.nanoTime() - start) / 1_000);
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+        long[] all = perClient.stream().flatMap(List::stream).mapToLong(Long::longValue).sorted().toArray();
+        return new Result(all, errors.get(), (System.nanoTime() - begin) / 1e9);
+    }
+
+    // "rate" payments per second on a fixed timetable, each on its own virtual thread.
+    static Result openLoop(HttpClient http, URI uri, int rate, int seconds, Supplier<String> payments)
+            throws InterruptedException {
+        int total = rate * seconds;
+        long interval = 1_000_000_000L / rate;
+        long[] latencies = new long[total];
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long begin = System.nanoTime();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < total; i++) {
+                long intended = begin + i * interval;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                pool.submit(() -> {
+                    if (send(http, uri, payments.get())) {
+                        latencies[done.getAndIncrement()] = (System.nanoTime() - intended) / 1_000;
+                    } else {
+                        errors.incrementAndGet();
+                    }
+                });
+            }
+        }
+        long[] all = Arrays.copyOf(latencies, done.get());
+        Arrays.sort(all);
+        // Measured until the LAST answer, so a server that falls behind cannot report the asked-for rate.
+        return new Result(all, errors.get(), (System.nanoTime() - begin) / 1e9);
+    }
+
+    private static boolean send(HttpClient http, URI uri, String body) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // ===================================================================================
+    // 📈 THE RESULT (sorted latencies in microseconds)
+    // ===================================================================================
+    record Result(long[] latenciesMicros, int errors, double seconds) {
+
+        double throughput() {
+            return latenciesMicros.length / seconds;
+        }
+
+        // Nearest-rank percentile, in milliseconds.
+        double percentileMs(double p) {
+            if (latenciesMicros.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p / 100 * latenciesMicros.length);
+            return latenciesMicros[Math.max(0, Math.min(latenciesMicros.length - 1, rank - 1))] / 1000.0;
+        }
+
+        Map<String, Object> toReport() {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("throughput", Math.round(throughput() * 10) / 10.0);
+            report.put("requests", latenciesMicros.length);
+            report.put("errors", errors);
+            Map<String, Double> curve = new LinkedHashMap<>();
+            for (double p : CURVE) {
+                curve.put(label(p), percentileMs(p));
+            }
+            report.put("latencyMs", curve);
+            return report;
+        }
+    }
+
+    private static String label(double p) {
+        return p == 100 ? "max" : "p" + (p == Math.rint(p) ? String.valueOf((int) p) : String.valueOf(p));
+    }
+
+    private static void printCurve(Result result) {
+        System.out.printf("%nthroughput: %.1f req/s, requests: %d, errors: %d%n",
+                result.throughput(), result.latenciesMicros().length, result.errors());
+        System.out.printf("%-8s %12s%n", "point", "latency ms");
+        for (double p : CURVE) {
+            System.out.printf("%-8s %12.2f%n", label(p), result.percentileMs(p));
+        }
+    }
+
+    // ⚖️ "Did it get worse?" Throughput may not drop, and p99 / p99.9 may not grow, by more than "tolerance".
+    @SuppressWarnings("unchecked")
+    static List<String> compare(Map<String, Object> baseline, Map<String, Object> current, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        double oldThroughput = ((Number) baseline.get("throughput")).doubleValue();
+        double newThroughput = ((Number) current.get("throughput")).doubleValue();
+        if (newThroughput < oldThroughput * (1 - tolerance)) {
+            regressions.add(String.format("throughput %.1f -> %.1f req/s", oldThroughput, newThroughput));
+        }
+        Map<String, Number> oldCurve = (Map<String, Number>) baseline.get("latencyMs");
+        Map<String, Double> newCurve = (Map<String, Double>) current.get("latencyMs");
+        for (String point : List.of("p99", "p99.9")) {
+            double before = oldCurve.get(point).doubleValue();
+            double after = newCurve.get(point);
+            if (after > before * (1 + tolerance)) {
+                regressions.add(String.format("%s %.2f -> %.2f ms", point, before, after));
+            }
+        }
+        return regressions;
+    }
+}
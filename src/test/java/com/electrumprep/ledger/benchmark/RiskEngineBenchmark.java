@@ -0,0 +1,62 @@
+package com.electrumprep.ledger.benchmark;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.service.RiskEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// -----------------------------------------------------------------------------------
+// ⏱️ THE RISK DESK STOPWATCH (JMH Benchmark)
+// Question: what does the fraud check add to every payment? Score + decision for one of
+// 100,000 senders: three window lookups, the amount statistics, the denylist search.
+// The target is single-digit microseconds, under 8 threads fighting over the shards.
+// Limits are so high nothing is declined, so every call also counts the payment.
+// Run it with:  mvn -Pbenchmark test-compile exec:exec -Dbenchmark=RiskEngineBenchmark
+// -----------------------------------------------------------------------------------
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class RiskEngineBenchmark {
+
+    private RiskEngine risk;
+    private String[] senders;
+    private BigDecimal[] amounts;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = new Random().nextInt(1 << 16);
+    }
+
+    @Setup
+    public void setUp() {
+        BigDecimal unlimited = new BigDecimal("1000000000000");
+        risk = new RiskEngine(null, new SimpleMeterRegistry(), true, 64, Integer.MAX_VALUE, unlimited,
+                Integer.MAX_VALUE, unlimited, Integer.MAX_VALUE, unlimited, 50, 10, 70, Double.MAX_VALUE,
+                List.of("FRAUD-", "MULE-", "STD-666"), List.of("MULE-"));
+        Random random = new Random(42);
+        senders = new String[100_000];
+        for (int i = 0; i < senders.length; i++) {
+            senders[i] = new String[]{"INV", "ABS", "STD"}[i % 3] + "-" + i;
+        }
+        amounts = new BigDecimal[1 << 16];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = BigDecimal.valueOf(100 + random.nextInt(100_000), 2);
+        }
+    }
+
+    @Benchmark
+    public RiskEngine.Assessment assess(Cursor cursor) {
+        int i = cursor.next++;
+        return risk.assess(senders[i % senders.length], null, amounts[i & (amounts.length - 1)]);
+    }
+}
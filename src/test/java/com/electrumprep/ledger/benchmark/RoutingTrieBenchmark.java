@@ -0,0 +1,79 @@
+package com.electrumprep.ledger.benchmark;
+
+// 📦 IMPORTS
+// JMH (Java Microbenchmark Harness) warms the JVM up and measures properly,
+// so the numbers are not fooled by the JIT compiler or dead-code elimination.
+import com.electrumprep.ledger.model.RoutingRule;
+import com.electrumprep.ledger.service.RoutingTrie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// -----------------------------------------------------------------------------------
+// ⏱️ THE ROUTING STOPWATCH (JMH Benchmark)
+// Question: does routing get slower when we have MORE rules?
+// - "trie":       the compiled signpost tree (should stay flat: it only walks the account number).
+// - "linearScan": the old style, checking every rule's startsWith() one by one (grows with the rules).
+// Run it with:  mvn -Pbenchmark test-compile exec:exec -Dbenchmark=RoutingTrieBenchmark
+// -----------------------------------------------------------------------------------
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingTrieBenchmark {
+
+    @Param({"3", "100", "1000", "10000"})
+    private int rules;
+
+    private RoutingTrie trie;
+    private List<RoutingRule> ruleList;
+    private String[] accounts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        ruleList = new ArrayList<>(rules);
+        ruleList.add(new RoutingRule("", "STANDARD BANK", "SB-CLEARING-999", 0));
+        ruleList.add(new RoutingRule("INV", "INVESTEC BANK", "INV-POOL-888", 10));
+        ruleList.add(new RoutingRule("ABS", "ABSA BANK", "ABS-MERCHANT-001", 10));
+        while (ruleList.size() < rules) {
+            String prefix = "B" + Integer.toString(10_000 + random.nextInt(90_000), 36).toUpperCase();
+            ruleList.add(new RoutingRule(prefix, "BANK " + prefix, prefix + "-POOL", 10));
+        }
+        trie = RoutingTrie.compile(ruleList);
+
+        // A mix of accounts: some hit a rule, some fall through to the default road.
+        accounts = new String[1024];
+        for (int i = 0; i < accounts.length; i++) {
+            String prefix = ruleList.get(random.nextInt(ruleList.size())).getAccountPrefix();
+            accounts[i] = (i % 4 == 0 ? "ZZ" : prefix) + "-" + random.nextInt(1_000_000);
+        }
+    }
+
+    @Benchmark
+    public RoutingTrie.Route trie() {
+        return trie.route(accounts[next++ & (accounts.length - 1)]);
+    }
+
+    @Benchmark
+    public String linearScan() {
+        String account = accounts[next++ & (accounts.length - 1)];
+        RoutingRule best = null;
+        for (RoutingRule rule : ruleList) {
+            if (account.startsWith(rule.getAccountPrefix())
+                    && (best == null || rule.getPriority() > best.getPriority()
+                    || (rule.getPriority() == best.getPriority()
+                        && rule.getAccountPrefix().length() > best.getAccountPrefix().length()))) {
+                best = rule;
+            }
+        }
+        return best.getTargetBank();
+    }
+}
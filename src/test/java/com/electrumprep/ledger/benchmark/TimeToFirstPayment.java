@@ -0,0 +1,184 @@
+package com.electrumprep.ledger.benchmark;
+
+// 📦 IMPORTS
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// -----------------------------------------------------------------------------------
+// 🏁 THE STARTING LINE (Time-to-first-payment)
+// How long after "java ..." does a NEW server book its first payment? This starts the app
+// as a separate process (a cold JVM, like a new pod), against an in-memory H2 database and a
+// FAKE Gemini, and sends a payment every 10 ms until one is accepted.
+// Reported per variant: wall-clock time to the first accepted payment (median and best of
+// "runs"), and the app's own ledger.startup.ready / ledger.startup.first-payment numbers.
+//
+// Run it with (after "mvn package", or "mvn -Paot package" for the AOT variant):
+//   mvn -Pbenchmark test-compile exec:exec \
+//       -Dbenchmark.main=com.electrumprep.ledger.benchmark.TimeToFirstPayment \
+//       -Dbenchmark="jar=target/ledger-0.0.1-SNAPSHOT.jar runs=5 variant.plain= variant.aot=-Dspring.aot.enabled=true"
+// Options: jar=<fat jar> (default: this classpath)  runs=5  out=target/startup-report.json
+//   variant.<name>=<jvm option>,<jvm option>...   (e.g. variant.cds=-XX:SharedArchiveFile=app.jsa)
+//   --any.spring.property=value
+// -----------------------------------------------------------------------------------
+
+public class TimeToFirstPayment {
+
+    private static final String PAYMENT = "{\"reference\":\"SHOP STARTUP\",\"amount\":10.00,\"senderAccount\":\"INV-1\"}";
+
+    public static void main(String[] args) throws Exception {
+        String[] all = args.length == 1 ? args[0].trim().split("\\s+") : args;
+        Map<String, String> options = new LinkedHashMap<>();
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        List<String> springOverrides = new ArrayList<>();
+        for (String arg : all) {
+            if (arg.startsWith("--")) {
+                springOverrides.add(arg);
+            } else if (arg.startsWith("variant.") && arg.contains("=")) {
+                String value = arg.substring(arg.indexOf('=') + 1);
+                variants.put(arg.substring("variant.".length(), arg.indexOf('=')),
+                        value.isEmpty() ? List.of() : Arrays.asList(value.split(",")));
+            } else if (arg.contains("=")) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        if (variants.isEmpty()) {
+            variants.put("plain", List.of());
+        }
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        Path out = Path.of(options.getOrDefault("out", "target/startup-report.json"));
+
+        HttpServer gemini = LoadHarness.fakeGemini(5);
+        Map<String, Object> report = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+                long[] wallMillis = new long[runs];
+                Map<String, Object> appNumbers = Map.of();
+                for (int run = 0; run < runs; run++) {
+                    Start start = start(options.get("jar"), variant.getValue(), springOverrides,
+                            gemini.getAddress().getPort(), "startup-" + variant.getKey() + "-" + run);
+                    wallMillis[run] = start.wallMillis();
+                    appNumbers = start.appNumbers();
+                }
+                Arrays.sort(wallMillis);
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("jvmOptions", variant.getValue());
+                result.put("firstPaymentMsMedian", wallMillis[runs / 2]);
+                result.put("firstPaymentMsBest", wallMillis[0]);
+                result.put("app", appNumbers);
+                report.put(variant.getKey(), result);
+            }
+        } finally {
+            gemini.stop(0);
+        }
+
+        System.out.printf("%n%-10s %14s %12s %10s %16s%n", "variant", "median ms", "best ms", "ready ms", "first-payment ms");
+        report.forEach((name, value) -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> result = (Map<String, Object>) value;
+            @SuppressWarnings("unchecked")
+            Map<String, Object> app = (Map<String, Object>) result.get("app");
+            System.out.printf("%-10s %14s %12s %10s %16s%n", name, result.get("firstPaymentMsMedian"),
+                    result.get("firstPaymentMsBest"), app.get("readyMs"), app.get("firstPaymentMs"));
+        });
+        ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        json.writeValue(out.toFile(), report);
+        System.out.println("Report written to " + out.toAbsolutePath());
+    }
+
+    private record Start(long wallMillis, Map<String, Object> appNumbers) {
+    }
+
+    // 🚀 One cold start: launch, hammer until the first payment is accepted, read the app's own numbers, stop.
+    private static Start start(String jar, List<String> jvmOptions, List<String> springOverrides, int geminiPort,
+                               String name) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        if (jar != null) {
+            command.addAll(List.of("-jar", jar));
+        } else {
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), "com.electrumprep.ledger.AtomicLedgerApplication"));
+        }
+        Map<String, Object> props = LoadHarness.appProperties(name, geminiPort);
+        props.put("server.port", port);
+        props.forEach((key, value) -> command.add("--" + key + "=" + value));
+        command.addAll(springOverrides);
+
+        HttpClient http = LoadHarness.httpClient();
+        URI payments = URI.create("http://127.0.0.1:" + port + "/api/transactions");
+        long begin = System.nanoTime();
+        Process app = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File("target/" + name + ".log"))).start();
+        try {
+            while (!accepted(http, payments)) {
+                if (!app.isAlive()) {
+                    throw new IllegalStateException("App exited with " + app.exitValue() + ", see target/" + name + ".log");
+                }
+                if (System.nanoTime() - begin > Duration.ofMinutes(2).toNanos()) {
+                    throw new IllegalStateException("No payment accepted after 2 minutes, see target/" + name + ".log");
+                }
+                Thread.sleep(10);
+            }
+            long wallMillis = (System.nanoTime() - begin) / 1_000_000;
+            Map<String, Object> appNumbers = new LinkedHashMap<>();
+            appNumbers.put("readyMs", gaugeMillis(http, port, "ledger.startup.ready"));
+            appNumbers.put("firstPaymentMs", gaugeMillis(http, port, "ledger.startup.first-payment"));
+            return new Start(wallMillis, appNumbers);
+        } finally {
+            app.destroy();
+            app.waitFor();
+        }
+    }
+
+    private static boolean accepted(HttpClient http, URI payments) {
+        HttpRequest request = HttpRequest.newBuilder(payments)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(10))
+                .POST(HttpRequest.BodyPublishers.ofString(PAYMENT))
+                .build();
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // The TimeGauges are reported in seconds on /actuator/metrics.
+    private static Long gaugeMillis(HttpClient http, int port, String name) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/actuator/metrics/" + name)).build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            return null;
+        }
+        JsonNode value = new ObjectMapper().readTree(response.body()).path("measurements").path(0).path("value");
+        return value.isNumber() && !Double.isNaN(value.asDouble()) ? Math.round(value.asDouble() * 1000) : null;
+    }
+}
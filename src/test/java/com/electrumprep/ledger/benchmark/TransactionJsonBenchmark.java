@@ -0,0 +1,68 @@
+package com.electrumprep.ledger.benchmark;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.Transaction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// -----------------------------------------------------------------------------------
+// ⏱️ THE TRANSLATOR STOPWATCH (JMH Benchmark)
+// Question: how long does it take to turn a payment's JSON into a Transaction (POST body)
+// and a Transaction back into JSON (the receipt)?
+// The ObjectMapper is built like Spring Boot builds it (Jackson2ObjectMapperBuilder: java.time
+// support, no failing on unknown fields), and the reader/writer are made once, like Spring MVC does.
+// Run it with:  mvn -Pbenchmark test-compile exec:exec -Dbenchmark=TransactionJsonBenchmark
+// -----------------------------------------------------------------------------------
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionJsonBenchmark {
+
+    private static final byte[] REQUEST =
+            "{\"reference\":\"UBER * 8721\",\"amount\":125.50,\"senderAccount\":\"INV-2026\"}".getBytes(StandardCharsets.UTF_8);
+
+    private ObjectReader reader;
+    private ObjectWriter writer;
+    private Transaction receipt;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        reader = mapper.readerFor(Transaction.class);
+        writer = mapper.writerFor(Transaction.class);
+
+        receipt = new Transaction();
+        receipt.setId(1_000_042L);
+        receipt.setReference("UBER * 8721");
+        receipt.setAmount(new BigDecimal("125.50"));
+        receipt.setSenderAccount("INV-2026");
+        receipt.setReceiverAccount("INV-POOL-888");
+        receipt.setCurrency("ZAR");
+        receipt.setStatus("SUCCESS - Sent to INVESTEC BANK");
+        receipt.setTimestamp(LocalDateTime.of(2026, 2, 8, 14, 30, 15, 123_456_000));
+        receipt.setCategory("Transport");
+    }
+
+    @Benchmark
+    public Transaction deserialize() throws IOException {
+        return reader.readValue(REQUEST);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(receipt);
+    }
+}
@@ -0,0 +1,151 @@
+package com.electrumprep.ledger.benchmark;
+
+// 📦 IMPORTS
+import com.electrumprep.ledger.model.Account;
+import com.electrumprep.ledger.model.Posting;
+import com.electrumprep.ledger.model.Transaction;
+import com.electrumprep.ledger.repository.RoutingRuleRepository;
+import com.electrumprep.ledger.repository.TransactionRepository;
+import com.electrumprep.ledger.service.CategorizationService;
+import com.electrumprep.ledger.service.CategoryEnrichmentPipeline;
+import com.electrumprep.ledger.service.LedgerStore;
+import com.electrumprep.ledger.service.PaymentJournalService;
+import com.electrumprep.ledger.service.PaymentPipeline;
+import com.electrumprep.ledger.service.PostingEngine;
+import com.electrumprep.ledger.service.RiskEngine;
+import com.electrumprep.ledger.service.RoutingTable;
+import com.electrumprep.ledger.service.SwitchMetrics;
+import com.electrumprep.ledger.service.TransactionSwitch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// -----------------------------------------------------------------------------------
+// ⏱️ THE SWITCH STOPWATCH (JMH Benchmark)
+// Question: how long does the Switch itself take for one payment, with the slow parts
+// (database, Gemini) replaced by instant stand-ins?
+// Real parts: checks, routing table, Posting Engine (balances + outbox), the lanes (off),
+//             the stage stopwatches (no tracing), the Risk Desk (limits so high it never declines).
+// Stand-ins:  a repository that only hands out ids, a categorizer that always says "Shopping",
+//             a Ledger Store that throws the flushed postings away.
+// Plain lambdas and proxies, not Mockito: a mock remembers every call, which is the opposite
+// of free when it is called millions of times.
+// Run it with:  mvn -Pbenchmark test-compile exec:exec -Dbenchmark=TransactionSwitchBenchmark
+// -----------------------------------------------------------------------------------
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionSwitchBenchmark {
+
+    private static final String[] SENDERS = {"INV-2026", "ABS-7781", "STD-0042", "INV-9001", "ABS-0003", "FNB-1234"};
+
+    private TransactionSwitch transactionSwitch;
+    private PostingEngine postingEngine;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        postingEngine = new PostingEngine(new DiscardingLedgerStore(), registry, "CASH-IN", false,
+                Duration.ofMillis(200), 1000, 100_000, 5, Duration.ofHours(24));
+        postingEngine.start();
+
+        CategorizationService categorizer = new CategorizationService(null, null, null, List.of(), registry) {
+            @Override
+            public String categorize(String reference, String amount) {
+                return "Shopping";
+            }
+        };
+        CategoryEnrichmentPipeline syncMode = new CategoryEnrichmentPipeline(categorizer, null, Runnable::run,
+                event -> { }, "sync", 1, 1, 1, 1, 1, Duration.ofMinutes(5));
+        PaymentJournalService noJournal = new PaymentJournalService(null, null, null, null, null, null, null, registry,
+                false, "journal", 64, 1, Duration.ofSeconds(1), 1);
+        PaymentPipeline noLanes = new PaymentPipeline(registry, false, 0, 1024, Duration.ofSeconds(1));
+        RoutingTable routingTable = new RoutingTable(stub(RoutingRuleRepository.class, (method, args) -> List.of()),
+                new ClassPathResource("routing-rules.csv"));
+
+        transactionSwitch = new TransactionSwitch(idHandingRepository(), categorizer, syncMode, routingTable,
+                postingEngine, noJournal, noLanes, event -> { },
+                new SwitchMetrics(registry, ObservationRegistry.NOOP, false), unlimitedRisk(registry), null);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        postingEngine.stop();
+    }
+
+    @Benchmark
+    public Transaction processAndRoute() {
+        Transaction txn = new Transaction();
+        txn.setReference("SHOP-" + (next & 1023));
+        txn.setAmount(BigDecimal.valueOf(1000 + (next & 4095), 2));
+        txn.setSenderAccount(SENDERS[next++ % SENDERS.length]);
+        return transactionSwitch.processAndRoute(txn);
+    }
+
+    // 🕵️ The real checks, but six senders doing millions of payments must never hit a limit.
+    private static RiskEngine unlimitedRisk(SimpleMeterRegistry registry) {
+        BigDecimal unlimited = new BigDecimal("1000000000000");
+        return new RiskEngine(null, registry, true, 64, Integer.MAX_VALUE, unlimited, Integer.MAX_VALUE, unlimited,
+                Integer.MAX_VALUE, unlimited, 50, 10, 70, Double.MAX_VALUE, List.of(), List.of());
+    }
+
+    // 🗄️ save() hands out the next id and returns the same row; nothing else is supported.
+    private static TransactionRepository idHandingRepository() {
+        AtomicLong ids = new AtomicLong();
+        return stub(TransactionRepository.class, (method, args) -> {
+            if (!method.getName().equals("save")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            Transaction txn = (Transaction) args[0];
+            txn.setId(ids.incrementAndGet());
+            return txn;
+        });
+    }
+
+    private interface Handler {
+        Object handle(Method method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method, args));
+    }
+
+    // 📒 Every account starts empty, and flushed postings go nowhere.
+    private static final class DiscardingLedgerStore extends LedgerStore {
+        DiscardingLedgerStore() {
+            super(null, null, null, null);
+        }
+
+        @Override
+        public Account load(String accountNumber) {
+            return null;
+        }
+
+        @Override
+        public void write(List<Posting> newPostings, Collection<BalanceSnapshot> balances) {
+        }
+
+        @Override
+        public List<Transaction> unposted(LocalDateTime since) {
+            return List.of();
+        }
+    }
+}